@@ -33,7 +33,7 @@ import nl.esciencecenter.neon.shaders.ShaderProgram;
 import nl.esciencecenter.neon.swing.ColormapInterpreter;
 import nl.esciencecenter.neon.swing.ColormapInterpreter.Color;
 import nl.esciencecenter.neon.swing.ColormapInterpreter.Dimensions;
-import nl.esciencecenter.neon.util.ModelViewStack;
+import nl.esciencecenter.neon.util.MatrixStack;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -75,6 +75,7 @@ public class GraphsGLEventListener extends NeonGLEventListener {
     private int[] histData = new int[] { 0, 0, 0, 0, 0, 0, 0, 0, 0 };
     private LineGraph2D lineGraph;
     private BezierGraph2D bezierGraph;
+    private final MatrixStack mvStack = new MatrixStack();
 
     private static int GRID_WIDTH = 300;
     private static int GRID_HEIGHT = 300;
@@ -409,13 +410,16 @@ public class GraphsGLEventListener extends NeonGLEventListener {
             textShaderProgram.setUniformMatrix("PMatrix", makePerspectiveMatrix());
             hist.drawLabels(gl, mv.mul(FloatMatrixMath.translate(1, 0, 0)), textShaderProgram);
 
-            ModelViewStack mvStack = new ModelViewStack();
-            mvStack.putTop(FloatMatrixMath.translate(-1f, 0f, -1f));
-            lineGraph.drawLabels(gl, mv, mvStack, textShaderProgram);
+            mvStack.loadTop(mv);
+            mvStack.push();
+            mvStack.mulTop(FloatMatrixMath.translate(-1f, 0f, -1f));
+            lineGraph.drawLabels(gl, mvStack, textShaderProgram);
+            mvStack.pop();
 
-            mvStack = new ModelViewStack();
-            mvStack.putTop(FloatMatrixMath.translate(-1f, 0f, 0f));
-            bezierGraph.drawLabels(gl, mv, mvStack, textShaderProgram);
+            mvStack.push();
+            mvStack.mulTop(FloatMatrixMath.translate(-1f, 0f, 0f));
+            bezierGraph.drawLabels(gl, mvStack, textShaderProgram);
+            mvStack.pop();
 
             dr.next();
 
@@ -479,11 +483,6 @@ public class GraphsGLEventListener extends NeonGLEventListener {
     private void renderHistogram(GL3 gl, Float4Matrix mv, ShaderProgram program) throws UninitializedException {
         // Stage the Perspective and Modelview matrixes in the ShaderProgram.
         program.setUniformMatrix("PMatrix", makePerspectiveMatrix());
-        program.setUniformMatrix("MVMatrix", mv.mul(FloatMatrixMath.translate(1, 0, 0)));
-
-        // Load all staged variables into the GPU, check for errors and
-        // omissions.
-        program.use(gl);
 
         MapPoint mp = dr.getMapPoint();
 
@@ -511,7 +510,7 @@ public class GraphsGLEventListener extends NeonGLEventListener {
             hist.setValues(gl, scaledData);
         }
 
-        hist.drawBars(gl, program);
+        hist.drawBars(gl, mv.mul(FloatMatrixMath.translate(1, 0, 0)), program);
     }
 
     /**
@@ -536,10 +535,11 @@ public class GraphsGLEventListener extends NeonGLEventListener {
             lineGraph.init(gl);
         }
 
-        ModelViewStack mvStack = new ModelViewStack();
-        mvStack.putTop(FloatMatrixMath.translate(-1f, 0f, -1f));
-
-        lineGraph.draw(gl, mv, mvStack, program);
+        mvStack.loadTop(mv);
+        mvStack.push();
+        mvStack.mulTop(FloatMatrixMath.translate(-1f, 0f, -1f));
+        lineGraph.draw(gl, mvStack, program);
+        mvStack.pop();
     }
 
     /**
@@ -563,10 +563,11 @@ public class GraphsGLEventListener extends NeonGLEventListener {
             bezierGraph.init(gl);
         }
 
-        ModelViewStack mvStack = new ModelViewStack();
-        mvStack.putTop(FloatMatrixMath.translate(-1f, 0f, 0f));
-
-        bezierGraph.draw(gl, mv, mvStack, program);
+        mvStack.loadTop(mv);
+        mvStack.push();
+        mvStack.mulTop(FloatMatrixMath.translate(-1f, 0f, 0f));
+        bezierGraph.draw(gl, mvStack, program);
+        mvStack.pop();
     }
 
     /**
@@ -704,6 +705,11 @@ public class GraphsGLEventListener extends NeonGLEventListener {
         // Delete the FramBuffer Objects.
         finalPBO.delete(gl);
 
+        // Release the shared histogram geometry.
+        if (hist != null) {
+            hist.delete(gl);
+        }
+
         // Let the ShaderProgramLoader clean up. This deletes all of the
         // ShaderProgram instances as well.
         try {
@@ -2,6 +2,8 @@ package nl.esciencecenter.neon.examples.shadertest;
 
 import java.io.File;
 import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.Map;
 
 import javax.media.opengl.GL;
 import javax.media.opengl.GL3;
@@ -26,6 +28,9 @@ import nl.esciencecenter.neon.models.Sphere;
 import nl.esciencecenter.neon.noise.Perlin3D;
 import nl.esciencecenter.neon.shaders.ShaderProgram;
 import nl.esciencecenter.neon.shaders.ShaderProgramLoader;
+import nl.esciencecenter.neon.shaders.ShaderSource;
+import nl.esciencecenter.neon.shaders.ShaderSourceManager;
+import nl.esciencecenter.neon.shaders.ShaderWatcher;
 import nl.esciencecenter.neon.text.MultiColorText;
 import nl.esciencecenter.neon.text.jogampexperimental.Font;
 import nl.esciencecenter.neon.text.jogampexperimental.FontFactory;
@@ -46,14 +51,13 @@ public class LiveShaderEditorGLEventListener extends NeonGLEventListener {
 
     private Sphere testModel;
 
-    private static File vsFile;
-    private static File fsFile;
+    private static File vertexShaderFile;
+    private static File fragmentShaderFile;
+    private static boolean fragmentShaderLive;
 
-    private String compilerMessage = "";
+    private ShaderWatcher watcher;
 
-    private boolean newFragmentShader;
-    private boolean newVertexShader;
-    private String newShaderFileName;
+    private String compilerMessage = "";
 
     protected final ShaderProgramLoader loader;
     protected int canvasWidth, canvasHeight;
@@ -90,13 +94,7 @@ public class LiveShaderEditorGLEventListener extends NeonGLEventListener {
         final GL3 gl = drawable.getGL().getGL3();
         gl.glViewport(0, 0, canvasWidth, canvasHeight);
 
-        if (newFragmentShader) {
-            setLiveFragmentShader(gl, liveShader, new File("shaders/vs_sunsurface.vp"), newShaderFileName);
-            newFragmentShader = false;
-        } else if (newVertexShader) {
-            setLiveVertexShader(gl, liveShader, newShaderFileName, new File("shaders/fs_animatedTurbulence.fp"));
-            newVertexShader = false;
-        }
+        reloadChangedShaders(gl);
 
         displayContext();
 
@@ -164,6 +162,8 @@ public class LiveShaderEditorGLEventListener extends NeonGLEventListener {
 
         final GL3 gl = drawable.getGL().getGL3();
 
+        watcher.close();
+
         noiseTex.delete(gl);
         starFBO.delete(gl);
         hudFBO.delete(gl);
@@ -228,11 +228,19 @@ public class LiveShaderEditorGLEventListener extends NeonGLEventListener {
                     "examples/liveshadereditor/shaders/vs_postprocess.vp"), new File(
                     "examples/liveshadereditor/shaders/fs_postprocess.fp"));
 
-            setLiveFragmentShader(gl, liveShader, new File("examples/liveshadereditor/shaders/vs_sunsurface.vp"),
-                    "examples/liveshadereditor/shaders/fs_animatedTurbulence.fp");
+            File vertexFile = new File("examples/liveshadereditor/shaders/vs_sunsurface.vp");
+            File fragmentFile = new File("examples/liveshadereditor/shaders/fs_animatedTurbulence.fp");
+
+            ShaderSourceManager sources = ShaderSourceManager.getInstance();
+            ShaderSource vsSource = sources.load(vertexFile, null);
+            ShaderSource fsSource = sources.load(fragmentFile, null);
+            liveShader = loader.createProgram(gl, "live", vsSource, fsSource);
+            inputHandler.setText(fragmentFile);
 
-            // setLiveVertexShader(gl, liveShader, "shaders/vs_sunsurface.vp",
-            // new File("shaders/fs_animatedTurbulence.fp"));
+            // Edits saved to the live shader files from now on are picked up
+            // by the watcher thread, see reloadChangedShaders.
+            watcher = new ShaderWatcher(sources, ShaderWatcher.DEFAULT_DEBOUNCE_MILLIS);
+            watchLiveShader(vertexFile, vsSource, fragmentFile, fsSource, true);
         } catch (final Exception e) {
             System.err.println("Error during shader creation: " + e.getMessage());
             e.printStackTrace();
@@ -377,72 +385,100 @@ public class LiveShaderEditorGLEventListener extends NeonGLEventListener {
         contextOff(drawable);
     }
 
-    private void setLiveFragmentShader(GL3 gl, ShaderProgram target, File vertexShaderFile,
-            String fragmentShaderFileName) {
-        vsFile = vertexShaderFile;
-        fsFile = null;
-        try {
-            liveShader = loader.createProgram(gl, "live", vertexShaderFile, new File(fragmentShaderFileName));
-            inputHandler.setText(new File(fragmentShaderFileName));
-            liveShader.init(gl);
-        } catch (FileNotFoundException e) {
-            e.printStackTrace();
-        } catch (CompilationFailedException e) {
-            e.printStackTrace();
+    /**
+     * Switches the live shader to the given files, and has the watcher read
+     * them (if not given) and report every change saved to them.
+     */
+    private synchronized void watchLiveShader(File vertexFile, ShaderSource vsCurrent, File fragmentFile,
+            ShaderSource fsCurrent, boolean fragmentLive) throws IOException {
+        if (vertexShaderFile != null) {
+            watcher.unwatch(vertexShaderFile);
+            watcher.unwatch(fragmentShaderFile);
         }
+        vertexShaderFile = vertexFile;
+        fragmentShaderFile = fragmentFile;
+        fragmentShaderLive = fragmentLive;
+
+        watcher.watch(vertexFile, null, vsCurrent);
+        watcher.watch(fragmentFile, null, fsCurrent);
     }
 
-    private void setLiveVertexShader(GL3 gl, ShaderProgram target, String vertexShaderFileName, File fragmentShaderFile) {
-        vsFile = null;
-        fsFile = fragmentShaderFile;
+    /**
+     * Builds a new live shader from the sources the watcher preprocessed in the
+     * background, if any of them changed. If the file in the editor changed,
+     * the raw text the watcher read along with it replaces the text in the
+     * editor, keeping the cursor, while the preprocessed text (with includes
+     * expanded) is only compiled. No files are read on this thread.
+     */
+    private synchronized void reloadChangedShaders(GL3 gl) {
+        Map<File, ShaderSource> changes = watcher.pollChanges();
+        if (changes.isEmpty()) {
+            return;
+        }
+
+        ShaderSource vsSource = watcher.getSource(vertexShaderFile);
+        ShaderSource fsSource = watcher.getSource(fragmentShaderFile);
+        File liveFile = fragmentShaderLive ? fragmentShaderFile : vertexShaderFile;
+        String liveText = watcher.getText(liveFile);
+        if (changes.containsKey(liveFile.getAbsoluteFile()) && liveText != null) {
+            inputHandler.reloadText(liveText);
+        }
+
+        compileLiveShader(gl, vsSource, fsSource);
+    }
+
+    /**
+     * Replaces the live shader by a program built from the given sources, or
+     * keeps the current one if they do not compile.
+     */
+    private void compileLiveShader(GL3 gl, ShaderSource vsSource, ShaderSource fsSource) {
+        if (vsSource == null || fsSource == null) {
+            // The other stage is still being read
+            return;
+        }
+
+        String newCompilerMessage;
         try {
-            liveShader = loader.createProgram(gl, "live", new File(vertexShaderFileName), fragmentShaderFile);
-            inputHandler.setText(new File(vertexShaderFileName));
-            liveShader.init(gl);
-        } catch (FileNotFoundException e) {
-            e.printStackTrace();
+            ShaderProgram editedShader = loader.createProgram(gl, "live", vsSource, fsSource);
+            newCompilerMessage = "New Shader compiled succesfully!";
+
+            ShaderProgram temp = liveShader;
+            liveShader = editedShader;
+
+            liveShader.setUniformMatrix("NormalMatrix", new Float3Matrix());
+            final Float4Matrix p = FloatMatrixMath.perspective(fovy, aspect, zNear, zFar);
+            liveShader.setUniformMatrix("PMatrix", p);
+            liveShader.setUniformMatrix("SMatrix", FloatMatrixMath.scale(1));
+            if (temp != null) {
+                temp.delete(gl);
+            }
+
+            baseColor = Color4.GREEN;
         } catch (CompilationFailedException e) {
-            e.printStackTrace();
+            newCompilerMessage = e.getMessage();
+
+            baseColor = Color4.YELLOW;
         }
-    }
 
-    public void reCompile(GL3 gl) {
+        if (newCompilerMessage.compareTo(compilerMessage) != 0) {
+            System.out.println(newCompilerMessage);
+            compilerMessage = newCompilerMessage;
+        }
+    }
 
+    public synchronized void reCompile(GL3 gl) {
         if (inputHandler.isReCompileNeeded()) {
-            ShaderProgram editedShader = liveShader;
-            String newCompilerMessage = "";
+            File liveFile = fragmentShaderLive ? fragmentShaderFile : vertexShaderFile;
             try {
-                if (fsFile == null) {
-                    editedShader = loader.createProgram(gl, "live", vsFile, inputHandler.getText());
+                ShaderSource edited = ShaderSourceManager.getInstance().process(liveFile.getName(),
+                        inputHandler.getText(), liveFile.getAbsoluteFile().getParent(), null);
+                if (fragmentShaderLive) {
+                    compileLiveShader(gl, watcher.getSource(vertexShaderFile), edited);
                 } else {
-                    editedShader = loader.createProgram(gl, "live", inputHandler.getText(), fsFile);
+                    compileLiveShader(gl, edited, watcher.getSource(fragmentShaderFile));
                 }
-                editedShader.init(gl);
             } catch (FileNotFoundException e) {
                 e.printStackTrace();
-            } catch (CompilationFailedException e) {
-                editedShader = liveShader;
-                newCompilerMessage = e.getMessage();
-
-                baseColor = Color4.YELLOW;
-            }
-            if (editedShader != liveShader) {
-                newCompilerMessage = "New Shader compiled succesfully!";
-
-                ShaderProgram temp = liveShader;
-                liveShader = editedShader;
-
-                liveShader.setUniformMatrix("NormalMatrix", new Float3Matrix());
-                final Float4Matrix p = FloatMatrixMath.perspective(fovy, aspect, zNear, zFar);
-                liveShader.setUniformMatrix("PMatrix", p);
-                liveShader.setUniformMatrix("SMatrix", FloatMatrixMath.scale(1));
-                temp.delete(gl);
-
-                baseColor = Color4.GREEN;
-            }
-            if (newCompilerMessage.compareTo(compilerMessage) != 0) {
-                System.out.println(newCompilerMessage);
-                compilerMessage = newCompilerMessage;
             }
 
             inputHandler.setReCompileNeeded(false);
@@ -452,18 +488,22 @@ public class LiveShaderEditorGLEventListener extends NeonGLEventListener {
     }
 
     public static boolean isFragmentShader() {
-        if (fsFile == null)
-            return true;
-        return false;
+        return fragmentShaderLive;
     }
 
     public void openFragmentShader(String fileName) {
-        newShaderFileName = fileName;
-        newFragmentShader = true;
+        try {
+            watchLiveShader(vertexShaderFile, null, new File(fileName), null, true);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
     }
 
     public void openVertexShader(String fileName) {
-        newShaderFileName = fileName;
-        newVertexShader = true;
+        try {
+            watchLiveShader(new File(fileName), null, fragmentShaderFile, null, false);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
     }
 }
@@ -9,6 +9,7 @@ import java.io.FileWriter;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.PrintWriter;
+import java.io.StringReader;
 import java.util.ArrayList;
 
 import javax.media.opengl.GLException;
@@ -350,14 +351,39 @@ public class TextEditorKeyboardHandler extends InputHandler implements KeyListen
     }
 
     public void setText(File textFile) throws FileNotFoundException {
-        linePosition = 0;
-        cursorPosition = 0;
-        textLines = new ArrayList<String>();
-
         FileInputStream fstream = new FileInputStream(textFile);
 
         DataInputStream in = new DataInputStream(fstream);
-        BufferedReader br = new BufferedReader(new InputStreamReader(in));
+        setText(new BufferedReader(new InputStreamReader(in)));
+    }
+
+    /**
+     * Replaces the text by the contents of the file after it was changed
+     * outside the editor, keeping the cursor where it was as far as the new
+     * text allows. The contents are passed in, so the caller can read the
+     * file off the rendering thread.
+     * 
+     * @param text
+     *            The new contents of the file.
+     */
+    public void reloadText(String text) {
+        int line = linePosition;
+        int cursor = cursorPosition;
+
+        setText(new BufferedReader(new StringReader(text)));
+        if (textLines.isEmpty()) {
+            textLines.add("");
+        }
+
+        linePosition = Math.min(line, textLines.size() - 1);
+        cursorPosition = Math.min(cursor, textLines.get(linePosition).length());
+        screenPosition = Math.min(screenPosition, linePosition);
+    }
+
+    private void setText(BufferedReader br) {
+        linePosition = 0;
+        cursorPosition = 0;
+        textLines = new ArrayList<String>();
 
         String strLine;
         try {
@@ -373,7 +399,7 @@ public class TextEditorKeyboardHandler extends InputHandler implements KeyListen
                 textLines.add(trimmedLine);
             }
 
-            in.close();
+            br.close();
         } catch (IOException e) {
             e.printStackTrace();
         }
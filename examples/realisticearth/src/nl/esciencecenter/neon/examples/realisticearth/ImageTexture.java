@@ -9,6 +9,7 @@ import java.nio.ByteBuffer;
 
 import javax.imageio.ImageIO;
 
+import nl.esciencecenter.neon.datastructures.DirectBufferPool;
 import nl.esciencecenter.neon.textures.Texture2D;
 
 /* Copyright 2013 Netherlands eScience Center
@@ -74,8 +75,9 @@ public class ImageTexture extends Texture2D {
             return;
         }
 
-        // Allocate ByteBuffer and fill it with pixel data.
-        ByteBuffer tempBuffer = ByteBuffer.allocate(width * height * 4);
+        // Borrow a direct ByteBuffer and fill it with pixel data. It is given
+        // back to the pool once init has uploaded it.
+        ByteBuffer tempBuffer = DirectBufferPool.getInstance().acquire(width * height * 4);
 
         for (int row = h_offSet; row < height; row++) {
             for (int col = width - w_offSet - 1; col >= 0; col--) {
@@ -86,8 +88,13 @@ public class ImageTexture extends Texture2D {
             }
         }
 
+        // The offsets leave part of the image empty.
+        while (tempBuffer.hasRemaining()) {
+            tempBuffer.put((byte) 0);
+        }
         tempBuffer.rewind();
 
-        pixelBuffer = tempBuffer;
+        setPixelBuffer(tempBuffer);
+        pixelBufferPooled = true;
     }
 }
\ No newline at end of file
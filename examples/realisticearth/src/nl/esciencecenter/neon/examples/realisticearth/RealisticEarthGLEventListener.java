@@ -15,7 +15,9 @@ import nl.esciencecenter.neon.math.FloatMatrixMath;
 import nl.esciencecenter.neon.math.Point4;
 import nl.esciencecenter.neon.math.Float3Vector;
 import nl.esciencecenter.neon.math.Float4Vector;
+import nl.esciencecenter.neon.metrics.GpuProfiler;
 import nl.esciencecenter.neon.models.GeoSphere;
+import nl.esciencecenter.neon.models.GeometryRegistry;
 import nl.esciencecenter.neon.models.InvertedGeoSphere;
 import nl.esciencecenter.neon.shaders.ShaderProgram;
 import nl.esciencecenter.neon.textures.Texture2D;
@@ -52,6 +54,12 @@ public class RealisticEarthGLEventListener extends NeonGLEventListener {
 
     private InvertedGeoSphere                universeInvertedSphere;
 
+    // Radii of the spheres, applied through the modelview matrix.
+    private static final float               EARTH_RADIUS       = 13f;
+    private static final float               ATMOSPHERE_RADIUS  = 13.2f;
+    private static final float               MOON_RADIUS        = 0.273f * EARTH_RADIUS;
+    private static final float               UNIVERSE_RADIUS    = 500000f;
+
     // Texture definitions for the spheres
     private Texture2D                        colorTex, specularTex, cityLightsTex, cloudTex, cloudTransparencyTex,
             normalTex, universeTex, moonTex;
@@ -173,18 +181,14 @@ public class RealisticEarthGLEventListener extends NeonGLEventListener {
             System.exit(1);
         }
 
-        // Here we define the Sphere models, and initialize them.
-        geoSphere = new GeoSphere(50, 50, 13f, false);
-        geoSphere.init(gl);
-
-        atmSphere = new GeoSphere(50, 50, 13.2f, false);
-        atmSphere.init(gl);
-
-        moonSphere = new GeoSphere(50, 50, 0.273f * 13f, false);
-        moonSphere.init(gl);
-
-        universeInvertedSphere = new InvertedGeoSphere(50, 50, 500000f, false);
-        universeInvertedSphere.init(gl);
+        // Here we get the Sphere models from the geometry registry. The earth,
+        // atmosphere and moon share a single unit sphere, their radius is
+        // applied through the modelview matrix when they are drawn.
+        GeometryRegistry registry = GeometryRegistry.getInstance();
+        geoSphere = registry.geoSphere(gl, 50, 50, false);
+        atmSphere = registry.geoSphere(gl, 50, 50, false);
+        moonSphere = registry.geoSphere(gl, 50, 50, false);
+        universeInvertedSphere = registry.invertedGeoSphere(gl, 50, 50, false);
 
         colorTex = new ImageTexture("images/Envisat_mosaic_May_-_November_2004.jpg", 0, 0, GL3.GL_TEXTURE2);
         normalTex = new ImageTexture("images/earthNormalMap_2048.png", 0, 0, GL3.GL_TEXTURE3);
@@ -280,10 +284,25 @@ public class RealisticEarthGLEventListener extends NeonGLEventListener {
             double minutesPassed = timePassed / 60000.0;
             totalMinutesPassed += minutesPassed;
 
+            // Time every pass on the GPU, these show up in the frame metrics
+            // reports when the metrics are enabled.
+            GpuProfiler profiler = getGpuProfiler();
+
+            profiler.begin(gl, "universe");
             renderUniverse(gl, new Float4Matrix(mv), shaderProgram_Universe);
+            profiler.end(gl);
+
+            profiler.begin(gl, "earth");
             renderGeoSphere(gl, new Float4Matrix(mv), shaderProgram_Earth);
+            profiler.end(gl);
+
+            profiler.begin(gl, "moon");
             renderMoon(gl, new Float4Matrix(mv), shaderProgram_Universe);
+            profiler.end(gl);
+
+            profiler.begin(gl, "atmosphere");
             renderAtmosphere(gl, new Float4Matrix(mv), shaderProgram_Atmosphere);
+            profiler.end(gl);
 
             // Unbind the FrameBufferObject, making it available for texture
             // extraction.
@@ -310,7 +329,7 @@ public class RealisticEarthGLEventListener extends NeonGLEventListener {
         // Stage the Perspective and Modelview matrixes in the
         // ShaderProgram.
         program.setUniformMatrix("PMatrix", makePerspectiveMatrix());
-        program.setUniformMatrix("MVMatrix", mv);
+        program.setUniformMatrix("MVMatrix", mv.mul(FloatMatrixMath.scale(UNIVERSE_RADIUS)));
         program.setUniformMatrix("NMatrix", FloatMatrixMath.getNormalMatrix(mv));
 
         // Stage the pointer to the textures
@@ -348,7 +367,7 @@ public class RealisticEarthGLEventListener extends NeonGLEventListener {
         // Stage the Perspective and Modelview matrixes in the
         // ShaderProgram.
         program.setUniformMatrix("PMatrix", makePerspectiveMatrix());
-        program.setUniformMatrix("MVMatrix", yRotatedMV);
+        program.setUniformMatrix("MVMatrix", yRotatedMV.mul(FloatMatrixMath.scale(EARTH_RADIUS)));
         program.setUniformMatrix("NMatrix", FloatMatrixMath.getNormalMatrix(mv));
 
         // Stage the pointer to the textures
@@ -383,7 +402,8 @@ public class RealisticEarthGLEventListener extends NeonGLEventListener {
         // Stage the Perspective and Modelview matrixes in the
         // ShaderProgram.
         program.setUniformMatrix("PMatrix", makePerspectiveMatrix());
-        program.setUniformMatrix("MVMatrix", mv.mul(FloatMatrixMath.translate(785, 0, 0)));
+        program.setUniformMatrix("MVMatrix",
+                mv.mul(FloatMatrixMath.translate(785, 0, 0)).mul(FloatMatrixMath.scale(MOON_RADIUS)));
         program.setUniformMatrix("NMatrix", FloatMatrixMath.getNormalMatrix(mv));
 
         // Stage the pointer to the textures
@@ -421,7 +441,7 @@ public class RealisticEarthGLEventListener extends NeonGLEventListener {
         // Stage the Perspective and Modelview matrixes in the
         // ShaderProgram.
         program.setUniformMatrix("PMatrix", makePerspectiveMatrix());
-        program.setUniformMatrix("MVMatrix", yRotatedMV);
+        program.setUniformMatrix("MVMatrix", yRotatedMV.mul(FloatMatrixMath.scale(ATMOSPHERE_RADIUS)));
         program.setUniformMatrix("NMatrix", FloatMatrixMath.getNormalMatrix(mv));
 
         // Stage the pointer to the textures
@@ -477,8 +497,12 @@ public class RealisticEarthGLEventListener extends NeonGLEventListener {
         // version).
         final GL3 gl = GLContext.getCurrentGL().getGL3();
 
-        // Delete Models
-        geoSphere.delete(gl);
+        // Release Models
+        GeometryRegistry registry = GeometryRegistry.getInstance();
+        registry.release(gl, geoSphere);
+        registry.release(gl, atmSphere);
+        registry.release(gl, moonSphere);
+        registry.release(gl, universeInvertedSphere);
 
         // Let the ShaderProgramLoader clean up. This deletes all of the
         // ShaderProgram instances as well.
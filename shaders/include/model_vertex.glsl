@@ -0,0 +1,7 @@
+// Vertex attributes bound by Model, and the matrices set by every program.
+in vec4 MCvertex;
+in vec3 MCnormal;
+in vec3 MCtexCoord;
+
+uniform mat4 MVMatrix;
+uniform mat4 PMatrix;
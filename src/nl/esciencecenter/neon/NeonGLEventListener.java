@@ -7,12 +7,15 @@ import javax.media.opengl.GLEventListener;
 import javax.media.opengl.GLException;
 
 import nl.esciencecenter.neon.exceptions.UninitializedException;
+import nl.esciencecenter.neon.input.CameraController;
 import nl.esciencecenter.neon.input.InputHandler;
 import nl.esciencecenter.neon.math.Float3Vector;
 import nl.esciencecenter.neon.math.Float4Matrix;
 import nl.esciencecenter.neon.math.Float4Vector;
 import nl.esciencecenter.neon.math.FloatMatrixMath;
 import nl.esciencecenter.neon.math.Point4;
+import nl.esciencecenter.neon.metrics.FrameMetrics;
+import nl.esciencecenter.neon.metrics.GpuProfiler;
 import nl.esciencecenter.neon.shaders.ShaderProgramLoader;
 import nl.esciencecenter.neon.text.jogampexperimental.Font;
 import nl.esciencecenter.neon.text.jogampexperimental.FontFactory;
@@ -103,6 +106,27 @@ public abstract class NeonGLEventListener implements GLEventListener {
      */
     private InputHandler inputHandler;
 
+    /**
+     * This quaternion based camera controller, if set, takes precedence over
+     * both the inputHandler and the input variables in the lookAt helper
+     * function.
+     */
+    private CameraController cameraController;
+
+    /**
+     * Matrices reused by the lookAt helper function, so the camera controller
+     * path does not allocate every frame. The eye matrix is only recomputed
+     * when radius, ftheta or phi change.
+     */
+    private final Float4Matrix eyeMatrix = new Float4Matrix();
+    private final Float4Matrix cameraMatrix = new Float4Matrix();
+    private final Float4Matrix modelViewMatrix = new Float4Matrix();
+    private float eyeRadius = Float.NaN, eyeFtheta = Float.NaN, eyePhi = Float.NaN;
+
+    private FrameMetrics frameMetrics = FrameMetrics.getInstance();
+
+    private GpuProfiler gpuProfiler;
+
     /**
      * Creates a new GLEventListener
      */
@@ -241,16 +265,17 @@ public abstract class NeonGLEventListener implements GLEventListener {
      * global variables.
      * 
      * @return A new Modelview Matrix that defines a rotated and translated view
-     *         at coordinates (0,0,0).
+     *         at coordinates (0,0,0). If a camera controller is set, the
+     *         returned matrix is owned by this listener and overwritten by the
+     *         next call, copy it to keep it.
      */
     public Float4Matrix lookAt() {
-        Point4 eye = new Point4((float) (getRadius() * Math.sin(getFtheta()) * Math.cos(getPhi())),
-                (float) (getRadius() * Math.sin(getFtheta()) * Math.sin(getPhi())),
-                (float) (getRadius() * Math.cos(getFtheta())));
-        Point4 at = new Point4(0.0f, 0.0f, 0.0f);
-        Float4Vector up = new Float4Vector(0.0f, 1.0f, 0.0f, 0.0f);
+        if (cameraController != null) {
+            cameraController.update(System.nanoTime());
+            return FloatMatrixMath.mul(eyeMatrix(), cameraController.getViewMatrix(cameraMatrix), modelViewMatrix);
+        }
 
-        Float4Matrix mv = FloatMatrixMath.lookAt(eye, at, up);
+        Float4Matrix mv = eyeMatrix();
 
         if (inputHandler == null) {
             mv = mv.mul(FloatMatrixMath.translate(new Float3Vector(0f, 0f, inputViewDistance)));
@@ -265,6 +290,27 @@ public abstract class NeonGLEventListener implements GLEventListener {
         return mv;
     }
 
+    /**
+     * Returns the view from the eye position given by radius, ftheta and phi,
+     * recomputing it only if one of them changed.
+     */
+    private Float4Matrix eyeMatrix() {
+        if (getRadius() != eyeRadius || getFtheta() != eyeFtheta || getPhi() != eyePhi) {
+            eyeRadius = getRadius();
+            eyeFtheta = getFtheta();
+            eyePhi = getPhi();
+
+            Point4 eye = new Point4((float) (eyeRadius * Math.sin(eyeFtheta) * Math.cos(eyePhi)),
+                    (float) (eyeRadius * Math.sin(eyeFtheta) * Math.sin(eyePhi)),
+                    (float) (eyeRadius * Math.cos(eyeFtheta)));
+            Point4 at = new Point4(0.0f, 0.0f, 0.0f);
+            Float4Vector up = new Float4Vector(0.0f, 1.0f, 0.0f, 0.0f);
+
+            eyeMatrix.setMatrix(FloatMatrixMath.lookAt(eye, at, up).asArray());
+        }
+        return eyeMatrix;
+    }
+
     /**
      * A helper function that generates a Perspective Matrix. Uses the fovy,
      * aspect, zNear and zFar global variables.
@@ -376,6 +422,71 @@ public abstract class NeonGLEventListener implements GLEventListener {
         this.inputViewDistance = inputViewDistance;
     }
 
+    /**
+     * Getter for the quaternion based camera controller.
+     * 
+     * @return the cameraController, or null if none was set.
+     */
+    public CameraController getCameraController() {
+        return cameraController;
+    }
+
+    /**
+     * Sets a quaternion based camera controller, to be used in the lookAt
+     * helper function instead of the inputHandler or input variables. The
+     * controller still needs to be registered as a mouse listener on the
+     * window.
+     * 
+     * @param cameraController
+     *            the cameraController to set, or null to go back to the
+     *            inputHandler or input variables.
+     */
+    public void setCameraController(CameraController cameraController) {
+        this.cameraController = cameraController;
+    }
+
+    /**
+     * Getter for the render loop metrics of this listener. Frame and swap
+     * times are recorded when the listener runs in a {@link NeonNewtWindow},
+     * draw calls, uniform uploads and texture uploads by the library itself;
+     * other phases can be timed by the implementation of display. The metrics
+     * are disabled until {@link FrameMetrics#setEnabled(boolean)} is called.
+     * 
+     * @return the frameMetrics, by default the shared
+     *         {@link FrameMetrics#getInstance()}.
+     */
+    public FrameMetrics getFrameMetrics() {
+        return frameMetrics;
+    }
+
+    /**
+     * Setter for the render loop metrics of this listener, to keep the frame
+     * timings of several windows apart. The library's own counters are always
+     * recorded in the shared {@link FrameMetrics#getInstance()}.
+     * 
+     * @param frameMetrics
+     *            the frameMetrics to set.
+     */
+    public void setFrameMetrics(FrameMetrics frameMetrics) {
+        this.frameMetrics = frameMetrics;
+    }
+
+    /**
+     * Getter for the GPU profiler of this listener, which records the GPU time
+     * of named scopes in the frame metrics. Its frames are started and ended
+     * when the listener runs in a {@link NeonNewtWindow}; the implementation
+     * of display can wrap its render passes in scopes. Set the frame metrics,
+     * if needed, before the first call.
+     * 
+     * @return the gpuProfiler.
+     */
+    public GpuProfiler getGpuProfiler() {
+        if (gpuProfiler == null) {
+            gpuProfiler = new GpuProfiler(frameMetrics);
+        }
+        return gpuProfiler;
+    }
+
     public float getRadius() {
         return radius;
     }
@@ -5,6 +5,9 @@ import javax.media.opengl.GLEventListener;
 import javax.media.opengl.GLProfile;
 
 import nl.esciencecenter.neon.input.InputHandler;
+import nl.esciencecenter.neon.metrics.FrameMetrics;
+import nl.esciencecenter.neon.metrics.FrameTimingListener;
+import nl.esciencecenter.neon.metrics.GpuProfiler;
 import nl.esciencecenter.neon.util.QuitListener;
 
 import com.jogamp.newt.opengl.GLWindow;
@@ -72,7 +75,17 @@ public class NeonNewtWindow {
 
         GLWindow window = GLWindow.create(caps);
 
-        window.addGLEventListener(glEventListener);
+        if (glEventListener instanceof NeonGLEventListener) {
+            // Time the frames around the application's listener
+            NeonGLEventListener neonListener = (NeonGLEventListener) glEventListener;
+            FrameMetrics metrics = neonListener.getFrameMetrics();
+            GpuProfiler gpuProfiler = neonListener.getGpuProfiler();
+            window.addGLEventListener(new FrameTimingListener(metrics, gpuProfiler, true));
+            window.addGLEventListener(glEventListener);
+            window.addGLEventListener(new FrameTimingListener(metrics, gpuProfiler, false));
+        } else {
+            window.addGLEventListener(glEventListener);
+        }
         window.addWindowListener(new QuitListener());
         window.setAutoSwapBufferMode(true);
         window.setSize(width, height);
@@ -0,0 +1,367 @@
+package nl.esciencecenter.neon.datastructures;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayDeque;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.jogamp.common.nio.Buffers;
+
+/* Copyright 2013 Netherlands eScience Center
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * Pool of direct, native order, {@link ByteBuffer}s for transient uploads to
+ * the GPU, such as texture pixels. Heap buffers are copied into native memory by JOGL on
+ * every upload, and large direct buffers are expensive to allocate and only
+ * freed by a full garbage collection, so upload code should borrow a buffer
+ * with {@link #acquire(int)} and give it back with {@link #release(ByteBuffer)}
+ * once the data is on the GPU. Buffers that live as long as their owner should
+ * not be borrowed, they would only keep a size class occupied.
+ * 
+ * Buffers are pooled in power-of-two size classes, from
+ * {@link #MIN_CLASS_BYTES} up to a configurable maximum. Larger requests are
+ * allocated exactly and never pooled. The number of idle buffers per class and
+ * the total number of idle bytes are capped; buffers released beyond the caps
+ * are dropped for the garbage collector.
+ * 
+ * In debug mode (enabled with {@link #setDebug(boolean)}, or for the default
+ * pool with the system property neon.bufferpool.debug=true) the pool remembers
+ * where every outstanding buffer was acquired, rejects buffers that are
+ * released twice or did not come from this pool, and
+ * {@link #reportLeaks()} logs every buffer that was never released.
+ * 
+ * All methods are thread safe.
+ * 
+ * @author Maarten van Meersbergen <m.van.meersbergen@esciencecenter.nl>
+ * 
+ */
+public class DirectBufferPool {
+    private final static Logger logger = LoggerFactory.getLogger(DirectBufferPool.class);
+
+    /** The smallest size class, smaller requests are rounded up to this. */
+    public static final int MIN_CLASS_BYTES = 4 * 1024;
+    /** The default largest size class. */
+    public static final int DEFAULT_MAX_CLASS_BYTES = 16 * 1024 * 1024;
+    /** The default maximum number of idle buffers kept per size class. */
+    public static final int DEFAULT_MAX_IDLE_PER_CLASS = 4;
+    /** The default maximum number of idle bytes kept by the pool. */
+    public static final long DEFAULT_MAX_IDLE_BYTES = 64L * 1024 * 1024;
+
+    private static final int MIN_CLASS_SHIFT = Integer.numberOfTrailingZeros(MIN_CLASS_BYTES);
+
+    private final ArrayDeque<ByteBuffer>[] idle;
+    private final int maxClassBytes;
+    private final int maxIdlePerClass;
+    private final long maxIdleBytes;
+
+    private boolean debug;
+    private final Map<ByteBuffer, Throwable> outstanding = new IdentityHashMap<ByteBuffer, Throwable>();
+
+    private long idleBytes;
+    private long liveBytes;
+    private long peakLiveBytes;
+    private long hits;
+    private long misses;
+    private long allocatedBytes;
+
+    private static class SingletonHolder {
+        public static final DirectBufferPool INSTANCE = new DirectBufferPool(DEFAULT_MAX_CLASS_BYTES,
+                DEFAULT_MAX_IDLE_PER_CLASS, DEFAULT_MAX_IDLE_BYTES);
+        static {
+            INSTANCE.setDebug(Boolean.getBoolean("neon.bufferpool.debug"));
+        }
+    }
+
+    /**
+     * Access point for the default pool, shared by the texture loaders.
+     * 
+     * @return The default pool.
+     */
+    public static DirectBufferPool getInstance() {
+        return SingletonHolder.INSTANCE;
+    }
+
+    /**
+     * Constructor for a pool with custom caps.
+     * 
+     * @param maxClassBytes
+     *            The largest size class, in bytes. Requests larger than the
+     *            largest power of two that fits are not pooled.
+     * @param maxIdlePerClass
+     *            The maximum number of idle buffers kept per size class.
+     * @param maxIdleBytes
+     *            The maximum number of bytes kept in idle buffers, over all
+     *            size classes.
+     */
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    public DirectBufferPool(int maxClassBytes, int maxIdlePerClass, long maxIdleBytes) {
+        if (maxClassBytes < MIN_CLASS_BYTES) {
+            throw new IllegalArgumentException("maxClassBytes cannot be smaller than " + MIN_CLASS_BYTES);
+        } else if (maxIdlePerClass < 0 || maxIdleBytes < 0) {
+            throw new IllegalArgumentException("maxIdlePerClass and maxIdleBytes cannot be negative");
+        }
+
+        this.maxClassBytes = Integer.highestOneBit(maxClassBytes);
+        this.maxIdlePerClass = maxIdlePerClass;
+        this.maxIdleBytes = maxIdleBytes;
+
+        int classes = Integer.numberOfTrailingZeros(this.maxClassBytes) - MIN_CLASS_SHIFT + 1;
+        idle = new ArrayDeque[classes];
+        for (int i = 0; i < classes; i++) {
+            idle[i] = new ArrayDeque<ByteBuffer>();
+        }
+    }
+
+    /**
+     * Borrows a direct, native order, buffer of at least the given size. Its
+     * position is 0 and its limit is the requested size; the capacity may be
+     * larger. The contents are undefined.
+     * 
+     * @param bytes
+     *            The number of bytes needed.
+     * @return The buffer, to be given back with {@link #release(ByteBuffer)}.
+     */
+    public synchronized ByteBuffer acquire(int bytes) {
+        if (bytes < 0) {
+            throw new IllegalArgumentException("bytes cannot be negative");
+        }
+
+        ByteBuffer result = null;
+        int sizeClass = sizeClass(bytes);
+        if (sizeClass >= 0) {
+            result = idle[sizeClass].pollFirst();
+        }
+
+        if (result != null) {
+            hits++;
+            idleBytes -= result.capacity();
+            result.clear();
+            result.order(ByteOrder.nativeOrder());
+        } else {
+            misses++;
+            int capacity = sizeClass >= 0 ? classBytes(sizeClass) : bytes;
+            result = Buffers.newDirectByteBuffer(capacity);
+            allocatedBytes += capacity;
+        }
+        result.limit(bytes);
+
+        liveBytes += result.capacity();
+        peakLiveBytes = Math.max(peakLiveBytes, liveBytes);
+
+        if (debug) {
+            outstanding.put(result, new Throwable("Buffer of " + bytes + " bytes acquired here"));
+        }
+
+        return result;
+    }
+
+    /**
+     * Borrows a buffer like {@link #acquire(int)}, with the requested bytes set
+     * to zero.
+     * 
+     * @param bytes
+     *            The number of bytes needed.
+     * @return The zeroed buffer, to be given back with
+     *         {@link #release(ByteBuffer)}.
+     */
+    public ByteBuffer acquireZeroed(int bytes) {
+        ByteBuffer result = acquire(bytes);
+        while (result.remaining() >= 8) {
+            result.putLong(0L);
+        }
+        while (result.hasRemaining()) {
+            result.put((byte) 0);
+        }
+        result.rewind();
+        return result;
+    }
+
+    /**
+     * Gives a buffer obtained from {@link #acquire(int)} back to the pool. The
+     * buffer should not be used anymore after this call.
+     * 
+     * @param buffer
+     *            The buffer to give back, null is ignored.
+     */
+    public synchronized void release(ByteBuffer buffer) {
+        if (buffer == null) {
+            return;
+        }
+        if (debug && outstanding.remove(buffer) == null) {
+            logger.error("Released a buffer that is not outstanding (released twice, or not from this pool)",
+                    new Throwable());
+            return;
+        }
+
+        liveBytes -= buffer.capacity();
+
+        int capacity = buffer.capacity();
+        if (!buffer.isDirect() || Integer.bitCount(capacity) != 1) {
+            return;
+        }
+        int sizeClass = sizeClass(capacity);
+        if (sizeClass >= 0 && classBytes(sizeClass) == capacity && idle[sizeClass].size() < maxIdlePerClass
+                && idleBytes + capacity <= maxIdleBytes) {
+            idle[sizeClass].addFirst(buffer);
+            idleBytes += capacity;
+        }
+    }
+
+    /**
+     * Drops all idle buffers, so their native memory can be reclaimed by the
+     * garbage collector. Outstanding buffers are not affected.
+     */
+    public synchronized void trim() {
+        for (ArrayDeque<ByteBuffer> queue : idle) {
+            queue.clear();
+        }
+        idleBytes = 0;
+    }
+
+    /**
+     * Logs every buffer that was acquired and not yet released, with the stack
+     * trace of where it was acquired. Only works in debug mode; call it at a
+     * point where all uploads should be finished, such as on dispose.
+     * 
+     * @return The number of outstanding buffers, or -1 if not in debug mode.
+     */
+    public synchronized int reportLeaks() {
+        if (!debug) {
+            return -1;
+        }
+        for (Throwable origin : outstanding.values()) {
+            logger.warn("Direct buffer was never released to the pool", origin);
+        }
+        return outstanding.size();
+    }
+
+    /**
+     * Switches debug mode, in which acquisitions are tracked for leak
+     * detection. Switching it on only tracks buffers acquired from then on.
+     * 
+     * @param debug
+     *            true to track acquisitions.
+     */
+    public synchronized void setDebug(boolean debug) {
+        this.debug = debug;
+        if (!debug) {
+            outstanding.clear();
+        }
+    }
+
+    /**
+     * Check whether debug mode is on.
+     * 
+     * @return true if acquisitions are tracked for leak detection.
+     */
+    public synchronized boolean isDebug() {
+        return debug;
+    }
+
+    /**
+     * Getter for the number of bytes in buffers that are currently borrowed.
+     * 
+     * @return the live bytes.
+     */
+    public synchronized long getLiveBytes() {
+        return liveBytes;
+    }
+
+    /**
+     * Getter for the largest number of bytes ever borrowed at the same time.
+     * 
+     * @return the peak live bytes.
+     */
+    public synchronized long getPeakLiveBytes() {
+        return peakLiveBytes;
+    }
+
+    /**
+     * Getter for the number of bytes in idle buffers kept for reuse.
+     * 
+     * @return the idle bytes.
+     */
+    public synchronized long getIdleBytes() {
+        return idleBytes;
+    }
+
+    /**
+     * Getter for the total number of bytes of native memory allocated by this
+     * pool.
+     * 
+     * @return the allocated bytes.
+     */
+    public synchronized long getAllocatedBytes() {
+        return allocatedBytes;
+    }
+
+    /**
+     * Getter for the number of acquisitions served by an idle buffer.
+     * 
+     * @return the number of hits.
+     */
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    /**
+     * Getter for the number of acquisitions that needed a new buffer.
+     * 
+     * @return the number of misses.
+     */
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    /**
+     * Getter for the fraction of acquisitions served by an idle buffer.
+     * 
+     * @return the hit rate, between 0 and 1, or 0 if nothing was acquired.
+     */
+    public synchronized float getHitRate() {
+        long total = hits + misses;
+        return total == 0 ? 0f : hits / (float) total;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "DirectBufferPool [live=" + liveBytes + ", peak=" + peakLiveBytes + ", idle=" + idleBytes
+                + ", allocated=" + allocatedBytes + ", hits=" + hits + ", misses=" + misses + "]";
+    }
+
+    /**
+     * @return the index of the smallest size class that fits, or -1 if the
+     *         request is larger than the largest class.
+     */
+    private int sizeClass(int bytes) {
+        if (bytes > maxClassBytes) {
+            return -1;
+        }
+        if (bytes <= MIN_CLASS_BYTES) {
+            return 0;
+        }
+        int shift = 32 - Integer.numberOfLeadingZeros(bytes - 1);
+        return shift - MIN_CLASS_SHIFT;
+    }
+
+    private static int classBytes(int sizeClass) {
+        return MIN_CLASS_BYTES << sizeClass;
+    }
+}
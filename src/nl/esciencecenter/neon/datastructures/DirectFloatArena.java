@@ -0,0 +1,107 @@
+package nl.esciencecenter.neon.datastructures;
+
+import java.nio.FloatBuffer;
+
+import com.jogamp.common.nio.Buffers;
+
+/* Copyright 2013 Netherlands eScience Center
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * Arena for small, long-lived, direct {@link FloatBuffer}s, such as the
+ * staging buffers for uniform variables. Direct buffers are expensive to
+ * allocate one by one, so the arena allocates them in larger chunks of native
+ * memory and hands out slices of those. Slices are never freed individually;
+ * the memory is released when the arena itself is garbage collected.
+ * 
+ * An arena is not thread safe, it should be owned by a single object or
+ * thread.
+ * 
+ * @author Maarten van Meersbergen <m.van.meersbergen@esciencecenter.nl>
+ * 
+ */
+public class DirectFloatArena {
+    /** The default chunk size, enough for 64 4x4 matrices. */
+    public static final int DEFAULT_CHUNK_FLOATS = 1024;
+
+    private final int chunkFloats;
+    private FloatBuffer chunk;
+
+    private int chunks;
+    private int allocatedFloats;
+
+    /**
+     * Constructor for an arena with the default chunk size.
+     */
+    public DirectFloatArena() {
+        this(DEFAULT_CHUNK_FLOATS);
+    }
+
+    /**
+     * Constructor for an arena with a custom chunk size.
+     * 
+     * @param chunkFloats
+     *            The number of floats per chunk of native memory.
+     */
+    public DirectFloatArena(int chunkFloats) {
+        if (chunkFloats <= 0) {
+            throw new IllegalArgumentException("chunkFloats must be greater than 0");
+        }
+        this.chunkFloats = chunkFloats;
+    }
+
+    /**
+     * Hands out a direct, native order, buffer of exactly the given size. Its
+     * position is 0 and its limit and capacity are the given size.
+     * 
+     * @param floats
+     *            The size of the buffer in floats.
+     * @return The buffer.
+     */
+    public FloatBuffer allocate(int floats) {
+        if (chunk == null || chunk.remaining() < floats) {
+            chunk = Buffers.newDirectFloatBuffer(Math.max(chunkFloats, floats));
+            chunks++;
+        }
+
+        int start = chunk.position();
+        chunk.limit(start + floats);
+        FloatBuffer result = chunk.slice();
+
+        chunk.limit(chunk.capacity());
+        chunk.position(start + floats);
+
+        allocatedFloats += floats;
+        return result;
+    }
+
+    /**
+     * Getter for the number of chunks of native memory allocated so far.
+     * 
+     * @return the number of chunks.
+     */
+    public int getChunks() {
+        return chunks;
+    }
+
+    /**
+     * Getter for the number of floats handed out so far.
+     * 
+     * @return the number of allocated floats.
+     */
+    public int getAllocatedFloats() {
+        return allocatedFloats;
+    }
+}
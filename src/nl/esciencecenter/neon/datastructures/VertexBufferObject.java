@@ -2,6 +2,7 @@ package nl.esciencecenter.neon.datastructures;
 
 import java.nio.Buffer;
 import java.nio.IntBuffer;
+import java.util.Arrays;
 
 import javax.media.opengl.GL3;
 
@@ -37,6 +38,12 @@ public class VertexBufferObject {
     /** The array of GLSL attributes associated with this VertexBufferObject */
     private GLSLAttribute[] attribs;
 
+    /**
+     * The attribute locations the vertex array object was set up for, or null
+     * if it was not set up yet
+     */
+    private int[] linkedLocations;
+
     /**
      * Constructor that creates a Vertex Buffer Object with the specified GLSL
      * attributes. (typically location, texture coordinates, normals, etc.)
@@ -77,6 +84,59 @@ public class VertexBufferObject {
         }
     }
 
+    /**
+     * Constructor that creates a Vertex Buffer Object out of a single block of
+     * data that already holds all of the attribute data, laid out the same way
+     * the other constructor would copy it: the full data of every attribute,
+     * one attribute after the other, in the given order. The block is uploaded
+     * with a single call, so it can for example be a memory-mapped file.
+     * 
+     * @param gl
+     *            The global openGL instance.
+     * @param data
+     *            The block of data for all attributes.
+     * @param attribs
+     *            One or more attributes that describe the contents of the
+     *            block, @see GLSLAttribute
+     * @throws IllegalArgumentException
+     *             if the size of the data block does not match the
+     *             attributes.
+     */
+    public VertexBufferObject(GL3 gl, Buffer data, GLSLAttribute... attribs) {
+        int size = 0;
+        for (final GLSLAttribute attrib : attribs) {
+            size += attrib.getBuffer().capacity() * Buffers.SIZEOF_FLOAT;
+        }
+        if (Buffers.sizeOfBufferElem(data) * data.remaining() != size) {
+            throw new IllegalArgumentException("Data block of " + Buffers.sizeOfBufferElem(data) * data.remaining()
+                    + " bytes does not match the attributes, which need " + size + " bytes.");
+        }
+
+        this.attribs = attribs;
+
+        // Generate a new internal OpenGL VertexBufferObject pointer
+        this.vboPointer = Buffers.newDirectIntBuffer(1);
+        gl.glGenVertexArrays(1, this.vboPointer);
+        gl.glBindVertexArray(this.vboPointer.get(0));
+
+        // Generate a new internal OpenGL Array Buffer pointer
+        this.bufferPointer = Buffers.newDirectIntBuffer(1);
+        gl.glGenBuffers(1, this.bufferPointer);
+        gl.glBindBuffer(GL3.GL_ARRAY_BUFFER, this.bufferPointer.get(0));
+
+        // Allocate and fill in one go
+        gl.glBufferData(GL3.GL_ARRAY_BUFFER, size, data, GL3.GL_STATIC_DRAW);
+    }
+
+    /**
+     * Getter for the OpenGL name of the vertex array object.
+     * 
+     * @return the vertex array object name.
+     */
+    public int getPointer() {
+        return vboPointer.get(0);
+    }
+
     /**
      * Bind the VertexBufferObject, so that it is ready for use.
      * 
@@ -89,6 +149,53 @@ public class VertexBufferObject {
 
     }
 
+    /**
+     * Records the attribute pointers of this VertexBufferObject in its vertex
+     * array object, for the given attribute locations of a shader program.
+     * This only calls OpenGL when the locations differ from the ones recorded
+     * before, so after the first draw with a program, binding is enough to
+     * restore all attribute state. This VertexBufferObject needs to be bound.
+     * 
+     * @param gl
+     *            The global openGL instance.
+     * @param locations
+     *            The location of every attribute, in the order of
+     *            {@link #getAttribs()}, or -1 for attributes the program does
+     *            not use.
+     * @return true if the attribute pointers were recorded, false if they
+     *         were already in place.
+     */
+    public boolean link(GL3 gl, int[] locations) {
+        if (Arrays.equals(locations, linkedLocations)) {
+            return false;
+        }
+
+        // Disable the arrays of the previous program that are not reused
+        if (linkedLocations != null) {
+            for (int oldLocation : linkedLocations) {
+                boolean reused = false;
+                for (int location : locations) {
+                    reused |= location == oldLocation;
+                }
+                if (oldLocation >= 0 && !reused) {
+                    gl.glDisableVertexAttribArray(oldLocation);
+                }
+            }
+        }
+
+        int nextStart = 0;
+        for (int i = 0; i < attribs.length; i++) {
+            if (locations[i] >= 0) {
+                gl.glVertexAttribPointer(locations[i], attribs[i].getNumVectors(), GL3.GL_FLOAT, false, 0, nextStart);
+                gl.glEnableVertexAttribArray(locations[i]);
+            }
+            nextStart += attribs[i].getBuffer().capacity() * Buffers.SIZEOF_FLOAT;
+        }
+
+        linkedLocations = locations.clone();
+        return true;
+    }
+
     /**
      * Delete this VertexBufferObject properly.
      * 
@@ -99,6 +206,7 @@ public class VertexBufferObject {
         gl.glBindVertexArray(0);
         gl.glDeleteVertexArrays(1, this.vboPointer);
         gl.glDeleteBuffers(1, this.bufferPointer);
+        linkedLocations = null;
     }
 
     /**
@@ -113,6 +221,27 @@ public class VertexBufferObject {
         return copy;
     }
 
+    /**
+     * Getter for the number of GLSL Attributes in this VertexBufferObject.
+     * 
+     * @return The number of attributes.
+     */
+    public int getNumAttribs() {
+        return attribs.length;
+    }
+
+    /**
+     * Retrieve a single GLSL Attribute, without copying the attribute array.
+     * 
+     * @param index
+     *            The index of the attribute, in the order of
+     *            {@link #getAttribs()}.
+     * @return The GLSL Attribute.
+     */
+    public GLSLAttribute getAttrib(int index) {
+        return attribs[index];
+    }
+
     /**
      * Update this VertexBufferObject with (potentially) new data.
      * 
@@ -124,6 +253,8 @@ public class VertexBufferObject {
      */
     public void update(GL3 gl, GLSLAttribute... attribs) {
         this.attribs = attribs;
+        // The attribute offsets may have changed
+        this.linkedLocations = null;
 
         gl.glBindVertexArray(this.vboPointer.get(0));
         gl.glBindBuffer(GL3.GL_ARRAY_BUFFER, this.bufferPointer.get(0));
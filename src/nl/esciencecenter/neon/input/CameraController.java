@@ -0,0 +1,269 @@
+package nl.esciencecenter.neon.input;
+
+import nl.esciencecenter.neon.math.Float4Matrix;
+import nl.esciencecenter.neon.math.Float4Quaternion;
+
+import com.jogamp.newt.event.MouseEvent;
+import com.jogamp.newt.event.MouseListener;
+
+/* Copyright 2013 Netherlands eScience Center
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * Quaternion based camera controller, an alternative to the Euler angles of
+ * {@link InputHandler}. Left-click-dragging rotates the scene around the
+ * screen axes (in tenths of degrees when shift is held), so there is no
+ * gimbal lock at the poles. The scroll wheel changes the view distance.
+ * Orientation and distance can also be animated smoothly towards a target with
+ * {@link #animateTo(Float4Quaternion, float, long)}.
+ * 
+ * Mouse events and rendering usually happen on different threads, so all
+ * methods are synchronized.
+ * 
+ * @author Maarten van Meersbergen <m.van.meersbergen@esciencecenter.nl>
+ * 
+ */
+public class CameraController implements MouseListener {
+    /** Rotation in degrees per pixel dragged. */
+    private static final float DEGREES_PER_PIXEL = 1f;
+    /** Rotation in degrees per pixel dragged, with shift held. */
+    private static final float FINE_DEGREES_PER_PIXEL = .1f;
+
+    private final Float4Quaternion orientation;
+    private float viewDist;
+
+    /** Scratch quaternion for drag increments. */
+    private final Float4Quaternion increment;
+
+    private float lastDragX, lastDragY;
+
+    private boolean animating;
+    private final Float4Quaternion animationStart;
+    private final Float4Quaternion animationTarget;
+    private float animationStartDist, animationTargetDist;
+    private long animationStartNanos = -1L;
+    private long animationDurationNanos;
+
+    /**
+     * Constructor for a controller looking at the origin from the default
+     * distance of {@link InputHandler}.
+     */
+    public CameraController() {
+        this(-3f);
+    }
+
+    /**
+     * Constructor for a controller looking at the origin.
+     * 
+     * @param viewDist
+     *            The initial (signed) view distance, the translation along the
+     *            z axis.
+     */
+    public CameraController(float viewDist) {
+        this.orientation = new Float4Quaternion();
+        this.viewDist = viewDist;
+
+        this.increment = new Float4Quaternion();
+        this.animationStart = new Float4Quaternion();
+        this.animationTarget = new Float4Quaternion();
+    }
+
+    @Override
+    public synchronized void mousePressed(MouseEvent e) {
+        lastDragX = e.getX();
+        lastDragY = e.getY();
+    }
+
+    @Override
+    public synchronized void mouseDragged(MouseEvent e) {
+        if (e.isButtonDown(MouseEvent.BUTTON1)) {
+            float scale = e.isShiftDown() ? FINE_DEGREES_PER_PIXEL : DEGREES_PER_PIXEL;
+            rotate((e.getX() - lastDragX) * scale, (e.getY() - lastDragY) * scale);
+        }
+        lastDragX = e.getX();
+        lastDragY = e.getY();
+    }
+
+    @Override
+    public synchronized void mouseWheelMoved(MouseEvent e) {
+        animating = false;
+        if (e.isShiftDown()) {
+            viewDist -= e.getRotation()[0] * .5f;
+        } else {
+            viewDist -= e.getRotation()[1] * 2f;
+        }
+    }
+
+    @Override
+    public void mouseClicked(MouseEvent e) {
+        // Empty - unneeded
+    }
+
+    @Override
+    public void mouseEntered(MouseEvent e) {
+        // Empty - unneeded
+    }
+
+    @Override
+    public void mouseExited(MouseEvent e) {
+        // Empty - unneeded
+    }
+
+    @Override
+    public void mouseReleased(MouseEvent e) {
+        // Empty - unneeded
+    }
+
+    @Override
+    public void mouseMoved(MouseEvent e) {
+        // Empty - unneeded
+    }
+
+    /**
+     * Rotates the scene around the screen axes, as a drag would. Stops any
+     * running animation.
+     * 
+     * @param aroundScreenY
+     *            The rotation around the vertical screen axis, in degrees
+     *            (horizontal drag).
+     * @param aroundScreenX
+     *            The rotation around the horizontal screen axis, in degrees
+     *            (vertical drag).
+     */
+    public synchronized void rotate(float aroundScreenY, float aroundScreenX) {
+        animating = false;
+
+        // Pre-multiplying applies the increment after the current
+        // orientation, so it is relative to the screen, not to the model.
+        orientation.preMul(increment.setFromAxisAngle(aroundScreenY, 0f, 1f, 0f));
+        orientation.preMul(increment.setFromAxisAngle(aroundScreenX, 1f, 0f, 0f));
+        orientation.normalize();
+    }
+
+    /**
+     * Starts a smooth transition from the current orientation and view
+     * distance to the given ones. The transition starts at the first
+     * {@link #update(long)} and is stopped by any user input.
+     * 
+     * @param targetOrientation
+     *            The orientation to end up in.
+     * @param targetViewDist
+     *            The view distance to end up at.
+     * @param durationMillis
+     *            The duration of the transition, in milliseconds.
+     */
+    public synchronized void animateTo(Float4Quaternion targetOrientation, float targetViewDist, long durationMillis) {
+        animationStart.set(orientation);
+        animationTarget.set(targetOrientation).normalize();
+        animationStartDist = viewDist;
+        animationTargetDist = targetViewDist;
+        animationDurationNanos = Math.max(1L, durationMillis * 1000000L);
+        animationStartNanos = -1L;
+        animating = true;
+    }
+
+    /**
+     * Advances a running animation. Call this once per frame before reading
+     * the view matrix.
+     * 
+     * @param nowNanos
+     *            The current time, as given by {@link System#nanoTime()}.
+     */
+    public synchronized void update(long nowNanos) {
+        if (!animating) {
+            return;
+        }
+        if (animationStartNanos < 0L) {
+            animationStartNanos = nowNanos;
+        }
+
+        float t = Math.min(1f, (nowNanos - animationStartNanos) / (float) animationDurationNanos);
+        // Ease in and out
+        float eased = t * t * (3f - 2f * t);
+
+        Float4Quaternion.slerp(animationStart, animationTarget, eased, orientation);
+        viewDist = animationStartDist + (animationTargetDist - animationStartDist) * eased;
+
+        if (t >= 1f) {
+            animating = false;
+        }
+    }
+
+    /**
+     * Writes the view transformation, a translation over the view distance
+     * followed by the current orientation, into a matrix.
+     * 
+     * @param dest
+     *            _output_ matrix.
+     * @return dest, for convenience.
+     */
+    public synchronized Float4Matrix getViewMatrix(Float4Matrix dest) {
+        orientation.toMatrix(dest);
+        // translate(0, 0, viewDist) * rotation only changes the z translation.
+        dest.asArray()[11] = viewDist;
+        return dest;
+    }
+
+    /**
+     * Copies the current orientation into the given quaternion.
+     * 
+     * @param dest
+     *            _output_ quaternion.
+     * @return dest, for convenience.
+     */
+    public synchronized Float4Quaternion getOrientation(Float4Quaternion dest) {
+        return dest.set(orientation);
+    }
+
+    /**
+     * Setter for the orientation. Stops any running animation.
+     * 
+     * @param orientation
+     *            the orientation to copy.
+     */
+    public synchronized void setOrientation(Float4Quaternion orientation) {
+        animating = false;
+        this.orientation.set(orientation).normalize();
+    }
+
+    /**
+     * Getter for viewDist.
+     * 
+     * @return the (signed) view distance.
+     */
+    public synchronized float getViewDist() {
+        return viewDist;
+    }
+
+    /**
+     * Setter for viewDist. Stops any running animation.
+     * 
+     * @param viewDist
+     *            the (signed) view distance.
+     */
+    public synchronized void setViewDist(float viewDist) {
+        animating = false;
+        this.viewDist = viewDist;
+    }
+
+    /**
+     * Check whether an animation is running.
+     * 
+     * @return true if an animation is running.
+     */
+    public synchronized boolean isAnimating() {
+        return animating;
+    }
+}
@@ -149,6 +149,12 @@ public class Float2Vector implements FloatVector {
         return result;
     }
 
+    @Override
+    public void writeTo(FloatBuffer buffer) {
+        buffer.put(x);
+        buffer.put(y);
+    }
+
     @Override
     public int getSize() {
         return SIZE;
@@ -160,6 +160,13 @@ public class Float3Vector implements FloatVector {
         return result;
     }
 
+    @Override
+    public void writeTo(FloatBuffer buffer) {
+        buffer.put(x);
+        buffer.put(y);
+        buffer.put(z);
+    }
+
     @Override
     public int getSize() {
         return SIZE;
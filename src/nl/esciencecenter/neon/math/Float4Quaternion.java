@@ -0,0 +1,400 @@
+package nl.esciencecenter.neon.math;
+
+/* Copyright 2013 Netherlands eScience Center
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * A quaternion (x, y, z, w), used to describe rotations. Unlike the vector and
+ * matrix classes, the operations on quaternions change the quaternion itself
+ * (or a given destination) instead of returning a new object, so orientations
+ * can be updated every frame without allocations. Operations return the
+ * changed quaternion for chaining.
+ * 
+ * Angles are in degrees, and matrices follow the conventions of
+ * {@link FloatMatrixMath#rotate(float, float, float, float)}.
+ * 
+ * @author Maarten van Meersbergen <m.van.meersbergen@esciencecenter.nl>
+ * 
+ */
+public class Float4Quaternion {
+    private static final double DEGREESTORADIANS = Math.PI / 180.0;
+    /** Above this cosine between two quaternions slerp falls back to lerp. */
+    private static final float SLERP_LINEAR_THRESHOLD = 0.9995f;
+
+    private float x, y, z, w;
+
+    /**
+     * Creates a new identity quaternion (no rotation).
+     */
+    public Float4Quaternion() {
+        this.w = 1f;
+    }
+
+    /**
+     * Creates a new quaternion with the given components.
+     * 
+     * @param x
+     *            The x component of the vector part.
+     * @param y
+     *            The y component of the vector part.
+     * @param z
+     *            The z component of the vector part.
+     * @param w
+     *            The scalar part.
+     */
+    public Float4Quaternion(float x, float y, float z, float w) {
+        this.x = x;
+        this.y = y;
+        this.z = z;
+        this.w = w;
+    }
+
+    /**
+     * Creates a copy of the given quaternion.
+     * 
+     * @param q
+     *            The quaternion to copy.
+     */
+    public Float4Quaternion(Float4Quaternion q) {
+        set(q);
+    }
+
+    /**
+     * Sets this quaternion to the identity (no rotation).
+     * 
+     * @return this quaternion.
+     */
+    public Float4Quaternion setIdentity() {
+        return set(0f, 0f, 0f, 1f);
+    }
+
+    /**
+     * Sets the components of this quaternion.
+     * 
+     * @param x
+     *            The x component of the vector part.
+     * @param y
+     *            The y component of the vector part.
+     * @param z
+     *            The z component of the vector part.
+     * @param w
+     *            The scalar part.
+     * @return this quaternion.
+     */
+    public Float4Quaternion set(float x, float y, float z, float w) {
+        this.x = x;
+        this.y = y;
+        this.z = z;
+        this.w = w;
+        return this;
+    }
+
+    /**
+     * Copies the components of the given quaternion into this one.
+     * 
+     * @param q
+     *            The quaternion to copy.
+     * @return this quaternion.
+     */
+    public Float4Quaternion set(Float4Quaternion q) {
+        return set(q.x, q.y, q.z, q.w);
+    }
+
+    /**
+     * Sets this quaternion to a rotation around an arbitrary axis.
+     * 
+     * @param angleDeg
+     *            The rotation angle, in degrees.
+     * @param axisX
+     *            The x component of the axis to rotate around.
+     * @param axisY
+     *            The y component of the axis to rotate around.
+     * @param axisZ
+     *            The z component of the axis to rotate around.
+     * @return this quaternion.
+     */
+    public Float4Quaternion setFromAxisAngle(float angleDeg, float axisX, float axisY, float axisZ) {
+        float length = (float) Math.sqrt(axisX * axisX + axisY * axisY + axisZ * axisZ);
+        if (length == 0f) {
+            return setIdentity();
+        }
+
+        double halfAngle = DEGREESTORADIANS * angleDeg * .5;
+        float s = (float) Math.sin(halfAngle) / length;
+        return set(axisX * s, axisY * s, axisZ * s, (float) Math.cos(halfAngle));
+    }
+
+    /**
+     * Multiplies this quaternion with another: this = this * q. As rotations,
+     * the result first applies q and then the original rotation of this
+     * quaternion.
+     * 
+     * @param q
+     *            The quaternion to multiply with.
+     * @return this quaternion.
+     */
+    public Float4Quaternion mul(Float4Quaternion q) {
+        return mul(this, q, this);
+    }
+
+    /**
+     * Multiplies another quaternion with this one: this = q * this. As
+     * rotations, the result first applies the original rotation of this
+     * quaternion and then q.
+     * 
+     * @param q
+     *            The quaternion to multiply with.
+     * @return this quaternion.
+     */
+    public Float4Quaternion preMul(Float4Quaternion q) {
+        return mul(q, this, this);
+    }
+
+    /**
+     * Multiplies two quaternions: dest = a * b.
+     * 
+     * @param a
+     *            The left operand.
+     * @param b
+     *            The right operand.
+     * @param dest
+     *            _output_ quaternion, may be one of the operands.
+     * @return dest, for convenience.
+     */
+    public static Float4Quaternion mul(Float4Quaternion a, Float4Quaternion b, Float4Quaternion dest) {
+        float rx = a.w * b.x + a.x * b.w + a.y * b.z - a.z * b.y;
+        float ry = a.w * b.y - a.x * b.z + a.y * b.w + a.z * b.x;
+        float rz = a.w * b.z + a.x * b.y - a.y * b.x + a.z * b.w;
+        float rw = a.w * b.w - a.x * b.x - a.y * b.y - a.z * b.z;
+        return dest.set(rx, ry, rz, rw);
+    }
+
+    /**
+     * Conjugates this quaternion, which for a unit quaternion is the inverse
+     * rotation.
+     * 
+     * @return this quaternion.
+     */
+    public Float4Quaternion conjugate() {
+        return set(-x, -y, -z, w);
+    }
+
+    /**
+     * Getter for the length (norm) of this quaternion.
+     * 
+     * @return the length.
+     */
+    public float length() {
+        return (float) Math.sqrt(x * x + y * y + z * z + w * w);
+    }
+
+    /**
+     * Scales this quaternion to unit length. Repeatedly multiplied rotations
+     * slowly drift away from unit length due to rounding, so orientations that
+     * are updated every frame should be normalized now and then. A zero
+     * quaternion is set to the identity.
+     * 
+     * @return this quaternion.
+     */
+    public Float4Quaternion normalize() {
+        float length = length();
+        if (length == 0f) {
+            return setIdentity();
+        }
+        float invLength = 1f / length;
+        return set(x * invLength, y * invLength, z * invLength, w * invLength);
+    }
+
+    /**
+     * Get the dot product of two quaternions, the cosine of half the angle
+     * between the rotations they describe.
+     * 
+     * @param a
+     *            The first quaternion.
+     * @param b
+     *            The second quaternion.
+     * @return the dot product.
+     */
+    public static float dot(Float4Quaternion a, Float4Quaternion b) {
+        return a.x * b.x + a.y * b.y + a.z * b.z + a.w * b.w;
+    }
+
+    /**
+     * Spherical linear interpolation between two unit quaternions, along the
+     * shortest path. The interpolated rotation turns at a constant angular
+     * speed for a linearly increasing t.
+     * 
+     * @param a
+     *            The rotation at t = 0.
+     * @param b
+     *            The rotation at t = 1.
+     * @param t
+     *            The interpolation parameter, between 0 and 1.
+     * @param dest
+     *            _output_ quaternion, may be one of the inputs.
+     * @return dest, for convenience.
+     */
+    public static Float4Quaternion slerp(Float4Quaternion a, Float4Quaternion b, float t, Float4Quaternion dest) {
+        float bx = b.x, by = b.y, bz = b.z, bw = b.w;
+
+        // q and -q are the same rotation, take the one closest to a.
+        float cosTheta = dot(a, b);
+        if (cosTheta < 0f) {
+            cosTheta = -cosTheta;
+            bx = -bx;
+            by = -by;
+            bz = -bz;
+            bw = -bw;
+        }
+
+        float wa, wb;
+        if (cosTheta > SLERP_LINEAR_THRESHOLD) {
+            // Nearly parallel: sin(theta) would vanish, linear is exact enough.
+            wa = 1f - t;
+            wb = t;
+        } else {
+            double theta = Math.acos(cosTheta);
+            double sinTheta = Math.sin(theta);
+            wa = (float) (Math.sin((1.0 - t) * theta) / sinTheta);
+            wb = (float) (Math.sin(t * theta) / sinTheta);
+        }
+
+        dest.set(wa * a.x + wb * bx, wa * a.y + wb * by, wa * a.z + wb * bz, wa * a.w + wb * bw);
+        return dest.normalize();
+    }
+
+    /**
+     * Writes the rotation described by this (unit) quaternion into the upper
+     * 3x3 of a matrix, and sets the rest of the matrix to the identity.
+     * 
+     * @param dest
+     *            _output_ matrix.
+     * @return dest, for convenience.
+     */
+    public Float4Matrix toMatrix(Float4Matrix dest) {
+        float[] d = dest.asArray();
+
+        float xx = x * x, yy = y * y, zz = z * z;
+        float xy = x * y, xz = x * z, yz = y * z;
+        float wx = w * x, wy = w * y, wz = w * z;
+
+        d[0] = 1f - 2f * (yy + zz);
+        d[1] = 2f * (xy - wz);
+        d[2] = 2f * (xz + wy);
+        d[3] = 0f;
+
+        d[4] = 2f * (xy + wz);
+        d[5] = 1f - 2f * (xx + zz);
+        d[6] = 2f * (yz - wx);
+        d[7] = 0f;
+
+        d[8] = 2f * (xz - wy);
+        d[9] = 2f * (yz + wx);
+        d[10] = 1f - 2f * (xx + yy);
+        d[11] = 0f;
+
+        d[12] = 0f;
+        d[13] = 0f;
+        d[14] = 0f;
+        d[15] = 1f;
+
+        return dest;
+    }
+
+    /**
+     * Getter for x.
+     * 
+     * @return the x component of the vector part.
+     */
+    public float getX() {
+        return x;
+    }
+
+    /**
+     * Getter for y.
+     * 
+     * @return the y component of the vector part.
+     */
+    public float getY() {
+        return y;
+    }
+
+    /**
+     * Getter for z.
+     * 
+     * @return the z component of the vector part.
+     */
+    public float getZ() {
+        return z;
+    }
+
+    /**
+     * Getter for w.
+     * 
+     * @return the scalar part.
+     */
+    public float getW() {
+        return w;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see java.lang.Object#hashCode()
+     */
+    @Override
+    public int hashCode() {
+        final int prime = 31;
+        int result = 1;
+        result = prime * result + Float.floatToIntBits(w);
+        result = prime * result + Float.floatToIntBits(x);
+        result = prime * result + Float.floatToIntBits(y);
+        result = prime * result + Float.floatToIntBits(z);
+        return result;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see java.lang.Object#equals(java.lang.Object)
+     */
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (obj == null) {
+            return false;
+        }
+        if (getClass() != obj.getClass()) {
+            return false;
+        }
+        Float4Quaternion other = (Float4Quaternion) obj;
+        return Float.floatToIntBits(w) == Float.floatToIntBits(other.w)
+                && Float.floatToIntBits(x) == Float.floatToIntBits(other.x)
+                && Float.floatToIntBits(y) == Float.floatToIntBits(other.y)
+                && Float.floatToIntBits(z) == Float.floatToIntBits(other.z);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public String toString() {
+        return "Float4Quaternion [x=" + x + ", y=" + y + ", z=" + z + ", w=" + w + "]";
+    }
+}
@@ -207,6 +207,14 @@ public class Float4Vector implements FloatVector {
         return result;
     }
 
+    @Override
+    public void writeTo(FloatBuffer buffer) {
+        buffer.put(x);
+        buffer.put(y);
+        buffer.put(z);
+        buffer.put(w);
+    }
+
     @Override
     public int getSize() {
         return SIZE;
@@ -0,0 +1,391 @@
+package nl.esciencecenter.neon.math;
+
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+
+/* Copyright 2013 Netherlands eScience Center
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * Utility class for converting and adjusting many colors at once, without
+ * creating a vector or {@link Color4} object per color. The colors are packed
+ * (AoS) in float arrays, float buffers or byte buffers, with a stride of 3 for
+ * RGB or 4 for RGBA. The alpha component, if any, is left untouched.
+ * 
+ * The conversions give exactly the same results as the scalar versions in
+ * {@link FloatVectorMath}: {@link FloatVectorMath#RGBtoHSV(Float3Vector)},
+ * {@link FloatVectorMath#HSVtoRGB(Float3Vector)},
+ * {@link FloatVectorMath#increaseHue(Float3Vector, float)} and its siblings,
+ * and {@link FloatVectorMath#interpolateColors(int, Color4, Color4)}. As
+ * there, hue is in degrees and saturation and value are between 0 and 1.
+ * 
+ * All kernels may be called with the same array for input and output. Very
+ * large arrays can be processed with the parallel variants, which use the
+ * thread pool of {@link FloatTransformMath}.
+ * 
+ * @author Maarten van Meersbergen <m.van.meersbergen@esciencecenter.nl>
+ * 
+ */
+public final class FloatColorMath {
+    private static final float BYTE_MAX = 255f;
+
+    private FloatColorMath() {
+        // Only static access.
+    }
+
+    /**
+     * Converts packed RGB(A) colors to HSV(A).
+     * 
+     * @param src
+     *            The input colors.
+     * @param srcOffset
+     *            The index of the first input float.
+     * @param dst
+     *            _output_ array for the HSV colors, with the same stride. May
+     *            be the input array.
+     * @param dstOffset
+     *            The index of the first output float.
+     * @param stride
+     *            The number of floats per color, 3 or 4.
+     * @param count
+     *            The number of colors to convert.
+     */
+    public static void rgbToHsv(float[] src, int srcOffset, float[] dst, int dstOffset, int stride, int count) {
+        checkStride(stride);
+        int end = srcOffset + count * stride;
+        for (int s = srcOffset, d = dstOffset; s < end; s += stride, d += stride) {
+            rgbToHsv(src[s], src[s + 1], src[s + 2], dst, d);
+            if (stride == 4) {
+                dst[d + 3] = src[s + 3];
+            }
+        }
+    }
+
+    /**
+     * Converts packed HSV(A) colors to RGB(A).
+     * 
+     * @param src
+     *            The input colors.
+     * @param srcOffset
+     *            The index of the first input float.
+     * @param dst
+     *            _output_ array for the RGB colors, with the same stride. May
+     *            be the input array.
+     * @param dstOffset
+     *            The index of the first output float.
+     * @param stride
+     *            The number of floats per color, 3 or 4.
+     * @param count
+     *            The number of colors to convert.
+     */
+    public static void hsvToRgb(float[] src, int srcOffset, float[] dst, int dstOffset, int stride, int count) {
+        checkStride(stride);
+        int end = srcOffset + count * stride;
+        for (int s = srcOffset, d = dstOffset; s < end; s += stride, d += stride) {
+            hsvToRgb(src[s], src[s + 1], src[s + 2], dst, d);
+            if (stride == 4) {
+                dst[d + 3] = src[s + 3];
+            }
+        }
+    }
+
+    /**
+     * Multiplies the hue, saturation and value of packed RGB(A) colors by the
+     * given factors, in place. With two factors of 1 this is the bulk version
+     * of {@link FloatVectorMath#increaseHue(Float3Vector, float)},
+     * {@link FloatVectorMath#increaseSaturation(Float3Vector, float)} or
+     * {@link FloatVectorMath#increaseValue(Float3Vector, float)}.
+     * 
+     * @param rgb
+     *            The colors to adjust.
+     * @param offset
+     *            The index of the first float.
+     * @param stride
+     *            The number of floats per color, 3 or 4.
+     * @param count
+     *            The number of colors to adjust.
+     * @param hueFactor
+     *            The factor for the hue.
+     * @param saturationFactor
+     *            The factor for the saturation.
+     * @param valueFactor
+     *            The factor for the value.
+     */
+    public static void adjustHsv(float[] rgb, int offset, int stride, int count, float hueFactor,
+            float saturationFactor, float valueFactor) {
+        checkStride(stride);
+        int end = offset + count * stride;
+        for (int i = offset; i < end; i += stride) {
+            rgbToHsv(rgb[i], rgb[i + 1], rgb[i + 2], rgb, i);
+            hsvToRgb(rgb[i] * hueFactor, rgb[i + 1] * saturationFactor, rgb[i + 2] * valueFactor, rgb, i);
+        }
+    }
+
+    /**
+     * Buffer version of
+     * {@link #adjustHsv(float[], int, int, int, float, float, float)}. The
+     * buffer is accessed with absolute indices, so its position is unchanged.
+     * 
+     * @param rgb
+     *            The colors to adjust.
+     * @param offset
+     *            The index of the first float.
+     * @param stride
+     *            The number of floats per color, 3 or 4.
+     * @param count
+     *            The number of colors to adjust.
+     * @param hueFactor
+     *            The factor for the hue.
+     * @param saturationFactor
+     *            The factor for the saturation.
+     * @param valueFactor
+     *            The factor for the value.
+     */
+    public static void adjustHsv(FloatBuffer rgb, int offset, int stride, int count, float hueFactor,
+            float saturationFactor, float valueFactor) {
+        checkStride(stride);
+        float[] scratch = new float[3];
+        int end = offset + count * stride;
+        for (int i = offset; i < end; i += stride) {
+            rgbToHsv(rgb.get(i), rgb.get(i + 1), rgb.get(i + 2), scratch, 0);
+            hsvToRgb(scratch[0] * hueFactor, scratch[1] * saturationFactor, scratch[2] * valueFactor, scratch, 0);
+            rgb.put(i, scratch[0]);
+            rgb.put(i + 1, scratch[1]);
+            rgb.put(i + 2, scratch[2]);
+        }
+    }
+
+    /**
+     * Byte version of
+     * {@link #adjustHsv(float[], int, int, int, float, float, float)}, for
+     * unsigned 8 bit RGB(A) pixels such as those of
+     * {@link nl.esciencecenter.neon.textures.Texture}s. Every component is
+     * scaled to 0-1, adjusted, and rounded back to 0-255. The buffer is
+     * accessed with absolute indices, so its position is unchanged.
+     * 
+     * @param rgb
+     *            The pixels to adjust.
+     * @param offset
+     *            The index of the first byte.
+     * @param stride
+     *            The number of bytes per pixel, 3 or 4.
+     * @param count
+     *            The number of pixels to adjust.
+     * @param hueFactor
+     *            The factor for the hue.
+     * @param saturationFactor
+     *            The factor for the saturation.
+     * @param valueFactor
+     *            The factor for the value.
+     */
+    public static void adjustHsv(ByteBuffer rgb, int offset, int stride, int count, float hueFactor,
+            float saturationFactor, float valueFactor) {
+        checkStride(stride);
+        float[] scratch = new float[3];
+        int end = offset + count * stride;
+        for (int i = offset; i < end; i += stride) {
+            rgbToHsv((rgb.get(i) & 0xFF) / BYTE_MAX, (rgb.get(i + 1) & 0xFF) / BYTE_MAX, (rgb.get(i + 2) & 0xFF)
+                    / BYTE_MAX, scratch, 0);
+            hsvToRgb(scratch[0] * hueFactor, scratch[1] * saturationFactor, scratch[2] * valueFactor, scratch, 0);
+            rgb.put(i, toByte(scratch[0]));
+            rgb.put(i + 1, toByte(scratch[1]));
+            rgb.put(i + 2, toByte(scratch[2]));
+        }
+    }
+
+    /**
+     * Parallel version of
+     * {@link #adjustHsv(float[], int, int, int, float, float, float)}.
+     * 
+     * @param rgb
+     *            The colors to adjust.
+     * @param offset
+     *            The index of the first float.
+     * @param stride
+     *            The number of floats per color, 3 or 4.
+     * @param count
+     *            The number of colors to adjust.
+     * @param hueFactor
+     *            The factor for the hue.
+     * @param saturationFactor
+     *            The factor for the saturation.
+     * @param valueFactor
+     *            The factor for the value.
+     */
+    public static void adjustHsvParallel(final float[] rgb, final int offset, final int stride, int count,
+            final float hueFactor, final float saturationFactor, final float valueFactor) {
+        checkStride(stride);
+        FloatTransformMath.split(count, new FloatTransformMath.Kernel() {
+            @Override
+            public void run(int start, int end) {
+                adjustHsv(rgb, offset + start * stride, stride, end - start, hueFactor, saturationFactor,
+                        valueFactor);
+            }
+        });
+    }
+
+    /**
+     * Linear interpolation between two colors, written as packed RGBA floats.
+     * Bulk version of {@link FloatVectorMath#interpolateColors(int, Color4,
+     * Color4)}, suitable for generating palettes and color ramps.
+     * 
+     * @param steps
+     *            The number of colors to generate, from the start color up to,
+     *            but not including, the end color.
+     * @param startColor
+     *            The first color.
+     * @param endColor
+     *            The color to interpolate towards.
+     * @param dst
+     *            _output_ array for steps * 4 floats.
+     * @param dstOffset
+     *            The index of the first output float.
+     * @return The index in dst just after the last color written.
+     */
+    public static int interpolateColors(int steps, Color4 startColor, Color4 endColor, float[] dst, int dstOffset) {
+        float r = startColor.getR(), g = startColor.getG(), b = startColor.getB(), a = startColor.getA();
+
+        float rstep = (endColor.getR() - r) / steps;
+        float gstep = (endColor.getG() - g) / steps;
+        float bstep = (endColor.getB() - b) / steps;
+        float astep = (endColor.getA() - a) / steps;
+
+        int d = dstOffset;
+        for (int i = 0; i < steps; i++) {
+            dst[d++] = r + (rstep * i);
+            dst[d++] = g + (gstep * i);
+            dst[d++] = b + (bstep * i);
+            dst[d++] = a + (astep * i);
+        }
+        return d;
+    }
+
+    /**
+     * Same algorithm, and order of operations, as
+     * {@link FloatVectorMath#RGBtoHSV(Float3Vector)}.
+     */
+    private static void rgbToHsv(float r, float g, float b, float[] dst, int d) {
+        float min = r;
+        if (g < min) {
+            min = g;
+        }
+        if (b < min) {
+            min = b;
+        }
+
+        float max = r;
+        if (g > max) {
+            max = g;
+        }
+        if (b > max) {
+            max = b;
+        }
+
+        float delta = max - min;
+        if (max == 0) {
+            // r = g = b = 0, s = 0, h is undefined
+            dst[d] = -1;
+            dst[d + 1] = 0;
+            dst[d + 2] = max;
+            return;
+        }
+
+        float h;
+        if (r == max) {
+            h = (g - b) / delta;
+        } else if (g == max) {
+            h = 2 + (b - r) / delta;
+        } else {
+            h = 4 + (r - g) / delta;
+        }
+        h *= 60;
+        if (h < 0) {
+            h += 360;
+        }
+
+        dst[d] = h;
+        dst[d + 1] = delta / max;
+        dst[d + 2] = max;
+    }
+
+    /**
+     * Same algorithm, and order of operations, as
+     * {@link FloatVectorMath#HSVtoRGB(Float3Vector)}.
+     */
+    private static void hsvToRgb(float h, float s, float v, float[] dst, int d) {
+        if (s == 0) {
+            // achromatic (grey)
+            dst[d] = v;
+            dst[d + 1] = v;
+            dst[d + 2] = v;
+            return;
+        }
+
+        float sector = h / 60;
+        int i = (int) Math.floor(sector);
+        float f = sector - i;
+        float p = v * (1 - s);
+        float q = v * (1 - s * f);
+        float t = v * (1 - s * (1 - f));
+
+        switch (i) {
+        case 0:
+            dst[d] = v;
+            dst[d + 1] = t;
+            dst[d + 2] = p;
+            break;
+        case 1:
+            dst[d] = q;
+            dst[d + 1] = v;
+            dst[d + 2] = p;
+            break;
+        case 2:
+            dst[d] = p;
+            dst[d + 1] = v;
+            dst[d + 2] = t;
+            break;
+        case 3:
+            dst[d] = p;
+            dst[d + 1] = q;
+            dst[d + 2] = v;
+            break;
+        case 4:
+            dst[d] = t;
+            dst[d + 1] = p;
+            dst[d + 2] = v;
+            break;
+        default:
+            dst[d] = v;
+            dst[d + 1] = p;
+            dst[d + 2] = q;
+            break;
+        }
+    }
+
+    private static byte toByte(float component) {
+        if (component <= 0f) {
+            return 0;
+        } else if (component >= 1f) {
+            return (byte) BYTE_MAX;
+        }
+        return (byte) Math.round(component * BYTE_MAX);
+    }
+
+    private static void checkStride(int stride) {
+        if (stride != 3 && stride != 4) {
+            throw new IllegalArgumentException("stride should be 3 (RGB) or 4 (RGBA), not " + stride);
+        }
+    }
+}
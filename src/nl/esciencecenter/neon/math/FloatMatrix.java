@@ -60,6 +60,19 @@ public abstract class FloatMatrix {
         return FloatBuffer.wrap(m);
     }
 
+    /**
+     * Writes this matrix into the given buffer at its current position, and
+     * advances the position by {@link #getSize()}. Unlike {@link #asBuffer()}
+     * this does not allocate anything, so it can be used to fill (direct)
+     * buffers that are reused every frame.
+     * 
+     * @param buffer
+     *            The buffer to write to.
+     */
+    public void writeTo(FloatBuffer buffer) {
+        buffer.put(m);
+    }
+
     /**
      * Returns the value of this matrix at position i,j.
      * 
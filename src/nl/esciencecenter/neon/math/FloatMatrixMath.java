@@ -41,18 +41,52 @@ public final class FloatMatrixMath {
      *         cannot be calculated this will return an identity matrix instead.
      */
     public static Float3Matrix getNormalMatrix(Float4Matrix mv) {
-        Float3Matrix upper3x3 = new Float3Matrix(mv.get(0), mv.get(1), mv.get(2), mv.get(4), mv.get(5), mv.get(6),
-                mv.get(8), mv.get(9), mv.get(10));
-
-        Float3Matrix inverse;
-        try {
-            inverse = inverse(upper3x3);
-            Float3Matrix transpose = transpose(inverse);
+        return getNormalMatrix(mv, new Float3Matrix());
+    }
 
-            return transpose;
-        } catch (InverseNotAvailableException e) {
-            return new Float3Matrix();
+    /**
+     * Get the normal matrix (the inverse transpose of the upper 3x3) from the
+     * modelview matrix, without allocating intermediate matrices.
+     * 
+     * @param mv
+     *            The Modelview matrix to extract the Normal Matrix from.
+     * @param dest
+     *            _output_ matrix for the Normal Matrix. If the inverse cannot
+     *            be calculated this will be set to the identity matrix
+     *            instead.
+     * @return dest, for convenience.
+     */
+    public static Float3Matrix getNormalMatrix(Float4Matrix mv, Float3Matrix dest) {
+        float[] a = mv.asArray();
+        float m00 = a[0], m01 = a[1], m02 = a[2];
+        float m10 = a[4], m11 = a[5], m12 = a[6];
+        float m20 = a[8], m21 = a[9], m22 = a[10];
+
+        // Cofactors of the upper 3x3, which are the inverse transpose times
+        // the determinant.
+        float c00 = m11 * m22 - m12 * m21;
+        float c01 = m12 * m20 - m10 * m22;
+        float c02 = m10 * m21 - m11 * m20;
+
+        float det = m00 * c00 + m01 * c01 + m02 * c02;
+        float[] d = dest.asArray();
+        if (det == 0f) {
+            setIdentity(d, 3);
+            return dest;
         }
+        float invDet = 1f / det;
+
+        d[0] = c00 * invDet;
+        d[1] = c01 * invDet;
+        d[2] = c02 * invDet;
+        d[3] = (m02 * m21 - m01 * m22) * invDet;
+        d[4] = (m00 * m22 - m02 * m20) * invDet;
+        d[5] = (m01 * m20 - m00 * m21) * invDet;
+        d[6] = (m01 * m12 - m02 * m11) * invDet;
+        d[7] = (m02 * m10 - m00 * m12) * invDet;
+        d[8] = (m00 * m11 - m01 * m10) * invDet;
+
+        return dest;
     }
 
     /**
@@ -759,6 +793,206 @@ public final class FloatMatrixMath {
         return inverse;
     }
 
+    /**
+     * Get the inverse matrix of the given matrix, using a closed-form
+     * expression that does not allocate any intermediate matrices.
+     * 
+     * @param m
+     *            the input matrix
+     * @param dest
+     *            _output_ matrix for the inverse, may be the same object as
+     *            the input.
+     * @return dest, for convenience.
+     * @throws InverseNotAvailableException
+     *             if the determinant of the input is 0. The destination is
+     *             left unchanged.
+     */
+    public static Float3Matrix inverse(Float3Matrix m, Float3Matrix dest) throws InverseNotAvailableException {
+        float[] a = m.asArray();
+        float m00 = a[0], m01 = a[1], m02 = a[2];
+        float m10 = a[3], m11 = a[4], m12 = a[5];
+        float m20 = a[6], m21 = a[7], m22 = a[8];
+
+        float i00 = m11 * m22 - m12 * m21;
+        float i10 = m12 * m20 - m10 * m22;
+        float i20 = m10 * m21 - m11 * m20;
+
+        float det = m00 * i00 + m01 * i10 + m02 * i20;
+        if (det == 0f) {
+            throw new InverseNotAvailableException("Determinant 0");
+        }
+        float invDet = 1f / det;
+
+        float[] d = dest.asArray();
+        d[0] = i00 * invDet;
+        d[1] = (m02 * m21 - m01 * m22) * invDet;
+        d[2] = (m01 * m12 - m02 * m11) * invDet;
+        d[3] = i10 * invDet;
+        d[4] = (m00 * m22 - m02 * m20) * invDet;
+        d[5] = (m02 * m10 - m00 * m12) * invDet;
+        d[6] = i20 * invDet;
+        d[7] = (m01 * m20 - m00 * m21) * invDet;
+        d[8] = (m00 * m11 - m01 * m10) * invDet;
+
+        return dest;
+    }
+
+    /**
+     * Get the inverse matrix of the given matrix, using a closed-form
+     * expression (expansion by 2x2 sub-determinants) that does not allocate
+     * any intermediate matrices.
+     * 
+     * @param m
+     *            the input matrix
+     * @param dest
+     *            _output_ matrix for the inverse, may be the same object as
+     *            the input.
+     * @return dest, for convenience.
+     * @throws InverseNotAvailableException
+     *             if the determinant of the input is 0. The destination is
+     *             left unchanged.
+     */
+    public static Float4Matrix inverse(Float4Matrix m, Float4Matrix dest) throws InverseNotAvailableException {
+        float[] a = m.asArray();
+        float m00 = a[0], m01 = a[1], m02 = a[2], m03 = a[3];
+        float m10 = a[4], m11 = a[5], m12 = a[6], m13 = a[7];
+        float m20 = a[8], m21 = a[9], m22 = a[10], m23 = a[11];
+        float m30 = a[12], m31 = a[13], m32 = a[14], m33 = a[15];
+
+        // 2x2 determinants of the upper two rows
+        float s0 = m00 * m11 - m10 * m01;
+        float s1 = m00 * m12 - m10 * m02;
+        float s2 = m00 * m13 - m10 * m03;
+        float s3 = m01 * m12 - m11 * m02;
+        float s4 = m01 * m13 - m11 * m03;
+        float s5 = m02 * m13 - m12 * m03;
+
+        // 2x2 determinants of the lower two rows
+        float c5 = m22 * m33 - m32 * m23;
+        float c4 = m21 * m33 - m31 * m23;
+        float c3 = m21 * m32 - m31 * m22;
+        float c2 = m20 * m33 - m30 * m23;
+        float c1 = m20 * m32 - m30 * m22;
+        float c0 = m20 * m31 - m30 * m21;
+
+        float det = s0 * c5 - s1 * c4 + s2 * c3 + s3 * c2 - s4 * c1 + s5 * c0;
+        if (det == 0f) {
+            throw new InverseNotAvailableException("Determinant 0");
+        }
+        float invDet = 1f / det;
+
+        float[] d = dest.asArray();
+        d[0] = (m11 * c5 - m12 * c4 + m13 * c3) * invDet;
+        d[1] = (-m01 * c5 + m02 * c4 - m03 * c3) * invDet;
+        d[2] = (m31 * s5 - m32 * s4 + m33 * s3) * invDet;
+        d[3] = (-m21 * s5 + m22 * s4 - m23 * s3) * invDet;
+
+        d[4] = (-m10 * c5 + m12 * c2 - m13 * c1) * invDet;
+        d[5] = (m00 * c5 - m02 * c2 + m03 * c1) * invDet;
+        d[6] = (-m30 * s5 + m32 * s2 - m33 * s1) * invDet;
+        d[7] = (m20 * s5 - m22 * s2 + m23 * s1) * invDet;
+
+        d[8] = (m10 * c4 - m11 * c2 + m13 * c0) * invDet;
+        d[9] = (-m00 * c4 + m01 * c2 - m03 * c0) * invDet;
+        d[10] = (m30 * s4 - m31 * s2 + m33 * s0) * invDet;
+        d[11] = (-m20 * s4 + m21 * s2 - m23 * s0) * invDet;
+
+        d[12] = (-m10 * c3 + m11 * c1 - m12 * c0) * invDet;
+        d[13] = (m00 * c3 - m01 * c1 + m02 * c0) * invDet;
+        d[14] = (-m30 * s3 + m31 * s1 - m32 * s0) * invDet;
+        d[15] = (m20 * s3 - m21 * s1 + m22 * s0) * invDet;
+
+        return dest;
+    }
+
+    /**
+     * Get the inverse of a rigid transformation (a rotation followed by a
+     * translation, such as a camera or lookAt matrix) by transposing the
+     * rotation and rotating and negating the translation. The input is not
+     * checked; for any other matrix the result is wrong, use
+     * {@link #inverse(Float4Matrix, Float4Matrix)} instead.
+     * 
+     * @param m
+     *            the rigid input matrix
+     * @param dest
+     *            _output_ matrix for the inverse, may be the same object as
+     *            the input.
+     * @return dest, for convenience.
+     */
+    public static Float4Matrix inverseRigid(Float4Matrix m, Float4Matrix dest) {
+        float[] a = m.asArray();
+        float r00 = a[0], r01 = a[1], r02 = a[2], tx = a[3];
+        float r10 = a[4], r11 = a[5], r12 = a[6], ty = a[7];
+        float r20 = a[8], r21 = a[9], r22 = a[10], tz = a[11];
+
+        float[] d = dest.asArray();
+        d[0] = r00;
+        d[1] = r10;
+        d[2] = r20;
+        d[3] = -(r00 * tx + r10 * ty + r20 * tz);
+
+        d[4] = r01;
+        d[5] = r11;
+        d[6] = r21;
+        d[7] = -(r01 * tx + r11 * ty + r21 * tz);
+
+        d[8] = r02;
+        d[9] = r12;
+        d[10] = r22;
+        d[11] = -(r02 * tx + r12 * ty + r22 * tz);
+
+        d[12] = 0f;
+        d[13] = 0f;
+        d[14] = 0f;
+        d[15] = 1f;
+
+        return dest;
+    }
+
+    /**
+     * Multiplies two matrices without allocating a new one: dest = a * b.
+     * 
+     * @param a
+     *            the left operand
+     * @param b
+     *            the right operand
+     * @param dest
+     *            _output_ matrix for the product, may be the same object as
+     *            either operand.
+     * @return dest, for convenience.
+     */
+    public static Float4Matrix mul(Float4Matrix a, Float4Matrix b, Float4Matrix dest) {
+        float[] l = a.asArray();
+        float[] r = b.asArray();
+        float b00 = r[0], b01 = r[1], b02 = r[2], b03 = r[3];
+        float b10 = r[4], b11 = r[5], b12 = r[6], b13 = r[7];
+        float b20 = r[8], b21 = r[9], b22 = r[10], b23 = r[11];
+        float b30 = r[12], b31 = r[13], b32 = r[14], b33 = r[15];
+
+        float[] d = dest.asArray();
+        for (int row = 0; row < 16; row += 4) {
+            // Read the whole row before writing, so dest may alias a.
+            float a0 = l[row], a1 = l[row + 1], a2 = l[row + 2], a3 = l[row + 3];
+            d[row] = a0 * b00 + a1 * b10 + a2 * b20 + a3 * b30;
+            d[row + 1] = a0 * b01 + a1 * b11 + a2 * b21 + a3 * b31;
+            d[row + 2] = a0 * b02 + a1 * b12 + a2 * b22 + a3 * b32;
+            d[row + 3] = a0 * b03 + a1 * b13 + a2 * b23 + a3 * b33;
+        }
+
+        return dest;
+    }
+
+    /**
+     * Overwrites a square row-major array with the identity matrix.
+     */
+    private static void setIdentity(float[] d, int size) {
+        for (int i = 0; i < size; i++) {
+            for (int j = 0; j < size; j++) {
+                d[i * size + j] = i == j ? 1f : 0f;
+            }
+        }
+    }
+
     /**
      * Getter for epsilon.
      * 
@@ -0,0 +1,488 @@
+package nl.esciencecenter.neon.math;
+
+import java.nio.FloatBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/* Copyright 2013 Netherlands eScience Center
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * Utility class for transforming many points or normals at once, without
+ * creating a vector object per point. Two memory layouts are supported:
+ * <ul>
+ * <li>AoS (array of structures): one packed array with the components of each
+ * point next to each other, xyzw for positions and xyz for normals. This is
+ * the layout of the vertex buffers of {@link nl.esciencecenter.neon.models.Model}.</li>
+ * <li>SoA (structure of arrays): a separate array per component. The loops
+ * over these arrays have unit stride, so the JIT compiler can vectorize them.</li>
+ * </ul>
+ * All kernels may be called with the same array for input and output. The
+ * matrices are read once per call, so they should not change during it.
+ * 
+ * The parallel variants split very large arrays into bands that are
+ * transformed on a shared pool of daemon threads. Below
+ * {@link #PARALLEL_THRESHOLD} points they run on the calling thread.
+ * 
+ * @author Maarten van Meersbergen <m.van.meersbergen@esciencecenter.nl>
+ * 
+ */
+public final class FloatTransformMath {
+    /** The minimum number of points for which the work is split up. */
+    public static final int PARALLEL_THRESHOLD = 1 << 16;
+
+    private static final int POSITION_SIZE = 4;
+    private static final int NORMAL_SIZE = 3;
+
+    /** A range of points (or colors) to process, handed to a single thread. */
+    interface Kernel {
+        void run(int start, int end);
+    }
+
+    private static class PoolHolder {
+        public static final int THREADS = Runtime.getRuntime().availableProcessors();
+        public static final ExecutorService POOL = Executors.newFixedThreadPool(THREADS, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "FloatTransformMath");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    private FloatTransformMath() {
+        // Only static access.
+    }
+
+    /**
+     * Transforms packed xyzw positions (AoS) with a 4x4 matrix.
+     * 
+     * @param m
+     *            The transformation matrix.
+     * @param src
+     *            The input positions, 4 floats per point.
+     * @param srcOffset
+     *            The index of the first input float.
+     * @param dst
+     *            _output_ array for the positions, 4 floats per point. May be
+     *            the input array.
+     * @param dstOffset
+     *            The index of the first output float.
+     * @param count
+     *            The number of points to transform.
+     */
+    public static void transformPositions(Float4Matrix m, float[] src, int srcOffset, float[] dst, int dstOffset,
+            int count) {
+        float[] a = m.asArray();
+        float m00 = a[0], m01 = a[1], m02 = a[2], m03 = a[3];
+        float m10 = a[4], m11 = a[5], m12 = a[6], m13 = a[7];
+        float m20 = a[8], m21 = a[9], m22 = a[10], m23 = a[11];
+        float m30 = a[12], m31 = a[13], m32 = a[14], m33 = a[15];
+
+        int end = srcOffset + count * POSITION_SIZE;
+        for (int s = srcOffset, d = dstOffset; s < end; s += POSITION_SIZE, d += POSITION_SIZE) {
+            float x = src[s];
+            float y = src[s + 1];
+            float z = src[s + 2];
+            float w = src[s + 3];
+
+            dst[d] = m00 * x + m01 * y + m02 * z + m03 * w;
+            dst[d + 1] = m10 * x + m11 * y + m12 * z + m13 * w;
+            dst[d + 2] = m20 * x + m21 * y + m22 * z + m23 * w;
+            dst[d + 3] = m30 * x + m31 * y + m32 * z + m33 * w;
+        }
+    }
+
+    /**
+     * Transforms positions stored in separate x, y and z arrays (SoA) with a
+     * 4x4 matrix, assuming w = 1 for every point. The bottom row of the matrix
+     * is ignored, so this is only suited for affine transformations; use
+     * {@link #transformPositions(Float4Matrix, float[], int, float[], int, int)}
+     * for projections.
+     * 
+     * @param m
+     *            The (affine) transformation matrix.
+     * @param x
+     *            The input x coordinates.
+     * @param y
+     *            The input y coordinates.
+     * @param z
+     *            The input z coordinates.
+     * @param outX
+     *            _output_ array for the x coordinates. May be an input array.
+     * @param outY
+     *            _output_ array for the y coordinates. May be an input array.
+     * @param outZ
+     *            _output_ array for the z coordinates. May be an input array.
+     * @param offset
+     *            The index of the first point, in all arrays.
+     * @param count
+     *            The number of points to transform.
+     */
+    public static void transformPositions(Float4Matrix m, float[] x, float[] y, float[] z, float[] outX,
+            float[] outY, float[] outZ, int offset, int count) {
+        float[] a = m.asArray();
+        float m00 = a[0], m01 = a[1], m02 = a[2], m03 = a[3];
+        float m10 = a[4], m11 = a[5], m12 = a[6], m13 = a[7];
+        float m20 = a[8], m21 = a[9], m22 = a[10], m23 = a[11];
+
+        int end = offset + count;
+        for (int i = offset; i < end; i++) {
+            float xi = x[i];
+            float yi = y[i];
+            float zi = z[i];
+
+            outX[i] = m00 * xi + m01 * yi + m02 * zi + m03;
+            outY[i] = m10 * xi + m11 * yi + m12 * zi + m13;
+            outZ[i] = m20 * xi + m21 * yi + m22 * zi + m23;
+        }
+    }
+
+    /**
+     * Transforms the xyzw positions (AoS) in a buffer with a 4x4 matrix. Both
+     * buffers are accessed from their current position on, which is left
+     * unchanged.
+     * 
+     * @param m
+     *            The transformation matrix.
+     * @param src
+     *            The input positions, 4 floats per point.
+     * @param dst
+     *            _output_ buffer for the positions, 4 floats per point. May be
+     *            the input buffer.
+     * @param count
+     *            The number of points to transform.
+     */
+    public static void transformPositions(Float4Matrix m, FloatBuffer src, FloatBuffer dst, int count) {
+        float[] a = m.asArray();
+        float m00 = a[0], m01 = a[1], m02 = a[2], m03 = a[3];
+        float m10 = a[4], m11 = a[5], m12 = a[6], m13 = a[7];
+        float m20 = a[8], m21 = a[9], m22 = a[10], m23 = a[11];
+        float m30 = a[12], m31 = a[13], m32 = a[14], m33 = a[15];
+
+        int end = src.position() + count * POSITION_SIZE;
+        for (int s = src.position(), d = dst.position(); s < end; s += POSITION_SIZE, d += POSITION_SIZE) {
+            float x = src.get(s);
+            float y = src.get(s + 1);
+            float z = src.get(s + 2);
+            float w = src.get(s + 3);
+
+            dst.put(d, m00 * x + m01 * y + m02 * z + m03 * w);
+            dst.put(d + 1, m10 * x + m11 * y + m12 * z + m13 * w);
+            dst.put(d + 2, m20 * x + m21 * y + m22 * z + m23 * w);
+            dst.put(d + 3, m30 * x + m31 * y + m32 * z + m33 * w);
+        }
+    }
+
+    /**
+     * Transforms packed xyz normals (AoS) with a normal matrix, as given by
+     * {@link FloatMatrixMath#getNormalMatrix(Float4Matrix, Float3Matrix)}. The
+     * results are not renormalized.
+     * 
+     * @param n
+     *            The normal matrix.
+     * @param src
+     *            The input normals, 3 floats per normal.
+     * @param srcOffset
+     *            The index of the first input float.
+     * @param dst
+     *            _output_ array for the normals, 3 floats per normal. May be
+     *            the input array.
+     * @param dstOffset
+     *            The index of the first output float.
+     * @param count
+     *            The number of normals to transform.
+     */
+    public static void transformNormals(Float3Matrix n, float[] src, int srcOffset, float[] dst, int dstOffset,
+            int count) {
+        float[] a = n.asArray();
+        float n00 = a[0], n01 = a[1], n02 = a[2];
+        float n10 = a[3], n11 = a[4], n12 = a[5];
+        float n20 = a[6], n21 = a[7], n22 = a[8];
+
+        int end = srcOffset + count * NORMAL_SIZE;
+        for (int s = srcOffset, d = dstOffset; s < end; s += NORMAL_SIZE, d += NORMAL_SIZE) {
+            float x = src[s];
+            float y = src[s + 1];
+            float z = src[s + 2];
+
+            dst[d] = n00 * x + n01 * y + n02 * z;
+            dst[d + 1] = n10 * x + n11 * y + n12 * z;
+            dst[d + 2] = n20 * x + n21 * y + n22 * z;
+        }
+    }
+
+    /**
+     * Transforms normals stored in separate x, y and z arrays (SoA) with a
+     * normal matrix. The results are not renormalized.
+     * 
+     * @param n
+     *            The normal matrix.
+     * @param x
+     *            The input x components.
+     * @param y
+     *            The input y components.
+     * @param z
+     *            The input z components.
+     * @param outX
+     *            _output_ array for the x components. May be an input array.
+     * @param outY
+     *            _output_ array for the y components. May be an input array.
+     * @param outZ
+     *            _output_ array for the z components. May be an input array.
+     * @param offset
+     *            The index of the first normal, in all arrays.
+     * @param count
+     *            The number of normals to transform.
+     */
+    public static void transformNormals(Float3Matrix n, float[] x, float[] y, float[] z, float[] outX, float[] outY,
+            float[] outZ, int offset, int count) {
+        float[] a = n.asArray();
+        float n00 = a[0], n01 = a[1], n02 = a[2];
+        float n10 = a[3], n11 = a[4], n12 = a[5];
+        float n20 = a[6], n21 = a[7], n22 = a[8];
+
+        int end = offset + count;
+        for (int i = offset; i < end; i++) {
+            float xi = x[i];
+            float yi = y[i];
+            float zi = z[i];
+
+            outX[i] = n00 * xi + n01 * yi + n02 * zi;
+            outY[i] = n10 * xi + n11 * yi + n12 * zi;
+            outZ[i] = n20 * xi + n21 * yi + n22 * zi;
+        }
+    }
+
+    /**
+     * Transforms the xyz normals (AoS) in a buffer with a normal matrix. Both
+     * buffers are accessed from their current position on, which is left
+     * unchanged. The results are not renormalized.
+     * 
+     * @param n
+     *            The normal matrix.
+     * @param src
+     *            The input normals, 3 floats per normal.
+     * @param dst
+     *            _output_ buffer for the normals, 3 floats per normal. May be
+     *            the input buffer.
+     * @param count
+     *            The number of normals to transform.
+     */
+    public static void transformNormals(Float3Matrix n, FloatBuffer src, FloatBuffer dst, int count) {
+        float[] a = n.asArray();
+        float n00 = a[0], n01 = a[1], n02 = a[2];
+        float n10 = a[3], n11 = a[4], n12 = a[5];
+        float n20 = a[6], n21 = a[7], n22 = a[8];
+
+        int end = src.position() + count * NORMAL_SIZE;
+        for (int s = src.position(), d = dst.position(); s < end; s += NORMAL_SIZE, d += NORMAL_SIZE) {
+            float x = src.get(s);
+            float y = src.get(s + 1);
+            float z = src.get(s + 2);
+
+            dst.put(d, n00 * x + n01 * y + n02 * z);
+            dst.put(d + 1, n10 * x + n11 * y + n12 * z);
+            dst.put(d + 2, n20 * x + n21 * y + n22 * z);
+        }
+    }
+
+    /**
+     * Parallel version of
+     * {@link #transformPositions(Float4Matrix, float[], int, float[], int, int)}.
+     * 
+     * @param m
+     *            The transformation matrix.
+     * @param src
+     *            The input positions, 4 floats per point.
+     * @param srcOffset
+     *            The index of the first input float.
+     * @param dst
+     *            _output_ array for the positions, 4 floats per point. May be
+     *            the input array.
+     * @param dstOffset
+     *            The index of the first output float.
+     * @param count
+     *            The number of points to transform.
+     */
+    public static void transformPositionsParallel(final Float4Matrix m, final float[] src, final int srcOffset,
+            final float[] dst, final int dstOffset, int count) {
+        split(count, new Kernel() {
+            @Override
+            public void run(int start, int end) {
+                transformPositions(m, src, srcOffset + start * POSITION_SIZE, dst, dstOffset + start
+                        * POSITION_SIZE, end - start);
+            }
+        });
+    }
+
+    /**
+     * Parallel version of
+     * {@link #transformPositions(Float4Matrix, float[], float[], float[], float[], float[], float[], int, int)}
+     * .
+     * 
+     * @param m
+     *            The (affine) transformation matrix.
+     * @param x
+     *            The input x coordinates.
+     * @param y
+     *            The input y coordinates.
+     * @param z
+     *            The input z coordinates.
+     * @param outX
+     *            _output_ array for the x coordinates. May be an input array.
+     * @param outY
+     *            _output_ array for the y coordinates. May be an input array.
+     * @param outZ
+     *            _output_ array for the z coordinates. May be an input array.
+     * @param offset
+     *            The index of the first point, in all arrays.
+     * @param count
+     *            The number of points to transform.
+     */
+    public static void transformPositionsParallel(final Float4Matrix m, final float[] x, final float[] y,
+            final float[] z, final float[] outX, final float[] outY, final float[] outZ, final int offset, int count) {
+        split(count, new Kernel() {
+            @Override
+            public void run(int start, int end) {
+                transformPositions(m, x, y, z, outX, outY, outZ, offset + start, end - start);
+            }
+        });
+    }
+
+    /**
+     * Parallel version of
+     * {@link #transformNormals(Float3Matrix, float[], int, float[], int, int)}.
+     * 
+     * @param n
+     *            The normal matrix.
+     * @param src
+     *            The input normals, 3 floats per normal.
+     * @param srcOffset
+     *            The index of the first input float.
+     * @param dst
+     *            _output_ array for the normals, 3 floats per normal. May be
+     *            the input array.
+     * @param dstOffset
+     *            The index of the first output float.
+     * @param count
+     *            The number of normals to transform.
+     */
+    public static void transformNormalsParallel(final Float3Matrix n, final float[] src, final int srcOffset,
+            final float[] dst, final int dstOffset, int count) {
+        split(count, new Kernel() {
+            @Override
+            public void run(int start, int end) {
+                transformNormals(n, src, srcOffset + start * NORMAL_SIZE, dst, dstOffset + start * NORMAL_SIZE, end
+                        - start);
+            }
+        });
+    }
+
+    /**
+     * Computes the axis aligned bounding box of packed positions (AoS), using
+     * only their x, y and z components.
+     * 
+     * @param positions
+     *            The positions.
+     * @param offset
+     *            The index of the first float.
+     * @param stride
+     *            The number of floats per point, 3 for xyz or 4 for xyzw.
+     * @param count
+     *            The number of points.
+     * @param result
+     *            _output_ array of 6 floats for the box: min x, y, z followed
+     *            by max x, y, z. Unchanged if count is 0.
+     * @return result, for convenience.
+     */
+    public static float[] bounds(float[] positions, int offset, int stride, int count, float[] result) {
+        if (count <= 0) {
+            return result;
+        }
+        float minX = Float.POSITIVE_INFINITY, minY = Float.POSITIVE_INFINITY, minZ = Float.POSITIVE_INFINITY;
+        float maxX = Float.NEGATIVE_INFINITY, maxY = Float.NEGATIVE_INFINITY, maxZ = Float.NEGATIVE_INFINITY;
+
+        int end = offset + count * stride;
+        for (int i = offset; i < end; i += stride) {
+            float x = positions[i];
+            float y = positions[i + 1];
+            float z = positions[i + 2];
+
+            minX = Math.min(minX, x);
+            minY = Math.min(minY, y);
+            minZ = Math.min(minZ, z);
+            maxX = Math.max(maxX, x);
+            maxY = Math.max(maxY, y);
+            maxZ = Math.max(maxZ, z);
+        }
+
+        result[0] = minX;
+        result[1] = minY;
+        result[2] = minZ;
+        result[3] = maxX;
+        result[4] = maxY;
+        result[5] = maxZ;
+        return result;
+    }
+
+    /**
+     * Splits count points into bands, about four per thread, and runs the
+     * kernel on all of them, waiting until all are done. Small counts are run
+     * on the calling thread. Exceptions thrown by the kernel are rethrown.
+     */
+    static void split(int count, final Kernel kernel) {
+        int threads = PoolHolder.THREADS;
+        if (count < PARALLEL_THRESHOLD || threads <= 1) {
+            kernel.run(0, count);
+            return;
+        }
+
+        int bandSize = Math.max(PARALLEL_THRESHOLD / 4, count / (threads * 4));
+
+        List<Future<?>> futures = new ArrayList<Future<?>>();
+        for (int start = 0; start < count; start += bandSize) {
+            final int bandStart = start;
+            final int bandEnd = Math.min(count, start + bandSize);
+            futures.add(PoolHolder.POOL.submit(new Runnable() {
+                @Override
+                public void run() {
+                    kernel.run(bandStart, bandEnd);
+                }
+            }));
+        }
+
+        try {
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Transformation interrupted.", e);
+        } catch (ExecutionException e) {
+            // Rethrow index errors and the like as if the kernel ran here.
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException("Transformation failed.", e.getCause());
+        }
+    }
+}
@@ -32,6 +32,17 @@ public interface FloatVector {
      */
     FloatBuffer asBuffer();
 
+    /**
+     * Writes this vector into the given buffer at its current position, and
+     * advances the position by {@link #getSize()}. Unlike {@link #asBuffer()}
+     * this does not allocate anything, so it can be used to fill (direct)
+     * buffers that are reused every frame.
+     * 
+     * @param buffer
+     *            The buffer to write to.
+     */
+    void writeTo(FloatBuffer buffer);
+
     /**
      * Getter for the size of this vector (number of places)
      * 
@@ -340,23 +340,23 @@ public final class FloatVectorMath {
             float p[] = new float[4];
             if (coord == 0) {
                 p[0] = startLocation.getX();
-                p[1] = (startLocation.add(startControl)).getX();
-                p[2] = (endLocation.add(endControl.neg())).getX();
+                p[1] = startLocation.getX() + startControl.getX();
+                p[2] = endLocation.getX() - endControl.getX();
                 p[3] = endLocation.getX();
             } else if (coord == 1) {
                 p[0] = startLocation.getY();
-                p[1] = (startLocation.add(startControl)).getY();
-                p[2] = (endLocation.add(endControl.neg())).getY();
+                p[1] = startLocation.getY() + startControl.getY();
+                p[2] = endLocation.getY() - endControl.getY();
                 p[3] = endLocation.getY();
             } else if (coord == 2) {
                 p[0] = startLocation.getZ();
-                p[1] = (startLocation.add(startControl)).getZ();
-                p[2] = (endLocation.add(endControl.neg())).getZ();
+                p[1] = startLocation.getZ() + startControl.getZ();
+                p[2] = endLocation.getZ() - endControl.getZ();
                 p[3] = endLocation.getZ();
             } else if (coord == 3) {
                 p[0] = startLocation.getW();
-                p[1] = (startLocation.add(startControl)).getW();
-                p[2] = (endLocation.add(endControl.neg())).getW();
+                p[1] = startLocation.getW();
+                p[2] = endLocation.getW();
                 p[3] = endLocation.getW();
             }
 
@@ -397,6 +397,114 @@ public final class FloatVectorMath {
         return newBezierPoints;
     }
 
+    /**
+     * Bezier curve interpolation between two points with control vectors,
+     * without creating a vector object per point. The start and end points
+     * are read as packed xyzw floats from the points array, the end point
+     * directly following the start point. The control vectors leave the w
+     * component untouched, so it is interpolated between the w of the start
+     * and end points. The steps points of the curve, from the start point up
+     * to, but not including, the end point, are written as packed xyzw floats.
+     * 
+     * @param steps
+     *            The number of steps on the bezier curve to calculate.
+     * @param points
+     *            The array holding the start and end points.
+     * @param offset
+     *            The index of the start point's x component in points.
+     * @param startControl
+     *            The starting point's control vector.
+     * @param endControl
+     *            The end point's control vector.
+     * @param dest
+     *            _output_ array for the points on the curve, it needs room for
+     *            steps * 4 floats from destOffset.
+     * @param destOffset
+     *            The index in dest to write the first point to.
+     * @return The index in dest just after the last point written.
+     */
+    public static int bezierCurve(int steps, float[] points, int offset, Float3Vector startControl,
+            Float3Vector endControl, float[] dest, int destOffset) {
+        float cx = startControl.getX(), cy = startControl.getY(), cz = startControl.getZ();
+        float dx = endControl.getX(), dy = endControl.getY(), dz = endControl.getZ();
+
+        float x0 = points[offset], y0 = points[offset + 1], z0 = points[offset + 2], w0 = points[offset + 3];
+        float x3 = points[offset + 4], y3 = points[offset + 5], z3 = points[offset + 6], w3 = points[offset + 7];
+
+        forwardDifference(steps, x0, x0 + cx, x3 - dx, x3, dest, destOffset);
+        forwardDifference(steps, y0, y0 + cy, y3 - dy, y3, dest, destOffset + 1);
+        forwardDifference(steps, z0, z0 + cz, z3 - dz, z3, dest, destOffset + 2);
+        forwardDifference(steps, w0, w0, w3, w3, dest, destOffset + 3);
+
+        return destOffset + steps * 4;
+    }
+
+    /**
+     * Bezier curve interpolation along a polyline, for every pair of
+     * consecutive points, with the same control vectors for every segment.
+     * See {@link #bezierCurve(int, float[], int, Float3Vector, Float3Vector,
+     * float[], int)}; the curves of all segments are written one after the
+     * other, so for count points dest receives (count - 1) * steps points.
+     * 
+     * @param steps
+     *            The number of steps on the bezier curve of every segment.
+     * @param points
+     *            The packed xyzw points of the polyline.
+     * @param offset
+     *            The index of the first point's x component in points.
+     * @param count
+     *            The number of points in the polyline.
+     * @param startControl
+     *            The control vector at the start of every segment.
+     * @param endControl
+     *            The control vector at the end of every segment.
+     * @param dest
+     *            _output_ array for the points on the curves, it needs room
+     *            for (count - 1) * steps * 4 floats from destOffset.
+     * @param destOffset
+     *            The index in dest to write the first point to.
+     * @return The index in dest just after the last point written.
+     */
+    public static int bezierCurves(int steps, float[] points, int offset, int count, Float3Vector startControl,
+            Float3Vector endControl, float[] dest, int destOffset) {
+        int next = destOffset;
+        for (int i = 0; i < count - 1; i++) {
+            next = bezierCurve(steps, points, offset + i * 4, startControl, endControl, dest, next);
+        }
+        return next;
+    }
+
+    /**
+     * Forward differencing of one coordinate of a cubic bezier curve, written
+     * to every fourth float of dest.
+     */
+    private static void forwardDifference(int steps, float p0, float p1, float p2, float p3, float[] dest,
+            int destOffset) {
+        float t = 1f / steps;
+        float temp = t * t;
+
+        // Same formulas, in the same order, as in bezierCurve above.
+        float f = p0;
+        float fd = 3 * (p1 - p0) * t;
+        float fdd_per_2 = 3 * (p0 - 2 * p1 + p2) * temp; // NOSONAR
+        float fddd_per_2 = 3 * (3 * (p1 - p2) + p3 - p0) * temp * t; // NOSONAR
+
+        float fddd = fddd_per_2 + fddd_per_2;
+        float fdd = fdd_per_2 + fdd_per_2;
+        float fddd_per_6 = fddd_per_2 * (1f / 3); // NOSONAR
+
+        int index = destOffset;
+        for (int loop = 0; loop < steps; loop++) {
+            dest[index] = f;
+            index += 4;
+
+            f = f + fd + fdd_per_2 + fddd_per_6;
+            fd = fd + fdd + fddd_per_2;
+            fdd = fdd + fddd;
+            fdd_per_2 = fdd_per_2 + fddd_per_2;
+        }
+    }
+
     /**
      * Bezier curve interpolation for _rotation_ between two points with control
      * vectors (this could be particle speed at the points). Outputs a number of
@@ -428,18 +536,18 @@ public final class FloatVectorMath {
             float p[] = new float[4];
             if (coord == 0) {
                 p[0] = startLocation.getX();
-                p[1] = (startLocation.add(startControl)).getX();
-                p[2] = (endLocation.add(endControl.neg())).getX();
+                p[1] = startLocation.getX() + startControl.getX();
+                p[2] = endLocation.getX() - endControl.getX();
                 p[3] = endLocation.getX();
             } else if (coord == 1) {
                 p[0] = startLocation.getY();
-                p[1] = (startLocation.add(startControl)).getY();
-                p[2] = (endLocation.add(endControl.neg())).getY();
+                p[1] = startLocation.getY() + startControl.getY();
+                p[2] = endLocation.getY() - endControl.getY();
                 p[3] = endLocation.getY();
             } else if (coord == 2) {
                 p[0] = startLocation.getZ();
-                p[1] = (startLocation.add(startControl)).getZ();
-                p[2] = (endLocation.add(endControl.neg())).getZ();
+                p[1] = startLocation.getZ() + startControl.getZ();
+                p[2] = endLocation.getZ() - endControl.getZ();
                 p[3] = endLocation.getZ();
             }
 
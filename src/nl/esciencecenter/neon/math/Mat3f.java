@@ -0,0 +1,268 @@
+package nl.esciencecenter.neon.math;
+
+import java.nio.FloatBuffer;
+
+/* Copyright 2013 Netherlands eScience Center
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * Immutable 3x3 matrix with one final field per element, the field-based
+ * counterpart of {@link Float3Matrix}. See {@link Mat4f} for the rationale.
+ * 
+ * @author Maarten van Meersbergen <m.van.meersbergen@esciencecenter.nl>
+ * 
+ */
+public final class Mat3f {
+    /** The identity matrix. */
+    public static final Mat3f IDENTITY = new Mat3f(1f, 0f, 0f, 0f, 1f, 0f, 0f, 0f, 1f);
+
+    public final float m00, m01, m02;
+    public final float m10, m11, m12;
+    public final float m20, m21, m22;
+
+    /**
+     * Creates a new matrix using the parameters row-wise as filling.
+     * 
+     * @param m00
+     *            The element at row 0, column 0.
+     * @param m01
+     *            The element at row 0, column 1.
+     * @param m02
+     *            The element at row 0, column 2.
+     * @param m10
+     *            The element at row 1, column 0.
+     * @param m11
+     *            The element at row 1, column 1.
+     * @param m12
+     *            The element at row 1, column 2.
+     * @param m20
+     *            The element at row 2, column 0.
+     * @param m21
+     *            The element at row 2, column 1.
+     * @param m22
+     *            The element at row 2, column 2.
+     */
+    public Mat3f(float m00, float m01, float m02, float m10, float m11, float m12, float m20, float m21, float m22) {
+        this.m00 = m00;
+        this.m01 = m01;
+        this.m02 = m02;
+        this.m10 = m10;
+        this.m11 = m11;
+        this.m12 = m12;
+        this.m20 = m20;
+        this.m21 = m21;
+        this.m22 = m22;
+    }
+
+    /**
+     * Creates a new matrix with the same elements as the given
+     * {@link Float3Matrix}.
+     * 
+     * @param m
+     *            The matrix to copy.
+     */
+    public Mat3f(Float3Matrix m) {
+        this(m.asArray());
+    }
+
+    private Mat3f(float[] a) {
+        this(a[0], a[1], a[2], a[3], a[4], a[5], a[6], a[7], a[8]);
+    }
+
+    /**
+     * Converts this matrix to a new {@link Float3Matrix}.
+     * 
+     * @return the new matrix.
+     */
+    public Float3Matrix toFloat3Matrix() {
+        return toFloat3Matrix(new Float3Matrix());
+    }
+
+    /**
+     * Copies this matrix into an existing {@link Float3Matrix}.
+     * 
+     * @param dest
+     *            _output_ matrix.
+     * @return dest, for convenience.
+     */
+    public Float3Matrix toFloat3Matrix(Float3Matrix dest) {
+        float[] d = dest.asArray();
+        d[0] = m00;
+        d[1] = m01;
+        d[2] = m02;
+        d[3] = m10;
+        d[4] = m11;
+        d[5] = m12;
+        d[6] = m20;
+        d[7] = m21;
+        d[8] = m22;
+        return dest;
+    }
+
+    /**
+     * Writes this matrix, row by row, into the given buffer at its current
+     * position, and advances the position by 9.
+     * 
+     * @param buffer
+     *            The buffer to write to.
+     */
+    public void writeTo(FloatBuffer buffer) {
+        buffer.put(m00).put(m01).put(m02);
+        buffer.put(m10).put(m11).put(m12);
+        buffer.put(m20).put(m21).put(m22);
+    }
+
+    /**
+     * Returns the element at the given row and column.
+     * 
+     * @param row
+     *            The row, 0 to 2.
+     * @param column
+     *            The column, 0 to 2.
+     * @return The element.
+     * @throws IllegalArgumentException
+     *             if row or column is out of range.
+     */
+    public float get(int row, int column) throws IllegalArgumentException {
+        if (row < 0 || row > 2 || column < 0 || column > 2) {
+            throw new IllegalArgumentException("either row or column was out of range for a 3x3 matrix");
+        }
+        switch (row * 3 + column) {
+        case 0:
+            return m00;
+        case 1:
+            return m01;
+        case 2:
+            return m02;
+        case 3:
+            return m10;
+        case 4:
+            return m11;
+        case 5:
+            return m12;
+        case 6:
+            return m20;
+        case 7:
+            return m21;
+        default:
+            return m22;
+        }
+    }
+
+    /**
+     * Multiplies this matrix with the given matrix, returning a new matrix.
+     * 
+     * @param n
+     *            The matrix to be multiplied with the current matrix.
+     * @return The new 3x3 matrix that is the result of the multiplication.
+     */
+    public Mat3f mul(Mat3f n) {
+        float r00 = m00 * n.m00 + m01 * n.m10 + m02 * n.m20;
+        float r01 = m00 * n.m01 + m01 * n.m11 + m02 * n.m21;
+        float r02 = m00 * n.m02 + m01 * n.m12 + m02 * n.m22;
+
+        float r10 = m10 * n.m00 + m11 * n.m10 + m12 * n.m20;
+        float r11 = m10 * n.m01 + m11 * n.m11 + m12 * n.m21;
+        float r12 = m10 * n.m02 + m11 * n.m12 + m12 * n.m22;
+
+        float r20 = m20 * n.m00 + m21 * n.m10 + m22 * n.m20;
+        float r21 = m20 * n.m01 + m21 * n.m11 + m22 * n.m21;
+        float r22 = m20 * n.m02 + m21 * n.m12 + m22 * n.m22;
+
+        return new Mat3f(r00, r01, r02, r10, r11, r12, r20, r21, r22);
+    }
+
+    /**
+     * Multiplies this matrix with the given vector, returning a new vector.
+     * 
+     * @param v
+     *            The vector to be multiplied with the current matrix.
+     * @return The new 3-place vector that is the result of the multiplication.
+     */
+    public Float3Vector mul(Float3Vector v) {
+        float x = v.getX(), y = v.getY(), z = v.getZ();
+        return new Float3Vector(m00 * x + m01 * y + m02 * z, m10 * x + m11 * y + m12 * z, m20 * x + m21 * y + m22
+                * z);
+    }
+
+    /**
+     * Returns the transpose of this matrix.
+     * 
+     * @return The new, transposed, matrix.
+     */
+    public Mat3f transpose() {
+        return new Mat3f(m00, m10, m20, m01, m11, m21, m02, m12, m22);
+    }
+
+    /**
+     * Returns the determinant of this matrix.
+     * 
+     * @return The determinant.
+     */
+    public float determinant() {
+        return m00 * (m11 * m22 - m12 * m21) - m01 * (m10 * m22 - m12 * m20) + m02 * (m10 * m21 - m11 * m20);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see java.lang.Object#hashCode()
+     */
+    @Override
+    public int hashCode() {
+        int result = 1;
+        result = 31 * result + Float.floatToIntBits(m00);
+        result = 31 * result + Float.floatToIntBits(m01);
+        result = 31 * result + Float.floatToIntBits(m02);
+        result = 31 * result + Float.floatToIntBits(m10);
+        result = 31 * result + Float.floatToIntBits(m11);
+        result = 31 * result + Float.floatToIntBits(m12);
+        result = 31 * result + Float.floatToIntBits(m20);
+        result = 31 * result + Float.floatToIntBits(m21);
+        result = 31 * result + Float.floatToIntBits(m22);
+        return result;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see java.lang.Object#equals(java.lang.Object)
+     */
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof Mat3f)) {
+            return false;
+        }
+        Mat3f o = (Mat3f) obj;
+        return Float.floatToIntBits(m00) == Float.floatToIntBits(o.m00)
+                && Float.floatToIntBits(m01) == Float.floatToIntBits(o.m01)
+                && Float.floatToIntBits(m02) == Float.floatToIntBits(o.m02)
+                && Float.floatToIntBits(m10) == Float.floatToIntBits(o.m10)
+                && Float.floatToIntBits(m11) == Float.floatToIntBits(o.m11)
+                && Float.floatToIntBits(m12) == Float.floatToIntBits(o.m12)
+                && Float.floatToIntBits(m20) == Float.floatToIntBits(o.m20)
+                && Float.floatToIntBits(m21) == Float.floatToIntBits(o.m21)
+                && Float.floatToIntBits(m22) == Float.floatToIntBits(o.m22);
+    }
+
+    @Override
+    public String toString() {
+        return m00 + " " + m01 + " " + m02 + " \n" + m10 + " " + m11 + " " + m12 + " \n" + m20 + " " + m21 + " " + m22
+                + " ";
+    }
+}
@@ -0,0 +1,526 @@
+package nl.esciencecenter.neon.math;
+
+import java.nio.FloatBuffer;
+
+/* Copyright 2013 Netherlands eScience Center
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * Immutable 4x4 matrix with one final field per element, as a faster
+ * alternative to {@link Float4Matrix} for code that builds and combines many
+ * matrices per frame. There is no backing array, no virtual calls and no loops:
+ * all operations are written out in full, so the JIT can keep the elements in
+ * registers and, when a result does not escape, avoid allocating it at all.
+ * 
+ * The layout is the same as {@link Float4Matrix}: mRC is the element in row R
+ * and column C, and the translation is in m03, m13 and m23. Angles are in
+ * degrees. Use {@link #Mat4f(Float4Matrix)} and {@link #toFloat4Matrix()} to
+ * convert between the two.
+ * 
+ * @author Maarten van Meersbergen <m.van.meersbergen@esciencecenter.nl>
+ * 
+ */
+public final class Mat4f {
+    private static final double DEGREESTORADIANS = Math.PI / 180.0;
+
+    /** The identity matrix. */
+    public static final Mat4f IDENTITY = new Mat4f(1f, 0f, 0f, 0f, 0f, 1f, 0f, 0f, 0f, 0f, 1f, 0f, 0f, 0f, 0f, 1f);
+
+    public final float m00, m01, m02, m03;
+    public final float m10, m11, m12, m13;
+    public final float m20, m21, m22, m23;
+    public final float m30, m31, m32, m33;
+
+    /**
+     * Creates a new matrix using the parameters row-wise as filling.
+     * 
+     * @param m00
+     *            The element at row 0, column 0.
+     * @param m01
+     *            The element at row 0, column 1.
+     * @param m02
+     *            The element at row 0, column 2.
+     * @param m03
+     *            The element at row 0, column 3.
+     * @param m10
+     *            The element at row 1, column 0.
+     * @param m11
+     *            The element at row 1, column 1.
+     * @param m12
+     *            The element at row 1, column 2.
+     * @param m13
+     *            The element at row 1, column 3.
+     * @param m20
+     *            The element at row 2, column 0.
+     * @param m21
+     *            The element at row 2, column 1.
+     * @param m22
+     *            The element at row 2, column 2.
+     * @param m23
+     *            The element at row 2, column 3.
+     * @param m30
+     *            The element at row 3, column 0.
+     * @param m31
+     *            The element at row 3, column 1.
+     * @param m32
+     *            The element at row 3, column 2.
+     * @param m33
+     *            The element at row 3, column 3.
+     */
+    public Mat4f(float m00, float m01, float m02, float m03, float m10, float m11, float m12, float m13, float m20,
+            float m21, float m22, float m23, float m30, float m31, float m32, float m33) {
+        this.m00 = m00;
+        this.m01 = m01;
+        this.m02 = m02;
+        this.m03 = m03;
+        this.m10 = m10;
+        this.m11 = m11;
+        this.m12 = m12;
+        this.m13 = m13;
+        this.m20 = m20;
+        this.m21 = m21;
+        this.m22 = m22;
+        this.m23 = m23;
+        this.m30 = m30;
+        this.m31 = m31;
+        this.m32 = m32;
+        this.m33 = m33;
+    }
+
+    /**
+     * Creates a new matrix with the same elements as the given
+     * {@link Float4Matrix}.
+     * 
+     * @param m
+     *            The matrix to copy.
+     */
+    public Mat4f(Float4Matrix m) {
+        this(m.asArray());
+    }
+
+    private Mat4f(float[] a) {
+        this(a[0], a[1], a[2], a[3], a[4], a[5], a[6], a[7], a[8], a[9], a[10], a[11], a[12], a[13], a[14], a[15]);
+    }
+
+    /**
+     * Converts this matrix to a new {@link Float4Matrix}.
+     * 
+     * @return the new matrix.
+     */
+    public Float4Matrix toFloat4Matrix() {
+        return toFloat4Matrix(new Float4Matrix());
+    }
+
+    /**
+     * Copies this matrix into an existing {@link Float4Matrix}.
+     * 
+     * @param dest
+     *            _output_ matrix.
+     * @return dest, for convenience.
+     */
+    public Float4Matrix toFloat4Matrix(Float4Matrix dest) {
+        float[] d = dest.asArray();
+        d[0] = m00;
+        d[1] = m01;
+        d[2] = m02;
+        d[3] = m03;
+        d[4] = m10;
+        d[5] = m11;
+        d[6] = m12;
+        d[7] = m13;
+        d[8] = m20;
+        d[9] = m21;
+        d[10] = m22;
+        d[11] = m23;
+        d[12] = m30;
+        d[13] = m31;
+        d[14] = m32;
+        d[15] = m33;
+        return dest;
+    }
+
+    /**
+     * Writes this matrix, row by row, into the given buffer at its current
+     * position, and advances the position by 16.
+     * 
+     * @param buffer
+     *            The buffer to write to.
+     */
+    public void writeTo(FloatBuffer buffer) {
+        buffer.put(m00).put(m01).put(m02).put(m03);
+        buffer.put(m10).put(m11).put(m12).put(m13);
+        buffer.put(m20).put(m21).put(m22).put(m23);
+        buffer.put(m30).put(m31).put(m32).put(m33);
+    }
+
+    /**
+     * Returns the element at the given row and column.
+     * 
+     * @param row
+     *            The row, 0 to 3.
+     * @param column
+     *            The column, 0 to 3.
+     * @return The element.
+     * @throws IllegalArgumentException
+     *             if row or column is out of range.
+     */
+    public float get(int row, int column) throws IllegalArgumentException {
+        if (row < 0 || row > 3 || column < 0 || column > 3) {
+            throw new IllegalArgumentException("either row or column was out of range for a 4x4 matrix");
+        }
+        switch (row * 4 + column) {
+        case 0:
+            return m00;
+        case 1:
+            return m01;
+        case 2:
+            return m02;
+        case 3:
+            return m03;
+        case 4:
+            return m10;
+        case 5:
+            return m11;
+        case 6:
+            return m12;
+        case 7:
+            return m13;
+        case 8:
+            return m20;
+        case 9:
+            return m21;
+        case 10:
+            return m22;
+        case 11:
+            return m23;
+        case 12:
+            return m30;
+        case 13:
+            return m31;
+        case 14:
+            return m32;
+        default:
+            return m33;
+        }
+    }
+
+    /**
+     * Multiplies this matrix with the given matrix, returning a new matrix.
+     * 
+     * @param n
+     *            The matrix to be multiplied with the current matrix.
+     * @return The new 4x4 matrix that is the result of the multiplication.
+     */
+    public Mat4f mul(Mat4f n) {
+        float r00 = m00 * n.m00 + m01 * n.m10 + m02 * n.m20 + m03 * n.m30;
+        float r01 = m00 * n.m01 + m01 * n.m11 + m02 * n.m21 + m03 * n.m31;
+        float r02 = m00 * n.m02 + m01 * n.m12 + m02 * n.m22 + m03 * n.m32;
+        float r03 = m00 * n.m03 + m01 * n.m13 + m02 * n.m23 + m03 * n.m33;
+
+        float r10 = m10 * n.m00 + m11 * n.m10 + m12 * n.m20 + m13 * n.m30;
+        float r11 = m10 * n.m01 + m11 * n.m11 + m12 * n.m21 + m13 * n.m31;
+        float r12 = m10 * n.m02 + m11 * n.m12 + m12 * n.m22 + m13 * n.m32;
+        float r13 = m10 * n.m03 + m11 * n.m13 + m12 * n.m23 + m13 * n.m33;
+
+        float r20 = m20 * n.m00 + m21 * n.m10 + m22 * n.m20 + m23 * n.m30;
+        float r21 = m20 * n.m01 + m21 * n.m11 + m22 * n.m21 + m23 * n.m31;
+        float r22 = m20 * n.m02 + m21 * n.m12 + m22 * n.m22 + m23 * n.m32;
+        float r23 = m20 * n.m03 + m21 * n.m13 + m22 * n.m23 + m23 * n.m33;
+
+        float r30 = m30 * n.m00 + m31 * n.m10 + m32 * n.m20 + m33 * n.m30;
+        float r31 = m30 * n.m01 + m31 * n.m11 + m32 * n.m21 + m33 * n.m31;
+        float r32 = m30 * n.m02 + m31 * n.m12 + m32 * n.m22 + m33 * n.m32;
+        float r33 = m30 * n.m03 + m31 * n.m13 + m32 * n.m23 + m33 * n.m33;
+
+        return new Mat4f(r00, r01, r02, r03, r10, r11, r12, r13, r20, r21, r22, r23, r30, r31, r32, r33);
+    }
+
+    /**
+     * Multiplies this matrix with the given vector, returning a new vector.
+     * 
+     * @param v
+     *            The vector to be multiplied with the current matrix.
+     * @return The new 4-place vector that is the result of the multiplication.
+     */
+    public Float4Vector mul(Float4Vector v) {
+        float x = v.getX(), y = v.getY(), z = v.getZ(), w = v.getW();
+        return new Float4Vector(m00 * x + m01 * y + m02 * z + m03 * w, m10 * x + m11 * y + m12 * z + m13 * w, m20
+                * x + m21 * y + m22 * z + m23 * w, m30 * x + m31 * y + m32 * z + m33 * w);
+    }
+
+    /**
+     * Returns the transpose of this matrix.
+     * 
+     * @return The new, transposed, matrix.
+     */
+    public Mat4f transpose() {
+        return new Mat4f(m00, m10, m20, m30, m01, m11, m21, m31, m02, m12, m22, m32, m03, m13, m23, m33);
+    }
+
+    /**
+     * Returns the upper left 3x3 part of this matrix, the rotation and scale
+     * of an affine transformation.
+     * 
+     * @return The new 3x3 matrix.
+     */
+    public Mat3f upperLeft() {
+        return new Mat3f(m00, m01, m02, m10, m11, m12, m20, m21, m22);
+    }
+
+    /**
+     * Helper method that creates a translation matrix
+     * 
+     * @param x
+     *            The x translation
+     * @param y
+     *            The y translation
+     * @param z
+     *            The z translation
+     * @return A translation matrix
+     */
+    public static Mat4f translate(float x, float y, float z) {
+        return new Mat4f(1f, 0f, 0f, x, 0f, 1f, 0f, y, 0f, 0f, 1f, z, 0f, 0f, 0f, 1f);
+    }
+
+    /**
+     * Helper method that creates a scaling matrix
+     * 
+     * @param x
+     *            The x scale
+     * @param y
+     *            The y scale
+     * @param z
+     *            The z scale
+     * @return A scaling matrix
+     */
+    public static Mat4f scale(float x, float y, float z) {
+        return new Mat4f(x, 0f, 0f, 0f, 0f, y, 0f, 0f, 0f, 0f, z, 0f, 0f, 0f, 0f, 1f);
+    }
+
+    /**
+     * Helper method that creates a matrix describing a rotation around the
+     * x-axis
+     * 
+     * @param angleDeg
+     *            The rotation angle, in degrees
+     * @return The rotation matrix
+     */
+    public static Mat4f rotationX(float angleDeg) {
+        double angleRad = DEGREESTORADIANS * angleDeg;
+        float cosa = (float) Math.cos(angleRad);
+        float sina = (float) Math.sin(angleRad);
+
+        return new Mat4f(1f, 0f, 0f, 0f, 0f, cosa, -sina, 0f, 0f, sina, cosa, 0f, 0f, 0f, 0f, 1f);
+    }
+
+    /**
+     * Helper method that creates a matrix describing a rotation around the
+     * y-axis
+     * 
+     * @param angleDeg
+     *            The rotation angle, in degrees
+     * @return The rotation matrix
+     */
+    public static Mat4f rotationY(float angleDeg) {
+        double angleRad = DEGREESTORADIANS * angleDeg;
+        float cosa = (float) Math.cos(angleRad);
+        float sina = (float) Math.sin(angleRad);
+
+        return new Mat4f(cosa, 0f, sina, 0f, 0f, 1f, 0f, 0f, -sina, 0f, cosa, 0f, 0f, 0f, 0f, 1f);
+    }
+
+    /**
+     * Helper method that creates a matrix describing a rotation around the
+     * z-axis
+     * 
+     * @param angleDeg
+     *            The rotation angle, in degrees
+     * @return The rotation matrix
+     */
+    public static Mat4f rotationZ(float angleDeg) {
+        double angleRad = DEGREESTORADIANS * angleDeg;
+        float cosa = (float) Math.cos(angleRad);
+        float sina = (float) Math.sin(angleRad);
+
+        return new Mat4f(cosa, -sina, 0f, 0f, sina, cosa, 0f, 0f, 0f, 0f, 1f, 0f, 0f, 0f, 0f, 1f);
+    }
+
+    /**
+     * Helper method that creates a perspective matrix, identical to
+     * {@link FloatMatrixMath#perspective(float, float, float, float)}.
+     * 
+     * @param fovy
+     *            The fov in y-direction, in degrees
+     * @param aspect
+     *            The aspect ratio
+     * @param zNear
+     *            The near clipping plane
+     * @param zFar
+     *            The far clipping plane
+     * @return A perspective matrix
+     */
+    public static Mat4f perspective(float fovy, float aspect, float zNear, float zFar) {
+        if (fovy <= 0f || fovy > 180f) {
+            throw new IllegalArgumentException("fovy cannot be smaller than or equal to 0 or greater than 180f");
+        } else if (aspect <= 0f) {
+            throw new IllegalArgumentException("aspect cannot be smaller than or equal to 0");
+        }
+
+        float top = (float) (Math.tan(fovy * DEGREESTORADIANS / 2) * zNear);
+        float right = top * aspect;
+        float dZ = zFar - zNear;
+
+        if (dZ <= 0f) {
+            throw new IllegalArgumentException("zNear cannot be greater than or equal to zFar");
+        }
+
+        return new Mat4f(zNear / right, 0f, 0f, 0f, 0f, zNear / top, 0f, 0f, 0f, 0f, -(zFar + zNear) / dZ, -2f * zFar
+                * zNear / dZ, 0f, 0f, -1f, 0f);
+    }
+
+    /**
+     * Helper method that supplies a viewing transformation that allows us to
+     * look at the indicated point, identical to
+     * {@link FloatMatrixMath#lookAt(Float4Vector, Float4Vector, Float4Vector)}
+     * 
+     * @param eye
+     *            The coordinates of the eye (camera)
+     * @param at
+     *            The coordinates of the object we want to look at
+     * @param up
+     *            The vector indicating the up direction for the camera
+     * @return A viewing transformation suitable for multiplication with the
+     *         perspective matrix
+     */
+    public static Mat4f lookAt(Float4Vector eye, Float4Vector at, Float4Vector up) {
+        return lookAt(eye.getX(), eye.getY(), eye.getZ(), at.getX(), at.getY(), at.getZ(), up.getX(), up.getY(),
+                up.getZ());
+    }
+
+    /**
+     * Helper method that supplies a viewing transformation that allows us to
+     * look at the indicated point.
+     * 
+     * @see "http://www.opengl.org/sdk/docs/man2/xhtml/gluLookAt.xml"
+     * 
+     * @param eyeX
+     *            The x coordinate of the eye (camera)
+     * @param eyeY
+     *            The y coordinate of the eye (camera)
+     * @param eyeZ
+     *            The z coordinate of the eye (camera)
+     * @param atX
+     *            The x coordinate of the object we want to look at
+     * @param atY
+     *            The y coordinate of the object we want to look at
+     * @param atZ
+     *            The z coordinate of the object we want to look at
+     * @param upX
+     *            The x component of the up direction for the camera
+     * @param upY
+     *            The y component of the up direction for the camera
+     * @param upZ
+     *            The z component of the up direction for the camera
+     * @return A viewing transformation suitable for multiplication with the
+     *         perspective matrix
+     */
+    public static Mat4f lookAt(float eyeX, float eyeY, float eyeZ, float atX, float atY, float atZ, float upX,
+            float upY, float upZ) {
+        // Forward (pointing backwards, towards the eye)
+        float fx = eyeX - atX, fy = eyeY - atY, fz = eyeZ - atZ;
+        float invLength = 1f / (float) Math.sqrt(fx * fx + fy * fy + fz * fz);
+        fx *= invLength;
+        fy *= invLength;
+        fz *= invLength;
+
+        // Side = normalize(up) x forward
+        float sx = upY * fz - upZ * fy, sy = upZ * fx - upX * fz, sz = upX * fy - upY * fx;
+        invLength = 1f / (float) Math.sqrt(sx * sx + sy * sy + sz * sz);
+        sx *= invLength;
+        sy *= invLength;
+        sz *= invLength;
+
+        // Up = forward x side, already of unit length
+        float ux = fy * sz - fz * sy, uy = fz * sx - fx * sz, uz = fx * sy - fy * sx;
+
+        return new Mat4f(sx, sy, sz, -(sx * eyeX + sy * eyeY + sz * eyeZ), ux, uy, uz, -(ux * eyeX + uy * eyeY + uz
+                * eyeZ), fx, fy, fz, -(fx * eyeX + fy * eyeY + fz * eyeZ), 0f, 0f, 0f, 1f);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see java.lang.Object#hashCode()
+     */
+    @Override
+    public int hashCode() {
+        int result = 1;
+        result = 31 * result + Float.floatToIntBits(m00);
+        result = 31 * result + Float.floatToIntBits(m01);
+        result = 31 * result + Float.floatToIntBits(m02);
+        result = 31 * result + Float.floatToIntBits(m03);
+        result = 31 * result + Float.floatToIntBits(m10);
+        result = 31 * result + Float.floatToIntBits(m11);
+        result = 31 * result + Float.floatToIntBits(m12);
+        result = 31 * result + Float.floatToIntBits(m13);
+        result = 31 * result + Float.floatToIntBits(m20);
+        result = 31 * result + Float.floatToIntBits(m21);
+        result = 31 * result + Float.floatToIntBits(m22);
+        result = 31 * result + Float.floatToIntBits(m23);
+        result = 31 * result + Float.floatToIntBits(m30);
+        result = 31 * result + Float.floatToIntBits(m31);
+        result = 31 * result + Float.floatToIntBits(m32);
+        result = 31 * result + Float.floatToIntBits(m33);
+        return result;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see java.lang.Object#equals(java.lang.Object)
+     */
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof Mat4f)) {
+            return false;
+        }
+        Mat4f o = (Mat4f) obj;
+        return Float.floatToIntBits(m00) == Float.floatToIntBits(o.m00)
+                && Float.floatToIntBits(m01) == Float.floatToIntBits(o.m01)
+                && Float.floatToIntBits(m02) == Float.floatToIntBits(o.m02)
+                && Float.floatToIntBits(m03) == Float.floatToIntBits(o.m03)
+                && Float.floatToIntBits(m10) == Float.floatToIntBits(o.m10)
+                && Float.floatToIntBits(m11) == Float.floatToIntBits(o.m11)
+                && Float.floatToIntBits(m12) == Float.floatToIntBits(o.m12)
+                && Float.floatToIntBits(m13) == Float.floatToIntBits(o.m13)
+                && Float.floatToIntBits(m20) == Float.floatToIntBits(o.m20)
+                && Float.floatToIntBits(m21) == Float.floatToIntBits(o.m21)
+                && Float.floatToIntBits(m22) == Float.floatToIntBits(o.m22)
+                && Float.floatToIntBits(m23) == Float.floatToIntBits(o.m23)
+                && Float.floatToIntBits(m30) == Float.floatToIntBits(o.m30)
+                && Float.floatToIntBits(m31) == Float.floatToIntBits(o.m31)
+                && Float.floatToIntBits(m32) == Float.floatToIntBits(o.m32)
+                && Float.floatToIntBits(m33) == Float.floatToIntBits(o.m33);
+    }
+
+    @Override
+    public String toString() {
+        return m00 + " " + m01 + " " + m02 + " " + m03 + " \n" + m10 + " " + m11 + " " + m12 + " " + m13 + " \n" + m20
+                + " " + m21 + " " + m22 + " " + m23 + " \n" + m30 + " " + m31 + " " + m32 + " " + m33 + " ";
+    }
+}
@@ -0,0 +1,410 @@
+package nl.esciencecenter.neon.metrics;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/* Copyright 2013 Netherlands eScience Center
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * Registry of render loop metrics: timings per frame and per phase of a frame,
+ * kept in lock-free {@link Histogram}s, and counters for the work done. The
+ * library records into the shared registry of {@link #getInstance()}, which is
+ * also the registry of every {@link nl.esciencecenter.neon.NeonGLEventListener}
+ * (see its getFrameMetrics method).
+ * 
+ * Frame and swap times are recorded by {@link FrameTimingListener}s around the
+ * application's listener, which {@link nl.esciencecenter.neon.NeonNewtWindow}
+ * adds automatically. Other phases are timed by the application, or by the
+ * library where it can do so itself (uniform uploads, draw calls and texture
+ * uploads):
+ * 
+ * <pre>
+ * long start = metrics.begin();
+ * // draw the scene
+ * metrics.end(Phase.DRAW, start);
+ * </pre>
+ * 
+ * Phases may be nested, each is timed on its own.
+ * 
+ * Next to the fixed CPU phases, the metrics keep the GPU time of named scopes,
+ * such as render passes, as measured by a {@link GpuProfiler} and recorded with
+ * {@link #recordGpu(String, long)}.
+ * 
+ * Reporters added with {@link #addReporter(FrameMetricsReporter)} receive a
+ * {@link FrameMetricsSnapshot} every report interval, on the rendering thread,
+ * after which the metrics are reset. Snapshots can also be taken at any time
+ * from any thread with {@link #snapshot()}.
+ * 
+ * The metrics are disabled by default, or enabled with the system property
+ * neon.metrics=true. When disabled, every call returns after reading a single
+ * volatile flag.
+ * 
+ * @author Maarten van Meersbergen <m.van.meersbergen@esciencecenter.nl>
+ * 
+ */
+public class FrameMetrics {
+    /** The timed phases of a frame. */
+    public enum Phase {
+        /** The whole frame, from the start of one frame to the start of the next. */
+        FRAME,
+        /** Updating the scene: animation, input, data. */
+        SCENE_UPDATE,
+        /** Uploading uniforms to shader programs. */
+        UNIFORM_UPLOAD,
+        /** Drawing the scene. */
+        DRAW,
+        /** Post processing, such as blurring and compositing render targets. */
+        POST_PROCESS,
+        /** Swapping the buffers, including any wait for vertical sync. */
+        SWAP
+    }
+
+    /** The counted events. */
+    public enum Counter {
+        /** Draw calls (glDrawArrays, glDrawElements). */
+        DRAW_CALLS,
+        /** Vertices (or indices) submitted in draw calls. */
+        VERTICES,
+        /** Texture uploads (glTexImage, glTexSubImage). */
+        TEXTURE_UPLOADS,
+        /**
+         * Program, texture and vertex array binds issued by a
+         * {@link nl.esciencecenter.neon.render.RenderQueue}.
+         */
+        STATE_CHANGES
+    }
+
+    /** The default report interval. */
+    public static final long DEFAULT_REPORT_INTERVAL_MILLIS = 1000L;
+
+    private static final Phase[] PHASES = Phase.values();
+    private static final Counter[] COUNTERS = Counter.values();
+
+    private volatile boolean enabled;
+
+    private final Histogram[] histograms;
+    private final AtomicLongArray counters;
+    private final ConcurrentMap<String, Histogram> gpuHistograms = new ConcurrentHashMap<String, Histogram>();
+
+    private final List<FrameMetricsReporter> reporters = new CopyOnWriteArrayList<FrameMetricsReporter>();
+    private volatile long reportIntervalNanos = TimeUnit.MILLISECONDS.toNanos(DEFAULT_REPORT_INTERVAL_MILLIS);
+    private volatile long intervalStart;
+
+    // Only used on the rendering thread
+    private long frameStart;
+    private long renderedAt;
+
+    private static class SingletonHolder {
+        public static final FrameMetrics INSTANCE = new FrameMetrics();
+    }
+
+    /**
+     * Access point for the shared registry, used by the library itself to
+     * count draw calls and uploads, and the default registry of every
+     * {@link nl.esciencecenter.neon.NeonGLEventListener}.
+     * 
+     * @return The shared registry.
+     */
+    public static FrameMetrics getInstance() {
+        return SingletonHolder.INSTANCE;
+    }
+
+    /**
+     * Constructor for a separate registry, disabled unless the system property
+     * neon.metrics is true.
+     */
+    public FrameMetrics() {
+        histograms = new Histogram[PHASES.length];
+        for (int i = 0; i < histograms.length; i++) {
+            histograms[i] = new Histogram();
+        }
+        counters = new AtomicLongArray(COUNTERS.length);
+
+        enabled = Boolean.getBoolean("neon.metrics");
+    }
+
+    /**
+     * Starts timing a phase.
+     * 
+     * @return The start time, to be passed to {@link #end(Phase, long)}.
+     */
+    public long begin() {
+        return enabled ? System.nanoTime() : 0L;
+    }
+
+    /**
+     * Records the time since the given start time for a phase.
+     * 
+     * @param phase
+     *            The phase that was timed.
+     * @param begin
+     *            The start time, as returned by {@link #begin()}.
+     */
+    public void end(Phase phase, long begin) {
+        if (enabled && begin != 0L) {
+            histograms[phase.ordinal()].record(System.nanoTime() - begin);
+        }
+    }
+
+    /**
+     * Records a duration for a phase that was timed elsewhere.
+     * 
+     * @param phase
+     *            The phase that was timed.
+     * @param nanos
+     *            The duration in nanoseconds.
+     */
+    public void record(Phase phase, long nanos) {
+        if (enabled) {
+            histograms[phase.ordinal()].record(nanos);
+        }
+    }
+
+    /**
+     * Records the GPU time of a named scope.
+     * 
+     * @param scope
+     *            The name of the scope, such as a render pass.
+     * @param nanos
+     *            The duration in nanoseconds.
+     */
+    public void recordGpu(String scope, long nanos) {
+        if (enabled) {
+            Histogram histogram = gpuHistograms.get(scope);
+            if (histogram == null) {
+                Histogram newHistogram = new Histogram();
+                histogram = gpuHistograms.putIfAbsent(scope, newHistogram);
+                if (histogram == null) {
+                    histogram = newHistogram;
+                }
+            }
+            histogram.record(nanos);
+        }
+    }
+
+    /**
+     * Adds to a counter.
+     * 
+     * @param counter
+     *            The counter to add to.
+     * @param amount
+     *            The amount to add.
+     */
+    public void count(Counter counter, long amount) {
+        if (enabled) {
+            counters.addAndGet(counter.ordinal(), amount);
+        }
+    }
+
+    /**
+     * Counts a draw call and the number of vertices it submitted.
+     * 
+     * @param vertices
+     *            The number of vertices, or indices for indexed drawing.
+     */
+    public void countDraw(int vertices) {
+        if (enabled) {
+            counters.incrementAndGet(Counter.DRAW_CALLS.ordinal());
+            counters.addAndGet(Counter.VERTICES.ordinal(), vertices);
+        }
+    }
+
+    /**
+     * Marks the start of a frame, which ends the previous frame and its swap
+     * phase. Sends a report to the reporters if the report interval has
+     * passed. To be called on the rendering thread, before anything is drawn.
+     */
+    public void frameStarted() {
+        if (!enabled) {
+            frameStart = 0L;
+            renderedAt = 0L;
+            return;
+        }
+
+        long now = System.nanoTime();
+        if (frameStart != 0L) {
+            histograms[Phase.FRAME.ordinal()].record(now - frameStart);
+        }
+        if (renderedAt != 0L) {
+            histograms[Phase.SWAP.ordinal()].record(now - renderedAt);
+        }
+        frameStart = now;
+        renderedAt = 0L;
+
+        if (intervalStart == 0L) {
+            intervalStart = now;
+        } else if (!reporters.isEmpty() && now - intervalStart >= reportIntervalNanos) {
+            FrameMetricsSnapshot snapshot = snapshotAndReset();
+            for (FrameMetricsReporter reporter : reporters) {
+                reporter.report(snapshot);
+            }
+        }
+    }
+
+    /**
+     * Marks the end of the rendering of a frame, which starts its swap phase.
+     * To be called on the rendering thread, after everything is drawn.
+     */
+    public void frameRendered() {
+        if (enabled) {
+            renderedAt = System.nanoTime();
+        }
+    }
+
+    /**
+     * Takes a snapshot of the metrics since the last reset.
+     * 
+     * @return the snapshot.
+     */
+    public synchronized FrameMetricsSnapshot snapshot() {
+        long now = System.nanoTime();
+        long start = intervalStart == 0L ? now : intervalStart;
+        return new FrameMetricsSnapshot(now - start, histograms, counters, gpuHistograms);
+    }
+
+    /**
+     * Takes a snapshot of the metrics since the last reset, and resets them.
+     * 
+     * @return the snapshot.
+     */
+    public synchronized FrameMetricsSnapshot snapshotAndReset() {
+        FrameMetricsSnapshot result = snapshot();
+        reset();
+        return result;
+    }
+
+    /**
+     * Clears all timings and counters, and starts a new report interval.
+     */
+    public synchronized void reset() {
+        for (Histogram histogram : histograms) {
+            histogram.reset();
+        }
+        for (Histogram histogram : gpuHistograms.values()) {
+            histogram.reset();
+        }
+        for (int i = 0; i < COUNTERS.length; i++) {
+            counters.set(i, 0L);
+        }
+        intervalStart = enabled ? System.nanoTime() : 0L;
+    }
+
+    /**
+     * Adds a reporter, which receives a snapshot every report interval.
+     * 
+     * @param reporter
+     *            The reporter to add.
+     */
+    public void addReporter(FrameMetricsReporter reporter) {
+        reporters.add(reporter);
+    }
+
+    /**
+     * Removes a reporter.
+     * 
+     * @param reporter
+     *            The reporter to remove.
+     */
+    public void removeReporter(FrameMetricsReporter reporter) {
+        reporters.remove(reporter);
+    }
+
+    /**
+     * Setter for the report interval.
+     * 
+     * @param millis
+     *            The time between reports, in milliseconds.
+     */
+    public void setReportInterval(long millis) {
+        if (millis <= 0) {
+            throw new IllegalArgumentException("The report interval should be positive.");
+        }
+        reportIntervalNanos = TimeUnit.MILLISECONDS.toNanos(millis);
+    }
+
+    /**
+     * Getter for the report interval.
+     * 
+     * @return the time between reports, in milliseconds.
+     */
+    public long getReportInterval() {
+        return TimeUnit.NANOSECONDS.toMillis(reportIntervalNanos);
+    }
+
+    /**
+     * Switches the metrics on or off. Switching them on starts a new report
+     * interval.
+     * 
+     * @param enabled
+     *            true to record metrics.
+     */
+    public void setEnabled(boolean enabled) {
+        if (enabled && !this.enabled) {
+            this.enabled = true;
+            reset();
+        } else {
+            this.enabled = enabled;
+        }
+    }
+
+    /**
+     * Check whether the metrics are recorded.
+     * 
+     * @return true if enabled.
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Getter for the histogram of a phase, for direct inspection.
+     * 
+     * @param phase
+     *            The phase.
+     * @return the histogram of durations in nanoseconds.
+     */
+    public Histogram getHistogram(Phase phase) {
+        return histograms[phase.ordinal()];
+    }
+
+    /**
+     * Getter for the histogram of the GPU time of a named scope, for direct
+     * inspection.
+     * 
+     * @param scope
+     *            The name of the scope.
+     * @return the histogram of durations in nanoseconds, or null if the scope
+     *         was never recorded.
+     */
+    public Histogram getGpuHistogram(String scope) {
+        return gpuHistograms.get(scope);
+    }
+
+    /**
+     * Getter for the current value of a counter.
+     * 
+     * @param counter
+     *            The counter.
+     * @return its value since the last reset.
+     */
+    public long getCount(Counter counter) {
+        return counters.get(counter.ordinal());
+    }
+}
@@ -0,0 +1,34 @@
+package nl.esciencecenter.neon.metrics;
+
+/* Copyright 2013 Netherlands eScience Center
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * Receiver of periodic {@link FrameMetricsSnapshot}s, such as a HUD or a log
+ * writer. Register with {@link FrameMetrics#addReporter(FrameMetricsReporter)}.
+ * 
+ * @author Maarten van Meersbergen <m.van.meersbergen@esciencecenter.nl>
+ * 
+ */
+public interface FrameMetricsReporter {
+    /**
+     * Called every report interval on the rendering thread, so
+     * implementations should return quickly.
+     * 
+     * @param snapshot
+     *            The metrics of the last interval.
+     */
+    void report(FrameMetricsSnapshot snapshot);
+}
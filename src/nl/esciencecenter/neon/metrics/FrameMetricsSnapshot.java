@@ -0,0 +1,315 @@
+package nl.esciencecenter.neon.metrics;
+
+import java.util.Collections;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import nl.esciencecenter.neon.metrics.FrameMetrics.Counter;
+import nl.esciencecenter.neon.metrics.FrameMetrics.Phase;
+
+/* Copyright 2013 Netherlands eScience Center
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * Immutable summary of the {@link FrameMetrics} over an interval: per phase
+ * the number of samples, mean, median, 95th and 99th percentile and maximum
+ * duration, the same for the GPU time of every named scope that was recorded,
+ * and the totals of the counters.
+ * 
+ * @author Maarten van Meersbergen <m.van.meersbergen@esciencecenter.nl>
+ * 
+ */
+public final class FrameMetricsSnapshot {
+    private static final double NANOS_PER_MILLI = 1E6;
+    private static final double NANOS_PER_SECOND = 1E9;
+
+    /** The summary of one histogram. */
+    private static final class Stats {
+        private static final Stats EMPTY = new Stats(new Histogram());
+
+        private final long samples;
+        private final double mean;
+        private final long median;
+        private final long percentile95;
+        private final long percentile99;
+        private final long max;
+
+        private Stats(Histogram histogram) {
+            samples = histogram.getCount();
+            mean = histogram.getMean();
+            median = histogram.getPercentile(50.0);
+            percentile95 = histogram.getPercentile(95.0);
+            percentile99 = histogram.getPercentile(99.0);
+            max = histogram.getMax();
+        }
+    }
+
+    private final long intervalNanos;
+
+    private final Stats[] phases;
+    private final Map<String, Stats> gpuScopes;
+
+    private final long[] counters;
+
+    FrameMetricsSnapshot(long intervalNanos, Histogram[] histograms, AtomicLongArray counters,
+            Map<String, Histogram> gpuHistograms) {
+        this.intervalNanos = intervalNanos;
+
+        phases = new Stats[histograms.length];
+        for (int i = 0; i < phases.length; i++) {
+            phases[i] = new Stats(histograms[i]);
+        }
+
+        Map<String, Stats> scopes = new TreeMap<String, Stats>();
+        for (Entry<String, Histogram> entry : gpuHistograms.entrySet()) {
+            if (entry.getValue().getCount() > 0) {
+                scopes.put(entry.getKey(), new Stats(entry.getValue()));
+            }
+        }
+        gpuScopes = Collections.unmodifiableMap(scopes);
+
+        this.counters = new long[counters.length()];
+        for (int i = 0; i < this.counters.length; i++) {
+            this.counters[i] = counters.get(i);
+        }
+    }
+
+    /**
+     * Getter for the length of the interval covered by this snapshot.
+     * 
+     * @return the interval, in nanoseconds.
+     */
+    public long getIntervalNanos() {
+        return intervalNanos;
+    }
+
+    /**
+     * Getter for the number of completed frames in the interval.
+     * 
+     * @return the number of frames.
+     */
+    public long getFrames() {
+        return phases[Phase.FRAME.ordinal()].samples;
+    }
+
+    /**
+     * Getter for the average frame rate over the interval.
+     * 
+     * @return the frames per second, or 0 for an empty interval.
+     */
+    public double getFramesPerSecond() {
+        return intervalNanos <= 0 ? 0.0 : getFrames() * NANOS_PER_SECOND / intervalNanos;
+    }
+
+    /**
+     * Getter for the number of times a phase was timed.
+     * 
+     * @param phase
+     *            The phase.
+     * @return the number of samples.
+     */
+    public long getSamples(Phase phase) {
+        return phases[phase.ordinal()].samples;
+    }
+
+    /**
+     * Getter for the mean duration of a phase.
+     * 
+     * @param phase
+     *            The phase.
+     * @return the mean, in milliseconds.
+     */
+    public double getMeanMillis(Phase phase) {
+        return phases[phase.ordinal()].mean / NANOS_PER_MILLI;
+    }
+
+    /**
+     * Getter for the median duration of a phase.
+     * 
+     * @param phase
+     *            The phase.
+     * @return the median, in milliseconds.
+     */
+    public double getMedianMillis(Phase phase) {
+        return phases[phase.ordinal()].median / NANOS_PER_MILLI;
+    }
+
+    /**
+     * Getter for the 95th percentile of the duration of a phase.
+     * 
+     * @param phase
+     *            The phase.
+     * @return the 95th percentile, in milliseconds.
+     */
+    public double getPercentile95Millis(Phase phase) {
+        return phases[phase.ordinal()].percentile95 / NANOS_PER_MILLI;
+    }
+
+    /**
+     * Getter for the 99th percentile of the duration of a phase.
+     * 
+     * @param phase
+     *            The phase.
+     * @return the 99th percentile, in milliseconds.
+     */
+    public double getPercentile99Millis(Phase phase) {
+        return phases[phase.ordinal()].percentile99 / NANOS_PER_MILLI;
+    }
+
+    /**
+     * Getter for the longest duration of a phase.
+     * 
+     * @param phase
+     *            The phase.
+     * @return the maximum, in milliseconds.
+     */
+    public double getMaxMillis(Phase phase) {
+        return phases[phase.ordinal()].max / NANOS_PER_MILLI;
+    }
+
+    /**
+     * Getter for the names of the GPU scopes recorded in the interval.
+     * 
+     * @return the scope names, in alphabetical order.
+     */
+    public Set<String> getGpuScopes() {
+        return gpuScopes.keySet();
+    }
+
+    private Stats gpuStats(String scope) {
+        Stats result = gpuScopes.get(scope);
+        return result == null ? Stats.EMPTY : result;
+    }
+
+    /**
+     * Getter for the number of times a GPU scope was timed.
+     * 
+     * @param scope
+     *            The name of the scope.
+     * @return the number of samples, 0 for an unknown scope.
+     */
+    public long getGpuSamples(String scope) {
+        return gpuStats(scope).samples;
+    }
+
+    /**
+     * Getter for the mean GPU time of a scope.
+     * 
+     * @param scope
+     *            The name of the scope.
+     * @return the mean, in milliseconds.
+     */
+    public double getGpuMeanMillis(String scope) {
+        return gpuStats(scope).mean / NANOS_PER_MILLI;
+    }
+
+    /**
+     * Getter for the median GPU time of a scope.
+     * 
+     * @param scope
+     *            The name of the scope.
+     * @return the median, in milliseconds.
+     */
+    public double getGpuMedianMillis(String scope) {
+        return gpuStats(scope).median / NANOS_PER_MILLI;
+    }
+
+    /**
+     * Getter for the 95th percentile of the GPU time of a scope.
+     * 
+     * @param scope
+     *            The name of the scope.
+     * @return the 95th percentile, in milliseconds.
+     */
+    public double getGpuPercentile95Millis(String scope) {
+        return gpuStats(scope).percentile95 / NANOS_PER_MILLI;
+    }
+
+    /**
+     * Getter for the 99th percentile of the GPU time of a scope.
+     * 
+     * @param scope
+     *            The name of the scope.
+     * @return the 99th percentile, in milliseconds.
+     */
+    public double getGpuPercentile99Millis(String scope) {
+        return gpuStats(scope).percentile99 / NANOS_PER_MILLI;
+    }
+
+    /**
+     * Getter for the longest GPU time of a scope.
+     * 
+     * @param scope
+     *            The name of the scope.
+     * @return the maximum, in milliseconds.
+     */
+    public double getGpuMaxMillis(String scope) {
+        return gpuStats(scope).max / NANOS_PER_MILLI;
+    }
+
+    /**
+     * Getter for the total of a counter over the interval.
+     * 
+     * @param counter
+     *            The counter.
+     * @return the total.
+     */
+    public long getCount(Counter counter) {
+        return counters[counter.ordinal()];
+    }
+
+    /**
+     * Getter for the average of a counter per frame.
+     * 
+     * @param counter
+     *            The counter.
+     * @return the total divided by the number of frames, or the total if no
+     *         frames were completed.
+     */
+    public double getCountPerFrame(Counter counter) {
+        long frames = getFrames();
+        return frames == 0 ? getCount(counter) : getCount(counter) / (double) frames;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder result = new StringBuilder();
+        result.append(String.format(Locale.US, "%d frames in %.0f ms (%.1f fps)", getFrames(), intervalNanos
+                / NANOS_PER_MILLI, getFramesPerSecond()));
+        for (Phase phase : Phase.values()) {
+            if (getSamples(phase) > 0) {
+                result.append(String.format(Locale.US,
+                        "%n  %-14s n=%-6d mean=%7.3f p50=%7.3f p95=%7.3f p99=%7.3f max=%7.3f ms", phase,
+                        getSamples(phase), getMeanMillis(phase), getMedianMillis(phase), getPercentile95Millis(phase),
+                        getPercentile99Millis(phase), getMaxMillis(phase)));
+            }
+        }
+        for (String scope : getGpuScopes()) {
+            result.append(String.format(Locale.US,
+                    "%n  gpu %-10s n=%-6d mean=%7.3f p50=%7.3f p95=%7.3f p99=%7.3f max=%7.3f ms", scope,
+                    getGpuSamples(scope), getGpuMeanMillis(scope), getGpuMedianMillis(scope),
+                    getGpuPercentile95Millis(scope), getGpuPercentile99Millis(scope), getGpuMaxMillis(scope)));
+        }
+        for (Counter counter : Counter.values()) {
+            result.append(String.format(Locale.US, "%n  %-14s %d (%.1f per frame)", counter, getCount(counter),
+                    getCountPerFrame(counter)));
+        }
+        return result.toString();
+    }
+}
@@ -0,0 +1,95 @@
+package nl.esciencecenter.neon.metrics;
+
+import javax.media.opengl.GLAutoDrawable;
+import javax.media.opengl.GLEventListener;
+
+/* Copyright 2013 Netherlands eScience Center
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * GLEventListener that marks the start or the end of a frame in a
+ * {@link FrameMetrics} registry. Add one marking the start before the
+ * application's listener, and one marking the end after it, as
+ * {@link nl.esciencecenter.neon.NeonNewtWindow} does. If a {@link GpuProfiler}
+ * is given, its frames are started and ended as well.
+ * 
+ * @author Maarten van Meersbergen <m.van.meersbergen@esciencecenter.nl>
+ * 
+ */
+public class FrameTimingListener implements GLEventListener {
+    private final FrameMetrics metrics;
+    private final GpuProfiler gpuProfiler;
+    private final boolean frameStart;
+
+    /**
+     * Constructor.
+     * 
+     * @param metrics
+     *            The registry to record the frame timings in.
+     * @param frameStart
+     *            true to mark the start of a frame, false to mark the end.
+     */
+    public FrameTimingListener(FrameMetrics metrics, boolean frameStart) {
+        this(metrics, null, frameStart);
+    }
+
+    /**
+     * Constructor for a listener that also drives a GPU profiler.
+     * 
+     * @param metrics
+     *            The registry to record the frame timings in.
+     * @param gpuProfiler
+     *            The profiler to start and end frames of, or null.
+     * @param frameStart
+     *            true to mark the start of a frame, false to mark the end.
+     */
+    public FrameTimingListener(FrameMetrics metrics, GpuProfiler gpuProfiler, boolean frameStart) {
+        this.metrics = metrics;
+        this.gpuProfiler = gpuProfiler;
+        this.frameStart = frameStart;
+    }
+
+    @Override
+    public void init(GLAutoDrawable drawable) {
+        // Nothing to initialize.
+    }
+
+    @Override
+    public void display(GLAutoDrawable drawable) {
+        if (frameStart) {
+            metrics.frameStarted();
+            if (gpuProfiler != null) {
+                gpuProfiler.frameStarted(drawable.getGL().getGL3());
+            }
+        } else {
+            if (gpuProfiler != null) {
+                gpuProfiler.frameEnded();
+            }
+            metrics.frameRendered();
+        }
+    }
+
+    @Override
+    public void reshape(GLAutoDrawable drawable, int x, int y, int width, int height) {
+        // Not needed.
+    }
+
+    @Override
+    public void dispose(GLAutoDrawable drawable) {
+        if (frameStart && gpuProfiler != null) {
+            gpuProfiler.delete(drawable.getGL().getGL3());
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package nl.esciencecenter.neon.metrics;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.media.opengl.GL3;
+
+/* Copyright 2013 Netherlands eScience Center
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * Wrapper around a {@link GL3} instance that counts every OpenGL call made
+ * through it, by method name. Meant for measuring, in tests or while
+ * profiling, how many calls a piece of rendering code makes: pass
+ * {@link #getGL()} instead of the real instance, and read the counts
+ * afterwards.
+ * 
+ * <pre>
+ * GLCallCounter counter = new GLCallCounter(gl);
+ * model.draw(counter.getGL(), program);
+ * logger.info(counter.toString());
+ * </pre>
+ * 
+ * The wrapper is a dynamic proxy, so every call is considerably slower than a
+ * direct one; it should not be left in place in production. Calls to getGL3
+ * and the like return the wrapper, so they keep being counted.
+ * 
+ * @author Maarten van Meersbergen <m.van.meersbergen@esciencecenter.nl>
+ * 
+ */
+public class GLCallCounter implements InvocationHandler {
+    private final GL3 gl;
+    private final GL3 counted;
+    private final ConcurrentMap<String, AtomicLong> counts = new ConcurrentHashMap<String, AtomicLong>();
+
+    /**
+     * Constructor.
+     * 
+     * @param gl
+     *            The OpenGL instance to forward the calls to.
+     */
+    public GLCallCounter(GL3 gl) {
+        this.gl = gl;
+        this.counted = (GL3) Proxy.newProxyInstance(GL3.class.getClassLoader(), new Class<?>[] { GL3.class }, this);
+    }
+
+    /**
+     * Getter for the counting OpenGL instance.
+     * 
+     * @return the wrapper, to be used instead of the original instance.
+     */
+    public GL3 getGL() {
+        return counted;
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        Object result;
+        try {
+            result = method.invoke(gl, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+
+        if (method.getDeclaringClass() != Object.class) {
+            AtomicLong count = counts.get(method.getName());
+            if (count == null) {
+                AtomicLong newCount = new AtomicLong();
+                count = counts.putIfAbsent(method.getName(), newCount);
+                if (count == null) {
+                    count = newCount;
+                }
+            }
+            count.incrementAndGet();
+        }
+
+        return result == gl ? counted : result;
+    }
+
+    /**
+     * Getter for the number of calls to one OpenGL method, over all its
+     * overloads.
+     * 
+     * @param name
+     *            The method name, for example "glVertexAttribPointer".
+     * @return the number of calls since the last reset.
+     */
+    public long getCalls(String name) {
+        AtomicLong count = counts.get(name);
+        return count == null ? 0L : count.get();
+    }
+
+    /**
+     * Getter for the total number of OpenGL calls.
+     * 
+     * @return the number of calls since the last reset.
+     */
+    public long getTotalCalls() {
+        long total = 0L;
+        for (AtomicLong count : counts.values()) {
+            total += count.get();
+        }
+        return total;
+    }
+
+    /**
+     * Getter for the number of draw calls (all methods starting with glDraw).
+     * 
+     * @return the number of draw calls since the last reset.
+     */
+    public long getDrawCalls() {
+        long total = 0L;
+        for (Map.Entry<String, AtomicLong> entry : counts.entrySet()) {
+            if (entry.getKey().startsWith("glDraw")) {
+                total += entry.getValue().get();
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Getter for all counts.
+     * 
+     * @return a copy of the counts per method name, sorted by name.
+     */
+    public Map<String, Long> getCounts() {
+        Map<String, Long> result = new TreeMap<String, Long>();
+        for (Map.Entry<String, AtomicLong> entry : counts.entrySet()) {
+            result.put(entry.getKey(), entry.getValue().get());
+        }
+        return result;
+    }
+
+    /**
+     * Sets all counts back to zero.
+     */
+    public void reset() {
+        counts.clear();
+    }
+
+    @Override
+    public String toString() {
+        return "GLCallCounter [total=" + getTotalCalls() + ", draws=" + getDrawCalls() + ", calls=" + getCounts()
+                + "]";
+    }
+}
@@ -0,0 +1,275 @@
+package nl.esciencecenter.neon.metrics;
+
+import java.util.Arrays;
+
+import javax.media.opengl.GL3;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/* Copyright 2013 Netherlands eScience Center
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * Measures the GPU time of named scopes, such as render passes, with OpenGL
+ * timestamp queries, and records it in a {@link FrameMetrics} registry with
+ * {@link FrameMetrics#recordGpu(String, long)}. CPU timings cannot show which
+ * pass keeps the GPU busy, because OpenGL calls return long before the GPU has
+ * done the work.
+ * 
+ * <pre>
+ * profiler.begin(gl, &quot;atmosphere&quot;);
+ * // draw the atmosphere
+ * profiler.end(gl);
+ * </pre>
+ * 
+ * Scopes may be nested, each is timed on its own. A timestamp is written into
+ * a query object at the start and at the end of every scope (rather than a
+ * GL_TIME_ELAPSED query, of which only one can be active at a time). Waiting
+ * for the results would stall the CPU until the GPU catches up, so the queries
+ * of each frame are kept in a small ring, and read back when their slot comes
+ * around again, a few frames later. If the GPU is lagging even further behind
+ * and the results are not available yet, that frame's timings are dropped
+ * rather than waited for.
+ * 
+ * {@link #frameStarted(GL3)} and {@link #frameEnded()} are called around every
+ * frame by the {@link FrameTimingListener}s that
+ * {@link nl.esciencecenter.neon.NeonNewtWindow} adds. Outside a frame, or while
+ * the metrics are disabled, begin and end do nothing. All methods must be
+ * called on the rendering thread, with the OpenGL context current.
+ * 
+ * @author Maarten van Meersbergen <m.van.meersbergen@esciencecenter.nl>
+ * 
+ */
+public class GpuProfiler {
+    private final static Logger logger = LoggerFactory.getLogger(GpuProfiler.class);
+
+    /** The default number of frames in the ring. */
+    public static final int DEFAULT_LATENCY = 3;
+    /** The maximum depth of nested scopes. */
+    public static final int MAX_DEPTH = 16;
+
+    /** The queries of one frame, two per scope. */
+    private static final class Frame {
+        private int[] queries = new int[0];
+        private String[] scopes = new String[0];
+        private int used = 0;
+        private int last = -1;
+        private boolean pending = false;
+    }
+
+    private final FrameMetrics metrics;
+    private final Frame[] ring;
+    private final int[] stack = new int[MAX_DEPTH];
+    private final int[] available = new int[1];
+    private final long[] timestamps = new long[2];
+
+    private Frame current = null;
+    private int depth = 0;
+    private long frames = 0;
+    private long droppedFrames = 0;
+
+    /**
+     * Constructor with the default latency.
+     * 
+     * @param metrics
+     *            The registry to record the GPU times in.
+     */
+    public GpuProfiler(FrameMetrics metrics) {
+        this(metrics, DEFAULT_LATENCY);
+    }
+
+    /**
+     * Constructor.
+     * 
+     * @param metrics
+     *            The registry to record the GPU times in.
+     * @param latency
+     *            The number of frames in the ring, at least 2. Results are read
+     *            back this many frames after they were measured.
+     */
+    public GpuProfiler(FrameMetrics metrics, int latency) {
+        if (latency < 2) {
+            throw new IllegalArgumentException("The latency should be at least 2 frames.");
+        }
+        this.metrics = metrics;
+        ring = new Frame[latency];
+        for (int i = 0; i < latency; i++) {
+            ring[i] = new Frame();
+        }
+    }
+
+    /**
+     * Starts a frame: reads back the results of the frame that used the next
+     * slot of the ring, if they are available, and starts recording into it.
+     * 
+     * @param gl
+     *            The opengl instance.
+     */
+    public void frameStarted(GL3 gl) {
+        if (!metrics.isEnabled()) {
+            current = null;
+            return;
+        }
+
+        Frame frame = ring[(int) (frames % ring.length)];
+        if (frame.pending && !collect(gl, frame)) {
+            droppedFrames++;
+        }
+        frame.pending = false;
+        frame.used = 0;
+        frame.last = -1;
+
+        current = frame;
+        depth = 0;
+        frames++;
+    }
+
+    /**
+     * Ends the frame started with {@link #frameStarted(GL3)}. Its results are
+     * read back when its slot in the ring is reused.
+     */
+    public void frameEnded() {
+        if (current == null) {
+            return;
+        }
+        if (depth != 0) {
+            logger.warn("GPU profiler scope " + current.scopes[stack[depth - 1]]
+                    + " was never ended, dropping this frame.");
+            droppedFrames++;
+        } else {
+            current.pending = current.used > 0;
+        }
+        current = null;
+        depth = 0;
+    }
+
+    /**
+     * Starts timing a scope.
+     * 
+     * @param gl
+     *            The opengl instance.
+     * @param scope
+     *            The name of the scope, such as a render pass.
+     */
+    public void begin(GL3 gl, String scope) {
+        if (current == null) {
+            return;
+        }
+        if (depth == MAX_DEPTH) {
+            throw new IllegalStateException("GPU profiler scopes nested deeper than " + MAX_DEPTH);
+        }
+
+        Frame frame = current;
+        if (frame.used == frame.scopes.length) {
+            grow(gl, frame);
+        }
+        int index = frame.used++;
+        frame.scopes[index] = scope;
+        gl.glQueryCounter(frame.queries[2 * index], GL3.GL_TIMESTAMP);
+        stack[depth++] = index;
+    }
+
+    /**
+     * Ends timing the innermost scope.
+     * 
+     * @param gl
+     *            The opengl instance.
+     */
+    public void end(GL3 gl) {
+        if (current == null) {
+            return;
+        }
+        if (depth == 0) {
+            throw new IllegalStateException("GPU profiler end without a matching begin");
+        }
+
+        // With nested scopes the end query of the last scope begun is not the
+        // last query issued, the enclosing scopes end after it.
+        int index = stack[--depth];
+        current.last = 2 * index + 1;
+        gl.glQueryCounter(current.queries[current.last], GL3.GL_TIMESTAMP);
+    }
+
+    private static void grow(GL3 gl, Frame frame) {
+        int oldScopes = frame.scopes.length;
+        int newScopes = Math.max(4, oldScopes * 2);
+
+        frame.scopes = Arrays.copyOf(frame.scopes, newScopes);
+        frame.queries = Arrays.copyOf(frame.queries, 2 * newScopes);
+        gl.glGenQueries(2 * (newScopes - oldScopes), frame.queries, 2 * oldScopes);
+    }
+
+    /**
+     * Reads back the timestamps of a frame, if the last one issued is
+     * available. Queries complete in order, so then all of them are.
+     * 
+     * @return true if the results were recorded.
+     */
+    private boolean collect(GL3 gl, Frame frame) {
+        gl.glGetQueryObjectiv(frame.queries[frame.last], GL3.GL_QUERY_RESULT_AVAILABLE, available, 0);
+        if (available[0] == GL3.GL_FALSE) {
+            return false;
+        }
+
+        for (int i = 0; i < frame.used; i++) {
+            gl.glGetQueryObjecti64v(frame.queries[2 * i], GL3.GL_QUERY_RESULT, timestamps, 0);
+            gl.glGetQueryObjecti64v(frame.queries[2 * i + 1], GL3.GL_QUERY_RESULT, timestamps, 1);
+            metrics.recordGpu(frame.scopes[i], timestamps[1] - timestamps[0]);
+            frame.scopes[i] = null;
+        }
+        return true;
+    }
+
+    /**
+     * Deletes all query objects. The profiler can be used again afterwards.
+     * 
+     * @param gl
+     *            The opengl instance.
+     */
+    public void delete(GL3 gl) {
+        for (Frame frame : ring) {
+            if (frame.queries.length > 0) {
+                gl.glDeleteQueries(frame.queries.length, frame.queries, 0);
+            }
+            frame.queries = new int[0];
+            frame.scopes = new String[0];
+            frame.used = 0;
+            frame.last = -1;
+            frame.pending = false;
+        }
+        current = null;
+        depth = 0;
+    }
+
+    /**
+     * Getter for the number of frames in the ring.
+     * 
+     * @return the latency, in frames, of the results.
+     */
+    public int getLatency() {
+        return ring.length;
+    }
+
+    /**
+     * Getter for the number of frames whose results were dropped, because they
+     * were not available in time or a scope was left open.
+     * 
+     * @return the number of dropped frames.
+     */
+    public long getDroppedFrames() {
+        return droppedFrames;
+    }
+}
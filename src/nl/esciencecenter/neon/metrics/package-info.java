@@ -0,0 +1,5 @@
+/**
+ * Lightweight instrumentation of the render loop: frame and phase timings,
+ * counters and periodic reports.
+ */
+package nl.esciencecenter.neon.metrics;
\ No newline at end of file
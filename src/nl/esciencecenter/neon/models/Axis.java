@@ -1,8 +1,6 @@
 package nl.esciencecenter.neon.models;
 
 import nl.esciencecenter.neon.math.Float3Vector;
-import nl.esciencecenter.neon.math.Float4Vector;
-import nl.esciencecenter.neon.math.FloatVectorMath;
 
 /* Copyright [2013] [Netherlands eScience Center]
  * 
@@ -42,94 +40,74 @@ public class Axis extends Model {
     public Axis(Float3Vector start, Float3Vector end, float majorInterval, float minorInterval) {
         super(VertexFormat.LINES);
 
-        float length = FloatVectorMath.length(end.sub(start));
+        float dx = end.getX() - start.getX();
+        float dy = end.getY() - start.getY();
+        float dz = end.getZ() - start.getZ();
+
+        float length = (float) Math.sqrt(dx * dx + dy * dy + dz * dz);
         int numMajorIntervals = (int) Math.floor(length / majorInterval);
         int numMinorIntervals = (int) Math.floor(length / minorInterval);
 
-        int numVertices = 2 + (numMajorIntervals * 2) - 4 + (numMinorIntervals * 2) - 4;
-
-        Float4Vector[] points = new Float4Vector[numVertices];
-        Float3Vector[] normals = new Float3Vector[numVertices];
-        Float3Vector[] tCoords = new Float3Vector[numVertices];
-
-        int arrayindex = 0;
-        points[0] = new Float4Vector(start, 1f);
-        points[1] = new Float4Vector(end, 1f);
-
-        normals[0] = FloatVectorMath.normalize(start).neg();
-        normals[1] = FloatVectorMath.normalize(end).neg();
+        MeshBuilder builder = new MeshBuilder(2 + (numMajorIntervals * 2) + (numMinorIntervals * 2));
 
-        tCoords[0] = new Float3Vector(0, 0, 0);
-        tCoords[1] = new Float3Vector(1, 1, 1);
+        builder.position(start.getX(), start.getY(), start.getZ())
+                .normalized(-start.getX(), -start.getY(), -start.getZ()).texCoord(0, 0, 0);
+        builder.position(end.getX(), end.getY(), end.getZ()).normalized(-end.getX(), -end.getY(), -end.getZ())
+                .texCoord(1, 1, 1);
 
-        arrayindex += 2;
+        float vx = dx / length;
+        float vy = dy / length;
+        float vz = dz / length;
 
-        Float3Vector perpendicular;
-        Float3Vector vec = FloatVectorMath.normalize((end.sub(start)));
-        if (vec.getX() > 0.5f) {
-            perpendicular = new Float3Vector(0f, 0f, 1f);
-        } else if (vec.getY() > 0.5f) {
-            perpendicular = new Float3Vector(1f, 0f, 0f);
+        float[] perpendicular;
+        if (vx > 0.5f) {
+            perpendicular = new float[] { 0f, 0f, 1f };
+        } else if (vy > 0.5f) {
+            perpendicular = new float[] { 1f, 0f, 0f };
         } else {
-            perpendicular = new Float3Vector(0f, 1f, 0f);
+            perpendicular = new float[] { 0f, 1f, 0f };
         }
 
-        Float3Vector nil = new Float3Vector();
-
         float majorIntervalSize = length / 100f;
         float minorIntervalSize = length / 300f;
 
         for (int i = 1; i < numMajorIntervals / 2; i++) {
-            arrayindex = addInterval(points, normals, tCoords, arrayindex, nil.add(vec.mul(majorInterval * i)),
-                    perpendicular, majorIntervalSize);
-            arrayindex = addInterval(points, normals, tCoords, arrayindex, nil.sub(vec.mul(majorInterval * i)),
-                    perpendicular, majorIntervalSize);
+            float distance = majorInterval * i;
+            addInterval(builder, vx * distance, vy * distance, vz * distance, perpendicular, majorIntervalSize);
+            addInterval(builder, -vx * distance, -vy * distance, -vz * distance, perpendicular, majorIntervalSize);
         }
 
         for (int i = 1; i < numMinorIntervals / 2; i++) {
-            arrayindex = addInterval(points, normals, tCoords, arrayindex, nil.add(vec.mul(minorInterval * i)),
-                    perpendicular, minorIntervalSize);
-            arrayindex = addInterval(points, normals, tCoords, arrayindex, nil.sub(vec.mul(minorInterval * i)),
-                    perpendicular, minorIntervalSize);
-
+            float distance = minorInterval * i;
+            addInterval(builder, vx * distance, vy * distance, vz * distance, perpendicular, minorIntervalSize);
+            addInterval(builder, -vx * distance, -vy * distance, -vz * distance, perpendicular, minorIntervalSize);
         }
 
-        this.setNumVertices(numVertices);
-        this.setVertices(FloatVectorMath.toBuffer(points));
-        this.setNormals(FloatVectorMath.toBuffer(normals));
-        this.setTexCoords(FloatVectorMath.toBuffer(tCoords));
+        builder.applyTo(this);
     }
 
     /**
      * Helper method to add a perpendicular line as a tick on the axis.
      * 
-     * @param points
-     *            _output_ array for the vertex data.
-     * @param normals
-     *            _output_ array for the normals data.
-     * @param tCoords
-     *            _output_ array for the texture coordinates.
-     * @param offset
-     *            the index in the output arrays to start inputting data from.
-     * @param center
-     *            The center coordinate for this interval.
+     * @param builder
+     *            _output_ builder for the vertex data.
+     * @param x
+     *            The x coordinate of the center of this interval.
+     * @param y
+     *            The y coordinate of the center of this interval.
+     * @param z
+     *            The z coordinate of the center of this interval.
      * @param alignment
-     *            The direction in which to paint the tick.
+     *            The (unit length) direction in which to paint the tick.
      * @param size
      *            the size of the tick to paint.
-     * @return the new index in the ouput arrays.
      */
-    private int addInterval(Float4Vector[] points, Float3Vector[] normals, Float3Vector[] tCoords, int offset, Float3Vector center,
-            Float3Vector alignment, float size) {
-        int tmpOffset = offset;
-        points[tmpOffset] = new Float4Vector(center.add(alignment.mul(size)), 1f);
-        normals[tmpOffset] = FloatVectorMath.normalize(alignment);
-        tCoords[tmpOffset] = new Float3Vector(0, 0, 0);
-        tmpOffset++;
-        points[tmpOffset] = new Float4Vector(center.sub(alignment.mul(size)), 1f);
-        normals[tmpOffset] = FloatVectorMath.normalize(alignment).neg();
-        tCoords[tmpOffset] = new Float3Vector(1, 1, 1);
-        tmpOffset++;
-        return tmpOffset;
+    private void addInterval(MeshBuilder builder, float x, float y, float z, float[] alignment, float size) {
+        float ax = alignment[0];
+        float ay = alignment[1];
+        float az = alignment[2];
+
+        builder.position(x + ax * size, y + ay * size, z + az * size).normal(ax, ay, az).texCoord(0, 0, 0);
+        builder.position(x - ax * size, y - ay * size, z - az * size).normal(-ax, -ay, -az).texCoord(1, 1, 1);
     }
 }
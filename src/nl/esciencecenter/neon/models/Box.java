@@ -1,13 +1,5 @@
 package nl.esciencecenter.neon.models;
 
-import java.util.ArrayList;
-import java.util.List;
-
-import nl.esciencecenter.neon.math.Float3Vector;
-import nl.esciencecenter.neon.math.Float4Vector;
-import nl.esciencecenter.neon.math.FloatVectorMath;
-import nl.esciencecenter.neon.math.Point4;
-
 /* Copyright [2013] [Netherlands eScience Center]
  * 
  * Licensed under the Apache License, Version 2.0 (the "License")
@@ -50,74 +42,31 @@ public class Box extends Model {
     public Box(float width, float height, float depth, boolean bottom) {
         super(VertexFormat.TRIANGLES);
 
-        Point4[] vertices = makeVertices(width, height, depth);
+        float[] vertices = makeVertices(width, height, depth);
 
-        List<Float4Vector> allPoints = new ArrayList<Float4Vector>();
-        List<Float3Vector> allNormals = new ArrayList<Float3Vector>();
-        List<Float3Vector> allTexCoords = new ArrayList<Float3Vector>();
+        MeshBuilder builder = new MeshBuilder(VERTICES_PER_QUAD * 6);
 
         // FRONT QUAD
-        List<Point4> points = tesselate(vertices, 1, 0, 3, 2);
-        List<Float3Vector> normals = createNormals(new Float3Vector(0, 0, -1));
-        List<Float3Vector> tCoords = createTexCoords();
-
-        allPoints.addAll(points);
-        allNormals.addAll(normals);
-        allTexCoords.addAll(tCoords);
+        builder.quad(vertices, 1, 0, 3, 2, 0, 0, -1);
 
         // RIGHT QUAD
-        points = tesselate(vertices, 2, 3, 7, 6);
-        normals = createNormals(new Float3Vector(1, 0, 0));
-        tCoords = createTexCoords();
-
-        allPoints.addAll(points);
-        allNormals.addAll(normals);
-        allTexCoords.addAll(tCoords);
+        builder.quad(vertices, 2, 3, 7, 6, 1, 0, 0);
 
         if (bottom) {
             // BOTTOM QUAD
-            points = tesselate(vertices, 3, 0, 4, 7);
-            normals = createNormals(new Float3Vector(0, -1, 0));
-            tCoords = createTexCoords();
-
-            allPoints.addAll(points);
-            allNormals.addAll(normals);
-            allTexCoords.addAll(tCoords);
+            builder.quad(vertices, 3, 0, 4, 7, 0, -1, 0);
         }
 
         // TOP QUAD
-        points = tesselate(vertices, 6, 5, 1, 2);
-        normals = createNormals(new Float3Vector(0, 1, 0));
-        tCoords = createTexCoords();
-
-        allPoints.addAll(points);
-        allNormals.addAll(normals);
-        allTexCoords.addAll(tCoords);
+        builder.quad(vertices, 6, 5, 1, 2, 0, 1, 0);
 
         // BACK QUAD
-        points = tesselate(vertices, 4, 5, 6, 7);
-        normals = createNormals(new Float3Vector(0, 0, 1));
-        tCoords = createTexCoords();
-
-        allPoints.addAll(points);
-        allNormals.addAll(normals);
-        allTexCoords.addAll(tCoords);
+        builder.quad(vertices, 4, 5, 6, 7, 0, 0, 1);
 
         // LEFT QUAD
-        points = tesselate(vertices, 5, 4, 0, 1);
-        normals = createNormals(new Float3Vector(-1, 0, 0));
-        tCoords = createTexCoords();
-
-        allPoints.addAll(points);
-        allNormals.addAll(normals);
-        allTexCoords.addAll(tCoords);
-
-        final int floatsPerFloat4Vector = 4;
-        this.setNumVertices(allPoints.size() / floatsPerFloat4Vector);
+        builder.quad(vertices, 5, 4, 0, 1, -1, 0, 0);
 
-        this.setVertices(FloatVectorMath.vec4ListToBuffer(allPoints));
-        this.setNormals(FloatVectorMath.vec3ListToBuffer(allNormals));
-        this.setTexCoords(FloatVectorMath.vec3ListToBuffer(allTexCoords));
+        builder.applyTo(this);
     }
 
     /**
@@ -130,9 +79,10 @@ public class Box extends Model {
      *            The height of the box to make (assumes input from 0.0 to 1.0).
      * @param depth
      *            The depth of the box to make (assumes input from 0.0 to 1.0).
-     * @return The array of 8 points that makes up all the corners of a box.
+     * @return The array of 8 points (x, y, z per point) that makes up all the
+     *         corners of a box.
      */
-    private Point4[] makeVertices(float width, float height, float depth) {
+    private float[] makeVertices(float width, float height, float depth) {
         float xpos = +(width / 2f);
         float xneg = -(width / 2f);
         float ypos = +(height / 2f);
@@ -140,75 +90,8 @@ public class Box extends Model {
         float zpos = +(depth / 2f);
         float zneg = -(depth / 2f);
 
-        Point4[] result = new Point4[] { new Point4(xneg, yneg, zpos), new Point4(xneg, ypos, zpos),
-                new Point4(xpos, ypos, zpos), new Point4(xpos, yneg, zpos), new Point4(xneg, yneg, zneg),
-                new Point4(xneg, ypos, zneg), new Point4(xpos, ypos, zneg), new Point4(xpos, yneg, zneg) };
-
-        return result;
-    }
-
-    /**
-     * Create two triangles with vertices (Points) in the correct order out of
-     * the given points.
-     * 
-     * @param source
-     *            The source array with base-model vertices.
-     * @param a
-     *            The index of the first corner in the source array.
-     * @param b
-     *            The index of the second corner in the source array.
-     * @param c
-     *            The index of the third corner in the source array.
-     * @param d
-     *            The index of the fourth corner in the source array.
-     * @return A list with 6 vertices representing 2 triangles.
-     */
-    private List<Point4> tesselate(Point4[] source, int a, int b, int c, int d) {
-        ArrayList<Point4> result = new ArrayList<Point4>();
-
-        result.add(source[a]);
-        result.add(source[b]);
-        result.add(source[c]);
-        result.add(source[a]);
-        result.add(source[c]);
-        result.add(source[d]);
-
-        return result;
-    }
-
-    /**
-     * Create standard texture coordinates for a box.
-     * 
-     * @return An array with 6 vectors representing texture coordinates for the
-     *         given points.
-     */
-    private List<Float3Vector> createTexCoords() {
-        ArrayList<Float3Vector> result = new ArrayList<Float3Vector>();
-
-        result.add(new Float3Vector(0, 0, 0));
-        result.add(new Float3Vector(0, 1, 0));
-        result.add(new Float3Vector(1, 1, 0));
-        result.add(new Float3Vector(0, 0, 0));
-        result.add(new Float3Vector(1, 1, 0));
-        result.add(new Float3Vector(1, 0, 0));
-
-        return result;
-    }
-
-    /**
-     * Create normals for the given points.
-     * 
-     * @param normalToCreate
-     *            The normal vector to copy X times ;)
-     * @return An array with 6 vectors representing normals for the given
-     *         points.
-     */
-    private List<Float3Vector> createNormals(Float3Vector normalToCreate) {
-        ArrayList<Float3Vector> result = new ArrayList<Float3Vector>();
-
-        for (int i = 0; i < VERTICES_PER_QUAD; i++) {
-            result.add(new Float3Vector(normalToCreate));
-        }
+        float[] result = new float[] { xneg, yneg, zpos, xneg, ypos, zpos, xpos, ypos, zpos, xpos, yneg, zpos, xneg,
+                yneg, zneg, xneg, ypos, zneg, xpos, ypos, zneg, xpos, yneg, zneg };
 
         return result;
     }
@@ -0,0 +1,306 @@
+package nl.esciencecenter.neon.models;
+
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import javax.media.opengl.GL3;
+
+import nl.esciencecenter.neon.math.Float3Vector;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/* Copyright 2013 Netherlands eScience Center
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * Registry of shared, reference counted {@link Model} geometry. Models are
+ * keyed by their type and construction parameters, so identical meshes are
+ * generated and uploaded to the GPU only once. The built-in parametric models
+ * are registered in unit size; scale (radius) and offset variations should be
+ * applied through the modelview matrix instead of by creating new geometry.
+ *
+ * Since the models hold OpenGL buffers, a registry should only be used with a
+ * single OpenGL context.
+ *
+ * @author Maarten van Meersbergen <m.van.meersbergen@esciencecenter.nl>
+ *
+ */
+public class GeometryRegistry {
+    private final static Logger logger = LoggerFactory.getLogger(GeometryRegistry.class);
+
+    /**
+     * Factory for the geometry stored under a key, called only when the key
+     * is not yet in the registry.
+     *
+     * @param <T>
+     *            The type of model this factory creates.
+     */
+    public interface ModelFactory<T extends Model> {
+        /**
+         * Creates a new, uninitialized model.
+         *
+         * @return the new model.
+         */
+        T create();
+    }
+
+    private static class Entry {
+        private final Model model;
+        private int references;
+
+        public Entry(Model model) {
+            this.model = model;
+        }
+    }
+
+    private final Map<String, Entry> entries;
+    private final Map<Model, String> keys;
+
+    private static class SingletonHolder {
+        public static final GeometryRegistry INSTANCE = new GeometryRegistry();
+    }
+
+    /**
+     * Access point for the default registry.
+     *
+     * @return The default registry.
+     */
+    public static GeometryRegistry getInstance() {
+        return SingletonHolder.INSTANCE;
+    }
+
+    /**
+     * Constructor for a new, empty, registry.
+     */
+    public GeometryRegistry() {
+        entries = new HashMap<String, Entry>();
+        keys = new IdentityHashMap<Model, String>();
+    }
+
+    /**
+     * Returns the model registered under the given key, creating and
+     * initializing it with the factory if needed, and increases its reference
+     * count. Every acquire should be matched by a {@link #release}.
+     *
+     * @param gl
+     *            The global openGL instance.
+     * @param key
+     *            The key, unique for the model type and its parameters.
+     * @param factory
+     *            The factory used if the key is not registered yet.
+     * @return the shared, initialized, model.
+     */
+    @SuppressWarnings("unchecked")
+    public synchronized <T extends Model> T acquire(GL3 gl, String key, ModelFactory<T> factory) {
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            Model model = factory.create();
+            model.init(gl);
+
+            entry = new Entry(model);
+            entries.put(key, entry);
+            keys.put(model, key);
+        }
+        entry.references++;
+
+        return (T) entry.model;
+    }
+
+    /**
+     * Decreases the reference count of a model acquired from this registry,
+     * deleting it once it is no longer referenced.
+     *
+     * @param gl
+     *            The global openGL instance.
+     * @param model
+     *            The model to release.
+     */
+    public synchronized void release(GL3 gl, Model model) {
+        String key = keys.get(model);
+        if (key == null) {
+            logger.error("Released a model that is not in the geometry registry.");
+            return;
+        }
+
+        Entry entry = entries.get(key);
+        entry.references--;
+        if (entry.references <= 0) {
+            entries.remove(key);
+            keys.remove(model);
+            model.delete(gl);
+        }
+    }
+
+    /**
+     * Getter for the reference count of a key.
+     *
+     * @param key
+     *            The key to look up.
+     * @return the number of references to the key, 0 if not registered.
+     */
+    public synchronized int getReferenceCount(String key) {
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            return 0;
+        }
+        return entry.references;
+    }
+
+    /**
+     * Getter for the number of distinct models in this registry.
+     *
+     * @return the number of registered models.
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Builds a registry key out of a model type and its parameters.
+     *
+     * @param type
+     *            The model type.
+     * @param parameters
+     *            The parameters the geometry depends on.
+     * @return the key.
+     */
+    public static String key(Class<? extends Model> type, Object... parameters) {
+        StringBuilder result = new StringBuilder(type.getName());
+        for (Object parameter : parameters) {
+            result.append(':');
+            result.append(parameter);
+        }
+        return result.toString();
+    }
+
+    /**
+     * Acquires a shared {@link GeoSphere} with radius 1.
+     *
+     * @param gl
+     *            The global openGL instance.
+     * @param latRibs
+     *            The number of ribs in the latitude (north-south) direction.
+     * @param lonRibs
+     *            The number of ribs in the longitude (east-west) direction.
+     * @param texCoordsIn3D
+     *            Flag for 3d texture coordinates.
+     * @return the shared sphere.
+     */
+    public GeoSphere geoSphere(GL3 gl, final int latRibs, final int lonRibs, final boolean texCoordsIn3D) {
+        return acquire(gl, key(GeoSphere.class, latRibs, lonRibs, texCoordsIn3D), new ModelFactory<GeoSphere>() {
+            @Override
+            public GeoSphere create() {
+                return new GeoSphere(latRibs, lonRibs, 1f, texCoordsIn3D);
+            }
+        });
+    }
+
+    /**
+     * Acquires a shared {@link InvertedGeoSphere} with radius 1.
+     *
+     * @param gl
+     *            The global openGL instance.
+     * @param latRibs
+     *            The number of ribs in the latitude (north-south) direction.
+     * @param lonRibs
+     *            The number of ribs in the longitude (east-west) direction.
+     * @param texCoordsIn3D
+     *            Flag for 3d texture coordinates.
+     * @return the shared sphere.
+     */
+    public InvertedGeoSphere invertedGeoSphere(GL3 gl, final int latRibs, final int lonRibs,
+            final boolean texCoordsIn3D) {
+        return acquire(gl, key(InvertedGeoSphere.class, latRibs, lonRibs, texCoordsIn3D),
+                new ModelFactory<InvertedGeoSphere>() {
+                    @Override
+                    public InvertedGeoSphere create() {
+                        return new InvertedGeoSphere(latRibs, lonRibs, 1f, texCoordsIn3D);
+                    }
+                });
+    }
+
+    /**
+     * Acquires a shared (unit) {@link Sphere}.
+     *
+     * @param gl
+     *            The global openGL instance.
+     * @param divisions
+     *            The number of divisions for the isocahedron.
+     * @param texCoordsIn3D
+     *            Flag for 3d texture coordinates.
+     * @return the shared sphere.
+     */
+    public Sphere sphere(GL3 gl, final int divisions, final boolean texCoordsIn3D) {
+        return acquire(gl, key(Sphere.class, divisions, texCoordsIn3D), new ModelFactory<Sphere>() {
+            @Override
+            public Sphere create() {
+                return new Sphere(divisions, texCoordsIn3D);
+            }
+        });
+    }
+
+    /**
+     * Acquires a shared 1 by 1 {@link Quad} centered on the origin.
+     *
+     * @param gl
+     *            The global openGL instance.
+     * @return the shared quad.
+     */
+    public Quad unitQuad(GL3 gl) {
+        return acquire(gl, key(Quad.class), new ModelFactory<Quad>() {
+            @Override
+            public Quad create() {
+                return new Quad(1f, 1f, new Float3Vector());
+            }
+        });
+    }
+
+    /**
+     * Acquires a shared 1 by 1 {@link LeftBottomQuad} with its left bottom
+     * corner on the origin.
+     *
+     * @param gl
+     *            The global openGL instance.
+     * @return the shared quad.
+     */
+    public LeftBottomQuad unitLeftBottomQuad(GL3 gl) {
+        return acquire(gl, key(LeftBottomQuad.class), new ModelFactory<LeftBottomQuad>() {
+            @Override
+            public LeftBottomQuad create() {
+                return new LeftBottomQuad(1f, 1f, new Float3Vector());
+            }
+        });
+    }
+
+    /**
+     * Acquires a shared 1 by 1 by 1 {@link Box} centered on the origin.
+     *
+     * @param gl
+     *            The global openGL instance.
+     * @param bottom
+     *            flag to include a bottom side.
+     * @return the shared box.
+     */
+    public Box unitBox(GL3 gl, final boolean bottom) {
+        return acquire(gl, key(Box.class, bottom), new ModelFactory<Box>() {
+            @Override
+            public Box create() {
+                return new Box(1f, 1f, 1f, bottom);
+            }
+        });
+    }
+}
@@ -1,12 +1,5 @@
 package nl.esciencecenter.neon.models;
 
-import java.util.ArrayList;
-import java.util.List;
-
-import nl.esciencecenter.neon.math.Float3Vector;
-import nl.esciencecenter.neon.math.Float4Vector;
-import nl.esciencecenter.neon.math.FloatVectorMath;
-
 /* Copyright [2013] [Netherlands eScience Center]
  * 
  * Licensed under the Apache License, Version 2.0 (the "License")
@@ -34,6 +27,8 @@ public class InvertedGeoSphere extends Model {
     /** the number of ribs in the latitude or longitude directions */
     private final int latRibs, lonRibs;
 
+    private static final int VERTICES_PER_QUAD = 6;
+
     /**
      * Constructor for InvertedGeoSphere, prepares the attributes for this model
      * and makes it ready to be initialized.
@@ -55,40 +50,47 @@ public class InvertedGeoSphere extends Model {
         this.latRibs = latRibs;
         this.lonRibs = lonRibs;
 
-        List<Float4Vector> points4List = new ArrayList<Float4Vector>();
-        List<Float3Vector> normals3List = new ArrayList<Float3Vector>();
-        List<Float3Vector> tCoords3List = new ArrayList<Float3Vector>();
+        MeshBuilder builder = new MeshBuilder(latRibs * lonRibs * VERTICES_PER_QUAD);
+        float[] quad = new float[VERTICES_PER_QUAD * 3];
 
         for (int lon = 0; lon < lonRibs; lon++) {
             for (int lat = 0; lat < latRibs; lat++) {
-                Float3Vector[] quad = makeQuad(lat, lon, radius);
-
-                points4List.addAll(makeVertices(quad));
-                normals3List.addAll(makeNormals(quad));
-                tCoords3List.addAll(makeTexCoords(quad, lat, lon));
+                makeQuad(quad, lat, lon, radius);
+
+                for (int i = 0; i < VERTICES_PER_QUAD; i++) {
+                    float x = quad[i * 3];
+                    float y = quad[i * 3 + 1];
+                    float z = quad[i * 3 + 2];
+
+                    builder.position(x, y, z).normalized(x, y, z);
+                    if (texCoordsIn3D) {
+                        builder.texCoord((x + 1f) / 2f, (y + 1f) / 2f, (z + 1f) / 2f);
+                    }
+                }
+                if (!texCoordsIn3D) {
+                    makeTexCoords(builder, lat, lon);
+                }
             }
         }
 
-        setNumVertices(points4List.size());
-
-        setVertices(FloatVectorMath.vec4ListToBuffer(points4List));
-        setNormals(FloatVectorMath.vec3ListToBuffer(normals3List));
-        setTexCoords(FloatVectorMath.vec3ListToBuffer(tCoords3List));
+        builder.applyTo(this);
     }
 
     /**
      * Make a single quad based on the current and next latitude and longitude
      * coordinates.
      * 
+     * @param result
+     *            _output_ array for the 6 corners (x, y, z per corner) of the
+     *            two triangles that make up the quad.
      * @param latRib
      *            The latitude rib to make coordinates for.
      * @param lonRib
      *            The longitude rib to make coordinates for.
      * @param radius
      *            The radius of the sphere.
-     * @return a curved quad on the sphere surface.
      */
-    private Float3Vector[] makeQuad(int latRib, int lonRib, float radius) {
+    private void makeQuad(float[] result, int latRib, int lonRib, float radius) {
         float lonAnglePerRib = (float) ((2 * Math.PI) / lonRibs);
         float latAnglePerRib = (float) ((Math.PI) / latRibs);
 
@@ -98,105 +100,61 @@ public class InvertedGeoSphere extends Model {
         float startLatAngle = latAnglePerRib * latRib;
         float stopLatAngle = latAnglePerRib * (latRib + 1);
 
-        float x00 = (float) (Math.sin(startLatAngle) * Math.cos(startLonAngle));
-        float x10 = (float) (Math.sin(stopLatAngle) * Math.cos(startLonAngle));
-        float x01 = (float) (Math.sin(startLatAngle) * Math.cos(stopLonAngle));
-        float x11 = (float) (Math.sin(stopLatAngle) * Math.cos(stopLonAngle));
-
-        float y00 = (float) (Math.cos(startLatAngle));
-        float y10 = (float) (Math.cos(stopLatAngle));
-        float y01 = (float) (Math.cos(startLatAngle));
-        float y11 = (float) (Math.cos(stopLatAngle));
-
-        float z00 = (float) (Math.sin(startLatAngle) * Math.sin(startLonAngle));
-        float z10 = (float) (Math.sin(stopLatAngle) * Math.sin(startLonAngle));
-        float z01 = (float) (Math.sin(startLatAngle) * Math.sin(stopLonAngle));
-        float z11 = (float) (Math.sin(stopLatAngle) * Math.sin(stopLonAngle));
-
-        Float3Vector[] result = new Float3Vector[] { new Float3Vector(x00, y00, z00).mul(radius),
-                new Float3Vector(x11, y11, z11).mul(radius), new Float3Vector(x01, y01, z01).mul(radius),
-
-                new Float3Vector(x00, y00, z00).mul(radius), new Float3Vector(x10, y10, z10).mul(radius),
-                new Float3Vector(x11, y11, z11).mul(radius) };
-
-        return result;
-    }
-
-    /**
-     * Make the vertex coordinates for the given quad.
-     * 
-     * @param quad
-     *            The quad to make coordinates for.
-     * @return The vertex coordinates corresponding to the given quad.
-     */
-    private List<Float4Vector> makeVertices(Float3Vector[] quad) {
-        List<Float4Vector> vertices = new ArrayList<Float4Vector>();
-
-        vertices.add(new Float4Vector(quad[0], 1f));
-        vertices.add(new Float4Vector(quad[1], 1f));
-        vertices.add(new Float4Vector(quad[2], 1f));
-
-        vertices.add(new Float4Vector(quad[3], 1f));
-        vertices.add(new Float4Vector(quad[4], 1f));
-        vertices.add(new Float4Vector(quad[5], 1f));
-
-        return vertices;
+        float x00 = (float) (Math.sin(startLatAngle) * Math.cos(startLonAngle)) * radius;
+        float x10 = (float) (Math.sin(stopLatAngle) * Math.cos(startLonAngle)) * radius;
+        float x01 = (float) (Math.sin(startLatAngle) * Math.cos(stopLonAngle)) * radius;
+        float x11 = (float) (Math.sin(stopLatAngle) * Math.cos(stopLonAngle)) * radius;
+
+        float y00 = (float) (Math.cos(startLatAngle)) * radius;
+        float y10 = (float) (Math.cos(stopLatAngle)) * radius;
+        float y01 = (float) (Math.cos(startLatAngle)) * radius;
+        float y11 = (float) (Math.cos(stopLatAngle)) * radius;
+
+        float z00 = (float) (Math.sin(startLatAngle) * Math.sin(startLonAngle)) * radius;
+        float z10 = (float) (Math.sin(stopLatAngle) * Math.sin(startLonAngle)) * radius;
+        float z01 = (float) (Math.sin(startLatAngle) * Math.sin(stopLonAngle)) * radius;
+        float z11 = (float) (Math.sin(stopLatAngle) * Math.sin(stopLonAngle)) * radius;
+
+        setCorner(result, 0, x00, y00, z00);
+        setCorner(result, 1, x11, y11, z11);
+        setCorner(result, 2, x01, y01, z01);
+        setCorner(result, 3, x00, y00, z00);
+        setCorner(result, 4, x10, y10, z10);
+        setCorner(result, 5, x11, y11, z11);
     }
 
     /**
-     * Make the normal vectors for the given quad.
-     * 
-     * @param quad
-     *            The quad to make normals for.
-     * @return The normals corresponding to the given quad.
+     * Stores a single corner in the output array of {@link #makeQuad}.
      */
-    private List<Float3Vector> makeNormals(Float3Vector[] quad) {
-        List<Float3Vector> normals = new ArrayList<Float3Vector>();
-
-        normals.add(FloatVectorMath.normalize(quad[0]));
-        normals.add(FloatVectorMath.normalize(quad[1]));
-        normals.add(FloatVectorMath.normalize(quad[2]));
-
-        normals.add(FloatVectorMath.normalize(quad[3]));
-        normals.add(FloatVectorMath.normalize(quad[4]));
-        normals.add(FloatVectorMath.normalize(quad[5]));
-
-        return normals;
+    private static void setCorner(float[] result, int index, float x, float y, float z) {
+        result[index * 3] = x;
+        result[index * 3 + 1] = y;
+        result[index * 3 + 2] = z;
     }
 
     /**
-     * Make the texture coordinates for the given quad.
+     * Make the 2D texture coordinates for the quad at the given latitude and
+     * longitude ribs.
      * 
-     * @param quad
-     *            The quad to make coordinates for.
+     * @param builder
+     *            The builder to add the texture coordinates to.
      * @param latRib
      *            The latitude rib to make coordinates for.
      * @param lonRib
      *            The longitude rib to make coordinates for.
-     * @return The texture coordinates corresponding to the given quad.
      */
-    private List<Float3Vector> makeTexCoords(Float3Vector[] quad, int latRib, int lonRib) {
-        List<Float3Vector> texCoords = new ArrayList<Float3Vector>();
-
-        if (texCoordsIn3D) {
-            texCoords.add((quad[0].add(new Float3Vector(1f, 1f, 1f))).div(2f));
-            texCoords.add((quad[1].add(new Float3Vector(1f, 1f, 1f))).div(2f));
-            texCoords.add((quad[2].add(new Float3Vector(1f, 1f, 1f))).div(2f));
-
-            texCoords.add((quad[3].add(new Float3Vector(1f, 1f, 1f))).div(2f));
-            texCoords.add((quad[4].add(new Float3Vector(1f, 1f, 1f))).div(2f));
-            texCoords.add((quad[5].add(new Float3Vector(1f, 1f, 1f))).div(2f));
-        } else {
-            texCoords.add(new Float3Vector(((float) lonRib / (float) lonRibs), ((float) latRib / (float) latRibs), 0));
-            texCoords.add(new Float3Vector(((lonRib + 1f) / lonRibs), ((latRib + 1f) / latRibs), 0));
-            texCoords.add(new Float3Vector(((lonRib + 1f) / lonRibs), ((float) latRib / (float) latRibs), 0));
-
-            texCoords.add(new Float3Vector(((float) lonRib / lonRibs), (((float) latRib / (float) latRibs)), 0));
-            texCoords.add(new Float3Vector(((float) lonRib / lonRibs), ((latRib + 1f) / latRibs), 0));
-            texCoords.add(new Float3Vector(((lonRib + 1f) / lonRibs), ((latRib + 1f) / latRibs), 0));
-        }
-
-        return texCoords;
+    private void makeTexCoords(MeshBuilder builder, int latRib, int lonRib) {
+        float lonStart = (float) lonRib / (float) lonRibs;
+        float lonStop = (lonRib + 1f) / lonRibs;
+        float latStart = (float) latRib / (float) latRibs;
+        float latStop = (latRib + 1f) / latRibs;
+
+        builder.texCoord(lonStart, latStart, 0);
+        builder.texCoord(lonStop, latStop, 0);
+        builder.texCoord(lonStop, latStart, 0);
+        builder.texCoord(lonStart, latStart, 0);
+        builder.texCoord(lonStart, latStop, 0);
+        builder.texCoord(lonStop, latStop, 0);
     }
 
     /**
@@ -0,0 +1,505 @@
+package nl.esciencecenter.neon.models;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import javax.media.opengl.GL3;
+
+import nl.esciencecenter.neon.exceptions.UninitializedException;
+import nl.esciencecenter.neon.math.Float4Matrix;
+import nl.esciencecenter.neon.shaders.ShaderProgram;
+
+/* Copyright 2013 Netherlands eScience Center
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * Level of detail version of {@link GeoSphere}. The tessellation is chosen
+ * every frame from the view, so that the faceting error (the distance between
+ * the true sphere surface and its flat triangles) stays below a given number
+ * of pixels on screen.
+ * 
+ * In the default {@link Mode#LEVELS} mode a set of complete spheres of
+ * increasing tessellation is precomputed, and the coarsest one that is good
+ * enough is drawn. In {@link Mode#PATCHES} mode the sphere is split into
+ * latitude/longitude patches in a quadtree, built on demand. Only patches on
+ * the hemisphere facing the camera are drawn, and only those close to the
+ * camera are refined. Neighbouring patches of different depths can show small
+ * cracks where their edges meet, which stay below the error tolerance.
+ * 
+ * Call {@link #setView(Float4Matrix, Float4Matrix, int)} (or
+ * {@link #setView(float, Float4Matrix, int)} with the view distance from the
+ * {@link nl.esciencecenter.neon.input.InputHandler}) before every draw.
+ * 
+ * @author Maarten van Meersbergen <m.van.meersbergen@esciencecenter.nl>
+ * 
+ */
+public class LodGeoSphere extends Model {
+    /** The selection strategies for this sphere. */
+    public static enum Mode {
+        LEVELS, PATCHES
+    };
+
+    /** The default number of longitude ribs for each precomputed level. */
+    public static final int[] DEFAULT_LEVELS = new int[] { 8, 16, 32, 64, 128, 256 };
+    /** The default maximum faceting error in pixels. */
+    public static final float DEFAULT_TOLERANCE = 1f;
+
+    /** The number of quads along each side of a patch. */
+    private static final int PATCH_GRID = 8;
+    /** The maximum depth of the patch quadtree. */
+    private static final int MAX_PATCH_DEPTH = 10;
+    /** Patches that were not drawn for this many frames are deleted. */
+    private static final int PATCH_EVICTION_FRAMES = 120;
+
+    private final float radius;
+    private final boolean texCoordsIn3D;
+    private final Mode mode;
+
+    private final GeoSphere[] levels;
+    private final int[] levelRibs;
+    private int currentLevel;
+
+    private final Patch[] rootPatches;
+    private final List<Patch> selectedPatches;
+    private final List<Patch> residentPatches;
+    private long frame;
+
+    private float tolerance = DEFAULT_TOLERANCE;
+
+    /** Camera position in model coordinates and the projection scale. */
+    private float camX, camY, camZ = 1f;
+    private float pixelsPerUnitAtUnitDistance = 1f;
+
+    private boolean initialized = false;
+
+    /**
+     * Constructor for a sphere with the default levels.
+     * 
+     * @param radius
+     *            The radius of the sphere.
+     * @param texCoordsIn3D
+     *            Flag for possible 3d texture coordinates.
+     * @param mode
+     *            The selection strategy.
+     */
+    public LodGeoSphere(float radius, boolean texCoordsIn3D, Mode mode) {
+        this(radius, texCoordsIn3D, mode, DEFAULT_LEVELS);
+    }
+
+    /**
+     * Constructor for a sphere with custom levels.
+     * 
+     * @param radius
+     *            The radius of the sphere.
+     * @param texCoordsIn3D
+     *            Flag for possible 3d texture coordinates.
+     * @param mode
+     *            The selection strategy.
+     * @param lonRibsPerLevel
+     *            The number of longitude ribs of each level, in increasing
+     *            order. Levels have half as many latitude ribs. Only used in
+     *            {@link Mode#LEVELS} mode.
+     */
+    public LodGeoSphere(float radius, boolean texCoordsIn3D, Mode mode, int[] lonRibsPerLevel) {
+        super(VertexFormat.TRIANGLES);
+        this.radius = radius;
+        this.texCoordsIn3D = texCoordsIn3D;
+        this.mode = mode;
+
+        if (mode == Mode.LEVELS) {
+            levelRibs = lonRibsPerLevel.clone();
+            levels = new GeoSphere[levelRibs.length];
+            for (int i = 0; i < levels.length; i++) {
+                levels[i] = new GeoSphere(Math.max(2, levelRibs[i] / 2), levelRibs[i], radius, texCoordsIn3D);
+            }
+            rootPatches = null;
+        } else {
+            levelRibs = null;
+            levels = null;
+
+            // 2 by 4 patches of 90 by 90 degrees.
+            rootPatches = new Patch[8];
+            float quarter = (float) (Math.PI / 2.0);
+            for (int lat = 0; lat < 2; lat++) {
+                for (int lon = 0; lon < 4; lon++) {
+                    rootPatches[lat * 4 + lon] = new Patch(lat * quarter, (lat + 1) * quarter, lon * quarter,
+                            (lon + 1) * quarter, 0);
+                }
+            }
+        }
+        selectedPatches = new ArrayList<Patch>();
+        residentPatches = new ArrayList<Patch>();
+    }
+
+    @Override
+    public void init(GL3 gl) {
+        if (!initialized) {
+            if (mode == Mode.LEVELS) {
+                for (GeoSphere level : levels) {
+                    level.init(gl);
+                }
+            }
+            initialized = true;
+        }
+    }
+
+    @Override
+    public void delete(GL3 gl) {
+        if (initialized) {
+            if (mode == Mode.LEVELS) {
+                for (GeoSphere level : levels) {
+                    level.delete(gl);
+                }
+            } else {
+                for (Patch patch : residentPatches) {
+                    patch.model.delete(gl);
+                    patch.model = null;
+                }
+                residentPatches.clear();
+            }
+            initialized = false;
+        }
+    }
+
+    /**
+     * Selects the tessellation for the next frame from the full modelview and
+     * projection matrices.
+     * 
+     * @param mv
+     *            The modelview matrix this sphere is drawn with. May contain a
+     *            uniform scale.
+     * @param p
+     *            The projection matrix.
+     * @param viewportHeight
+     *            The height of the viewport in pixels.
+     */
+    public void setView(Float4Matrix mv, Float4Matrix p, int viewportHeight) {
+        float[] m = mv.asArray();
+
+        // Camera position in model space is -R^T t / s^2 for modelview
+        // R*s|t (row-major), with uniform scale s.
+        float scale2 = m[0] * m[0] + m[4] * m[4] + m[8] * m[8];
+        float tx = m[3], ty = m[7], tz = m[11];
+
+        camX = -(m[0] * tx + m[4] * ty + m[8] * tz) / scale2;
+        camY = -(m[1] * tx + m[5] * ty + m[9] * tz) / scale2;
+        camZ = -(m[2] * tx + m[6] * ty + m[10] * tz) / scale2;
+
+        pixelsPerUnitAtUnitDistance = p.get(5) * viewportHeight * .5f;
+
+        select();
+    }
+
+    /**
+     * Selects the tessellation for the next frame from the view distance, as
+     * given by {@link nl.esciencecenter.neon.input.InputHandler#getViewDist()}
+     * , assuming the camera looks at the center of the sphere along the z
+     * axis.
+     * 
+     * @param viewDist
+     *            The (signed) distance between the camera and the center of
+     *            the sphere.
+     * @param p
+     *            The projection matrix.
+     * @param viewportHeight
+     *            The height of the viewport in pixels.
+     */
+    public void setView(float viewDist, Float4Matrix p, int viewportHeight) {
+        camX = 0f;
+        camY = 0f;
+        camZ = Math.abs(viewDist);
+
+        pixelsPerUnitAtUnitDistance = p.get(5) * viewportHeight * .5f;
+
+        select();
+    }
+
+    private void select() {
+        if (mode == Mode.LEVELS) {
+            selectLevel();
+        } else {
+            frame++;
+            selectedPatches.clear();
+            for (Patch root : rootPatches) {
+                selectPatches(root);
+            }
+        }
+    }
+
+    /**
+     * Faceting error in pixels of a triangle edge spanning the given angle on
+     * the sphere, seen from the given distance.
+     */
+    private float errorInPixels(double angle, float distance) {
+        double sagitta = radius * (1.0 - Math.cos(angle * .5));
+        return (float) (sagitta * pixelsPerUnitAtUnitDistance / Math.max(distance, radius * 1E-3f));
+    }
+
+    private void selectLevel() {
+        float distanceToSurface = (float) Math.sqrt(camX * camX + camY * camY + camZ * camZ) - radius;
+
+        currentLevel = levels.length - 1;
+        for (int i = 0; i < levels.length; i++) {
+            if (errorInPixels(2.0 * Math.PI / levelRibs[i], distanceToSurface) <= tolerance) {
+                currentLevel = i;
+                break;
+            }
+        }
+    }
+
+    private void selectPatches(Patch patch) {
+        float distance = (float) Math.sqrt(camX * camX + camY * camY + camZ * camZ);
+
+        // Horizon culling: the camera sees the cap around its own direction
+        // up to the angle acos(r / d). The patch is visible if its bounding
+        // cone overlaps that cap.
+        if (distance > radius) {
+            float cosToCamera = (patch.centerX * camX + patch.centerY * camY + patch.centerZ * camZ) / distance;
+            double angleToCamera = Math.acos(Math.max(-1f, Math.min(1f, cosToCamera)));
+            double horizon = Math.acos(radius / distance);
+            if (angleToCamera - patch.coneAngle > horizon) {
+                return;
+            }
+        }
+
+        float dx = camX - patch.centerX * radius;
+        float dy = camY - patch.centerY * radius;
+        float dz = camZ - patch.centerZ * radius;
+        float distanceToPatch = (float) Math.sqrt(dx * dx + dy * dy + dz * dz) - patch.coneAngle * radius;
+
+        double step = Math.max(patch.lat1 - patch.lat0, patch.lon1 - patch.lon0) / PATCH_GRID;
+        if (patch.depth < MAX_PATCH_DEPTH && errorInPixels(step, distanceToPatch) > tolerance) {
+            for (Patch child : patch.getChildren()) {
+                selectPatches(child);
+            }
+        } else {
+            patch.lastUsed = frame;
+            selectedPatches.add(patch);
+        }
+    }
+
+    /**
+     * A LodGeoSphere draws its levels or patches as separate models.
+     */
+    @Override
+    public boolean isDrawableInParts() {
+        return false;
+    }
+
+    @Override
+    public void draw(GL3 gl, ShaderProgram program) throws UninitializedException {
+        if (!initialized) {
+            throw new UninitializedException();
+        }
+
+        if (mode == Mode.LEVELS) {
+            levels[currentLevel].draw(gl, program);
+        } else {
+            for (Patch patch : selectedPatches) {
+                if (patch.model == null) {
+                    patch.model = makePatchModel(patch);
+                    patch.model.init(gl);
+                    residentPatches.add(patch);
+                }
+                patch.model.draw(gl, program);
+            }
+
+            Iterator<Patch> iterator = residentPatches.iterator();
+            while (iterator.hasNext()) {
+                Patch patch = iterator.next();
+                if (frame - patch.lastUsed > PATCH_EVICTION_FRAMES) {
+                    patch.model.delete(gl);
+                    patch.model = null;
+                    iterator.remove();
+                }
+            }
+        }
+    }
+
+    /**
+     * Builds the mesh of a single patch, with the same vertex layout and
+     * texture coordinates as {@link GeoSphere}.
+     */
+    private Model makePatchModel(Patch patch) {
+        MeshBuilder builder = new MeshBuilder(PATCH_GRID * PATCH_GRID * 6);
+
+        double latStep = (patch.lat1 - patch.lat0) / PATCH_GRID;
+        double lonStep = (patch.lon1 - patch.lon0) / PATCH_GRID;
+
+        for (int j = 0; j < PATCH_GRID; j++) {
+            double lat0 = patch.lat0 + j * latStep;
+            double lat1 = lat0 + latStep;
+            for (int i = 0; i < PATCH_GRID; i++) {
+                double lon0 = patch.lon0 + i * lonStep;
+                double lon1 = lon0 + lonStep;
+
+                addVertex(builder, lat0, lon0);
+                addVertex(builder, lat0, lon1);
+                addVertex(builder, lat1, lon1);
+
+                addVertex(builder, lat0, lon0);
+                addVertex(builder, lat1, lon1);
+                addVertex(builder, lat1, lon0);
+            }
+        }
+
+        PatchModel result = new PatchModel();
+        builder.applyTo(result);
+        return result;
+    }
+
+    private void addVertex(MeshBuilder builder, double lat, double lon) {
+        float x = (float) (Math.sin(lat) * Math.cos(lon));
+        float y = (float) Math.cos(lat);
+        float z = (float) (Math.sin(lat) * Math.sin(lon));
+
+        builder.position(x * radius, y * radius, z * radius).normal(x, y, z);
+        if (texCoordsIn3D) {
+            builder.texCoord((x * radius + 1f) / 2f, (y * radius + 1f) / 2f, (z * radius + 1f) / 2f);
+        } else {
+            builder.texCoord((float) (lon / (2.0 * Math.PI)), (float) (lat / Math.PI), 0f);
+        }
+    }
+
+    /**
+     * Getter for the number of vertices selected for the next frame.
+     * 
+     * @return the number of vertices that will be drawn.
+     */
+    @Override
+    public int getNumVertices() {
+        if (mode == Mode.LEVELS) {
+            return levels[currentLevel].getNumVertices();
+        }
+        return selectedPatches.size() * PATCH_GRID * PATCH_GRID * 6;
+    }
+
+    /**
+     * Getter for the selected level, only meaningful in {@link Mode#LEVELS}
+     * mode.
+     * 
+     * @return the index of the selected level.
+     */
+    public int getCurrentLevel() {
+        return currentLevel;
+    }
+
+    /**
+     * Getter for the number of patches selected for the next frame, only
+     * meaningful in {@link Mode#PATCHES} mode.
+     * 
+     * @return the number of selected patches.
+     */
+    public int getNumSelectedPatches() {
+        return selectedPatches.size();
+    }
+
+    /**
+     * Getter for mode.
+     * 
+     * @return the mode.
+     */
+    public Mode getMode() {
+        return mode;
+    }
+
+    /**
+     * Getter for the radius.
+     * 
+     * @return the radius.
+     */
+    public float getRadius() {
+        return radius;
+    }
+
+    /**
+     * Getter for tolerance.
+     * 
+     * @return the maximum faceting error in pixels.
+     */
+    public float getTolerance() {
+        return tolerance;
+    }
+
+    /**
+     * Setter for tolerance.
+     * 
+     * @param tolerance
+     *            the maximum faceting error in pixels.
+     */
+    public void setTolerance(float tolerance) {
+        this.tolerance = tolerance;
+    }
+
+    /** A model holding the mesh of a single patch. */
+    private static class PatchModel extends Model {
+        public PatchModel() {
+            super(VertexFormat.TRIANGLES);
+        }
+    }
+
+    /** A node of the patch quadtree. */
+    private static class Patch {
+        private final double lat0, lat1, lon0, lon1;
+        private final int depth;
+
+        /** Unit vector to the center of the patch. */
+        private final float centerX, centerY, centerZ;
+        /** The angle between the center and the farthest edge point. */
+        private final float coneAngle;
+
+        private Patch[] children;
+        private Model model;
+        private long lastUsed;
+
+        public Patch(double lat0, double lat1, double lon0, double lon1, int depth) {
+            this.lat0 = lat0;
+            this.lat1 = lat1;
+            this.lon0 = lon0;
+            this.lon1 = lon1;
+            this.depth = depth;
+
+            double latC = (lat0 + lat1) * .5;
+            double lonC = (lon0 + lon1) * .5;
+            centerX = (float) (Math.sin(latC) * Math.cos(lonC));
+            centerY = (float) Math.cos(latC);
+            centerZ = (float) (Math.sin(latC) * Math.sin(lonC));
+
+            double maxAngle = 0.0;
+            double[] lats = new double[] { lat0, latC, lat1 };
+            double[] lons = new double[] { lon0, lonC, lon1 };
+            for (double lat : lats) {
+                for (double lon : lons) {
+                    double dot = centerX * Math.sin(lat) * Math.cos(lon) + centerY * Math.cos(lat) + centerZ
+                            * Math.sin(lat) * Math.sin(lon);
+                    maxAngle = Math.max(maxAngle, Math.acos(Math.max(-1.0, Math.min(1.0, dot))));
+                }
+            }
+            coneAngle = (float) maxAngle;
+        }
+
+        public Patch[] getChildren() {
+            if (children == null) {
+                double latM = (lat0 + lat1) * .5;
+                double lonM = (lon0 + lon1) * .5;
+                children = new Patch[] { new Patch(lat0, latM, lon0, lonM, depth + 1),
+                        new Patch(lat0, latM, lonM, lon1, depth + 1), new Patch(latM, lat1, lon0, lonM, depth + 1),
+                        new Patch(latM, lat1, lonM, lon1, depth + 1) };
+            }
+            return children;
+        }
+    }
+}
@@ -0,0 +1,171 @@
+package nl.esciencecenter.neon.models;
+
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+
+import javax.media.opengl.GL3;
+
+import nl.esciencecenter.neon.datastructures.GLSLAttribute;
+import nl.esciencecenter.neon.datastructures.VertexBufferObject;
+import nl.esciencecenter.neon.exceptions.UninitializedException;
+import nl.esciencecenter.neon.metrics.FrameMetrics;
+import nl.esciencecenter.neon.shaders.ShaderProgram;
+
+import com.jogamp.common.nio.Buffers;
+
+/* Copyright 2013 Netherlands eScience Center
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * A {@link Model} loaded from a memory-mapped {@link MeshFile}. The vertex
+ * block of the file is handed to the {@link VertexBufferObject} in one piece,
+ * and the model is drawn with indices if the file has any.
+ * 
+ * @author Maarten van Meersbergen <m.van.meersbergen@esciencecenter.nl>
+ * 
+ */
+public class MappedModel extends Model {
+    private final ByteBuffer vertexBlock;
+    private final GLSLAttribute[] attribs;
+    private final IntBuffer indices;
+
+    private IntBuffer indexPointer;
+    private boolean initialized = false;
+
+    /**
+     * Constructor, called by {@link MeshFile#read(java.io.File)}.
+     * 
+     * @param format
+     *            The vertex format.
+     * @param numVertices
+     *            The number of vertices.
+     * @param vertexBlock
+     *            The data of all attributes, one after the other.
+     * @param attribs
+     *            The attributes, as views on the vertex block.
+     * @param indices
+     *            The indices, or null if this model is not indexed.
+     */
+    MappedModel(VertexFormat format, int numVertices, ByteBuffer vertexBlock, GLSLAttribute[] attribs,
+            IntBuffer indices) {
+        super(format);
+        this.vertexBlock = vertexBlock;
+        this.attribs = attribs;
+        this.indices = indices;
+
+        setNumVertices(numVertices);
+        for (GLSLAttribute attrib : attribs) {
+            if ("MCvertex".equals(attrib.getName())) {
+                setVertices((FloatBuffer) attrib.getBuffer());
+            } else if ("MCnormal".equals(attrib.getName())) {
+                setNormals((FloatBuffer) attrib.getBuffer());
+            } else if ("MCtexCoord".equals(attrib.getName())) {
+                setTexCoords((FloatBuffer) attrib.getBuffer());
+            }
+        }
+    }
+
+    @Override
+    public void init(GL3 gl) {
+        if (!initialized) {
+            setVbo(new VertexBufferObject(gl, vertexBlock, attribs));
+
+            if (indices != null) {
+                // The element array binding is stored in the (still bound)
+                // vertex array object.
+                indexPointer = Buffers.newDirectIntBuffer(1);
+                gl.glGenBuffers(1, indexPointer);
+                gl.glBindBuffer(GL3.GL_ELEMENT_ARRAY_BUFFER, indexPointer.get(0));
+                gl.glBufferData(GL3.GL_ELEMENT_ARRAY_BUFFER, indices.capacity() * Buffers.SIZEOF_INT, indices,
+                        GL3.GL_STATIC_DRAW);
+            }
+
+            initialized = true;
+        }
+    }
+
+    @Override
+    public void delete(GL3 gl) {
+        if (initialized) {
+            getVbo().delete(gl);
+            if (indexPointer != null) {
+                gl.glDeleteBuffers(1, indexPointer);
+            }
+            initialized = false;
+        }
+    }
+
+    @Override
+    public VertexBufferObject getVBO() throws UninitializedException {
+        if (initialized) {
+            return getVbo();
+        } else {
+            throw new UninitializedException();
+        }
+    }
+
+    @Override
+    public void draw(GL3 gl, ShaderProgram program) throws UninitializedException {
+        if (!initialized) {
+            throw new UninitializedException();
+        }
+
+        getVbo().bind(gl);
+
+        program.linkAttribs(gl, getVbo());
+        program.use(gl);
+
+        drawVertices(gl);
+    }
+
+    @Override
+    public void drawVertices(GL3 gl) {
+        int mode = GL3.GL_TRIANGLES;
+        if (getFormat() == VertexFormat.POINTS) {
+            mode = GL3.GL_POINTS;
+        } else if (getFormat() == VertexFormat.LINES) {
+            mode = GL3.GL_LINES;
+        }
+
+        if (indices != null) {
+            gl.glDrawElements(mode, indices.capacity(), GL3.GL_UNSIGNED_INT, 0);
+            FrameMetrics.getInstance().countDraw(indices.capacity());
+        } else {
+            gl.glDrawArrays(mode, 0, getNumVertices());
+            FrameMetrics.getInstance().countDraw(getNumVertices());
+        }
+    }
+
+    /**
+     * Getter for the attributes of this model, as views on the mapped file.
+     * 
+     * @return a copy of the attribute array.
+     */
+    public GLSLAttribute[] getAttribs() {
+        GLSLAttribute[] copy = new GLSLAttribute[attribs.length];
+        System.arraycopy(attribs, 0, copy, 0, attribs.length);
+        return copy;
+    }
+
+    /**
+     * Getter for the indices.
+     * 
+     * @return the indices, or null if this model is not indexed.
+     */
+    public IntBuffer getIndices() {
+        return indices;
+    }
+}
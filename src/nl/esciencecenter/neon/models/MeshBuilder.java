@@ -0,0 +1,342 @@
+package nl.esciencecenter.neon.models;
+
+import java.nio.FloatBuffer;
+import java.util.Arrays;
+
+import com.jogamp.common.nio.Buffers;
+
+/* Copyright 2013 Netherlands eScience Center
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * Builder for the vertex attributes of a {@link Model}. Positions (4 floats),
+ * normals (3 floats), texture coordinates (3 floats) and colors (4 floats) are
+ * appended to growable primitive arrays, without creating a vector object per
+ * vertex. When building is done, every attribute is copied once into a direct
+ * {@link FloatBuffer} of exactly the right size.
+ * 
+ * A builder can be {@link #reset()} and reused for the next model, which keeps
+ * the already grown arrays.
+ * 
+ * @author Maarten van Meersbergen <m.van.meersbergen@esciencecenter.nl>
+ * 
+ */
+public class MeshBuilder {
+    private static final int DEFAULT_CAPACITY = 64;
+
+    private static final int POSITION_SIZE = 4;
+    private static final int NORMAL_SIZE = 3;
+    private static final int TEXCOORD_SIZE = 3;
+    private static final int COLOR_SIZE = 4;
+
+    private float[] positions;
+    private float[] normals;
+    private float[] texCoords;
+    private float[] colors;
+
+    private int numPositions, numNormals, numTexCoords, numColors;
+
+    /**
+     * Constructor for a builder with a small initial capacity.
+     */
+    public MeshBuilder() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Constructor for a builder that can hold the given number of vertices
+     * before it needs to grow.
+     * 
+     * @param expectedVertices
+     *            The expected number of vertices.
+     */
+    public MeshBuilder(int expectedVertices) {
+        int capacity = Math.max(1, expectedVertices);
+        positions = new float[capacity * POSITION_SIZE];
+        normals = new float[capacity * NORMAL_SIZE];
+        texCoords = new float[capacity * TEXCOORD_SIZE];
+        colors = new float[0];
+    }
+
+    /**
+     * Appends a position with w = 1.
+     * 
+     * @param x
+     *            The x coordinate.
+     * @param y
+     *            The y coordinate.
+     * @param z
+     *            The z coordinate.
+     * @return this builder.
+     */
+    public MeshBuilder position(float x, float y, float z) {
+        return position(x, y, z, 1f);
+    }
+
+    /**
+     * Appends a position.
+     * 
+     * @param x
+     *            The x coordinate.
+     * @param y
+     *            The y coordinate.
+     * @param z
+     *            The z coordinate.
+     * @param w
+     *            The w coordinate.
+     * @return this builder.
+     */
+    public MeshBuilder position(float x, float y, float z, float w) {
+        positions = ensureCapacity(positions, (numPositions + 1) * POSITION_SIZE);
+        int i = numPositions * POSITION_SIZE;
+        positions[i] = x;
+        positions[i + 1] = y;
+        positions[i + 2] = z;
+        positions[i + 3] = w;
+        numPositions++;
+        return this;
+    }
+
+    /**
+     * Appends a normal.
+     * 
+     * @param x
+     *            The x component.
+     * @param y
+     *            The y component.
+     * @param z
+     *            The z component.
+     * @return this builder.
+     */
+    public MeshBuilder normal(float x, float y, float z) {
+        normals = ensureCapacity(normals, (numNormals + 1) * NORMAL_SIZE);
+        int i = numNormals * NORMAL_SIZE;
+        normals[i] = x;
+        normals[i + 1] = y;
+        normals[i + 2] = z;
+        numNormals++;
+        return this;
+    }
+
+    /**
+     * Appends a normal, normalizing the given vector first.
+     * 
+     * @param x
+     *            The x component.
+     * @param y
+     *            The y component.
+     * @param z
+     *            The z component.
+     * @return this builder.
+     */
+    public MeshBuilder normalized(float x, float y, float z) {
+        float length = (float) Math.sqrt(x * x + y * y + z * z);
+        if (length == 0f) {
+            return normal(0f, 0f, 0f);
+        }
+        return normal(x / length, y / length, z / length);
+    }
+
+    /**
+     * Appends a texture coordinate.
+     * 
+     * @param u
+     *            The first texture coordinate.
+     * @param v
+     *            The second texture coordinate.
+     * @param w
+     *            The third texture coordinate (0 for 2D textures).
+     * @return this builder.
+     */
+    public MeshBuilder texCoord(float u, float v, float w) {
+        texCoords = ensureCapacity(texCoords, (numTexCoords + 1) * TEXCOORD_SIZE);
+        int i = numTexCoords * TEXCOORD_SIZE;
+        texCoords[i] = u;
+        texCoords[i + 1] = v;
+        texCoords[i + 2] = w;
+        numTexCoords++;
+        return this;
+    }
+
+    /**
+     * Appends a color.
+     * 
+     * @param r
+     *            The red component.
+     * @param g
+     *            The green component.
+     * @param b
+     *            The blue component.
+     * @param a
+     *            The alpha component.
+     * @return this builder.
+     */
+    public MeshBuilder color(float r, float g, float b, float a) {
+        colors = ensureCapacity(colors, (numColors + 1) * COLOR_SIZE);
+        int i = numColors * COLOR_SIZE;
+        colors[i] = r;
+        colors[i + 1] = g;
+        colors[i + 2] = b;
+        colors[i + 3] = a;
+        numColors++;
+        return this;
+    }
+
+    /**
+     * Appends two triangles (a, b, c) and (a, c, d) for the quad with the
+     * given corners, all with the same normal and with texture coordinates
+     * spanning the unit square.
+     * 
+     * @param corners
+     *            The corner coordinates, 3 floats (x, y, z) per corner.
+     * @param a
+     *            The index of the first corner.
+     * @param b
+     *            The index of the second corner.
+     * @param c
+     *            The index of the third corner.
+     * @param d
+     *            The index of the fourth corner.
+     * @param nx
+     *            The x component of the normal.
+     * @param ny
+     *            The y component of the normal.
+     * @param nz
+     *            The z component of the normal.
+     * @return this builder.
+     */
+    public MeshBuilder quad(float[] corners, int a, int b, int c, int d, float nx, float ny, float nz) {
+        corner(corners, a, nx, ny, nz).texCoord(0, 0, 0);
+        corner(corners, b, nx, ny, nz).texCoord(0, 1, 0);
+        corner(corners, c, nx, ny, nz).texCoord(1, 1, 0);
+        corner(corners, a, nx, ny, nz).texCoord(0, 0, 0);
+        corner(corners, c, nx, ny, nz).texCoord(1, 1, 0);
+        corner(corners, d, nx, ny, nz).texCoord(1, 0, 0);
+        return this;
+    }
+
+    private MeshBuilder corner(float[] corners, int index, float nx, float ny, float nz) {
+        int i = index * 3;
+        return position(corners[i], corners[i + 1], corners[i + 2]).normal(nx, ny, nz);
+    }
+
+    /**
+     * Grows the given array to at least the required size, doubling it to
+     * keep appends amortized constant time.
+     */
+    private static float[] ensureCapacity(float[] array, int required) {
+        if (required <= array.length) {
+            return array;
+        }
+        return Arrays.copyOf(array, Math.max(required, array.length * 2));
+    }
+
+    /**
+     * Copies the first length floats of the array into a new, exactly sized,
+     * direct buffer.
+     */
+    private static FloatBuffer toDirectBuffer(float[] array, int length) {
+        FloatBuffer result = Buffers.newDirectFloatBuffer(length);
+        result.put(array, 0, length);
+        result.rewind();
+        return result;
+    }
+
+    /**
+     * Finalizes the positions.
+     * 
+     * @return A direct buffer with 4 floats per vertex.
+     */
+    public FloatBuffer positionsToBuffer() {
+        return toDirectBuffer(positions, numPositions * POSITION_SIZE);
+    }
+
+    /**
+     * Finalizes the normals.
+     * 
+     * @return A direct buffer with 3 floats per vertex.
+     */
+    public FloatBuffer normalsToBuffer() {
+        return toDirectBuffer(normals, numNormals * NORMAL_SIZE);
+    }
+
+    /**
+     * Finalizes the texture coordinates.
+     * 
+     * @return A direct buffer with 3 floats per vertex.
+     */
+    public FloatBuffer texCoordsToBuffer() {
+        return toDirectBuffer(texCoords, numTexCoords * TEXCOORD_SIZE);
+    }
+
+    /**
+     * Finalizes the colors.
+     * 
+     * @return A direct buffer with 4 floats per vertex.
+     */
+    public FloatBuffer colorsToBuffer() {
+        return toDirectBuffer(colors, numColors * COLOR_SIZE);
+    }
+
+    /**
+     * Finalizes the positions, normals and texture coordinates, and sets them
+     * (and the number of vertices) on the given model.
+     * 
+     * @param model
+     *            The model to set the attributes on.
+     * @throws IllegalStateException
+     *             if the number of normals or texture coordinates differs from
+     *             the number of positions.
+     */
+    public void applyTo(Model model) {
+        if (numNormals != numPositions || numTexCoords != numPositions) {
+            throw new IllegalStateException("Mesh has " + numPositions + " positions, " + numNormals + " normals and "
+                    + numTexCoords + " texture coordinates.");
+        }
+
+        model.setNumVertices(numPositions);
+        model.setVertices(positionsToBuffer());
+        model.setNormals(normalsToBuffer());
+        model.setTexCoords(texCoordsToBuffer());
+    }
+
+    /**
+     * Clears all attributes, keeping the allocated arrays for reuse.
+     */
+    public void reset() {
+        numPositions = 0;
+        numNormals = 0;
+        numTexCoords = 0;
+        numColors = 0;
+    }
+
+    /**
+     * Getter for the number of vertices (positions) added so far.
+     * 
+     * @return the number of vertices.
+     */
+    public int getNumVertices() {
+        return numPositions;
+    }
+
+    /**
+     * Getter for the number of colors added so far.
+     * 
+     * @return the number of colors.
+     */
+    public int getNumColors() {
+        return numColors;
+    }
+}
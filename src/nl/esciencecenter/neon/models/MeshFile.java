@@ -0,0 +1,248 @@
+package nl.esciencecenter.neon.models;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+
+import nl.esciencecenter.neon.datastructures.GLSLAttribute;
+import nl.esciencecenter.neon.models.Model.VertexFormat;
+
+/* Copyright 2013 Netherlands eScience Center
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * Reader and writer for Neon's binary mesh format. A mesh file consists of:
+ * <ol>
+ * <li>A header: magic number, version, {@link VertexFormat}, number of
+ * vertices, number of attributes and number of indices (6 ints).</li>
+ * <li>The vertex format descriptor: per attribute the length of its GLSL name,
+ * the UTF-8 name (padded to a multiple of 4 bytes) and its number of float
+ * components per vertex.</li>
+ * <li>The vertex block: the float data of every attribute, one attribute after
+ * the other. This is the layout {@link nl.esciencecenter.neon.datastructures.VertexBufferObject}
+ * uses on the GPU, so the block can be uploaded as is.</li>
+ * <li>The index block: the (optional) int indices.</li>
+ * </ol>
+ * All values are stored in the byte order of the machine that wrote the file,
+ * which is checked on reading.
+ * 
+ * @author Maarten van Meersbergen <m.van.meersbergen@esciencecenter.nl>
+ * 
+ */
+public final class MeshFile {
+    private static final int MAGIC = 0x4e4d5348; // "NMSH"
+    private static final int VERSION = 1;
+    private static final int HEADER_INTS = 6;
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private MeshFile() {
+        // Utility class
+    }
+
+    /**
+     * Writes the vertices, normals and texture coordinates of any model (as
+     * uploaded by {@link Model#init(javax.media.opengl.GL3)}) to a mesh file.
+     * 
+     * @param file
+     *            The file to write to.
+     * @param model
+     *            The model to write.
+     * @throws IOException
+     *             if writing fails.
+     */
+    public static void write(File file, Model model) throws IOException {
+        GLSLAttribute[] attribs = new GLSLAttribute[] {
+                new GLSLAttribute(model.getVertices(), "MCvertex", GLSLAttribute.SIZE_FLOAT, 4),
+                new GLSLAttribute(model.getNormals(), "MCnormal", GLSLAttribute.SIZE_FLOAT, 3),
+                new GLSLAttribute(model.getTexCoords(), "MCtexCoord", GLSLAttribute.SIZE_FLOAT, 3) };
+
+        write(file, model.getFormat(), model.getNumVertices(), attribs, null);
+    }
+
+    /**
+     * Writes a mesh file out of a set of float attributes.
+     * 
+     * @param file
+     *            The file to write to.
+     * @param format
+     *            The vertex format.
+     * @param numVertices
+     *            The number of vertices.
+     * @param attribs
+     *            The attributes, each with a {@link FloatBuffer} holding
+     *            numVertices times {@link GLSLAttribute#getNumVectors()}
+     *            floats.
+     * @param indices
+     *            The indices, or null for a non-indexed mesh.
+     * @throws IOException
+     *             if writing fails.
+     */
+    public static void write(File file, VertexFormat format, int numVertices, GLSLAttribute[] attribs,
+            IntBuffer indices) throws IOException {
+        int numIndices = indices == null ? 0 : indices.capacity();
+
+        byte[][] names = new byte[attribs.length][];
+        long size = HEADER_INTS * 4;
+        for (int i = 0; i < attribs.length; i++) {
+            GLSLAttribute attrib = attribs[i];
+            if (!(attrib.getBuffer() instanceof FloatBuffer)) {
+                throw new IllegalArgumentException("Attribute " + attrib.getName() + " is not a FloatBuffer.");
+            }
+            if (attrib.getBuffer().capacity() != numVertices * attrib.getNumVectors()) {
+                throw new IllegalArgumentException("Attribute " + attrib.getName() + " holds "
+                        + attrib.getBuffer().capacity() + " floats, expected " + numVertices * attrib.getNumVectors());
+            }
+            names[i] = attrib.getName().getBytes(UTF8);
+            size += 4 + pad(names[i].length) + 4 + (long) numVertices * attrib.getNumVectors() * 4;
+        }
+        size += (long) numIndices * 4;
+
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            raf.setLength(size);
+            MappedByteBuffer out = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+            out.order(ByteOrder.nativeOrder());
+
+            out.putInt(MAGIC).putInt(VERSION).putInt(format.ordinal()).putInt(numVertices).putInt(attribs.length)
+                    .putInt(numIndices);
+
+            for (int i = 0; i < attribs.length; i++) {
+                out.putInt(names[i].length);
+                out.put(names[i]);
+                for (int p = names[i].length; p < pad(names[i].length); p++) {
+                    out.put((byte) 0);
+                }
+                out.putInt(attribs[i].getNumVectors());
+            }
+
+            for (GLSLAttribute attrib : attribs) {
+                FloatBuffer source = ((FloatBuffer) attrib.getBuffer()).duplicate();
+                source.rewind();
+                out.asFloatBuffer().put(source);
+                out.position(out.position() + source.capacity() * 4);
+            }
+
+            if (indices != null) {
+                IntBuffer source = indices.duplicate();
+                source.rewind();
+                out.asIntBuffer().put(source);
+            }
+
+            out.force();
+        } finally {
+            raf.close();
+        }
+    }
+
+    /**
+     * Memory-maps a mesh file. The attribute buffers of the resulting model are
+     * views on the mapped file; nothing is copied until the model is
+     * initialized and the vertex block is uploaded to the GPU.
+     * 
+     * @param file
+     *            The file to read.
+     * @return The (uninitialized) model.
+     * @throws IOException
+     *             if the file cannot be read or is not a valid mesh file.
+     */
+    public static MappedModel read(File file) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        MappedByteBuffer in;
+        try {
+            FileChannel channel = raf.getChannel();
+            in = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } finally {
+            // The mapping stays valid after the channel is closed.
+            raf.close();
+        }
+        in.order(ByteOrder.nativeOrder());
+
+        try {
+            int magic = in.getInt();
+            if (magic != MAGIC) {
+                if (magic == Integer.reverseBytes(MAGIC)) {
+                    throw new IOException(file + " was written on a machine with a different byte order.");
+                }
+                throw new IOException(file + " is not a mesh file.");
+            }
+            int version = in.getInt();
+            if (version != VERSION) {
+                throw new IOException(file + " has unsupported mesh file version " + version + ".");
+            }
+
+            int formatOrdinal = in.getInt();
+            if (formatOrdinal < 0 || formatOrdinal >= VertexFormat.values().length) {
+                throw new IOException(file + " has an unknown vertex format " + formatOrdinal + ".");
+            }
+            VertexFormat format = VertexFormat.values()[formatOrdinal];
+            int numVertices = in.getInt();
+            int numAttribs = in.getInt();
+            int numIndices = in.getInt();
+
+            String[] names = new String[numAttribs];
+            int[] components = new int[numAttribs];
+            for (int i = 0; i < numAttribs; i++) {
+                byte[] name = new byte[in.getInt()];
+                in.get(name);
+                in.position(in.position() + pad(name.length) - name.length);
+                names[i] = new String(name, UTF8);
+                components[i] = in.getInt();
+            }
+
+            int vertexBlockStart = in.position();
+            GLSLAttribute[] attribs = new GLSLAttribute[numAttribs];
+            for (int i = 0; i < numAttribs; i++) {
+                int floats = numVertices * components[i];
+                attribs[i] = new GLSLAttribute(slice(in, in.position(), floats * 4).asFloatBuffer(), names[i],
+                        GLSLAttribute.SIZE_FLOAT, components[i]);
+                in.position(in.position() + floats * 4);
+            }
+            ByteBuffer vertexBlock = slice(in, vertexBlockStart, in.position() - vertexBlockStart);
+
+            IntBuffer indices = null;
+            if (numIndices > 0) {
+                indices = slice(in, in.position(), numIndices * 4).asIntBuffer();
+                in.position(in.position() + numIndices * 4);
+            }
+
+            return new MappedModel(format, numVertices, vertexBlock, attribs, indices);
+        } catch (RuntimeException e) {
+            // Buffer underflows, negative sizes and the like.
+            throw new IOException(file + " is not a valid mesh file: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Creates a native order view on a region of the buffer.
+     */
+    private static ByteBuffer slice(ByteBuffer buffer, int start, int length) {
+        ByteBuffer view = buffer.duplicate();
+        view.position(start);
+        view.limit(start + length);
+        return view.slice().order(ByteOrder.nativeOrder());
+    }
+
+    private static int pad(int length) {
+        return (length + 3) & ~3;
+    }
+}
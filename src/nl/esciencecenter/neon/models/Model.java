@@ -10,6 +10,7 @@ import nl.esciencecenter.neon.NeonGLEventListener;
 import nl.esciencecenter.neon.datastructures.GLSLAttribute;
 import nl.esciencecenter.neon.datastructures.VertexBufferObject;
 import nl.esciencecenter.neon.exceptions.UninitializedException;
+import nl.esciencecenter.neon.metrics.FrameMetrics;
 import nl.esciencecenter.neon.shaders.ShaderProgram;
 
 import org.slf4j.Logger;
@@ -144,33 +145,79 @@ public abstract class Model {
 
     /**
      * Draw method for this model. Links its VertexBufferObject attributes and
-     * calls OpenGL DrawArrays.
+     * calls OpenGL DrawArrays. Models that build their own vertex buffer object
+     * in init only need to override {@link #applyUniforms(ShaderProgram)}
+     * and, for other than plain draw calls, {@link #drawVertices(GL3)}.
      * 
      * @param gl
      *            The global openGL instance.
      * @param program
      *            The shader program to be used for this drawing instance.
      * @throws UninitializedException
+     *             if the model has no vertex buffer object yet.
      */
     public void draw(GL3 gl, ShaderProgram program) throws UninitializedException {
-        if (initialized) {
+        if (getVbo() != null) {
+            applyUniforms(program);
+
             getVbo().bind(gl);
 
-            program.linkAttribs(gl, getVbo().getAttribs());
+            program.linkAttribs(gl, getVbo());
             program.use(gl);
 
-            if (getFormat() == VertexFormat.TRIANGLES) {
-                gl.glDrawArrays(GL3.GL_TRIANGLES, 0, getNumVertices());
-            } else if (getFormat() == VertexFormat.POINTS) {
-                gl.glDrawArrays(GL3.GL_POINTS, 0, getNumVertices());
-            } else if (getFormat() == VertexFormat.LINES) {
-                gl.glDrawArrays(GL3.GL_LINES, 0, getNumVertices());
-            }
+            drawVertices(gl);
         } else {
             throw new UninitializedException();
         }
     }
 
+    /**
+     * Sets the uniforms this model needs for drawing, such as its color, on the
+     * given program. Called before the program is used. Does nothing by
+     * default.
+     * 
+     * @param program
+     *            The shader program to be used for this drawing instance.
+     */
+    public void applyUniforms(ShaderProgram program) {
+    }
+
+    /**
+     * Issues the draw call(s) for this model. Its vertex buffer object should
+     * already be bound and linked, and the program in use, as done by
+     * {@link #draw(GL3, ShaderProgram)}.
+     * 
+     * @param gl
+     *            The global openGL instance.
+     */
+    public void drawVertices(GL3 gl) {
+        if (getFormat() == VertexFormat.TRIANGLES) {
+            gl.glDrawArrays(GL3.GL_TRIANGLES, 0, getNumVertices());
+            FrameMetrics.getInstance().countDraw(getNumVertices());
+        } else if (getFormat() == VertexFormat.POINTS) {
+            gl.glDrawArrays(GL3.GL_POINTS, 0, getNumVertices());
+            FrameMetrics.getInstance().countDraw(getNumVertices());
+        } else if (getFormat() == VertexFormat.LINES) {
+            gl.glDrawArrays(GL3.GL_LINES, 0, getNumVertices());
+            FrameMetrics.getInstance().countDraw(getNumVertices());
+        }
+    }
+
+    /**
+     * Check whether this model can be drawn in parts, with
+     * {@link #applyUniforms(ShaderProgram)} and {@link #drawVertices(GL3)}
+     * on its own bound vertex buffer object, as done by a
+     * {@link nl.esciencecenter.neon.render.RenderQueue}. True for every
+     * initialized model with a vertex buffer object; models that draw other
+     * models instead should return false, so they are drawn with
+     * {@link #draw(GL3, ShaderProgram)}.
+     * 
+     * @return true if the model can be drawn in parts.
+     */
+    public boolean isDrawableInParts() {
+        return getVbo() != null;
+    }
+
     /**
      * Getter for format.
      * 
@@ -1,12 +1,5 @@
 package nl.esciencecenter.neon.models;
 
-import java.util.ArrayList;
-import java.util.List;
-
-import nl.esciencecenter.neon.math.Float3Vector;
-import nl.esciencecenter.neon.math.Float4Vector;
-import nl.esciencecenter.neon.math.FloatVectorMath;
-
 /* Copyright [2013] [Netherlands eScience Center]
  * 
  * Licensed under the Apache License, Version 2.0 (the "License")
@@ -36,16 +29,18 @@ public class Sphere extends Model {
     private static final float X = 0.525731112119133606f;
     private static final float Z = 0.850650808352039932f;
 
-    private static final Float3Vector[] vdata = { new Float3Vector(-X, 0f, Z), new Float3Vector(X, 0f, Z), new Float3Vector(-X, 0f, -Z),
-            new Float3Vector(X, 0f, -Z), new Float3Vector(0f, Z, X), new Float3Vector(0f, Z, -X), new Float3Vector(0f, -Z, X),
-            new Float3Vector(0f, -Z, -X), new Float3Vector(Z, X, 0f), new Float3Vector(-Z, X, 0f), new Float3Vector(Z, -X, 0f),
-            new Float3Vector(-Z, -X, 0f) };
+    private static final float[][] vdata = { { -X, 0f, Z }, { X, 0f, Z }, { -X, 0f, -Z }, { X, 0f, -Z },
+            { 0f, Z, X }, { 0f, Z, -X }, { 0f, -Z, X }, { 0f, -Z, -X }, { Z, X, 0f }, { -Z, X, 0f }, { Z, -X, 0f },
+            { -Z, -X, 0f } };
 
     private static final int[][] tindices = { { 1, 4, 0 }, { 4, 9, 0 }, { 4, 5, 9 }, { 8, 5, 4 }, { 1, 8, 4 },
             { 1, 10, 8 }, { 10, 3, 8 }, { 8, 3, 5 }, { 3, 2, 5 }, { 3, 7, 2 }, { 3, 10, 7 }, { 10, 6, 7 },
             { 6, 11, 7 }, { 6, 0, 11 }, { 6, 1, 0 }, { 10, 1, 6 }, { 11, 0, 9 }, { 2, 11, 9 }, { 5, 2, 9 },
             { 11, 2, 7 } };
 
+    /** state keeper for texture coordinate state (3d coordinates yes/no) */
+    private final boolean texCoordsIn3D;
+
     /**
      * Basic constructor for Sphere. Allows for multiple levels of detail.
      * 
@@ -56,61 +51,27 @@ public class Sphere extends Model {
     public Sphere(int divisions, boolean texCoordsIn3D) {
         super(VertexFormat.TRIANGLES);
 
-        List<Float3Vector> points3List = new ArrayList<Float3Vector>();
-
-        for (int i = 0; i < tindices.length; i++) {
-            makeVertices(points3List, vdata[tindices[i][0]], vdata[tindices[i][1]], vdata[tindices[i][2]], divisions);
-        }
+        this.texCoordsIn3D = texCoordsIn3D;
 
-        List<Float4Vector> points4List = new ArrayList<Float4Vector>();
-
-        for (int i = 0; i < points3List.size(); i++) {
-            points4List.add(new Float4Vector(points3List.get(i), 1f));
+        int numVertices = tindices.length * 3;
+        for (int i = 0; i < divisions; i++) {
+            numVertices *= 4;
         }
+        MeshBuilder builder = new MeshBuilder(numVertices);
 
-        setNormals(FloatVectorMath.vec3ListToBuffer(points3List));
-        if (texCoordsIn3D) {
-            setTexCoords(FloatVectorMath.vec3ListToBuffer(points3List));
-        } else {
-            ArrayList<Float3Vector> texCoords2D = new ArrayList<Float3Vector>();
-            float minPhi = 0f, maxPhi = 0f;
-            float maxTheta = 0f;
-            for (Float3Vector point : points3List) {
-                double x = point.getX();
-                double y = point.getY();
-                double z = point.getZ();
-
-                float phi = (float) ((Math.atan(x / z) + (0.5 * Math.PI)) / Math.PI);
-                float theta = (float) (Math.atan(Math.sqrt(z * z + x * x) / y) / Math.PI);
-
-                if (phi < minPhi) {
-                    minPhi = phi;
-                }
-                if (phi > maxPhi) {
-                    maxPhi = phi;
-                }
-                if (theta < 0) {
-                    theta = 1.0f + theta;
-                }
-                if (theta > maxTheta) {
-                    maxTheta = theta;
-                }
-                texCoords2D.add(new Float3Vector(phi, theta, 0f));
-            }
-
-            setTexCoords(FloatVectorMath.vec3ListToBuffer(texCoords2D));
+        for (int i = 0; i < tindices.length; i++) {
+            makeVertices(builder, vdata[tindices[i][0]], vdata[tindices[i][1]], vdata[tindices[i][2]], divisions);
         }
-        setVertices(FloatVectorMath.vec4ListToBuffer(points4List));
 
-        setNumVertices(points3List.size());
+        builder.applyTo(this);
     }
 
     /**
      * Helper method to produce the vertices for a triangular part of the
      * sphere.
      * 
-     * @param pointsList
-     *            _output_ array for the vertex data.
+     * @param builder
+     *            _output_ builder for the vertex data.
      * @param a
      *            Point A of the triangle.
      * @param b
@@ -120,36 +81,68 @@ public class Sphere extends Model {
      * @param div
      *            The The number of divisions for this triangle.
      */
-    private void makeVertices(List<Float3Vector> pointsList, Float3Vector a, Float3Vector b, Float3Vector c, int div) {
+    private void makeVertices(MeshBuilder builder, float[] a, float[] b, float[] c, int div) {
         if (div <= 0) {
-            pointsList.add(a);
-            pointsList.add(b);
-            pointsList.add(c);
+            addVertex(builder, a);
+            addVertex(builder, b);
+            addVertex(builder, c);
+        } else {
+            float[] ab = midpoint(a, b);
+            float[] ac = midpoint(a, c);
+            float[] bc = midpoint(b, c);
+
+            makeVertices(builder, a, ab, ac, div - 1);
+            makeVertices(builder, b, bc, ab, div - 1);
+            makeVertices(builder, c, ac, bc, div - 1);
+            makeVertices(builder, ab, bc, ac, div - 1);
+        }
+    }
+
+    /**
+     * Helper method to calculate the point halfway between a and b, projected
+     * onto the unit sphere.
+     * 
+     * @param a
+     *            Point A.
+     * @param b
+     *            Point B.
+     * @return The normalized midpoint.
+     */
+    private static float[] midpoint(float[] a, float[] b) {
+        float x = a[0] + b[0];
+        float y = a[1] + b[1];
+        float z = a[2] + b[2];
+        float length = (float) Math.sqrt(x * x + y * y + z * z);
+
+        return new float[] { x / length, y / length, z / length };
+    }
+
+    /**
+     * Helper method to add a single point of the unit sphere, with its normal
+     * and texture coordinates, to the builder.
+     * 
+     * @param builder
+     *            _output_ builder for the vertex data.
+     * @param point
+     *            The point to add.
+     */
+    private void addVertex(MeshBuilder builder, float[] point) {
+        float x = point[0];
+        float y = point[1];
+        float z = point[2];
+
+        builder.position(x, y, z).normal(x, y, z);
+
+        if (texCoordsIn3D) {
+            builder.texCoord(x, y, z);
         } else {
-            Float3Vector ab = new Float3Vector();
-            Float3Vector ac = new Float3Vector();
-            Float3Vector bc = new Float3Vector();
-
-            ab.setX((a.getX() + b.getX()));
-            ac.setX((a.getX() + c.getX()));
-            bc.setX((b.getX() + c.getX()));
-
-            ab.setY((a.getY() + b.getY()));
-            ac.setY((a.getY() + c.getY()));
-            bc.setY((b.getY() + c.getY()));
-
-            ab.setZ((a.getZ() + b.getZ()));
-            ac.setZ((a.getZ() + c.getZ()));
-            bc.setZ((b.getZ() + c.getZ()));
-
-            ab = FloatVectorMath.normalize(ab);
-            ac = FloatVectorMath.normalize(ac);
-            bc = FloatVectorMath.normalize(bc);
-
-            makeVertices(pointsList, a, ab, ac, div - 1);
-            makeVertices(pointsList, b, bc, ab, div - 1);
-            makeVertices(pointsList, c, ac, bc, div - 1);
-            makeVertices(pointsList, ab, bc, ac, div - 1);
+            float phi = (float) ((Math.atan(x / z) + (0.5 * Math.PI)) / Math.PI);
+            float theta = (float) (Math.atan(Math.sqrt(z * z + x * x) / y) / Math.PI);
+
+            if (theta < 0) {
+                theta = 1.0f + theta;
+            }
+            builder.texCoord(phi, theta, 0f);
         }
     }
 }
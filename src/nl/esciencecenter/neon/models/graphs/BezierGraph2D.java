@@ -14,7 +14,7 @@ import nl.esciencecenter.neon.shaders.ShaderProgram;
 import nl.esciencecenter.neon.text.MultiColorText;
 import nl.esciencecenter.neon.text.jogampexperimental.Font;
 import nl.esciencecenter.neon.text.jogampexperimental.FontFactory;
-import nl.esciencecenter.neon.util.ModelViewStack;
+import nl.esciencecenter.neon.util.MatrixStack;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -149,13 +149,13 @@ public class BezierGraph2D {
         }
     }
 
-    public void draw(GL3 gl, Float4Matrix mv, ModelViewStack mvStack, ShaderProgram program)
-            throws UninitializedException {
+    public void draw(GL3 gl, MatrixStack mvStack, ShaderProgram program) throws UninitializedException {
         int i = 0;
         for (BezierLine bl : segmentedLines.values()) {
-            ModelViewStack linesStack = new ModelViewStack(mvStack);
-            linesStack.putBottom(FloatMatrixMath.translate(0f, 0f, i * (DEFAULT_WIDTH / colors.length)));
-            program.setUniformMatrix("MVMatrix", linesStack.calc(mv));
+            mvStack.push();
+            mvStack.mulTop(FloatMatrixMath.translate(0f, 0f, i * (DEFAULT_WIDTH / colors.length)));
+            program.setUniformMatrix("MVMatrix", mvStack.getTop());
+            mvStack.pop();
 
             gl.glLineWidth(3f);
 
@@ -164,42 +164,37 @@ public class BezierGraph2D {
         }
     }
 
-    public void drawLabels(GL3 gl, Float4Matrix mv, ModelViewStack mvStack, ShaderProgram program)
-            throws UninitializedException {
+    public void drawLabels(GL3 gl, MatrixStack mvStack, ShaderProgram program) throws UninitializedException {
         float widthPerSegment = DEFAULT_WIDTH / horizontalSegments;
 
         float scale = .0025f;
 
         Float4Matrix scaleMatrix = FloatMatrixMath.scale(scale);
 
-        ModelViewStack horizontalAxisTextStack = new ModelViewStack(mvStack);
-        Float4Matrix horizontalAxisTranslation = FloatMatrixMath.translate(new Float3Vector(0f, -0.15f, DEFAULT_WIDTH));
-        horizontalAxisTextStack.putTop(horizontalAxisTranslation);
-        horizontalAxisTextStack.putTop(scaleMatrix);
-        program.setUniformMatrix("MVMatrix", horizontalAxisTextStack.calc(mv));
+        mvStack.push();
+        mvStack.mulTop(FloatMatrixMath.translate(new Float3Vector(0f, -0.15f, DEFAULT_WIDTH)));
+        mvStack.mulTop(scaleMatrix);
+        program.setUniformMatrix("MVMatrix", mvStack.getTop());
+        mvStack.pop();
         horizontalAxisText.draw(gl, program);
 
         for (int i = 0; i < seperateColorLabels.length; i++) {
             MultiColorText label = seperateColorLabels[i];
 
-            ModelViewStack colorLabelStack = new ModelViewStack(mvStack);
-            Float4Matrix colorLabelTranslation = FloatMatrixMath.translate(new Float3Vector(0f, -0.2f, i
-                    * (DEFAULT_WIDTH / colors.length)));
-            colorLabelStack.putTop(colorLabelTranslation);
-            colorLabelStack.putTop(scaleMatrix);
-            program.setUniformMatrix("MVMatrix", colorLabelStack.calc(mv));
+            mvStack.push();
+            mvStack.mulTop(FloatMatrixMath.translate(new Float3Vector(0f, -0.2f, i * (DEFAULT_WIDTH / colors.length))));
+            mvStack.mulTop(scaleMatrix);
+            program.setUniformMatrix("MVMatrix", mvStack.getTop());
+            mvStack.pop();
             label.draw(gl, program);
         }
 
-        ModelViewStack verticalAxisTextStack = new ModelViewStack(mvStack);
-        Float4Matrix verticalAxisRotation = FloatMatrixMath.rotationZ(90f);
-        verticalAxisTextStack.putTop(verticalAxisRotation);
-
-        Float4Matrix verticalAxisTranslation = FloatMatrixMath.translate(new Float3Vector(.15f, 0.05f, DEFAULT_WIDTH));
-        verticalAxisTextStack.putTop(verticalAxisTranslation);
-
-        verticalAxisTextStack.putTop(scaleMatrix);
-        program.setUniformMatrix("MVMatrix", verticalAxisTextStack.calc(mv));
+        mvStack.push();
+        mvStack.mulTop(FloatMatrixMath.rotationZ(90f));
+        mvStack.mulTop(FloatMatrixMath.translate(new Float3Vector(.15f, 0.05f, DEFAULT_WIDTH)));
+        mvStack.mulTop(scaleMatrix);
+        program.setUniformMatrix("MVMatrix", mvStack.getTop());
+        mvStack.pop();
         verticalAxisText.draw(gl, program);
 
         Float4Matrix horizontalLabelRotationMatrix = FloatMatrixMath.rotationZ(-90f);
@@ -211,11 +206,12 @@ public class BezierGraph2D {
                     * horizontalSegments / NR_OF_HORIZONTAL_LABELS)
                     + (.2f * widthPerSegment), DEFAULT_WIDTH);
 
-            ModelViewStack horizontalLabelStack = new ModelViewStack(mvStack);
-            horizontalLabelStack.putTop(horizontalLabelRotationMatrix);
-            horizontalLabelStack.putTop(horizontalLabelTranslation);
-            horizontalLabelStack.putTop(scaleMatrix);
-            program.setUniformMatrix("MVMatrix", horizontalLabelStack.calc(mv));
+            mvStack.push();
+            mvStack.mulTop(horizontalLabelRotationMatrix);
+            mvStack.mulTop(horizontalLabelTranslation);
+            mvStack.mulTop(scaleMatrix);
+            program.setUniformMatrix("MVMatrix", mvStack.getTop());
+            mvStack.pop();
             label.draw(gl, program);
         }
     }
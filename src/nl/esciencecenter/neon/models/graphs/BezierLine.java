@@ -8,7 +8,6 @@ import javax.media.opengl.GL3;
 
 import nl.esciencecenter.neon.datastructures.GLSLAttribute;
 import nl.esciencecenter.neon.datastructures.VertexBufferObject;
-import nl.esciencecenter.neon.exceptions.UninitializedException;
 import nl.esciencecenter.neon.math.Color4;
 import nl.esciencecenter.neon.math.Float3Vector;
 import nl.esciencecenter.neon.math.Float4Vector;
@@ -16,9 +15,6 @@ import nl.esciencecenter.neon.math.FloatVectorMath;
 import nl.esciencecenter.neon.models.Model;
 import nl.esciencecenter.neon.shaders.ShaderProgram;
 
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
-
 /* Copyright 2013 Netherlands eScience Center
  * 
  * Licensed under the Apache License, Version 2.0 (the "License");
@@ -41,8 +37,6 @@ import org.slf4j.LoggerFactory;
  * 
  */
 public class BezierLine extends Model {
-    private final static Logger LOGGER = LoggerFactory.getLogger(BezierLine.class);
-
     private static final int NUMBER_OF_BEZIER_STEPS = 10;
     private final Float3Vector bezierControlStart;
     private final Float3Vector bezierControlEnd;
@@ -52,6 +46,10 @@ public class BezierLine extends Model {
 
     private final float widthPerSegment;
 
+    private float[] polyline;
+    private float[] curve;
+    private FloatBuffer bezierBuffer;
+
     private class DataPoint {
         private final float horizontal, vertical;
 
@@ -208,35 +206,40 @@ public class BezierLine extends Model {
     public synchronized void init(GL3 gl) {
         delete(gl);
 
-        setNumVertices(points.size() * (2 * NUMBER_OF_BEZIER_STEPS));
-
-        FloatBuffer bezierBuffer = FloatBuffer.allocate(getNumVertices() * 4);
+        int numPoints = points.size();
+        setNumVertices(numPoints * (2 * NUMBER_OF_BEZIER_STEPS));
 
-        // for (int i = 1; i < points.size() - 1; i++) {
-        // Float4Vector prevPoint = points.get(i - 1);
-        // Float4Vector thisPoint = points.get(i);
-        // Float4Vector nextPoint = points.get(i + 1);
-        // }
+        // The number of points is fixed, so the scratch arrays and the upload
+        // buffer are only allocated on the first call.
+        if (bezierBuffer == null || bezierBuffer.capacity() != getNumVertices() * 4) {
+            polyline = new float[numPoints * 4];
+            curve = new float[Math.max(0, numPoints - 1) * NUMBER_OF_BEZIER_STEPS * 4];
+            bezierBuffer = FloatBuffer.allocate(getNumVertices() * 4);
+        }
+        bezierBuffer.clear();
+
+        for (int i = 0; i < numPoints; i++) {
+            Float4Vector point = points.get(i);
+            polyline[i * 4] = point.getX();
+            polyline[i * 4 + 1] = point.getY();
+            polyline[i * 4 + 2] = point.getZ();
+            polyline[i * 4 + 3] = point.getW();
+        }
 
-        Float4Vector lastBezierPointOfPreviousIteration = null;
-        for (int i = 0; i < points.size() - 1; i++) {
-            Float4Vector startPoint = points.get(i);
-            Float4Vector endPoint = points.get(i + 1);
+        FloatVectorMath.bezierCurves(NUMBER_OF_BEZIER_STEPS, polyline, 0, numPoints, bezierControlStart,
+                bezierControlEnd, curve, 0);
 
-            Float4Vector[] bezierResult = FloatVectorMath.bezierCurve(NUMBER_OF_BEZIER_STEPS, startPoint,
-                    bezierControlStart, bezierControlEnd, endPoint);
+        for (int i = 0; i < numPoints - 1; i++) {
+            int segmentStart = i * NUMBER_OF_BEZIER_STEPS * 4;
 
-            for (int j = 0; j < bezierResult.length - 1; j++) {
-                if (j == 0 && lastBezierPointOfPreviousIteration != null) {
-                    bezierBuffer.put(lastBezierPointOfPreviousIteration.asBuffer());
-                    bezierBuffer.put(bezierResult[j].asArray());
-                }
-
-                bezierBuffer.put(bezierResult[j].asArray());
-                bezierBuffer.put(bezierResult[j + 1].asArray());
+            // Connect to the last point of the previous segment
+            if (i > 0) {
+                bezierBuffer.put(curve, segmentStart - 4, 8);
             }
 
-            lastBezierPointOfPreviousIteration = bezierResult[bezierResult.length - 1];
+            for (int j = 0; j < NUMBER_OF_BEZIER_STEPS - 1; j++) {
+                bezierBuffer.put(curve, segmentStart + j * 4, 8);
+            }
         }
 
         bezierBuffer.rewind();
@@ -247,21 +250,7 @@ public class BezierLine extends Model {
     }
 
     @Override
-    public void draw(GL3 gl, ShaderProgram program) throws UninitializedException {
+    public void applyUniforms(ShaderProgram program) {
         program.setUniformVector("Color", color);
-
-        getVbo().bind(gl);
-
-        program.linkAttribs(gl, getVbo().getAttribs());
-
-        // Load all staged variables into the GPU, check for errors and
-        // omissions.
-        try {
-            program.use(gl);
-        } catch (UninitializedException e) {
-            LOGGER.error(e.getMessage());
-        }
-
-        gl.glDrawArrays(GL3.GL_LINES, 0, getNumVertices());
     }
 }
@@ -7,6 +7,7 @@ import nl.esciencecenter.neon.math.Color4;
 import nl.esciencecenter.neon.math.Float3Vector;
 import nl.esciencecenter.neon.math.Float4Matrix;
 import nl.esciencecenter.neon.math.FloatMatrixMath;
+import nl.esciencecenter.neon.models.GeometryRegistry;
 import nl.esciencecenter.neon.models.LeftBottomQuad;
 import nl.esciencecenter.neon.shaders.ShaderProgram;
 import nl.esciencecenter.neon.text.MultiColorText;
@@ -29,14 +30,16 @@ import nl.esciencecenter.neon.text.jogampexperimental.FontFactory;
  */
 
 /**
- * Convenience class to create a 2D Histogram graph model.
+ * Convenience class to create a 2D Histogram graph model. All bars share a
+ * single unit {@link LeftBottomQuad} from the {@link GeometryRegistry}, which
+ * is positioned and scaled per bar through the modelview matrix.
  * 
  * @author Maarten van Meersbergen <m.van.meersbergen@esciencecenter.nl>
  * 
  */
 public class Histogram2D {
     private final float[] data;
-    private final LeftBottomQuad[] bars;
+    private LeftBottomQuad bar;
     private final Color4[] colors;
     private final MultiColorText[] barLabels;
     private final String[] barLabelTexts;
@@ -57,15 +60,10 @@ public class Histogram2D {
 
         int numBars = barColors.length;
 
-        float widthPerQuad = DEFAULT_WIDTH / numBars;
-
         data = new float[numBars];
-        bars = new LeftBottomQuad[numBars];
         for (int i = 0; i < numBars; i++) {
-            data[i] = 0f;
-
-            Float3Vector newLeftBottom = leftBottomCoordinates.add(new Float3Vector(i * widthPerQuad, 0f, 0f));
-            bars[i] = new LeftBottomQuad(DEFAULT_HEIGHT, widthPerQuad, newLeftBottom);
+            // Bars are drawn at full height until the first call to setValues.
+            data[i] = 1f;
         }
 
         this.colors = barColors;
@@ -76,8 +74,8 @@ public class Histogram2D {
     }
 
     public void init(GL3 gl) {
-        for (LeftBottomQuad q : bars) {
-            q.init(gl);
+        if (bar == null) {
+            bar = GeometryRegistry.getInstance().unitLeftBottomQuad(gl);
         }
 
         int numBars = data.length;
@@ -89,29 +87,38 @@ public class Histogram2D {
         }
     }
 
-    public void drawBars(GL3 gl, ShaderProgram program) throws UninitializedException {
-        for (int i = 0; i < bars.length; i++) {
-            LeftBottomQuad q = bars[i];
+    public void drawBars(GL3 gl, Float4Matrix mv, ShaderProgram program) throws UninitializedException {
+        if (bar == null) {
+            throw new UninitializedException();
+        }
+
+        float widthPerQuad = DEFAULT_WIDTH / data.length;
 
-            // Set the color for the current Quad
+        for (int i = 0; i < data.length; i++) {
+            Float3Vector newLeftBottom = leftBottomCoordinates.add(new Float3Vector(i * widthPerQuad, 0f, 0f));
+            Float4Matrix barMatrix = FloatMatrixMath.translate(newLeftBottom).mul(
+                    FloatMatrixMath.scale(widthPerQuad, data[i] * DEFAULT_HEIGHT, 1f));
+
+            // Set the color and position for the current Quad
             program.setUniformVector("Color", colors[i]);
+            program.setUniformMatrix("MVMatrix", mv.mul(barMatrix));
 
             // Load all staged variables into the GPU, check for errors and
             // omissions.
             program.use(gl);
-            q.draw(gl, program);
+            bar.draw(gl, program);
         }
     }
 
     public void drawLabels(GL3 gl, Float4Matrix mv, ShaderProgram program) throws UninitializedException {
-        float widthPerQuad = DEFAULT_WIDTH / bars.length;
+        float widthPerQuad = DEFAULT_WIDTH / data.length;
 
         float scale = .0025f;
 
         Float4Matrix scaleMatrix = FloatMatrixMath.scale(scale);
         Float4Matrix scaledRotationMatrix = scaleMatrix.mul(FloatMatrixMath.rotationZ(-90f));
 
-        for (int i = 0; i < bars.length; i++) {
+        for (int i = 0; i < data.length; i++) {
             MultiColorText label = barLabels[i];
             Float3Vector newLeftBottom = leftBottomCoordinates.add(new Float3Vector(0.5f, ((widthPerQuad / scale) * i)
                     + ((.2f * widthPerQuad / scale)), 0f));
@@ -127,19 +134,19 @@ public class Histogram2D {
 
     public void setValues(GL3 gl, float[] newData) throws IllegalArgumentException {
         int numBars = data.length;
-        float widthPerQuad = DEFAULT_WIDTH / numBars;
 
         if (newData.length != numBars) {
             throw new IllegalArgumentException("The size of this histogram was " + numBars
                     + " while you gave me data for a size " + newData.length);
         }
 
-        for (int i = 0; i < bars.length; i++) {
-            bars[i].delete(gl);
+        System.arraycopy(newData, 0, data, 0, numBars);
+    }
 
-            Float3Vector newLeftBottom = leftBottomCoordinates.add(new Float3Vector(i * widthPerQuad, 0f, 0f));
-            bars[i] = new LeftBottomQuad(newData[i] * DEFAULT_HEIGHT, widthPerQuad, newLeftBottom);
-            bars[i].init(gl);
+    public void delete(GL3 gl) {
+        if (bar != null) {
+            GeometryRegistry.getInstance().release(gl, bar);
+            bar = null;
         }
     }
 
@@ -0,0 +1,414 @@
+package nl.esciencecenter.neon.models.graphs;
+
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+import nl.esciencecenter.neon.math.Float4Matrix;
+
+import com.jogamp.common.nio.Buffers;
+
+/* Copyright 2013 Netherlands eScience Center
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * Level-of-detail octree for large point clouds. Every node stores a
+ * representative subsample of the points within its bounds, and hands the
+ * remainder down to its children. Drawing a node together with all of its
+ * ancestors therefore gives a progressively denser version of the same region.
+ * 
+ * After building, the points are expected to be reordered according to the
+ * permutation returned by {@link #build(FloatBuffer, int)}, so that the points
+ * of each node occupy one contiguous range of the vertex buffer. A selection of
+ * nodes can then be drawn with a single glMultiDrawArrays call.
+ * 
+ * @author Maarten van Meersbergen <m.van.meersbergen@esciencecenter.nl>
+ * 
+ */
+public class PointCloudOctree {
+    /** The default maximum number of points stored in a single node. */
+    public static final int DEFAULT_POINTS_PER_NODE = 8192;
+    /** Safety limit for (nearly) coincident points. */
+    private static final int MAX_DEPTH = 21;
+    /** Conversion factor from half the cube edge to the bounding radius. */
+    private static final float SQRT3 = 1.7320508f;
+
+    /**
+     * A single node of the octree.
+     */
+    public static class Node {
+        private final float centerX, centerY, centerZ;
+        private final float halfSize;
+        private final int depth;
+        private final Node[] children = new Node[8];
+        private int first, count;
+        private float priority;
+
+        Node(float centerX, float centerY, float centerZ, float halfSize, int depth) {
+            this.centerX = centerX;
+            this.centerY = centerY;
+            this.centerZ = centerZ;
+            this.halfSize = halfSize;
+            this.depth = depth;
+        }
+
+        /**
+         * Getter for the index of the first point of this node in the reordered
+         * vertex buffer.
+         * 
+         * @return the index of the first point.
+         */
+        public int getFirst() {
+            return first;
+        }
+
+        /**
+         * Getter for the number of points stored in this node.
+         * 
+         * @return the number of points.
+         */
+        public int getCount() {
+            return count;
+        }
+
+        /**
+         * Getter for the depth of this node, the root being at depth 0.
+         * 
+         * @return the depth.
+         */
+        public int getDepth() {
+            return depth;
+        }
+
+        /**
+         * Getter for the child in the given octant, if present.
+         * 
+         * @param octant
+         *            The octant index (0-7).
+         * @return the child node, or null if this octant is empty.
+         */
+        public Node getChild(int octant) {
+            return children[octant];
+        }
+    }
+
+    private final int pointsPerNode;
+    private final List<Node> nodes;
+    private final PriorityQueue<Node> queue;
+
+    private Node root;
+    private IntBuffer firsts, counts;
+    private int selectedNodes, selectedPoints;
+
+    /**
+     * Constructor for an octree with the default node capacity.
+     */
+    public PointCloudOctree() {
+        this(DEFAULT_POINTS_PER_NODE);
+    }
+
+    /**
+     * Constructor for an octree with a custom node capacity.
+     * 
+     * @param pointsPerNode
+     *            The maximum number of points stored in a single node.
+     */
+    public PointCloudOctree(int pointsPerNode) {
+        if (pointsPerNode <= 0) {
+            throw new IllegalArgumentException("pointsPerNode must be greater than 0");
+        }
+        this.pointsPerNode = pointsPerNode;
+        this.nodes = new ArrayList<Node>();
+        this.queue = new PriorityQueue<Node>(64, new Comparator<Node>() {
+            @Override
+            public int compare(Node a, Node b) {
+                return Float.compare(b.priority, a.priority);
+            }
+        });
+    }
+
+    /**
+     * Builds the hierarchy for the given points.
+     * 
+     * @param vertices
+     *            The point coordinates, x, y and z are read from the first
+     *            three places of every point.
+     * @param stride
+     *            The number of floats per point in the vertices buffer.
+     * @return The permutation to apply to the point data: the point that
+     *         should end up at position i is the original point at index
+     *         result[i].
+     */
+    public int[] build(FloatBuffer vertices, int stride) {
+        int numPoints = vertices.capacity() / stride;
+
+        int[] order = new int[numPoints];
+        for (int i = 0; i < numPoints; i++) {
+            order[i] = i;
+        }
+
+        float minX = Float.MAX_VALUE, minY = Float.MAX_VALUE, minZ = Float.MAX_VALUE;
+        float maxX = -Float.MAX_VALUE, maxY = -Float.MAX_VALUE, maxZ = -Float.MAX_VALUE;
+        for (int i = 0; i < numPoints; i++) {
+            float x = vertices.get(i * stride);
+            float y = vertices.get(i * stride + 1);
+            float z = vertices.get(i * stride + 2);
+
+            minX = Math.min(minX, x);
+            minY = Math.min(minY, y);
+            minZ = Math.min(minZ, z);
+            maxX = Math.max(maxX, x);
+            maxY = Math.max(maxY, y);
+            maxZ = Math.max(maxZ, z);
+        }
+
+        nodes.clear();
+        if (numPoints == 0) {
+            root = null;
+        } else {
+            float halfSize = Math.max(maxX - minX, Math.max(maxY - minY, maxZ - minZ)) * .5f;
+            root = build(vertices, stride, order, new int[numPoints], 0, numPoints, (minX + maxX) * .5f,
+                    (minY + maxY) * .5f, (minZ + maxZ) * .5f, halfSize, 0);
+        }
+
+        firsts = Buffers.newDirectIntBuffer(Math.max(1, nodes.size()));
+        counts = Buffers.newDirectIntBuffer(Math.max(1, nodes.size()));
+        selectedNodes = 0;
+        selectedPoints = 0;
+
+        return order;
+    }
+
+    /**
+     * Recursive build step. Moves a strided subsample of the given range to its
+     * front, and sorts the rest of the range by octant before descending.
+     */
+    private Node build(FloatBuffer vertices, int stride, int[] order, int[] scratch, int start, int end, float cx,
+            float cy, float cz, float halfSize, int depth) {
+        Node node = new Node(cx, cy, cz, halfSize, depth);
+        nodes.add(node);
+
+        int total = end - start;
+        node.first = start;
+        if (total <= pointsPerNode || depth >= MAX_DEPTH) {
+            node.count = total;
+            return node;
+        }
+
+        // Pick the representatives with an even stride through the range.
+        // Picks only ever move forward, so no point gets picked twice.
+        float step = total / (float) pointsPerNode;
+        for (int i = 0; i < pointsPerNode; i++) {
+            int pick = start + (int) (i * step);
+            int tmp = order[start + i];
+            order[start + i] = order[pick];
+            order[pick] = tmp;
+        }
+        node.count = pointsPerNode;
+
+        // Counting sort of the remainder into the 8 octants.
+        int restStart = start + pointsPerNode;
+        int[] octantStarts = new int[9];
+        for (int i = restStart; i < end; i++) {
+            octantStarts[octant(vertices, stride, order[i], cx, cy, cz) + 1]++;
+        }
+        octantStarts[0] = restStart;
+        for (int o = 1; o < 9; o++) {
+            octantStarts[o] += octantStarts[o - 1];
+        }
+        int[] fill = new int[8];
+        System.arraycopy(octantStarts, 0, fill, 0, 8);
+        for (int i = restStart; i < end; i++) {
+            int o = octant(vertices, stride, order[i], cx, cy, cz);
+            scratch[fill[o]++] = order[i];
+        }
+        System.arraycopy(scratch, restStart, order, restStart, end - restStart);
+
+        float childHalf = halfSize * .5f;
+        for (int o = 0; o < 8; o++) {
+            if (octantStarts[o + 1] > octantStarts[o]) {
+                float ccx = ((o & 1) == 0) ? cx - childHalf : cx + childHalf;
+                float ccy = ((o & 2) == 0) ? cy - childHalf : cy + childHalf;
+                float ccz = ((o & 4) == 0) ? cz - childHalf : cz + childHalf;
+
+                node.children[o] = build(vertices, stride, order, scratch, octantStarts[o], octantStarts[o + 1], ccx,
+                        ccy, ccz, childHalf, depth + 1);
+            }
+        }
+
+        return node;
+    }
+
+    private static int octant(FloatBuffer vertices, int stride, int index, float cx, float cy, float cz) {
+        int result = 0;
+        if (vertices.get(index * stride) >= cx) {
+            result |= 1;
+        }
+        if (vertices.get(index * stride + 1) >= cy) {
+            result |= 2;
+        }
+        if (vertices.get(index * stride + 2) >= cz) {
+            result |= 4;
+        }
+        return result;
+    }
+
+    /**
+     * Selects the nodes to draw this frame, largest projected size first, until
+     * the point budget is used up. Nodes that do not fit in the remaining
+     * budget are skipped together with their subtree, so those regions are
+     * only drawn at the coarser level of their ancestors. Nodes entirely
+     * behind the camera are culled.
+     * 
+     * @param mv
+     *            The modelview matrix used to draw the points, or null to
+     *            prioritize on node size alone.
+     * @param pixelsPerUnit
+     *            The projected size in pixels of one unit at distance 1, as
+     *            given by the projection matrix and the viewport height.
+     * @param pointBudget
+     *            The maximum number of points to select.
+     * @return the number of selected nodes.
+     */
+    public int select(Float4Matrix mv, float pixelsPerUnit, int pointBudget) {
+        firsts.clear();
+        counts.clear();
+        selectedNodes = 0;
+        selectedPoints = 0;
+
+        if (root == null) {
+            return 0;
+        }
+
+        queue.clear();
+        if (prioritize(root, mv, pixelsPerUnit)) {
+            queue.add(root);
+        }
+
+        while (!queue.isEmpty()) {
+            Node node = queue.poll();
+            if (selectedPoints + node.count > pointBudget) {
+                continue;
+            }
+
+            firsts.put(node.first);
+            counts.put(node.count);
+            selectedNodes++;
+            selectedPoints += node.count;
+
+            for (Node child : node.children) {
+                if (child != null && prioritize(child, mv, pixelsPerUnit)) {
+                    queue.add(child);
+                }
+            }
+        }
+
+        firsts.flip();
+        counts.flip();
+
+        return selectedNodes;
+    }
+
+    /**
+     * Calculates the priority of the given node. Returns false if the node is
+     * behind the camera.
+     */
+    private boolean prioritize(Node node, Float4Matrix mv, float pixelsPerUnit) {
+        float radius = node.halfSize * SQRT3;
+        if (mv == null) {
+            node.priority = radius;
+            return true;
+        }
+
+        float[] m = mv.asArray();
+        float ex = m[0] * node.centerX + m[1] * node.centerY + m[2] * node.centerZ + m[3];
+        float ey = m[4] * node.centerX + m[5] * node.centerY + m[6] * node.centerZ + m[7];
+        float ez = m[8] * node.centerX + m[9] * node.centerY + m[10] * node.centerZ + m[11];
+
+        // The camera looks down the negative z axis.
+        if (ez - radius > 0f) {
+            return false;
+        }
+
+        float distance = (float) Math.sqrt(ex * ex + ey * ey + ez * ez);
+        if (distance <= radius) {
+            node.priority = Float.MAX_VALUE;
+        } else {
+            node.priority = radius / distance * pixelsPerUnit;
+        }
+        return true;
+    }
+
+    /**
+     * Getter for the start indices of the nodes selected by the last call to
+     * {@link #select(Float4Matrix, float, int)}, ready for glMultiDrawArrays.
+     * 
+     * @return the start indices.
+     */
+    public IntBuffer getSelectedFirsts() {
+        return firsts;
+    }
+
+    /**
+     * Getter for the point counts of the nodes selected by the last call to
+     * {@link #select(Float4Matrix, float, int)}, ready for glMultiDrawArrays.
+     * 
+     * @return the point counts.
+     */
+    public IntBuffer getSelectedCounts() {
+        return counts;
+    }
+
+    /**
+     * Getter for the number of nodes selected by the last call to
+     * {@link #select(Float4Matrix, float, int)}.
+     * 
+     * @return the number of selected nodes.
+     */
+    public int getSelectedNodes() {
+        return selectedNodes;
+    }
+
+    /**
+     * Getter for the number of points selected by the last call to
+     * {@link #select(Float4Matrix, float, int)}.
+     * 
+     * @return the number of selected points.
+     */
+    public int getSelectedPoints() {
+        return selectedPoints;
+    }
+
+    /**
+     * Getter for the root node of this octree.
+     * 
+     * @return the root node, or null if the octree was built without points.
+     */
+    public Node getRoot() {
+        return root;
+    }
+
+    /**
+     * Getter for the total number of nodes in this octree.
+     * 
+     * @return the number of nodes.
+     */
+    public int getNumNodes() {
+        return nodes.size();
+    }
+}
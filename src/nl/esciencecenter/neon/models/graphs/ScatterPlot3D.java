@@ -10,9 +10,11 @@ import nl.esciencecenter.neon.datastructures.GLSLAttribute;
 import nl.esciencecenter.neon.datastructures.VertexBufferObject;
 import nl.esciencecenter.neon.exceptions.UninitializedException;
 import nl.esciencecenter.neon.math.Color4;
+import nl.esciencecenter.neon.math.Float4Matrix;
 import nl.esciencecenter.neon.math.Float4Vector;
 import nl.esciencecenter.neon.math.FloatVectorMath;
 import nl.esciencecenter.neon.math.Point4;
+import nl.esciencecenter.neon.metrics.FrameMetrics;
 import nl.esciencecenter.neon.models.Model;
 import nl.esciencecenter.neon.shaders.ShaderProgram;
 
@@ -37,6 +39,13 @@ import org.slf4j.LoggerFactory;
 /**
  * Convenience class to create a 3D Scatterplot model.
  * 
+ * For very large datasets, a point budget can be set with
+ * {@link #setPointBudget(int)}. The points are then organized in a
+ * {@link PointCloudOctree} on initialization, and each frame only the nodes
+ * with the largest projected size are drawn until the budget is used up. Pass
+ * the current camera to {@link #setView(Float4Matrix, Float4Matrix, int)}
+ * before drawing to let the selection follow the view.
+ * 
  * @author Maarten van Meersbergen <m.van.meersbergen@esciencecenter.nl>
  * 
  */
@@ -51,6 +60,17 @@ public class ScatterPlot3D extends Model {
 
     private boolean initialized = false;
 
+    /** The maximum number of points drawn per frame, 0 for no limit. */
+    private int pointBudget = 0;
+    /** The number of points per level-of-detail node. */
+    private int pointsPerNode = PointCloudOctree.DEFAULT_POINTS_PER_NODE;
+    /** The level-of-detail structure, only built if a budget was set. */
+    private PointCloudOctree octree;
+
+    /** The camera used for the level-of-detail selection. */
+    private Float4Matrix viewMatrix;
+    private float pixelsPerUnit = 1f;
+
     public ScatterPlot3D() {
         super(VertexFormat.POINTS);
 
@@ -118,6 +138,12 @@ public class ScatterPlot3D extends Model {
                 this.vertexColors = newColors;
             }
 
+            if (pointBudget > 0) {
+                buildLevelOfDetail();
+            } else {
+                octree = null;
+            }
+
             GLSLAttribute vAttrib = new GLSLAttribute(this.getVertices(), "MCvertex", GLSLAttribute.SIZE_FLOAT, 4);
             GLSLAttribute cAttrib = new GLSLAttribute(this.vertexColors, "MCvertexColor", GLSLAttribute.SIZE_FLOAT, 4);
 
@@ -140,12 +166,124 @@ public class ScatterPlot3D extends Model {
 
             getVbo().bind(gl);
 
-            program.linkAttribs(gl, getVbo().getAttribs());
+            program.linkAttribs(gl, getVbo());
 
-            gl.glDrawArrays(GL3.GL_POINTS, 0, getNumVertices());
+            drawVertices(gl);
         } else {
             throw new UninitializedException();
         }
     }
 
+    @Override
+    public void drawVertices(GL3 gl) {
+        if (isLevelOfDetailActive()) {
+            int drawCount = octree.select(viewMatrix, pixelsPerUnit, pointBudget);
+            if (drawCount > 0) {
+                gl.glMultiDrawArrays(GL3.GL_POINTS, octree.getSelectedFirsts(), octree.getSelectedCounts(),
+                        drawCount);
+                FrameMetrics.getInstance().countDraw(octree.getSelectedPoints());
+            }
+        } else {
+            gl.glDrawArrays(GL3.GL_POINTS, 0, getNumVertices());
+            FrameMetrics.getInstance().countDraw(getNumVertices());
+        }
+    }
+
+    /**
+     * The octree is kept when the budget is switched off, so it is only drawn
+     * from while a budget is set and there are more points than the budget.
+     */
+    private boolean isLevelOfDetailActive() {
+        return octree != null && pointBudget > 0 && pointBudget < getNumVertices();
+    }
+
+    /**
+     * Builds the octree for the current vertices, and reorders the vertices and
+     * colors so that every node is a contiguous range.
+     */
+    private void buildLevelOfDetail() {
+        octree = new PointCloudOctree(pointsPerNode);
+        int[] order = octree.build(getVertices(), 4);
+
+        FloatBuffer sortedVertices = FloatBuffer.allocate(order.length * 4);
+        FloatBuffer sortedColors = FloatBuffer.allocate(order.length * 4);
+        for (int index : order) {
+            for (int i = 0; i < 4; i++) {
+                sortedVertices.put(getVertices().get(index * 4 + i));
+                sortedColors.put(vertexColors.get(index * 4 + i));
+            }
+        }
+        sortedVertices.rewind();
+        sortedColors.rewind();
+
+        this.setVertices(sortedVertices);
+        this.vertexColors = sortedColors;
+
+        LOGGER.debug("Point cloud level of detail: " + order.length + " points in " + octree.getNumNodes()
+                + " nodes.");
+    }
+
+    /**
+     * Sets the camera used to select the level of detail for the next frames.
+     * 
+     * @param mv
+     *            The modelview matrix these points are drawn with.
+     * @param p
+     *            The perspective matrix these points are drawn with.
+     * @param viewportHeight
+     *            The height of the viewport in pixels.
+     */
+    public void setView(Float4Matrix mv, Float4Matrix p, int viewportHeight) {
+        this.viewMatrix = mv;
+        // p[5] is cot(fovy / 2) for a perspective matrix.
+        this.pixelsPerUnit = p.get(5) * viewportHeight * .5f;
+    }
+
+    /**
+     * Getter for the maximum number of points drawn per frame.
+     * 
+     * @return the point budget, 0 if all points are drawn.
+     */
+    public int getPointBudget() {
+        return pointBudget;
+    }
+
+    /**
+     * Setter for the maximum number of points drawn per frame. Enabling the
+     * budget on an initialized model causes the level-of-detail structure to
+     * be built on the next call to {@link #init(GL3)}.
+     * 
+     * @param pointBudget
+     *            the maximum number of points, 0 to always draw all points.
+     */
+    public synchronized void setPointBudget(int pointBudget) {
+        if (pointBudget > 0 && octree == null) {
+            initialized = false;
+        }
+        this.pointBudget = Math.max(0, pointBudget);
+    }
+
+    /**
+     * Setter for the number of points stored per level-of-detail node, takes
+     * effect on the next (re)initialization.
+     * 
+     * @param pointsPerNode
+     *            the number of points per node.
+     */
+    public void setPointsPerNode(int pointsPerNode) {
+        this.pointsPerNode = pointsPerNode;
+    }
+
+    /**
+     * Getter for the number of points drawn in the last frame.
+     * 
+     * @return the number of points drawn in the last frame.
+     */
+    public int getNumDrawnPoints() {
+        if (isLevelOfDetailActive()) {
+            return octree.getSelectedPoints();
+        }
+        return getNumVertices();
+    }
+
 }
@@ -8,15 +8,11 @@ import javax.media.opengl.GL3;
 
 import nl.esciencecenter.neon.datastructures.GLSLAttribute;
 import nl.esciencecenter.neon.datastructures.VertexBufferObject;
-import nl.esciencecenter.neon.exceptions.UninitializedException;
 import nl.esciencecenter.neon.math.Color4;
 import nl.esciencecenter.neon.math.Float4Vector;
 import nl.esciencecenter.neon.models.Model;
 import nl.esciencecenter.neon.shaders.ShaderProgram;
 
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
-
 /* Copyright 2013 Netherlands eScience Center
  * 
  * Licensed under the Apache License, Version 2.0 (the "License");
@@ -40,8 +36,6 @@ import org.slf4j.LoggerFactory;
  * 
  */
 public class SegmentedLine extends Model {
-    private final static Logger LOGGER = LoggerFactory.getLogger(SegmentedLine.class);
-
     private final Color4 color;
     private final List<Float4Vector> points;
 
@@ -204,21 +198,7 @@ public class SegmentedLine extends Model {
     }
 
     @Override
-    public void draw(GL3 gl, ShaderProgram program) throws UninitializedException {
+    public void applyUniforms(ShaderProgram program) {
         program.setUniformVector("Color", color);
-
-        getVbo().bind(gl);
-
-        program.linkAttribs(gl, getVbo().getAttribs());
-
-        // Load all staged variables into the GPU, check for errors and
-        // omissions.
-        try {
-            program.use(gl);
-        } catch (UninitializedException e) {
-            LOGGER.error(e.getMessage());
-        }
-
-        gl.glDrawArrays(GL3.GL_LINES, 0, getNumVertices());
     }
 }
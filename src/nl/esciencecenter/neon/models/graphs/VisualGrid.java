@@ -13,6 +13,7 @@ import nl.esciencecenter.neon.exceptions.UninitializedException;
 import nl.esciencecenter.neon.math.Float3Vector;
 import nl.esciencecenter.neon.math.Float4Vector;
 import nl.esciencecenter.neon.math.FloatVectorMath;
+import nl.esciencecenter.neon.metrics.FrameMetrics;
 import nl.esciencecenter.neon.models.Model;
 import nl.esciencecenter.neon.shaders.ShaderProgram;
 
@@ -161,9 +162,10 @@ public class VisualGrid extends Model {
 
             getVbo().bind(gl);
 
-            program.linkAttribs(gl, getVbo().getAttribs());
+            program.linkAttribs(gl, getVbo());
 
             gl.glDrawArrays(GL3.GL_TRIANGLES, 0, getNumVertices());
+            FrameMetrics.getInstance().countDraw(getNumVertices());
         } else {
             throw new UninitializedException();
         }
@@ -0,0 +1,272 @@
+package nl.esciencecenter.neon.noise;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/* Copyright 2013 Netherlands eScience Center
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * Persistent on-disk cache for generated noise volumes. Entries are stored in
+ * a cache directory under a file name derived from a hash of all generator
+ * parameters and dimensions, so a volume is generated only once per set of
+ * inputs. A cached volume is memory-mapped on load, and the mapped buffer is
+ * used as the texture pixel buffer directly.
+ * 
+ * The file format is a small header (magic, version, width, height, depth)
+ * followed by the raw RGBA voxel data as produced by {@link NoiseGenerator}.
+ * 
+ * @author Maarten van Meersbergen <m.van.meersbergen@esciencecenter.nl>
+ * 
+ */
+public class NoiseCache {
+    private final static Logger logger = LoggerFactory.getLogger(NoiseCache.class);
+
+    private static final int MAGIC = 0x4e4f4953; // "NOIS"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 5 * 4;
+    private static final String EXTENSION = ".noise";
+
+    private final File directory;
+    private boolean enabled = true;
+
+    private static class SingletonHolder {
+        public static final NoiseCache INSTANCE = new NoiseCache(new File(System.getProperty("user.home"), ".neon"
+                + File.separator + "noisecache"));
+    }
+
+    /**
+     * Access point for the default cache, stored in ~/.neon/noisecache.
+     * 
+     * @return The default cache.
+     */
+    public static NoiseCache getInstance() {
+        return SingletonHolder.INSTANCE;
+    }
+
+    /**
+     * Constructor for a cache in a custom directory. The directory is created
+     * when the first entry is stored.
+     * 
+     * @param directory
+     *            The cache directory.
+     */
+    public NoiseCache(File directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Returns the 3D noise volume for the given generator and dimensions,
+     * either by mapping a cached copy or by generating (and storing) it.
+     * 
+     * @param generator
+     *            The generator holding the noise parameters.
+     * @param width
+     *            The width (x) of the volume.
+     * @param height
+     *            The height (y) of the volume.
+     * @param depth
+     *            The depth (z) of the volume.
+     * @return A direct buffer with 4 bytes per voxel.
+     * @throws IllegalStateException
+     *             if the volume had to be generated and generation failed.
+     *             Nothing is stored in that case.
+     */
+    public ByteBuffer get3D(NoiseGenerator generator, int width, int height, int depth) {
+        if (!enabled) {
+            return generator.generate3D(width, height, depth);
+        }
+
+        File file = new File(directory, key(generator, width, height, depth) + EXTENSION);
+        if (file.isFile()) {
+            try {
+                ByteBuffer cached = load(file, width, height, depth);
+                if (cached != null) {
+                    return cached;
+                }
+            } catch (IOException e) {
+                logger.warn("Could not read noise cache entry " + file + ": " + e.getMessage());
+            }
+        }
+
+        // Generation throws on failure, so only complete volumes get here.
+        // The size is checked anyway, a short entry would never load again.
+        ByteBuffer result = generator.generate3D(width, height, depth);
+        if (result == null || result.capacity() != (long) width * height * depth * 4) {
+            logger.warn("Not caching noise volume with unexpected size for " + file);
+            return result;
+        }
+
+        try {
+            store(file, result, width, height, depth);
+        } catch (IOException e) {
+            logger.warn("Could not write noise cache entry " + file + ": " + e.getMessage());
+        }
+        return result;
+    }
+
+    /**
+     * Returns the 2D noise image for the given generator and dimensions,
+     * either by mapping a cached copy or by generating (and storing) it.
+     * 
+     * @param generator
+     *            The generator holding the noise parameters.
+     * @param width
+     *            The width (x) of the image.
+     * @param height
+     *            The height (y) of the image.
+     * @return A direct buffer with 4 bytes per pixel.
+     * @throws IllegalStateException
+     *             if the image had to be generated and generation failed.
+     */
+    public ByteBuffer get2D(NoiseGenerator generator, int width, int height) {
+        return get3D(generator, width, height, 1);
+    }
+
+    /**
+     * Maps the data section of the given cache file. Returns null if the
+     * header does not match the requested volume.
+     */
+    private ByteBuffer load(File file, int width, int height, int depth) throws IOException {
+        long dataSize = (long) width * height * depth * 4;
+
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = raf.getChannel();
+            if (channel.size() != HEADER_SIZE + dataSize) {
+                return null;
+            }
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            while (header.hasRemaining()) {
+                if (channel.read(header) < 0) {
+                    return null;
+                }
+            }
+            header.flip();
+            if (header.getInt() != MAGIC || header.getInt() != VERSION || header.getInt() != width
+                    || header.getInt() != height || header.getInt() != depth) {
+                return null;
+            }
+
+            // The mapping stays valid after the channel is closed.
+            return channel.map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE, dataSize);
+        } finally {
+            raf.close();
+        }
+    }
+
+    /**
+     * Writes a cache file. The data is written to a temporary file first and
+     * renamed afterwards, so concurrent readers never see partial entries.
+     */
+    private void store(File file, ByteBuffer data, int width, int height, int depth) throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Could not create cache directory " + directory);
+        }
+
+        File temp = File.createTempFile("noise", ".tmp", directory);
+        RandomAccessFile raf = new RandomAccessFile(temp, "rw");
+        try {
+            FileChannel channel = raf.getChannel();
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putInt(MAGIC).putInt(VERSION).putInt(width).putInt(height).putInt(depth);
+            header.flip();
+            while (header.hasRemaining()) {
+                channel.write(header);
+            }
+
+            ByteBuffer source = data.duplicate();
+            source.rewind();
+            while (source.hasRemaining()) {
+                channel.write(source);
+            }
+        } finally {
+            raf.close();
+        }
+
+        if (!temp.renameTo(file)) {
+            // Some platforms will not rename over an existing file.
+            if (!file.delete() || !temp.renameTo(file)) {
+                temp.delete();
+                throw new IOException("Could not move " + temp + " to " + file);
+            }
+        }
+    }
+
+    /**
+     * Builds the content key for a volume: a hex SHA-1 of all inputs that
+     * influence the generated data.
+     */
+    private static String key(NoiseGenerator generator, int width, int height, int depth) {
+        String description = "perlin:" + VERSION + ":" + generator.getOctaves() + ":"
+                + Float.floatToIntBits(generator.getPersistence()) + ":"
+                + Float.floatToIntBits(generator.getFrequency()) + ":" + generator.getSeed() + ":" + width + "x"
+                + height + "x" + depth;
+
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            byte[] hash = digest.digest(description.getBytes(Charset.forName("UTF-8")));
+
+            StringBuffer hex = new StringBuffer();
+            for (byte b : hash) {
+                hex.append(String.format("%02x", b & 0xff));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            // Every Java platform is required to support SHA-1, but fall back
+            // to a readable name just in case.
+            return description.replace(':', '_');
+        }
+    }
+
+    /**
+     * Getter for the cache directory.
+     * 
+     * @return the cache directory.
+     */
+    public File getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Getter for enabled.
+     * 
+     * @return true if this cache reads and writes entries.
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Setter for enabled. A disabled cache always generates.
+     * 
+     * @param enabled
+     *            the enabled state to set
+     */
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+}
@@ -0,0 +1,380 @@
+package nl.esciencecenter.neon.noise;
+
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import com.jogamp.common.nio.Buffers;
+
+/* Copyright 2013 Netherlands eScience Center
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * Multi-threaded, multi-octave Perlin noise generator. The rows of the volume
+ * are split into bands which are generated in parallel with a single precision
+ * version of {@link ImprovedPerlinNoise}, and written in bulk into a direct
+ * {@link ByteBuffer} that can be handed to OpenGL without further copies.
+ * 
+ * The output uses the same RGBA texel format as {@link Noise#getPixelBuffer()}
+ * (the noise value repeated in all four channels), in OpenGL texture order: x
+ * runs fastest, then y, then z.
+ * 
+ * @author Maarten van Meersbergen <m.van.meersbergen@esciencecenter.nl>
+ * 
+ */
+public class NoiseGenerator {
+    /** The default number of octaves, same as {@link Perlin3D} used to have. */
+    public static final int DEFAULT_OCTAVES = 4;
+    /** The default amplitude falloff per octave. */
+    public static final float DEFAULT_PERSISTENCE = .75f;
+    /** The default base frequency in noise units per texel. */
+    public static final float DEFAULT_FREQUENCY = .05f;
+    /** Seed value that selects Ken Perlin's reference permutation. */
+    public static final long REFERENCE_SEED = 0L;
+
+    /** The amplitude of the first octave, in byte units. */
+    private static final float BASE_AMPLITUDE = 128f;
+
+    private final int octaves;
+    private final float persistence;
+    private final float frequency;
+    private final long seed;
+
+    /** Permutation table, doubled to avoid index wrapping. */
+    private final int[] p = new int[512];
+
+    private int threads;
+
+    /**
+     * Pool of daemon threads shared by all generators, one per processor,
+     * created when first needed.
+     */
+    private static class ExecutorHolder {
+        public static final ExecutorService INSTANCE = Executors.newFixedThreadPool(Runtime.getRuntime()
+                .availableProcessors(), new ThreadFactory() {
+            private int count = 0;
+
+            @Override
+            public synchronized Thread newThread(Runnable task) {
+                Thread thread = new Thread(task, "NoiseGenerator-" + count++);
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * Constructor for a generator with the default parameters and the reference
+     * permutation.
+     */
+    public NoiseGenerator() {
+        this(DEFAULT_OCTAVES, DEFAULT_PERSISTENCE, DEFAULT_FREQUENCY, REFERENCE_SEED);
+    }
+
+    /**
+     * Constructor for a generator with custom parameters.
+     * 
+     * @param octaves
+     *            The number of noise octaves to sum.
+     * @param persistence
+     *            The factor by which the amplitude decreases per octave.
+     * @param frequency
+     *            The frequency of the first octave, in noise units per texel.
+     *            The frequency doubles with every octave.
+     * @param seed
+     *            The seed for the permutation table, {@link #REFERENCE_SEED}
+     *            gives the same noise as {@link ImprovedPerlinNoise}.
+     */
+    public NoiseGenerator(int octaves, float persistence, float frequency, long seed) {
+        if (octaves <= 0) {
+            throw new IllegalArgumentException("octaves must be greater than 0");
+        }
+        this.octaves = octaves;
+        this.persistence = persistence;
+        this.frequency = frequency;
+        this.seed = seed;
+        this.threads = Runtime.getRuntime().availableProcessors();
+
+        int[] permutation = new int[256];
+        if (seed == REFERENCE_SEED) {
+            System.arraycopy(ImprovedPerlinNoise.permutation, 0, permutation, 0, 256);
+        } else {
+            for (int i = 0; i < 256; i++) {
+                permutation[i] = i;
+            }
+            Random random = new Random(seed);
+            for (int i = 255; i > 0; i--) {
+                int j = random.nextInt(i + 1);
+                int tmp = permutation[i];
+                permutation[i] = permutation[j];
+                permutation[j] = tmp;
+            }
+        }
+
+        for (int i = 0; i < 256; i++) {
+            p[i] = permutation[i];
+            p[256 + i] = permutation[i];
+        }
+    }
+
+    /**
+     * Generates a 3D volume of noise.
+     * 
+     * @param width
+     *            The width (x) of the volume.
+     * @param height
+     *            The height (y) of the volume.
+     * @param depth
+     *            The depth (z) of the volume.
+     * @return A direct buffer with 4 bytes per voxel.
+     * @throws IllegalStateException
+     *             if generation failed or the calling thread was interrupted,
+     *             in which case the interrupt flag stays set.
+     */
+    public ByteBuffer generate3D(final int width, final int height, final int depth) {
+        ByteBuffer result = Buffers.newDirectByteBuffer(width * height * depth * 4);
+        final IntBuffer texels = result.asIntBuffer();
+
+        // Rows of the volume (y, z) are handed out in bands, about four per
+        // thread, so 2D images are split as well as 3D volumes.
+        final int rows = height * depth;
+        int bandSize = Math.max(1, rows / (Math.max(1, threads) * 4));
+
+        List<Runnable> bands = new ArrayList<Runnable>();
+        for (int start = 0; start < rows; start += bandSize) {
+            final int bandStart = start;
+            final int bandEnd = Math.min(rows, start + bandSize);
+            bands.add(new Runnable() {
+                @Override
+                public void run() {
+                    int[] row = new int[width];
+                    IntBuffer target = texels.duplicate();
+                    target.position(bandStart * width);
+
+                    for (int r = bandStart; r < bandEnd; r++) {
+                        int y = r % height;
+                        int z = r / height;
+                        for (int x = 0; x < width; x++) {
+                            row[x] = toTexel(octaves(x, y, z));
+                        }
+                        target.put(row);
+                    }
+                }
+            });
+        }
+        execute(bands);
+
+        return result;
+    }
+
+    /**
+     * Generates a 2D image of noise, equal to the z = 0 slice of the 3D noise.
+     * 
+     * @param width
+     *            The width (x) of the image.
+     * @param height
+     *            The height (y) of the image.
+     * @return A direct buffer with 4 bytes per pixel.
+     * @throws IllegalStateException
+     *             if generation failed or the calling thread was interrupted.
+     */
+    public ByteBuffer generate2D(int width, int height) {
+        return generate3D(width, height, 1);
+    }
+
+    /**
+     * Runs the given tasks on the shared pool, or on the calling thread if
+     * only one thread is to be used, and waits for all of them to finish. A
+     * failure is rethrown, so no partially generated buffer is ever returned.
+     */
+    private void execute(List<Runnable> tasks) {
+        if (threads <= 1 || tasks.size() <= 1) {
+            for (Runnable task : tasks) {
+                task.run();
+            }
+            return;
+        }
+
+        List<Future<?>> futures = new ArrayList<Future<?>>(tasks.size());
+        try {
+            for (Runnable task : tasks) {
+                futures.add(ExecutorHolder.INSTANCE.submit(task));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            cancel(futures);
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Noise generation interrupted", e);
+        } catch (ExecutionException e) {
+            cancel(futures);
+            throw new IllegalStateException("Noise generation failed", e.getCause());
+        }
+    }
+
+    private static void cancel(List<Future<?>> futures) {
+        for (Future<?> future : futures) {
+            future.cancel(true);
+        }
+    }
+
+    /**
+     * Sums all octaves for the given texel, in byte units centered on 128.
+     */
+    private float octaves(int x, int y, int z) {
+        float total = 0f;
+        float amplitude = BASE_AMPLITUDE;
+        float f = frequency;
+
+        for (int i = 0; i < octaves; i++) {
+            total += noise(x * f, y * f, z * f) * amplitude;
+
+            amplitude *= persistence;
+            f *= 2f;
+        }
+        return total + BASE_AMPLITUDE;
+    }
+
+    /**
+     * Packs the value into all four bytes of an int. Byte order does not
+     * matter, since all channels are equal.
+     */
+    private static int toTexel(float value) {
+        int b = ((int) value) & 0xff;
+        b |= b << 8;
+        return b | (b << 16);
+    }
+
+    /**
+     * Single precision version of {@link ImprovedPerlinNoise#noise}.
+     */
+    private float noise(float x, float y, float z) {
+        int fx = floor(x);
+        int fy = floor(y);
+        int fz = floor(z);
+
+        int iX = fx & 255;
+        int iY = fy & 255;
+        int iZ = fz & 255;
+
+        x -= fx;
+        y -= fy;
+        z -= fz;
+
+        float u = fade(x);
+        float v = fade(y);
+        float w = fade(z);
+
+        int iA = p[iX] + iY;
+        int iAA = p[iA] + iZ;
+        int iAB = p[iA + 1] + iZ;
+        int iB = p[iX + 1] + iY;
+        int iBA = p[iB] + iZ;
+        int iBB = p[iB + 1] + iZ;
+
+        return lerp(
+                w,
+                lerp(v, lerp(u, grad(p[iAA], x, y, z), grad(p[iBA], x - 1, y, z)),
+                        lerp(u, grad(p[iAB], x, y - 1, z), grad(p[iBB], x - 1, y - 1, z))),
+                lerp(v, lerp(u, grad(p[iAA + 1], x, y, z - 1), grad(p[iBA + 1], x - 1, y, z - 1)),
+                        lerp(u, grad(p[iAB + 1], x, y - 1, z - 1), grad(p[iBB + 1], x - 1, y - 1, z - 1))));
+    }
+
+    private static int floor(float value) {
+        int i = (int) value;
+        return value < i ? i - 1 : i;
+    }
+
+    private static float fade(float t) {
+        return t * t * t * (t * (t * 6 - 15) + 10);
+    }
+
+    private static float lerp(float t, float a, float b) {
+        return a + t * (b - a);
+    }
+
+    private static float grad(int hash, float x, float y, float z) {
+        int h = hash & 15;
+        float u = h < 8 ? x : y;
+        float v = h < 4 ? y : h == 12 || h == 14 ? x : z;
+        return ((h & 1) == 0 ? u : -u) + ((h & 2) == 0 ? v : -v);
+    }
+
+    /**
+     * Getter for the number of threads used for generation.
+     * 
+     * @return the number of threads.
+     */
+    public int getThreads() {
+        return threads;
+    }
+
+    /**
+     * Setter for the number of threads used for generation. The bands are run
+     * on a pool shared by all generators, with one thread per processor, so
+     * more threads than processors only splits the work finer. Defaults to the
+     * number of available processors.
+     * 
+     * @param threads
+     *            the number of threads to use.
+     */
+    public void setThreads(int threads) {
+        this.threads = threads;
+    }
+
+    /**
+     * Getter for octaves.
+     * 
+     * @return the number of octaves.
+     */
+    public int getOctaves() {
+        return octaves;
+    }
+
+    /**
+     * Getter for persistence.
+     * 
+     * @return the persistence.
+     */
+    public float getPersistence() {
+        return persistence;
+    }
+
+    /**
+     * Getter for frequency.
+     * 
+     * @return the base frequency.
+     */
+    public float getFrequency() {
+        return frequency;
+    }
+
+    /**
+     * Getter for seed.
+     * 
+     * @return the seed.
+     */
+    public long getSeed() {
+        return seed;
+    }
+}
@@ -44,8 +44,57 @@ public class Perlin2D extends Texture2D {
         this.width = width;
         this.height = height;
 
-        Noise n = new Noise(4, width, height, 1);
+        pixelBuffer = NoiseCache.getInstance().get2D(new NoiseGenerator(), width, height);
+    }
+
+    /**
+     * Generates a 2D image of Perlin Noise with a custom generator.
+     * 
+     * Do not forget to call {@link #init(javax.media.opengl.GL3)} before use.
+     * 
+     * @param glMultitexUnit
+     *            The OpenGL-internal MultitexUnit (GL.GL_TEXTUREX) this texture
+     *            uses.
+     * @param width
+     *            The width of this texture.
+     * @param height
+     *            The height of this texture.
+     * @param generator
+     *            The generator holding the noise parameters.
+     */
+    public Perlin2D(int glMultitexUnit, int width, int height, NoiseGenerator generator) {
+        super(glMultitexUnit);
+
+        this.width = width;
+        this.height = height;
+
+        pixelBuffer = NoiseCache.getInstance().get2D(generator, width, height);
+    }
+
+    /**
+     * Generates a 2D image of Perlin Noise with a custom generator, using the
+     * given cache to store and reuse the generated data.
+     * 
+     * Do not forget to call {@link #init(javax.media.opengl.GL3)} before use.
+     * 
+     * @param glMultitexUnit
+     *            The OpenGL-internal MultitexUnit (GL.GL_TEXTUREX) this texture
+     *            uses.
+     * @param width
+     *            The width of this texture.
+     * @param height
+     *            The height of this texture.
+     * @param generator
+     *            The generator holding the noise parameters.
+     * @param cache
+     *            The cache to load the noise from, or store it in.
+     */
+    public Perlin2D(int glMultitexUnit, int width, int height, NoiseGenerator generator, NoiseCache cache) {
+        super(glMultitexUnit);
+
+        this.width = width;
+        this.height = height;
 
-        pixelBuffer = n.getPixelBuffer();
+        pixelBuffer = cache.get2D(generator, width, height);
     }
 }
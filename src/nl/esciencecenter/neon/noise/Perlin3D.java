@@ -47,8 +47,63 @@ public class Perlin3D extends Texture3D {
         this.height = height;
         this.depth = depth;
 
-        Noise n = new Noise(4, width, height, depth);
+        pixelBuffer = NoiseCache.getInstance().get3D(new NoiseGenerator(), width, height, depth);
+    }
+
+    /**
+     * Generates a 3D blob of Perlin Noise with a custom generator.
+     * 
+     * Do not forget to call {@link #init(javax.media.opengl.GL3)} before use.
+     * 
+     * @param glMultitexUnit
+     *            The OpenGL-internal MultitexUnit (GL.GL_TEXTUREX) this texture
+     *            uses.
+     * @param width
+     *            The width of this texture.
+     * @param height
+     *            The height of this texture.
+     * @param depth
+     *            The depth of this texture.
+     * @param generator
+     *            The generator holding the noise parameters.
+     */
+    public Perlin3D(int glMultitexUnit, int width, int height, int depth, NoiseGenerator generator) {
+        super(glMultitexUnit);
+
+        this.width = width;
+        this.height = height;
+        this.depth = depth;
+
+        pixelBuffer = NoiseCache.getInstance().get3D(generator, width, height, depth);
+    }
+
+    /**
+     * Generates a 3D blob of Perlin Noise with a custom generator, using the
+     * given cache to store and reuse the generated data.
+     * 
+     * Do not forget to call {@link #init(javax.media.opengl.GL3)} before use.
+     * 
+     * @param glMultitexUnit
+     *            The OpenGL-internal MultitexUnit (GL.GL_TEXTUREX) this texture
+     *            uses.
+     * @param width
+     *            The width of this texture.
+     * @param height
+     *            The height of this texture.
+     * @param depth
+     *            The depth of this texture.
+     * @param generator
+     *            The generator holding the noise parameters.
+     * @param cache
+     *            The cache to load the noise from, or store it in.
+     */
+    public Perlin3D(int glMultitexUnit, int width, int height, int depth, NoiseGenerator generator, NoiseCache cache) {
+        super(glMultitexUnit);
+
+        this.width = width;
+        this.height = height;
+        this.depth = depth;
 
-        pixelBuffer = n.getPixelBuffer();
+        pixelBuffer = cache.get3D(generator, width, height, depth);
     }
 }
@@ -0,0 +1,278 @@
+package nl.esciencecenter.neon.render;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+import javax.media.opengl.GL3;
+
+import nl.esciencecenter.neon.exceptions.UninitializedException;
+import nl.esciencecenter.neon.metrics.FrameMetrics;
+import nl.esciencecenter.neon.models.Model;
+import nl.esciencecenter.neon.shaders.ShaderProgram;
+import nl.esciencecenter.neon.textures.Texture;
+
+/* Copyright 2013 Netherlands eScience Center
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * Queue of draws for one frame, issued sorted by OpenGL state instead of in
+ * code order. Instead of calling {@link Model#draw(GL3, ShaderProgram)}
+ * directly, the display method submits every model with its program,
+ * textures and uniforms, and calls {@link #flush(GL3)} once:
+ * 
+ * <pre>
+ * queue.submit(sphere, litProgram, new Texture[] { earth }, sphereUniforms, 0);
+ * queue.submit(axis, axisProgram);
+ * ...
+ * queue.flush(gl);
+ * </pre>
+ * 
+ * The items are drawn in order of their sort key, then program, then
+ * textures, then vertex array; items that tie keep their submission order.
+ * The sort key comes first so that passes that must be drawn in a fixed order,
+ * such as transparent geometry after opaque, can be given a higher key. A
+ * {@link RenderState} skips the binds of programs, textures and vertex arrays
+ * that are already bound, and counts the ones it issues; the counts of the
+ * last flush are available from {@link #getState()}, and are added to the
+ * {@link FrameMetrics.Counter#STATE_CHANGES} counter.
+ * 
+ * The uniforms of a program are kept by the program itself, so every item
+ * should set all the per-draw uniforms it depends on in its
+ * {@link UniformSetter}, rather than rely on values left by the item drawn
+ * before it. Models that cannot be drawn in parts (see
+ * {@link Model#isDrawableInParts()}) are drawn with their own draw method.
+ * 
+ * The queue is meant for the render thread only, and reuses its items from
+ * frame to frame.
+ * 
+ * @author Maarten van Meersbergen <m.van.meersbergen@esciencecenter.nl>
+ * 
+ */
+public class RenderQueue {
+    private static final Texture[] NO_TEXTURES = new Texture[0];
+    private static final int INITIAL_CAPACITY = 64;
+
+    /** One submitted draw, with the state keys it is sorted on. */
+    private static final class Item {
+        private Model model;
+        private ShaderProgram program;
+        private Texture[] textures;
+        private UniformSetter uniforms;
+        private int sortKey;
+
+        private int programKey;
+        private int[] textureKeys = new int[0];
+        private int vertexArrayKey;
+
+        private void computeKeys() throws UninitializedException {
+            programKey = program.getPointer();
+            vertexArrayKey = model.isDrawableInParts() ? model.getVbo().getPointer() : 0;
+
+            if (textureKeys.length != textures.length) {
+                textureKeys = new int[textures.length];
+            }
+            for (int i = 0; i < textures.length; i++) {
+                textureKeys[i] = textures[i].isInitialized() ? textures[i].getPointer().get(0) : 0;
+            }
+        }
+
+        private void clear() {
+            model = null;
+            program = null;
+            textures = null;
+            uniforms = null;
+        }
+    }
+
+    private static final Comparator<Item> STATE_ORDER = new Comparator<Item>() {
+        @Override
+        public int compare(Item a, Item b) {
+            if (a.sortKey != b.sortKey) {
+                return a.sortKey < b.sortKey ? -1 : 1;
+            }
+            if (a.programKey != b.programKey) {
+                return a.programKey < b.programKey ? -1 : 1;
+            }
+            int length = Math.min(a.textureKeys.length, b.textureKeys.length);
+            for (int i = 0; i < length; i++) {
+                if (a.textureKeys[i] != b.textureKeys[i]) {
+                    return a.textureKeys[i] < b.textureKeys[i] ? -1 : 1;
+                }
+            }
+            if (a.textureKeys.length != b.textureKeys.length) {
+                return a.textureKeys.length < b.textureKeys.length ? -1 : 1;
+            }
+            if (a.vertexArrayKey != b.vertexArrayKey) {
+                return a.vertexArrayKey < b.vertexArrayKey ? -1 : 1;
+            }
+            return 0;
+        }
+    };
+
+    private final RenderState state = new RenderState();
+    private Item[] items = new Item[INITIAL_CAPACITY];
+    private int size = 0;
+    private long draws = 0;
+
+    /**
+     * Submits a model without textures or per-draw uniforms, with sort key 0.
+     * 
+     * @param model
+     *            The model to draw.
+     * @param program
+     *            The program to draw it with.
+     */
+    public void submit(Model model, ShaderProgram program) {
+        submit(model, program, NO_TEXTURES, null, 0);
+    }
+
+    /**
+     * Submits a model for drawing at the next {@link #flush(GL3)}.
+     * 
+     * @param model
+     *            The model to draw.
+     * @param program
+     *            The program to draw it with.
+     * @param textures
+     *            The textures to bind, each to its own multitexture unit. The
+     *            array is not copied, and should not be changed before the
+     *            flush.
+     * @param uniforms
+     *            Sets the per-draw uniforms on the program, or null if there
+     *            are none.
+     * @param sortKey
+     *            The primary sort key; items with lower keys are drawn first.
+     */
+    public void submit(Model model, ShaderProgram program, Texture[] textures, UniformSetter uniforms, int sortKey) {
+        if (model == null || program == null) {
+            throw new IllegalArgumentException("model and program cannot be null");
+        }
+
+        if (size == items.length) {
+            items = Arrays.copyOf(items, size * 2);
+        }
+        Item item = items[size];
+        if (item == null) {
+            item = new Item();
+            items[size] = item;
+        }
+        size++;
+
+        item.model = model;
+        item.program = program;
+        item.textures = textures == null ? NO_TEXTURES : textures;
+        item.uniforms = uniforms;
+        item.sortKey = sortKey;
+    }
+
+    /**
+     * Sorts and draws all submitted items, and empties the queue.
+     * 
+     * @param gl
+     *            The opengl instance.
+     * @throws UninitializedException
+     *             if a model, program or texture was not initialized.
+     */
+    public void flush(GL3 gl) throws UninitializedException {
+        state.invalidate();
+        state.resetCounts();
+        draws = 0;
+
+        try {
+            for (int i = 0; i < size; i++) {
+                items[i].computeKeys();
+            }
+            Arrays.sort(items, 0, size, STATE_ORDER);
+
+            for (int i = 0; i < size; i++) {
+                draw(gl, items[i]);
+            }
+        } finally {
+            clear();
+            FrameMetrics.getInstance().count(FrameMetrics.Counter.STATE_CHANGES, state.getStateChanges());
+        }
+    }
+
+    private void draw(GL3 gl, Item item) throws UninitializedException {
+        Model model = item.model;
+        ShaderProgram program = item.program;
+
+        model.applyUniforms(program);
+        if (item.uniforms != null) {
+            item.uniforms.setUniforms(program);
+        }
+        for (Texture texture : item.textures) {
+            state.bindTexture(gl, texture);
+        }
+
+        if (model.isDrawableInParts()) {
+            state.bindVertexArray(gl, model.getVbo());
+            program.linkAttribs(gl, model.getVbo());
+            state.useProgram(gl, program);
+
+            model.drawVertices(gl);
+        } else {
+            model.draw(gl, program);
+            state.invalidateProgram();
+            state.invalidateVertexArray();
+        }
+        draws++;
+    }
+
+    /**
+     * Empties the queue without drawing.
+     */
+    public void clear() {
+        for (int i = 0; i < size; i++) {
+            items[i].clear();
+        }
+        size = 0;
+    }
+
+    /**
+     * Getter for the number of submitted items.
+     * 
+     * @return the number of items waiting for the next flush.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Getter for the number of items drawn by the last flush.
+     * 
+     * @return the number of draws.
+     */
+    public long getDraws() {
+        return draws;
+    }
+
+    /**
+     * Getter for the binding state, with the counts of the binds issued and
+     * skipped by the last flush.
+     * 
+     * @return the state.
+     */
+    public RenderState getState() {
+        return state;
+    }
+
+    @Override
+    public String toString() {
+        return "RenderQueue [draws=" + draws + ", programChanges=" + state.getProgramChanges()
+                + ", textureChanges=" + state.getTextureChanges() + ", vertexArrayChanges="
+                + state.getVertexArrayChanges() + ", elidedBinds=" + state.getElidedBinds() + "]";
+    }
+}
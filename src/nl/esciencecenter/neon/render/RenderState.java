@@ -0,0 +1,221 @@
+package nl.esciencecenter.neon.render;
+
+import java.util.Arrays;
+
+import javax.media.opengl.GL3;
+
+import nl.esciencecenter.neon.datastructures.VertexBufferObject;
+import nl.esciencecenter.neon.exceptions.UninitializedException;
+import nl.esciencecenter.neon.shaders.ShaderProgram;
+import nl.esciencecenter.neon.textures.Texture;
+
+/* Copyright 2013 Netherlands eScience Center
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * Shadow of the OpenGL binding state for the current program, vertex array and
+ * the texture on each multitexture unit, so that binds of what is already bound
+ * can be skipped. The shadow only knows about binds made through it: call
+ * {@link #invalidate()} whenever other code may have changed the bindings, as
+ * {@link RenderQueue#flush(GL3)} does at its start.
+ * 
+ * @author Maarten van Meersbergen <m.van.meersbergen@esciencecenter.nl>
+ * 
+ */
+public class RenderState {
+    /** The number of multitexture units tracked, from GL_TEXTURE0. */
+    public static final int MAX_TEXTURE_UNITS = 32;
+
+    private static final int UNKNOWN = -1;
+
+    private ShaderProgram program;
+    private int programPointer = UNKNOWN;
+    private int vertexArray = UNKNOWN;
+    private final int[] textures = new int[MAX_TEXTURE_UNITS];
+
+    private long programChanges;
+    private long vertexArrayChanges;
+    private long textureChanges;
+    private long elidedBinds;
+
+    /**
+     * Constructor, for an unknown OpenGL state.
+     */
+    public RenderState() {
+        invalidate();
+    }
+
+    /**
+     * Forgets all bindings, so that the next bind of each kind is issued.
+     */
+    public void invalidate() {
+        invalidateProgram();
+        invalidateVertexArray();
+        Arrays.fill(textures, UNKNOWN);
+    }
+
+    /**
+     * Forgets the current program, so that the next program is bound.
+     */
+    public void invalidateProgram() {
+        program = null;
+        programPointer = UNKNOWN;
+    }
+
+    /**
+     * Forgets the current vertex array, so that the next one is bound.
+     */
+    public void invalidateVertexArray() {
+        vertexArray = UNKNOWN;
+    }
+
+    /**
+     * Makes the program current, unless it already is, and passes its
+     * uniforms.
+     * 
+     * @param gl
+     *            The opengl instance.
+     * @param newProgram
+     *            The program to use.
+     * @return true if the program was bound.
+     * @throws UninitializedException
+     *             if the program was not initialized.
+     */
+    public boolean useProgram(GL3 gl, ShaderProgram newProgram) throws UninitializedException {
+        if (newProgram == program && newProgram.getPointer() == programPointer) {
+            elidedBinds++;
+            newProgram.passUniforms(gl);
+            return false;
+        }
+
+        newProgram.use(gl);
+        program = newProgram;
+        programPointer = newProgram.getPointer();
+        programChanges++;
+        return true;
+    }
+
+    /**
+     * Binds the vertex array of the VertexBufferObject, unless it already is.
+     * 
+     * @param gl
+     *            The opengl instance.
+     * @param vbo
+     *            The VertexBufferObject to bind.
+     * @return true if the vertex array was bound.
+     */
+    public boolean bindVertexArray(GL3 gl, VertexBufferObject vbo) {
+        int pointer = vbo.getPointer();
+        if (pointer == vertexArray) {
+            elidedBinds++;
+            return false;
+        }
+
+        vbo.bind(gl);
+        vertexArray = pointer;
+        vertexArrayChanges++;
+        return true;
+    }
+
+    /**
+     * Binds the texture to its multitexture unit, unless it already is.
+     * Textures on units beyond {@link #MAX_TEXTURE_UNITS} are always bound.
+     * 
+     * @param gl
+     *            The opengl instance.
+     * @param texture
+     *            The texture to bind.
+     * @return true if the texture was bound.
+     * @throws UninitializedException
+     *             if the texture could not be initialized.
+     */
+    public boolean bindTexture(GL3 gl, Texture texture) throws UninitializedException {
+        int unit = texture.getMultitexNumber();
+        boolean tracked = unit >= 0 && unit < MAX_TEXTURE_UNITS;
+        if (tracked && texture.isInitialized() && texture.getPointer().get(0) == textures[unit]) {
+            elidedBinds++;
+            return false;
+        }
+
+        texture.use(gl);
+        if (tracked) {
+            textures[unit] = texture.getPointer().get(0);
+        }
+        textureChanges++;
+        return true;
+    }
+
+    /**
+     * Resets the counts of binds.
+     */
+    public void resetCounts() {
+        programChanges = 0;
+        vertexArrayChanges = 0;
+        textureChanges = 0;
+        elidedBinds = 0;
+    }
+
+    /**
+     * Getter for the number of program binds since the last reset.
+     * 
+     * @return the number of program changes.
+     */
+    public long getProgramChanges() {
+        return programChanges;
+    }
+
+    /**
+     * Getter for the number of vertex array binds since the last reset.
+     * 
+     * @return the number of vertex array changes.
+     */
+    public long getVertexArrayChanges() {
+        return vertexArrayChanges;
+    }
+
+    /**
+     * Getter for the number of texture binds since the last reset.
+     * 
+     * @return the number of texture changes.
+     */
+    public long getTextureChanges() {
+        return textureChanges;
+    }
+
+    /**
+     * Getter for the total number of binds since the last reset.
+     * 
+     * @return the number of state changes.
+     */
+    public long getStateChanges() {
+        return programChanges + vertexArrayChanges + textureChanges;
+    }
+
+    /**
+     * Getter for the number of binds skipped because the object was already
+     * bound, since the last reset.
+     * 
+     * @return the number of elided binds.
+     */
+    public long getElidedBinds() {
+        return elidedBinds;
+    }
+
+    @Override
+    public String toString() {
+        return "RenderState [programChanges=" + programChanges + ", vertexArrayChanges=" + vertexArrayChanges
+                + ", textureChanges=" + textureChanges + ", elidedBinds=" + elidedBinds + "]";
+    }
+}
@@ -0,0 +1,36 @@
+package nl.esciencecenter.neon.render;
+
+import nl.esciencecenter.neon.shaders.ShaderProgram;
+
+/* Copyright 2013 Netherlands eScience Center
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * Callback that sets the uniforms of one item in a {@link RenderQueue}, such
+ * as its model-view matrix, on the program right before the item is drawn.
+ * 
+ * @author Maarten van Meersbergen <m.van.meersbergen@esciencecenter.nl>
+ * 
+ */
+public interface UniformSetter {
+    /**
+     * Sets the uniforms for one draw with the setUniform methods of the
+     * program.
+     * 
+     * @param program
+     *            The program the item is drawn with.
+     */
+    void setUniforms(ShaderProgram program);
+}
@@ -0,0 +1,5 @@
+/**
+ * Batching of draw calls: a render queue that sorts draws by OpenGL state and
+ * skips redundant program, texture and vertex array binds.
+ */
+package nl.esciencecenter.neon.render;
@@ -58,6 +58,18 @@ public class GeometryShader extends Shader {
         super(shaderName, shaderCode);
     }
 
+    /**
+     * Constructor for Geometry shader, from preprocessed source code.
+     * 
+     * @param shaderName
+     *            The library-internal name of this shader.
+     * @param source
+     *            The preprocessed source code for this shader.
+     */
+    public GeometryShader(String shaderName, ShaderSource source) {
+        super(shaderName, source);
+    }
+
     @Override
     public void init(GL3 gl) throws CompilationFailedException {
         setShaderPointer(gl.glCreateShader(GL3.GL_GEOMETRY_SHADER));
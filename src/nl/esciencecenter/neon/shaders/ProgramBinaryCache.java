@@ -0,0 +1,398 @@
+package nl.esciencecenter.neon.shaders;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileFilter;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+
+import javax.media.opengl.GL3;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.jogamp.common.nio.Buffers;
+
+/* Copyright 2013 Netherlands eScience Center
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * On-disk cache of linked program binaries, to skip compiling and linking the
+ * GLSL sources of a {@link ShaderProgram} on every start. Programs are stored
+ * with glGetProgramBinary after a successful link, and restored with
+ * glProgramBinary, under a key that is a hash of the sources of all shaders of
+ * the program and the OpenGL vendor, renderer and version strings. A new
+ * driver or a changed shader therefore simply misses the cache.
+ * 
+ * Drivers may still reject a binary, for instance after an update that did not
+ * change the version string; such entries are deleted and the caller falls
+ * back to compiling the sources. Entries that were not used for
+ * {@link #getMaxAgeMillis()} are evicted, as are the least recently used
+ * entries beyond {@link #getMaxEntries()}, so entries of old drivers and
+ * shader versions do not pile up.
+ * 
+ * The cache is used by {@link ShaderProgramLoader}, which creates one when the
+ * system property neon.shader.cache names a directory, or through
+ * {@link ShaderProgramLoader#setBinaryCache(ProgramBinaryCache)}. It does
+ * nothing on drivers that support no binary formats.
+ * 
+ * @author Maarten van Meersbergen <m.van.meersbergen@esciencecenter.nl>
+ * 
+ */
+public class ProgramBinaryCache {
+    private final static Logger logger = LoggerFactory.getLogger(ProgramBinaryCache.class);
+
+    /** The default maximum number of entries. */
+    public static final int DEFAULT_MAX_ENTRIES = 64;
+    /** The default time after which an unused entry is evicted. */
+    public static final long DEFAULT_MAX_AGE_MILLIS = TimeUnit.DAYS.toMillis(30);
+
+    private static final String SUFFIX = ".bin";
+    private static final int MAGIC = 0x4e504243;
+
+    private static final FileFilter ENTRIES = new FileFilter() {
+        @Override
+        public boolean accept(File file) {
+            return file.isFile() && file.getName().endsWith(SUFFIX);
+        }
+    };
+
+    private final File directory;
+    private final int maxEntries;
+    private final long maxAgeMillis;
+
+    private final IntBuffer intBuffer = Buffers.newDirectIntBuffer(2);
+    private Boolean supported = null;
+    private int hits = 0;
+    private int misses = 0;
+
+    /**
+     * Constructor with the default limits.
+     * 
+     * @param directory
+     *            The directory to keep the binaries in, created if needed.
+     */
+    public ProgramBinaryCache(File directory) {
+        this(directory, DEFAULT_MAX_ENTRIES, DEFAULT_MAX_AGE_MILLIS);
+    }
+
+    /**
+     * Constructor. Evicts stale entries right away.
+     * 
+     * @param directory
+     *            The directory to keep the binaries in, created if needed.
+     * @param maxEntries
+     *            The maximum number of entries kept.
+     * @param maxAgeMillis
+     *            The time after which an unused entry is evicted.
+     */
+    public ProgramBinaryCache(File directory, int maxEntries, long maxAgeMillis) {
+        if (maxEntries < 1 || maxAgeMillis <= 0) {
+            throw new IllegalArgumentException("maxEntries and maxAgeMillis should be positive");
+        }
+        this.directory = directory;
+        this.maxEntries = maxEntries;
+        this.maxAgeMillis = maxAgeMillis;
+
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            logger.warn("Could not create program binary cache directory " + directory);
+        }
+        evict();
+    }
+
+    /**
+     * Check whether the driver supports program binaries at all.
+     * 
+     * @param gl
+     *            The opengl instance.
+     * @return true if there is at least one binary format.
+     */
+    public boolean isSupported(GL3 gl) {
+        if (supported == null) {
+            gl.glGetIntegerv(GL3.GL_NUM_PROGRAM_BINARY_FORMATS, intBuffer);
+            supported = intBuffer.get(0) > 0;
+            if (!supported) {
+                logger.info("The OpenGL driver supports no program binary formats, not caching programs.");
+            }
+        }
+        return supported;
+    }
+
+    /**
+     * Computes the cache key for a program made of the given shaders, on the
+     * current driver.
+     * 
+     * @param gl
+     *            The opengl instance.
+     * @param shaders
+     *            The shaders of the program, null entries are skipped.
+     * @return the key, a hexadecimal hash.
+     */
+    public String key(GL3 gl, Shader... shaders) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            update(digest, gl.glGetString(GL3.GL_VENDOR));
+            update(digest, gl.glGetString(GL3.GL_RENDERER));
+            update(digest, gl.glGetString(GL3.GL_VERSION));
+            for (Shader shader : shaders) {
+                if (shader != null) {
+                    update(digest, shader.getClass().getName());
+                    update(digest, shader.getSource());
+                }
+            }
+
+            StringBuilder result = new StringBuilder();
+            for (byte b : digest.digest()) {
+                result.append(String.format("%02x", b));
+            }
+            return result.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-1 is not available", e);
+        }
+    }
+
+    private static void update(MessageDigest digest, String value) {
+        try {
+            digest.update(String.valueOf(value).getBytes("UTF-8"));
+            digest.update((byte) 0);
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException("UTF-8 is not available", e);
+        }
+    }
+
+    /**
+     * Loads the binary stored under the key into the program, which links it.
+     * 
+     * @param gl
+     *            The opengl instance.
+     * @param program
+     *            The OpenGL name of a new program.
+     * @param key
+     *            The key, from {@link #key(GL3, Shader...)}.
+     * @return true if the program was loaded and linked successfully, false if
+     *         there was no entry or the driver rejected it.
+     */
+    public boolean load(GL3 gl, int program, String key) {
+        File file = entry(key);
+        if (!file.isFile() || !isSupported(gl)) {
+            misses++;
+            return false;
+        }
+
+        int format;
+        ByteBuffer binary;
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+            if (in.readInt() != MAGIC) {
+                throw new IOException("not a program binary");
+            }
+            format = in.readInt();
+            byte[] bytes = new byte[in.readInt()];
+            in.readFully(bytes);
+
+            binary = Buffers.newDirectByteBuffer(bytes.length);
+            binary.put(bytes);
+            binary.flip();
+        } catch (IOException e) {
+            logger.warn("Could not read program binary " + file + ", deleting it: " + e.getMessage());
+            close(in);
+            delete(file);
+            misses++;
+            return false;
+        }
+        close(in);
+
+        gl.glProgramBinary(program, format, binary, binary.limit());
+        gl.glGetProgramiv(program, GL3.GL_LINK_STATUS, intBuffer);
+        if (intBuffer.get(0) == GL3.GL_FALSE) {
+            logger.debug("Program binary " + key + " was rejected by the driver, deleting it.");
+            delete(file);
+            misses++;
+            return false;
+        }
+
+        if (!file.setLastModified(System.currentTimeMillis())) {
+            logger.debug("Could not mark program binary " + key + " as used.");
+        }
+        hits++;
+        return true;
+    }
+
+    /**
+     * Stores the binary of a successfully linked program under the key. The
+     * program should have been linked with GL_PROGRAM_BINARY_RETRIEVABLE_HINT
+     * set.
+     * 
+     * @param gl
+     *            The opengl instance.
+     * @param program
+     *            The OpenGL name of the linked program.
+     * @param key
+     *            The key, from {@link #key(GL3, Shader...)}.
+     */
+    public void store(GL3 gl, int program, String key) {
+        if (!isSupported(gl)) {
+            return;
+        }
+
+        gl.glGetProgramiv(program, GL3.GL_PROGRAM_BINARY_LENGTH, intBuffer);
+        int length = intBuffer.get(0);
+        if (length <= 0) {
+            return;
+        }
+
+        ByteBuffer binary = Buffers.newDirectByteBuffer(length);
+        IntBuffer lengthOut = Buffers.newDirectIntBuffer(1);
+        IntBuffer formatOut = Buffers.newDirectIntBuffer(1);
+        gl.glGetProgramBinary(program, length, lengthOut, formatOut, binary);
+        byte[] bytes = new byte[lengthOut.get(0)];
+        binary.get(bytes);
+
+        // Write to a temporary file first, so no other instance ever reads a
+        // partial entry.
+        File file = entry(key);
+        File temp = new File(directory, key + ".tmp");
+        DataOutputStream out = null;
+        try {
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)));
+            out.writeInt(MAGIC);
+            out.writeInt(formatOut.get(0));
+            out.writeInt(bytes.length);
+            out.write(bytes);
+            out.close();
+            out = null;
+
+            delete(file);
+            if (!temp.renameTo(file)) {
+                throw new IOException("could not rename " + temp);
+            }
+        } catch (IOException e) {
+            logger.warn("Could not store program binary " + file + ": " + e.getMessage());
+            close(out);
+            delete(temp);
+        }
+
+        evict();
+    }
+
+    /**
+     * Deletes the entries that were not used for the maximum age, and the least
+     * recently used entries beyond the maximum number.
+     * 
+     * @return the number of entries deleted.
+     */
+    public int evict() {
+        File[] files = directory.listFiles(ENTRIES);
+        if (files == null) {
+            return 0;
+        }
+
+        Arrays.sort(files, new Comparator<File>() {
+            @Override
+            public int compare(File a, File b) {
+                long ta = a.lastModified(), tb = b.lastModified();
+                return ta > tb ? -1 : ta < tb ? 1 : 0;
+            }
+        });
+
+        long oldest = System.currentTimeMillis() - maxAgeMillis;
+        int deleted = 0;
+        for (int i = 0; i < files.length; i++) {
+            if (i >= maxEntries || files[i].lastModified() < oldest) {
+                if (delete(files[i])) {
+                    deleted++;
+                }
+            }
+        }
+        return deleted;
+    }
+
+    private File entry(String key) {
+        return new File(directory, key + SUFFIX);
+    }
+
+    private static boolean delete(File file) {
+        return file.exists() && file.delete();
+    }
+
+    private static void close(Closeable closeable) {
+        if (closeable != null) {
+            try {
+                closeable.close();
+            } catch (IOException e) {
+                logger.debug("Could not close program binary file: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Getter for the directory the binaries are kept in.
+     * 
+     * @return the directory.
+     */
+    public File getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Getter for the maximum number of entries kept.
+     * 
+     * @return the maximum number of entries.
+     */
+    public int getMaxEntries() {
+        return maxEntries;
+    }
+
+    /**
+     * Getter for the time after which an unused entry is evicted.
+     * 
+     * @return the maximum age, in milliseconds.
+     */
+    public long getMaxAgeMillis() {
+        return maxAgeMillis;
+    }
+
+    /**
+     * Getter for the number of programs loaded from the cache.
+     * 
+     * @return the number of hits.
+     */
+    public int getHits() {
+        return hits;
+    }
+
+    /**
+     * Getter for the number of programs that had to be compiled.
+     * 
+     * @return the number of misses.
+     */
+    public int getMisses() {
+        return misses;
+    }
+}
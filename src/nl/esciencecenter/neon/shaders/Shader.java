@@ -2,11 +2,8 @@ package nl.esciencecenter.neon.shaders;
 
 import java.io.File;
 import java.io.FileNotFoundException;
-import java.nio.FloatBuffer;
 import java.nio.IntBuffer;
-import java.util.HashMap;
 import java.util.Map;
-import java.util.Scanner;
 
 import javax.media.opengl.GL3;
 
@@ -54,6 +51,7 @@ public abstract class Shader {
     private final String[] source;
 
     private final Map<String, Class> ins, outs, uniforms;
+    private final Map<String, Map<String, String>> uniformBlocks;
 
     /**
      * The OpenGL-internal pointer of this shader, set by initializing said
@@ -62,123 +60,54 @@ public abstract class Shader {
     private int shaderPointer = -1;
 
     /**
-     * Constructor, reads the GLSL shader source code from file.
+     * Constructor, reads the GLSL shader source code from file, through the
+     * {@link ShaderSourceManager}.
      * 
      * @param shaderName
      *            The internal name for this shader.
      * @param file
      *            The file with the source code for this shader.
      * @throws FileNotFoundException
-     *             If the file given was not found.
+     *             If the file given, or one of its includes, was not found.
      */
     public Shader(String shaderName, File file) throws FileNotFoundException {
-        this.shaderName = shaderName;
-        this.filename = file.getName();
-
-        // Read file
-        StringBuffer buf = new StringBuffer();
-        Scanner scan = new Scanner(ClassLoader.getSystemClassLoader().getResourceAsStream(file.getPath()));
-
-        ins = new HashMap<String, Class>();
-        outs = new HashMap<String, Class>();
-        uniforms = new HashMap<String, Class>();
-
-        while (scan.hasNext()) {
-            String line = scan.nextLine();
-            buf.append(line);
-            buf.append("\n");
-
-            parseVariables(line);
-        }
-
-        scan.close();
-
-        source = new String[] { buf.toString() };
+        this(shaderName, ShaderSourceManager.getInstance().load(file, null));
     }
 
     /**
-     * Constructor, reads the given GLSL shader source code.
+     * Constructor, reads the given GLSL shader source code, through the
+     * {@link ShaderSourceManager}.
      * 
      * @param shaderName
      *            The internal name for this shader.
      * @param shaderCode
      *            The source code for this shader.
+     * @throws FileNotFoundException
+     *             If one of the includes in the source code was not found.
      */
-    public Shader(String shaderName, String shaderCode) {
-        this.shaderName = shaderName;
-        this.filename = "";
-
-        StringBuffer buf = new StringBuffer();
-        Scanner scan = new Scanner(shaderCode);
-
-        ins = new HashMap<String, Class>();
-        outs = new HashMap<String, Class>();
-        uniforms = new HashMap<String, Class>();
-
-        while (scan.hasNext()) {
-            String line = scan.nextLine();
-            buf.append(line);
-            buf.append("\n");
-
-            parseVariables(line);
-        }
-
-        scan.close();
-
-        source = new String[] { buf.toString() };
+    public Shader(String shaderName, String shaderCode) throws FileNotFoundException {
+        this(shaderName, ShaderSourceManager.getInstance().process("", shaderCode, null, null));
     }
 
     /**
-     * Preparation method for Error-checking code that matches uniform variables
-     * set with the setUniform methods of the {@link ShaderProgram} class to
-     * their GLSL shader code counterparts.
+     * Constructor, uses already preprocessed GLSL shader source code, for
+     * instance with defines injected by
+     * {@link ShaderSourceManager#load(File, Map)}.
      * 
-     * @param line
-     *            The line of shader code to check.
+     * @param shaderName
+     *            The internal name for this shader.
+     * @param source
+     *            The preprocessed source code for this shader.
      */
-    private void parseVariables(String line) {
-        String[] trimmedLine = line.trim().split(";");
-        String[] words = trimmedLine[0].split("[\\s,;]+");
-        if (words[0].compareTo("in") == 0) {
-            for (int i = 2; i < words.length; i++) {
-                Class clazz = extractShaderParameterType(words[1]);
-                ins.put(words[i], clazz);
-            }
-        } else if (words[0].compareTo("out") == 0) {
-            for (int i = 2; i < words.length; i++) {
-                Class clazz = extractShaderParameterType(words[1]);
-                outs.put(words[i], clazz);
-            }
-        } else if (words[0].compareTo("uniform") == 0) {
-            for (int i = 2; i < words.length; i++) {
-                Class clazz = extractShaderParameterType(words[1]);
-                uniforms.put(words[i], clazz);
-            }
-        }
-    }
+    public Shader(String shaderName, ShaderSource source) {
+        this.shaderName = shaderName;
+        this.filename = source.getName();
+        this.source = new String[] { source.getText() };
 
-    private Class extractShaderParameterType(String word) {
-        Class clazz = null;
-        if (word.compareTo("vec2") == 0) {
-            clazz = FloatBuffer.class;
-        } else if (word.compareTo("vec3") == 0) {
-            clazz = FloatBuffer.class;
-        } else if (word.compareTo("vec4") == 0) {
-            clazz = FloatBuffer.class;
-        } else if (word.compareTo("float") == 0) {
-            clazz = Float.class;
-        } else if (word.compareTo("sampler2D") == 0) {
-            clazz = Integer.class;
-        } else if (word.compareTo("sampler3D") == 0) {
-            clazz = Integer.class;
-        } else if (word.compareTo("int") == 0) {
-            clazz = Integer.class;
-        } else if (word.compareTo("mat3") == 0) {
-            clazz = FloatBuffer.class;
-        } else if (word.compareTo("mat4") == 0) {
-            clazz = FloatBuffer.class;
-        }
-        return clazz;
+        ins = source.getIns();
+        outs = source.getOuts();
+        uniforms = source.getUniforms();
+        uniformBlocks = source.getUniformBlocks();
     }
 
     /**
@@ -235,8 +164,8 @@ public abstract class Shader {
     /**
      * Get the input attribute names (and their raw types) of this shader.
      * 
-     * @return the HashMap containing the input attribute names (and their raw
-     *         types) of this shader.
+     * @return the unmodifiable Map containing the input attribute names (and
+     *         their raw types) of this shader.
      */
     public Map<String, Class> getIns() {
         return ins;
@@ -245,8 +174,8 @@ public abstract class Shader {
     /**
      * Get the output attribute names (and their raw types) of this shader.
      * 
-     * @return the HashMap containing the output attribute names (and their raw
-     *         types) of this shader.
+     * @return the unmodifiable Map containing the output attribute names (and
+     *         their raw types) of this shader.
      */
     public Map<String, Class> getOuts() {
         return outs;
@@ -255,13 +184,32 @@ public abstract class Shader {
     /**
      * Get the uniform names (and their raw types) of this shader.
      * 
-     * @return the HashMap containing the uniform names (and their raw types) of
-     *         this shader.
+     * @return the unmodifiable Map containing the uniform names (and their raw
+     *         types) of this shader.
      */
     public Map<String, Class> getUniforms() {
         return uniforms;
     }
 
+    /**
+     * Get the uniform blocks (and their members) of this shader.
+     * 
+     * @return the unmodifiable Map containing the uniform block names and
+     *         their members, see {@link ShaderSource#getUniformBlocks()}.
+     */
+    public Map<String, Map<String, String>> getUniformBlocks() {
+        return uniformBlocks;
+    }
+
+    /**
+     * Getter for the source code of this shader.
+     * 
+     * @return the GLSL source code.
+     */
+    public String getSource() {
+        return source[0];
+    }
+
     /**
      * Getter for this shader's library-internal name.
      * 
@@ -4,18 +4,25 @@ import java.nio.ByteBuffer;
 import java.nio.FloatBuffer;
 import java.nio.IntBuffer;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Set;
 
 import javax.media.opengl.GL;
 import javax.media.opengl.GL3;
+import javax.media.opengl.GL4ES3;
 import javax.media.opengl.GLException;
 
+import nl.esciencecenter.neon.datastructures.DirectFloatArena;
 import nl.esciencecenter.neon.datastructures.GLSLAttribute;
 import nl.esciencecenter.neon.datastructures.VertexBufferObject;
+import nl.esciencecenter.neon.exceptions.CompilationFailedException;
 import nl.esciencecenter.neon.exceptions.UninitializedException;
 import nl.esciencecenter.neon.math.FloatMatrix;
 import nl.esciencecenter.neon.math.FloatVector;
+import nl.esciencecenter.neon.metrics.FrameMetrics;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -44,8 +51,12 @@ import com.jogamp.common.nio.Buffers;
  * geometry shader.
  * 
  * Shader Programs made with this class have an internal storage for GLSL
- * uniform variables, and perform checks on use to see if these variables have
- * been set by the user via the setUniform methods.
+ * uniform variables, and check whether these variables have been set by the
+ * user via the setUniform methods, and whether the program linked correctly.
+ * How often these checks are done is set by a {@link ShaderValidation} policy.
+ * Matrices and vectors are staged in direct buffers, one per uniform, that are
+ * reused every time the uniform is set, so they can be handed to OpenGL
+ * without copies or allocations.
  * 
  * The typical/correct lifecycle of a {@link ShaderProgram} is:
  * 
@@ -70,6 +81,13 @@ import com.jogamp.common.nio.Buffers;
 public class ShaderProgram {
     private final static Logger logger = LoggerFactory.getLogger(ShaderProgram.class);
 
+    /** The default number of uses between checks for {@link ShaderValidation#SAMPLED}. */
+    public static final int DEFAULT_VALIDATION_SAMPLE_INTERVAL = 1000;
+
+    private static volatile ShaderValidation defaultValidation = parseValidation(System
+            .getProperty("neon.shader.validation"));
+    private static volatile int validationSampleInterval = DEFAULT_VALIDATION_SAMPLE_INTERVAL;
+
     private int pointer;
     private final VertexShader vs;
     private GeometryShader gs;
@@ -82,10 +100,30 @@ public class ShaderProgram {
     private final Map<String, Float> uniformFloats;
     private final Map<String, Double> uniformDoubles;
 
+    /** Native memory for the staged matrices and vectors. */
+    private final DirectFloatArena uniformArena;
+
     private boolean geometryEnabled = false;
     private boolean warningsGiven = false;
     private boolean initialized = false;
     private boolean attribsBound = false;
+    private boolean shadersAttached = false;
+
+    /** The validation policy of this program, or null for the default */
+    private ShaderValidation validation;
+    private boolean usedOnce = false;
+    private int usesSinceValidation = 0;
+    private final IntBuffer statusBuffer = Buffers.newDirectIntBuffer(1);
+
+    /** Attribute locations by name, looked up once per link */
+    private final Map<String, Integer> attribLocations = new HashMap<String, Integer>();
+
+    /** Names of the uniform blocks declared in the shaders. */
+    private final Set<String> uniformBlockNames = new HashSet<String>();
+    /** True if a declared block had no binding point at the last link. */
+    private boolean uniformBlocksPending = false;
+    private int blockRegistrations = -1;
+    private int[] locationScratch = new int[0];
 
     /**
      * Basic constructor for ShaderProgram with Vertex and Fragment shaders.
@@ -106,6 +144,9 @@ public class ShaderProgram {
         uniformInts = new HashMap<String, Integer>();
         uniformFloats = new HashMap<String, Float>();
         uniformDoubles = new HashMap<String, Double>();
+        uniformArena = new DirectFloatArena();
+
+        collectUniformBlocks(vs, fs);
     }
 
     /**
@@ -130,8 +171,16 @@ public class ShaderProgram {
         uniformInts = new HashMap<String, Integer>();
         uniformFloats = new HashMap<String, Float>();
         uniformDoubles = new HashMap<String, Double>();
+        uniformArena = new DirectFloatArena();
 
         geometryEnabled = true;
+        collectUniformBlocks(vs, gs, fs);
+    }
+
+    private void collectUniformBlocks(Shader... shaders) {
+        for (Shader shader : shaders) {
+            uniformBlockNames.addAll(shader.getUniformBlocks().keySet());
+        }
     }
 
     /**
@@ -162,6 +211,70 @@ public class ShaderProgram {
             // warningsGiven = false;
             // checkCompatibility(vs, fs);
 
+            shadersAttached = true;
+            initialized = true;
+        }
+    }
+
+    /**
+     * OpenGL initialization method that loads the linked program from a
+     * {@link ProgramBinaryCache} if it has an entry for these shaders on this
+     * driver, skipping their compilation. Otherwise the shaders, which should
+     * not have been initialized yet, are compiled and the program is linked
+     * and stored in the cache. Either way the program is linked right away,
+     * without binding attribute locations; the attributes are found by name
+     * by the linkAttribs methods.
+     * 
+     * @param gl
+     *            The opengl instance.
+     * @param cache
+     *            The cache to load from and store into.
+     * @throws CompilationFailedException
+     *             if the program was not in the cache and one of the shaders
+     *             failed to compile.
+     */
+    public void init(GL3 gl, ProgramBinaryCache cache) throws CompilationFailedException {
+        if (!initialized) {
+            String key = cache.key(gl, vs, geometryEnabled ? gs : null, fs);
+            setPointer(gl.glCreateProgram());
+
+            if (!cache.load(gl, getPointer(), key)) {
+                vs.init(gl);
+                if (geometryEnabled) {
+                    gs.init(gl);
+                }
+                fs.init(gl);
+
+                try {
+                    gl.glAttachShader(getPointer(), vs.getShaderPointer());
+                    if (geometryEnabled) {
+                        gl.glAttachShader(getPointer(), gs.getShaderPointer());
+                    }
+                    gl.glAttachShader(getPointer(), fs.getShaderPointer());
+                } catch (UninitializedException e) {
+                    logger.error("Shaders not initialized properly");
+                }
+                shadersAttached = true;
+
+                if (cache.isSupported(gl)) {
+                    gl.glProgramParameteriARB(getPointer(), GL4ES3.GL_PROGRAM_BINARY_RETRIEVABLE_HINT, GL3.GL_TRUE);
+                }
+                gl.glLinkProgram(getPointer());
+
+                gl.glGetProgramiv(getPointer(), GL3.GL_LINK_STATUS, statusBuffer);
+                if (statusBuffer.get(0) == GL3.GL_FALSE) {
+                    printError(gl, "link");
+                } else {
+                    cache.store(gl, getPointer(), key);
+                }
+            }
+            attribLocations.clear();
+            attribsBound = true;
+            bindUniformBlocks(gl);
+
+            warningsGiven = false;
+            checkCompatibility(vs, fs);
+
             initialized = true;
         }
     }
@@ -312,6 +425,10 @@ public class ShaderProgram {
      */
     public void detachShaders(GL3 gl) throws UninitializedException {
         if (initialized) {
+            if (!shadersAttached) {
+                // Loaded from a program binary, there are no shaders
+                return;
+            }
             try {
                 gl.glDetachShader(getPointer(), vs.getShaderPointer());
                 gl.glDeleteShader(vs.getShaderPointer());
@@ -336,8 +453,11 @@ public class ShaderProgram {
 
     /**
      * use method for this shader. sets this shader as the current rendering
-     * shader and loads all staged uniform variables. Also checks for the
-     * presence of all uniforms and checks for additional opengl errors.
+     * shader and loads all staged uniform variables. Whether it also checks for
+     * the presence of all uniforms and for additional opengl errors depends on
+     * the {@link ShaderValidation} policy: on every use, on the first use only
+     * (the default, {@link ShaderValidation#LINK}), on a sample of the uses, or
+     * never.
      * 
      * @param gl
      *            The opengl instance.
@@ -346,9 +466,36 @@ public class ShaderProgram {
      */
     public void use(GL3 gl) throws UninitializedException {
         if (getPointer() != 0 && initialized) {
-
             gl.glUseProgram(getPointer());
 
+            passUniforms(gl);
+        } else {
+            throw new UninitializedException();
+        }
+    }
+
+    /**
+     * Passes all uniforms set with the setUniform methods to this program,
+     * which should already be in use. Meant for drawing several times with the
+     * same program, such as from a
+     * {@link nl.esciencecenter.neon.render.RenderQueue}, without binding the
+     * program again; {@link #use(GL3)} does both. The uniforms are checked
+     * according to the {@link ShaderValidation} policy, as in use.
+     * 
+     * @param gl
+     *            The opengl instance.
+     * @throws UninitializedException
+     *             if this ShaderProgram was used without initialization.
+     */
+    public void passUniforms(GL3 gl) throws UninitializedException {
+        if (getPointer() != 0 && initialized) {
+            if (uniformBlocksPending && attribsBound && blockRegistrations != UniformBlock.getRegistrations()) {
+                bindUniformBlocks(gl);
+            }
+
+            FrameMetrics metrics = FrameMetrics.getInstance();
+            long uploadStart = metrics.begin();
+
             for (Entry<String, FloatBuffer> var : uniformFloatMatrices.entrySet()) {
                 passUniformMat(gl, var.getKey(), var.getValue());
             }
@@ -368,17 +515,61 @@ public class ShaderProgram {
                 passUniform(gl, var.getKey(), var.getValue());
             }
 
-            checkUniforms(vs, fs);
+            metrics.end(FrameMetrics.Phase.UNIFORM_UPLOAD, uploadStart);
 
-            // Check for errors
-            printError(gl, "use");
+            if (validateOnUse()) {
+                checkUniforms(vs, fs);
+
+                // Check for errors
+                printError(gl, "use");
+            }
         } else {
             throw new UninitializedException();
         }
     }
 
     /**
-     * Link method for linking the attribute objects to the shader inputs.
+     * Link method for linking the attributes of a VertexBufferObject to the
+     * shader inputs. The attribute pointers are recorded in the vertex array
+     * object of the VertexBufferObject on the first draw with this program
+     * (see {@link VertexBufferObject#link(GL3, int[])}), after which this
+     * method makes no OpenGL calls at all. The VertexBufferObject needs to be
+     * bound.
+     * 
+     * @param gl
+     *            The opengl instance.
+     * @param vbo
+     *            The VertexBufferObject whose attributes to link.
+     * @throws UninitializedException
+     */
+    public void linkAttribs(GL3 gl, VertexBufferObject vbo) throws UninitializedException {
+        if (initialized) {
+            if (!attribsBound) {
+                bindAttribLocations(gl, vbo.getAttribs());
+            }
+
+            int numAttribs = vbo.getNumAttribs();
+            if (locationScratch.length != numAttribs) {
+                locationScratch = new int[numAttribs];
+            }
+            for (int i = 0; i < numAttribs; i++) {
+                locationScratch[i] = getAttribLocation(gl, vbo.getAttrib(i).getName());
+            }
+
+            if (vbo.link(gl, locationScratch)) {
+                checkIns(vs, vbo.getAttribs());
+                warningsGiven = true;
+            }
+        } else {
+            throw new UninitializedException();
+        }
+    }
+
+    /**
+     * Link method for linking the attribute objects to the shader inputs. This
+     * sets up all attribute pointers on every call; use
+     * {@link #linkAttribs(GL3, VertexBufferObject)} to do so only once per
+     * VertexBufferObject.
      * 
      * @param gl
      *            The opengl instance.
@@ -389,41 +580,14 @@ public class ShaderProgram {
     public void linkAttribs(GL3 gl, GLSLAttribute... attribs) throws UninitializedException {
         if (initialized) {
             if (!attribsBound) {
-                int index = 0;
-                for (GLSLAttribute attrib : attribs) {
-                    // logger.debug("bind------------------------------------------------");
-                    // logger.debug("getPointer(): " + getPointer());
-                    // logger.debug("name: " + attrib.getName());
-                    // logger.debug("size: " + attrib.getNumVectors());
-                    // logger.debug("capacity: " +
-                    // attrib.getBuffer().capacity());
-
-                    gl.glBindAttribLocation(getPointer(), index, attrib.getName());
-                    index++;
-                }
-                gl.glLinkProgram(getPointer());
-
-                warningsGiven = false;
-                checkCompatibility(vs, fs);
-
-                attribsBound = true;
+                bindAttribLocations(gl, attribs);
             }
 
             int nextStart = 0;
             for (GLSLAttribute attrib : attribs) {
-                int ptr = gl.glGetAttribLocation(getPointer(), attrib.getName());
-
-                // logger.debug("----------------------------------------------------");
-                // logger.debug("getPointer(): " + getPointer());
-                // logger.debug("name: " + attrib.getName());
-                // logger.debug("ptr: " + ptr);
-                // logger.debug("nextStart: " + nextStart);
-                // logger.debug("size: " + attrib.getNumVectors());
-                // logger.debug("capacity: " + attrib.getBuffer().capacity());
+                int ptr = getAttribLocation(gl, attrib.getName());
 
                 gl.glVertexAttribPointer(ptr, attrib.getNumVectors(), GL3.GL_FLOAT, false, 0, nextStart);
-                // checkNoError(gl, "glVertexAttribPointer", true);
-
                 gl.glEnableVertexAttribArray(ptr);
                 nextStart += attrib.getBuffer().capacity() * Buffers.SIZEOF_FLOAT;
             }
@@ -436,6 +600,65 @@ public class ShaderProgram {
         }
     }
 
+    /**
+     * Binds the attributes, in the given order, to the first attribute
+     * locations and links the program. Done once, for the first attributes
+     * linked to this program.
+     */
+    private void bindAttribLocations(GL3 gl, GLSLAttribute... attribs) {
+        int index = 0;
+        for (GLSLAttribute attrib : attribs) {
+            gl.glBindAttribLocation(getPointer(), index, attrib.getName());
+            index++;
+        }
+        gl.glLinkProgram(getPointer());
+        attribLocations.clear();
+        if (getEffectiveValidation() != ShaderValidation.OFF) {
+            printError(gl, "link");
+        }
+        bindUniformBlocks(gl);
+
+        warningsGiven = false;
+        checkCompatibility(vs, fs);
+
+        attribsBound = true;
+    }
+
+    /**
+     * Binds every uniform block declared in the shaders to the binding point
+     * registered for its name by an initialized {@link UniformBlock}. Linking
+     * resets the bindings, so this is done after every link, and again on use
+     * if a block was registered later.
+     */
+    private void bindUniformBlocks(GL3 gl) {
+        blockRegistrations = UniformBlock.getRegistrations();
+        uniformBlocksPending = false;
+        for (String name : uniformBlockNames) {
+            int bindingPoint = UniformBlock.getBindingPoint(name);
+            if (bindingPoint < 0) {
+                uniformBlocksPending = true;
+                continue;
+            }
+            int index = gl.glGetUniformBlockIndex(getPointer(), name);
+            if (index != GL3.GL_INVALID_INDEX) {
+                gl.glUniformBlockBinding(getPointer(), index, bindingPoint);
+            }
+        }
+    }
+
+    /**
+     * @return the location of the named attribute, asking OpenGL only the
+     *         first time.
+     */
+    private int getAttribLocation(GL3 gl, String name) {
+        Integer location = attribLocations.get(name);
+        if (location == null) {
+            location = gl.glGetAttribLocation(getPointer(), name);
+            attribLocations.put(name, location);
+        }
+        return location;
+    }
+
     /**
      * Internal method for getting the error code and message from opengl and
      * logging them.
@@ -444,7 +667,7 @@ public class ShaderProgram {
      *            The opengl instance
      */
     private void printError(GL3 gl, String state) {
-        IntBuffer buf = Buffers.newDirectIntBuffer(1);
+        IntBuffer buf = statusBuffer;
         gl.glGetProgramiv(getPointer(), GL3.GL_LINK_STATUS, buf);
 
         if (buf.get(0) == 0) {
@@ -468,11 +691,9 @@ public class ShaderProgram {
      *            The Vector to stage.
      */
     public void setUniformVector(String name, FloatVector var) {
-        if (!uniformFloatVectors.containsKey(name)) {
-            warningsGiven = false;
-        }
-        uniformFloatVectors.put(name, var.asBuffer());
-
+        FloatBuffer staged = stage(uniformFloatVectors, name, var.getSize());
+        var.writeTo(staged);
+        staged.rewind();
     }
 
     /**
@@ -485,10 +706,35 @@ public class ShaderProgram {
      *            The Matrix to stage.
      */
     public void setUniformMatrix(String name, FloatMatrix var) {
-        if (!uniformFloatMatrices.containsKey(name)) {
+        FloatBuffer staged = stage(uniformFloatMatrices, name, var.getSize());
+        var.writeTo(staged);
+        staged.rewind();
+    }
+
+    /**
+     * Internal method to find the direct staging buffer for a matrix or
+     * vector uniform. A new buffer is only taken from the arena the first time
+     * a uniform is set, or if its size changes.
+     * 
+     * @param uniforms
+     *            The map of staged uniforms of this type.
+     * @param name
+     *            The name in the GLSL code for this uniform variable.
+     * @param floats
+     *            The number of floats in the uniform.
+     * @return The staging buffer, positioned at 0.
+     */
+    private FloatBuffer stage(Map<String, FloatBuffer> uniforms, String name, int floats) {
+        FloatBuffer staged = uniforms.get(name);
+        if (staged == null) {
             warningsGiven = false;
         }
-        uniformFloatMatrices.put(name, var.asBuffer());
+        if (staged == null || staged.capacity() != floats) {
+            staged = uniformArena.allocate(floats);
+            uniforms.put(name, staged);
+        }
+        staged.clear();
+        return staged;
     }
 
     /**
@@ -722,6 +968,123 @@ public class ShaderProgram {
         gl.glUniform1d(ptr, var);
     }
 
+    /**
+     * Decides whether this use of the program should be validated, according
+     * to the validation policy.
+     */
+    private boolean validateOnUse() {
+        switch (getEffectiveValidation()) {
+        case EVERY_USE:
+            return true;
+        case LINK:
+            if (usedOnce) {
+                return false;
+            }
+            usedOnce = true;
+            return true;
+        case SAMPLED:
+            if (usedOnce && ++usesSinceValidation < validationSampleInterval) {
+                return false;
+            }
+            usedOnce = true;
+            usesSinceValidation = 0;
+            return true;
+        default:
+            return false;
+        }
+    }
+
+    private static ShaderValidation parseValidation(String value) {
+        if (value != null) {
+            try {
+                return ShaderValidation.valueOf(value.trim().toUpperCase(Locale.ENGLISH));
+            } catch (IllegalArgumentException e) {
+                logger.warn("Unknown shader validation policy " + value + ", using " + ShaderValidation.LINK);
+            }
+        }
+        return ShaderValidation.LINK;
+    }
+
+    /**
+     * Getter for the validation policy of all programs that have no policy of
+     * their own.
+     * 
+     * @return the default validation policy.
+     */
+    public static ShaderValidation getDefaultValidation() {
+        return defaultValidation;
+    }
+
+    /**
+     * Setter for the validation policy of all programs that have no policy of
+     * their own. Initially {@link ShaderValidation#LINK}, or the value of the
+     * system property neon.shader.validation.
+     * 
+     * @param validation
+     *            the default validation policy to set.
+     */
+    public static void setDefaultValidation(ShaderValidation validation) {
+        if (validation == null) {
+            throw new IllegalArgumentException("The default validation policy cannot be null.");
+        }
+        defaultValidation = validation;
+    }
+
+    /**
+     * Getter for the number of uses between checks for
+     * {@link ShaderValidation#SAMPLED}.
+     * 
+     * @return the validation sample interval.
+     */
+    public static int getValidationSampleInterval() {
+        return validationSampleInterval;
+    }
+
+    /**
+     * Setter for the number of uses between checks for
+     * {@link ShaderValidation#SAMPLED}.
+     * 
+     * @param interval
+     *            the validation sample interval to set, at least 1.
+     */
+    public static void setValidationSampleInterval(int interval) {
+        if (interval < 1) {
+            throw new IllegalArgumentException("The validation sample interval should be at least 1.");
+        }
+        validationSampleInterval = interval;
+    }
+
+    /**
+     * Getter for the validation policy of this program.
+     * 
+     * @return the validation policy, or null if this program uses the
+     *         default.
+     */
+    public ShaderValidation getValidation() {
+        return validation;
+    }
+
+    /**
+     * Setter for the validation policy of this program, overriding the
+     * default.
+     * 
+     * @param validation
+     *            the validation policy to set, or null to use the default.
+     */
+    public void setValidation(ShaderValidation validation) {
+        this.validation = validation;
+        this.usedOnce = false;
+        this.usesSinceValidation = 0;
+    }
+
+    /**
+     * @return the validation policy in effect for this program.
+     */
+    private ShaderValidation getEffectiveValidation() {
+        ShaderValidation result = validation;
+        return result == null ? defaultValidation : result;
+    }
+
     /**
      * OpenGL deletion method.
      * 
@@ -4,6 +4,7 @@ import java.io.File;
 import java.io.FileNotFoundException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 
 import javax.media.opengl.GL3;
 
@@ -33,6 +34,10 @@ import nl.esciencecenter.neon.math.FloatVector;
  * programs can be constructed consisting of {@link VertexShader} and
  * {@link FragmentShader}, and an optional {@link GeometryShader}.
  * 
+ * If a {@link ProgramBinaryCache} is set, or the system property
+ * neon.shader.cache names a directory to keep one in, programs created from
+ * source are loaded from the cache when possible instead of being compiled.
+ * 
  * @see ShaderProgram
  * @author Maarten van Meersbergen <m.van.meersbergen@esciencecenter.nl>
  */
@@ -40,11 +45,38 @@ public class ShaderProgramLoader {
     /** Storage for the Shader Programs */
     private List<ShaderProgram> programs;
 
+    /** Cache of linked programs, or null to always compile */
+    private ProgramBinaryCache binaryCache;
+
     /**
      * Constructor, initializes storage.
      */
     public ShaderProgramLoader() {
         programs = new ArrayList<ShaderProgram>();
+
+        String cacheDirectory = System.getProperty("neon.shader.cache");
+        if (cacheDirectory != null) {
+            binaryCache = new ProgramBinaryCache(new File(cacheDirectory));
+        }
+    }
+
+    /**
+     * Compiles the shaders and initializes the program, or loads it from the
+     * binary cache, and stores a reference to it.
+     */
+    private ShaderProgram initProgram(GL3 gl, ShaderProgram program, Shader... shaders)
+            throws CompilationFailedException {
+        if (binaryCache != null) {
+            program.init(gl, binaryCache);
+        } else {
+            for (Shader shader : shaders) {
+                shader.init(gl);
+            }
+            program.init(gl);
+        }
+        programs.add(program);
+
+        return program;
     }
 
     /**
@@ -71,17 +103,10 @@ public class ShaderProgramLoader {
     public ShaderProgram createProgram(GL3 gl, String programName, File vsSourceFile, File gsSourceFile,
             File fsSourceFile) throws FileNotFoundException, CompilationFailedException {
         VertexShader vs = new VertexShader(programName + " : Vertex Shader", vsSourceFile);
-        vs.init(gl);
         GeometryShader gs = new GeometryShader(programName + " : Geometry Shader", gsSourceFile);
-        gs.init(gl);
         FragmentShader fs = new FragmentShader(programName + " : Fragment Shader", fsSourceFile);
-        fs.init(gl);
-
-        ShaderProgram program = new ShaderProgram(vs, gs, fs);
-        program.init(gl);
-        programs.add(program);
 
-        return program;
+        return initProgram(gl, new ShaderProgram(vs, gs, fs), vs, gs, fs);
     }
 
     /**
@@ -106,15 +131,67 @@ public class ShaderProgramLoader {
     public ShaderProgram createProgram(GL3 gl, String programName, File vsSourceFile, File fsSourceFile)
             throws FileNotFoundException, CompilationFailedException {
         VertexShader vs = new VertexShader(programName + " : Vertex Shader", vsSourceFile);
-        vs.init(gl);
         FragmentShader fs = new FragmentShader(programName + " : Fragment Shader", fsSourceFile);
-        fs.init(gl);
 
-        ShaderProgram program = new ShaderProgram(vs, fs);
-        program.init(gl);
-        programs.add(program);
+        return initProgram(gl, new ShaderProgram(vs, fs), vs, fs);
+    }
 
-        return program;
+    /**
+     * Creation method for {@link ShaderProgram} variants. Reads the source
+     * files, injects the given defines into both, then parses, checks,
+     * compiles and initializes the Shader source code. Then stores a reference
+     * to it.
+     * 
+     * @param gl
+     *            The global openGL instance.
+     * @param programName
+     *            Internal name for this Shader Program.
+     * @param vsSourceFile
+     *            Source for {@link VertexShader}.
+     * @param fsSourceFile
+     *            Source for {@link FragmentShader}.
+     * @param defines
+     *            The names and values to #define in both shaders.
+     * @return The shader program just created.
+     * @throws FileNotFoundException
+     *             if one of the source files can not be found.
+     * @throws CompilationFailedException
+     *             if one of the source compilations generates an error.
+     */
+    public ShaderProgram createProgram(GL3 gl, String programName, File vsSourceFile, File fsSourceFile,
+            Map<String, String> defines) throws FileNotFoundException, CompilationFailedException {
+        ShaderSourceManager sources = ShaderSourceManager.getInstance();
+        VertexShader vs = new VertexShader(programName + " : Vertex Shader", sources.load(vsSourceFile, defines));
+        FragmentShader fs = new FragmentShader(programName + " : Fragment Shader",
+                sources.load(fsSourceFile, defines));
+
+        return initProgram(gl, new ShaderProgram(vs, fs), vs, fs);
+    }
+
+    /**
+     * Creation method for {@link ShaderProgram} instances from sources that
+     * were already read and preprocessed, for instance by a
+     * {@link ShaderWatcher}. Only compiles and initializes the program, so it
+     * does no file I/O. Then stores a reference to it.
+     * 
+     * @param gl
+     *            The global openGL instance.
+     * @param programName
+     *            Internal name for this Shader Program.
+     * @param vsSource
+     *            Preprocessed source for {@link VertexShader}.
+     * @param fsSource
+     *            Preprocessed source for {@link FragmentShader}.
+     * @return The shader program just created.
+     * @throws CompilationFailedException
+     *             if one of the source compilations generates an error.
+     */
+    public ShaderProgram createProgram(GL3 gl, String programName, ShaderSource vsSource, ShaderSource fsSource)
+            throws CompilationFailedException {
+        VertexShader vs = new VertexShader(programName + " : Vertex Shader", vsSource);
+        FragmentShader fs = new FragmentShader(programName + " : Fragment Shader", fsSource);
+
+        return initProgram(gl, new ShaderProgram(vs, fs), vs, fs);
     }
 
     /**
@@ -139,15 +216,9 @@ public class ShaderProgramLoader {
     public ShaderProgram createProgram(GL3 gl, String programName, String vsSourceCode, File fsSourceFile)
             throws FileNotFoundException, CompilationFailedException {
         VertexShader vs = new VertexShader(programName + " : Vertex Shader", vsSourceCode);
-        vs.init(gl);
         FragmentShader fs = new FragmentShader(programName + " : Fragment Shader", fsSourceFile);
-        fs.init(gl);
 
-        ShaderProgram program = new ShaderProgram(vs, fs);
-        program.init(gl);
-        programs.add(program);
-
-        return program;
+        return initProgram(gl, new ShaderProgram(vs, fs), vs, fs);
     }
 
     /**
@@ -172,15 +243,9 @@ public class ShaderProgramLoader {
     public ShaderProgram createProgram(GL3 gl, String programName, File vsSourceFile, String fsSourceCode)
             throws FileNotFoundException, CompilationFailedException {
         VertexShader vs = new VertexShader(programName + " : Vertex Shader", vsSourceFile);
-        vs.init(gl);
         FragmentShader fs = new FragmentShader(programName + " : Fragment Shader", fsSourceCode);
-        fs.init(gl);
-
-        ShaderProgram program = new ShaderProgram(vs, fs);
-        program.init(gl);
-        programs.add(program);
 
-        return program;
+        return initProgram(gl, new ShaderProgram(vs, fs), vs, fs);
     }
 
     /**
@@ -205,15 +270,9 @@ public class ShaderProgramLoader {
     public ShaderProgram createProgram(GL3 gl, String programName, String vsSourceCode, String fsSourceCode)
             throws FileNotFoundException, CompilationFailedException {
         VertexShader vs = new VertexShader(programName + " : Vertex Shader", vsSourceCode);
-        vs.init(gl);
         FragmentShader fs = new FragmentShader(programName + " : Fragment Shader", fsSourceCode);
-        fs.init(gl);
-
-        ShaderProgram program = new ShaderProgram(vs, fs);
-        program.init(gl);
-        programs.add(program);
 
-        return program;
+        return initProgram(gl, new ShaderProgram(vs, fs), vs, fs);
     }
 
     /**
@@ -235,6 +294,26 @@ public class ShaderProgramLoader {
         return program;
     }
 
+    /**
+     * Getter for the cache of linked programs.
+     * 
+     * @return the binaryCache, or null if programs are always compiled.
+     */
+    public ProgramBinaryCache getBinaryCache() {
+        return binaryCache;
+    }
+
+    /**
+     * Setter for the cache of linked programs, used by the createProgram
+     * methods that take source code or files.
+     * 
+     * @param binaryCache
+     *            the binaryCache to set, or null to always compile.
+     */
+    public void setBinaryCache(ProgramBinaryCache binaryCache) {
+        this.binaryCache = binaryCache;
+    }
+
     /**
      * Deletes a {@link ShaderProgram} instance from the loader storage in the
      * proper manner.
@@ -0,0 +1,279 @@
+package nl.esciencecenter.neon.shaders;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.FloatBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/* Copyright 2013 Netherlands eScience Center
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * Preprocessed GLSL source code for a single shader stage, together with the
+ * in, out, uniform and uniform block declarations parsed from it. Instances
+ * are immutable and shared between all {@link Shader}s built from the same
+ * text, see {@link ShaderSourceManager}.
+ * 
+ * @author Maarten van Meersbergen <m.van.meersbergen@esciencecenter.nl>
+ * 
+ */
+@SuppressWarnings("rawtypes")
+public final class ShaderSource {
+    /** A uniform block declaration: name, member declarations, instance name. */
+    private static final Pattern BLOCK = Pattern
+            .compile("(?:layout\\s*\\([^)]*\\)\\s*)?uniform\\s+(\\w+)\\s*\\{([^}]*)\\}\\s*\\w*\\s*;");
+    /** Comments and qualifiers that do not affect a block member's layout. */
+    private static final Pattern MEMBER_NOISE = Pattern.compile(
+            "//[^\\n]*|/\\*.*?\\*/|layout\\s*\\([^)]*\\)|\\b(?:highp|mediump|lowp|column_major)\\b", Pattern.DOTALL);
+
+    /** The name of the file (or other origin) this source was read from. */
+    private final String name;
+    /** The preprocessed source code. */
+    private final String text;
+    /** The hash of the preprocessed source code. */
+    private final String hash;
+    /** The paths of the files that were included while preprocessing. */
+    private final List<String> includedFiles;
+
+    private final Map<String, Class> ins, outs, uniforms;
+    private final Map<String, Map<String, String>> uniformBlocks;
+
+    /**
+     * Constructor, parses the variable declarations in the given preprocessed
+     * source code.
+     * 
+     * @param name
+     *            The name of the origin of this source, used in error
+     *            messages.
+     * @param text
+     *            The preprocessed source code.
+     * @param hash
+     *            The hash of the source code, as computed by the
+     *            {@link ShaderSourceManager}.
+     * @param includedFiles
+     *            The paths of the files that were included, directly or
+     *            indirectly, in the source code.
+     */
+    ShaderSource(String name, String text, String hash, List<String> includedFiles) {
+        this.name = name;
+        this.text = text;
+        this.hash = hash;
+        this.includedFiles = Collections.unmodifiableList(new ArrayList<String>(includedFiles));
+
+        Map<String, Class> parsedIns = new HashMap<String, Class>();
+        Map<String, Class> parsedOuts = new HashMap<String, Class>();
+        Map<String, Class> parsedUniforms = new HashMap<String, Class>();
+        Map<String, Map<String, String>> parsedBlocks = new LinkedHashMap<String, Map<String, String>>();
+
+        // Blocks may span lines, so they are parsed (and cut out) first
+        StringBuffer rest = new StringBuffer();
+        Matcher block = BLOCK.matcher(text);
+        while (block.find()) {
+            parsedBlocks.put(block.group(1), parseBlockMembers(block.group(2)));
+            block.appendReplacement(rest, "");
+        }
+        block.appendTail(rest);
+
+        BufferedReader reader = new BufferedReader(new StringReader(rest.toString()));
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                parseVariables(line, parsedIns, parsedOuts, parsedUniforms);
+            }
+        } catch (IOException e) {
+            // Not thrown by a StringReader
+            throw new IllegalStateException(e);
+        }
+
+        ins = Collections.unmodifiableMap(parsedIns);
+        outs = Collections.unmodifiableMap(parsedOuts);
+        uniforms = Collections.unmodifiableMap(parsedUniforms);
+        uniformBlocks = Collections.unmodifiableMap(parsedBlocks);
+    }
+
+    /**
+     * Parses the member declarations of a uniform block, in order, into
+     * member names and their GLSL types. Array members get their size in the
+     * type, as in "vec4[4]".
+     * 
+     * @param body
+     *            The text between the braces of the block.
+     * @return The unmodifiable, ordered, map of member names to types.
+     */
+    private static Map<String, String> parseBlockMembers(String body) {
+        Map<String, String> members = new LinkedHashMap<String, String>();
+        for (String declaration : MEMBER_NOISE.matcher(body).replaceAll(" ").split(";")) {
+            String[] words = declaration.trim().split("\\s+", 2);
+            if (words.length < 2) {
+                continue;
+            }
+            String type = words[0];
+            for (String name : words[1].split(",")) {
+                name = name.replaceAll("\\s+", "");
+                int bracket = name.indexOf('[');
+                if (bracket >= 0) {
+                    members.put(name.substring(0, bracket), type + name.substring(bracket));
+                } else {
+                    members.put(name, type);
+                }
+            }
+        }
+        return Collections.unmodifiableMap(members);
+    }
+
+    /**
+     * Preparation method for Error-checking code that matches uniform variables
+     * set with the setUniform methods of the {@link ShaderProgram} class to
+     * their GLSL shader code counterparts.
+     * 
+     * @param line
+     *            The line of shader code to check.
+     */
+    private static void parseVariables(String line, Map<String, Class> ins, Map<String, Class> outs,
+            Map<String, Class> uniforms) {
+        String[] trimmedLine = line.trim().split(";");
+        if (trimmedLine.length == 0) {
+            return;
+        }
+        String[] words = trimmedLine[0].split("[\\s,;]+");
+        Map<String, Class> target = null;
+        if (words[0].compareTo("in") == 0) {
+            target = ins;
+        } else if (words[0].compareTo("out") == 0) {
+            target = outs;
+        } else if (words[0].compareTo("uniform") == 0) {
+            target = uniforms;
+        }
+        if (target != null) {
+            for (int i = 2; i < words.length; i++) {
+                Class clazz = extractShaderParameterType(words[1]);
+                target.put(words[i], clazz);
+            }
+        }
+    }
+
+    private static Class extractShaderParameterType(String word) {
+        Class clazz = null;
+        if (word.compareTo("vec2") == 0) {
+            clazz = FloatBuffer.class;
+        } else if (word.compareTo("vec3") == 0) {
+            clazz = FloatBuffer.class;
+        } else if (word.compareTo("vec4") == 0) {
+            clazz = FloatBuffer.class;
+        } else if (word.compareTo("float") == 0) {
+            clazz = Float.class;
+        } else if (word.compareTo("sampler2D") == 0) {
+            clazz = Integer.class;
+        } else if (word.compareTo("sampler3D") == 0) {
+            clazz = Integer.class;
+        } else if (word.compareTo("int") == 0) {
+            clazz = Integer.class;
+        } else if (word.compareTo("mat3") == 0) {
+            clazz = FloatBuffer.class;
+        } else if (word.compareTo("mat4") == 0) {
+            clazz = FloatBuffer.class;
+        }
+        return clazz;
+    }
+
+    /**
+     * Getter for the name of the origin of this source.
+     * 
+     * @return the file name, or the name given for inline source code.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Getter for the preprocessed source code, with all includes resolved and
+     * defines injected.
+     * 
+     * @return the GLSL source code.
+     */
+    public String getText() {
+        return text;
+    }
+
+    /**
+     * Getter for the hash of the preprocessed source code.
+     * 
+     * @return the hex encoded hash.
+     */
+    public String getHash() {
+        return hash;
+    }
+
+    /**
+     * Getter for the files that were included, directly or indirectly, while
+     * preprocessing this source. The file the source itself was read from is
+     * not in the list.
+     * 
+     * @return an unmodifiable list of paths, on the classpath or on the file
+     *         system, in the order they were included.
+     */
+    public List<String> getIncludedFiles() {
+        return includedFiles;
+    }
+
+    /**
+     * Get the input attribute names (and their raw types) of this source.
+     * 
+     * @return an unmodifiable map of the input attribute names (and their raw
+     *         types).
+     */
+    public Map<String, Class> getIns() {
+        return ins;
+    }
+
+    /**
+     * Get the output attribute names (and their raw types) of this source.
+     * 
+     * @return an unmodifiable map of the output attribute names (and their raw
+     *         types).
+     */
+    public Map<String, Class> getOuts() {
+        return outs;
+    }
+
+    /**
+     * Get the uniform names (and their raw types) of this source.
+     * 
+     * @return an unmodifiable map of the uniform names (and their raw types).
+     */
+    public Map<String, Class> getUniforms() {
+        return uniforms;
+    }
+
+    /**
+     * Get the uniform blocks declared in this source, with their members. The
+     * members of a block are not in {@link #getUniforms()}, they are set
+     * through a {@link UniformBlock}.
+     * 
+     * @return an unmodifiable map of block names to their members, which map
+     *         member names to GLSL types, both in declaration order.
+     */
+    public Map<String, Map<String, String>> getUniformBlocks() {
+        return uniformBlocks;
+    }
+}
@@ -0,0 +1,364 @@
+package nl.esciencecenter.neon.shaders;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.StringReader;
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/* Copyright 2013 Netherlands eScience Center
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * Reads and preprocesses GLSL source code for {@link Shader}s, and caches the
+ * result.
+ * 
+ * Preprocessing resolves <code>#include "file"</code> (or
+ * <code>#include &lt;file&gt;</code>) lines, relative to the directory of the
+ * including file, and injects <code>#define NAME VALUE</code> lines right
+ * after the <code>#version</code> line, for building variants of a shader from
+ * one source. A file is included at most once per shader, so shared snippets
+ * need no include guards and cyclic includes are harmless. Files are looked up
+ * on the classpath first, like {@link Shader} always did, and then on the file
+ * system.
+ * 
+ * The preprocessed text and its parsed in, out and uniform declarations are
+ * cached in a {@link ShaderSource}, keyed by a hash of the name and the
+ * preprocessed text, so many programs built from the same sources pay the
+ * parsing cost once, while an edited file or include is parsed again. The
+ * cache keeps the most recently used entries up to a maximum count.
+ * 
+ * All methods are thread safe.
+ * 
+ * @author Maarten van Meersbergen <m.van.meersbergen@esciencecenter.nl>
+ * 
+ */
+public class ShaderSourceManager {
+    /** The default maximum number of cached sources. */
+    public static final int DEFAULT_MAX_ENTRIES = 256;
+
+    private static final String INCLUDE = "#include";
+    private static final String VERSION = "#version";
+
+    private final Map<String, ShaderSource> cache;
+
+    private long hits;
+    private long misses;
+
+    private static class SingletonHolder {
+        public static final ShaderSourceManager INSTANCE = new ShaderSourceManager(DEFAULT_MAX_ENTRIES);
+    }
+
+    /**
+     * Access point for the default manager, used by the {@link Shader}
+     * constructors.
+     * 
+     * @return The default manager.
+     */
+    public static ShaderSourceManager getInstance() {
+        return SingletonHolder.INSTANCE;
+    }
+
+    /**
+     * Constructor for a manager with a custom cache size.
+     * 
+     * @param maxEntries
+     *            The maximum number of sources kept in the cache.
+     */
+    public ShaderSourceManager(final int maxEntries) {
+        if (maxEntries < 1) {
+            throw new IllegalArgumentException("maxEntries must be at least 1");
+        }
+        cache = new LinkedHashMap<String, ShaderSource>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, ShaderSource> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Reads and preprocesses the given shader source file.
+     * 
+     * @param file
+     *            The file, on the classpath or on the file system.
+     * @param defines
+     *            The defines to inject, may be null or empty.
+     * @return The preprocessed and parsed source.
+     * @throws FileNotFoundException
+     *             If the file, or one of its includes, was not found or could
+     *             not be read.
+     */
+    public ShaderSource load(File file, Map<String, String> defines) throws FileNotFoundException {
+        String path = normalize(file.getPath());
+        Set<String> included = new HashSet<String>();
+        included.add(path);
+
+        return process(file.getName(), read(path), parent(path), included, defines);
+    }
+
+    /**
+     * Preprocesses the given shader source code.
+     * 
+     * @param name
+     *            The name of the source code, used in error messages.
+     * @param code
+     *            The source code.
+     * @param directory
+     *            The directory includes are resolved against, or null for the
+     *            root of the classpath (or the working directory).
+     * @param defines
+     *            The defines to inject, may be null or empty.
+     * @return The preprocessed and parsed source.
+     * @throws FileNotFoundException
+     *             If one of the includes was not found or could not be read.
+     */
+    public ShaderSource process(String name, String code, String directory, Map<String, String> defines)
+            throws FileNotFoundException {
+        return process(name, code, directory == null ? "" : normalize(directory), new HashSet<String>(), defines);
+    }
+
+    private ShaderSource process(String name, String code, String directory, Set<String> included,
+            Map<String, String> defines) throws FileNotFoundException {
+        List<String> lines = new ArrayList<String>();
+        List<String> includedFiles = new ArrayList<String>();
+        expand(name, code, directory, included, lines, includedFiles);
+        if (defines != null && !defines.isEmpty()) {
+            injectDefines(lines, defines);
+        }
+
+        StringBuilder buf = new StringBuilder();
+        for (String line : lines) {
+            buf.append(line);
+            buf.append("\n");
+        }
+        String text = buf.toString();
+        String hash = hash(name, text);
+
+        synchronized (this) {
+            ShaderSource result = cache.get(hash);
+            if (result != null) {
+                hits++;
+                return result;
+            }
+            misses++;
+        }
+
+        ShaderSource result = new ShaderSource(name, text, hash, includedFiles);
+        synchronized (this) {
+            cache.put(hash, result);
+        }
+        return result;
+    }
+
+    /**
+     * Appends the lines of the code to the output, replacing every include
+     * line by the (expanded) lines of the included file, and records the
+     * paths of the included files.
+     */
+    private void expand(String name, String code, String directory, Set<String> included, List<String> out,
+            List<String> includedFiles) throws FileNotFoundException {
+        BufferedReader reader = new BufferedReader(new StringReader(code));
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String trimmed = line.trim();
+                if (!trimmed.startsWith(INCLUDE)) {
+                    out.add(line);
+                    continue;
+                }
+
+                String target = trimmed.substring(INCLUDE.length()).trim();
+                if (target.length() < 3
+                        || !((target.startsWith("\"") && target.endsWith("\"")) || (target.startsWith("<") && target
+                                .endsWith(">")))) {
+                    throw new IllegalArgumentException("Malformed include in " + name + ": " + trimmed);
+                }
+                String path = normalize(directory.isEmpty() ? target.substring(1, target.length() - 1) : directory
+                        + "/" + target.substring(1, target.length() - 1));
+                if (included.add(path)) {
+                    includedFiles.add(path);
+                    expand(path, read(path), parent(path), included, out, includedFiles);
+                }
+            }
+        } catch (IOException e) {
+            // Not thrown by a StringReader, but FileNotFoundExceptions are
+            if (e instanceof FileNotFoundException) {
+                throw (FileNotFoundException) e;
+            }
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Inserts a define line for every entry, sorted by name, after the version
+     * line (which has to stay first), or at the top if there is none.
+     */
+    private static void injectDefines(List<String> lines, Map<String, String> defines) {
+        int index = 0;
+        for (int i = 0; i < lines.size(); i++) {
+            if (lines.get(i).trim().startsWith(VERSION)) {
+                index = i + 1;
+                break;
+            }
+        }
+
+        List<String> defineLines = new ArrayList<String>();
+        for (Map.Entry<String, String> define : new TreeMap<String, String>(defines).entrySet()) {
+            String value = define.getValue();
+            defineLines.add("#define " + define.getKey() + (value == null || value.isEmpty() ? "" : " " + value));
+        }
+        lines.addAll(index, defineLines);
+    }
+
+    /**
+     * Reads the file at the given path, from the classpath if it is there, or
+     * else from the file system.
+     */
+    static String read(String path) throws FileNotFoundException {
+        InputStream in = ClassLoader.getSystemClassLoader().getResourceAsStream(path);
+        if (in == null) {
+            File file = new File(path);
+            if (!file.isFile()) {
+                throw new FileNotFoundException("Shader source " + path + " not found");
+            }
+            in = new FileInputStream(file);
+        }
+
+        StringBuilder buf = new StringBuilder();
+        BufferedReader reader = null;
+        try {
+            reader = new BufferedReader(new InputStreamReader(in, "UTF-8"));
+            String line;
+            while ((line = reader.readLine()) != null) {
+                buf.append(line);
+                buf.append("\n");
+            }
+        } catch (IOException e) {
+            FileNotFoundException notRead = new FileNotFoundException("Could not read shader source " + path + ": "
+                    + e.getMessage());
+            notRead.initCause(e);
+            throw notRead;
+        } finally {
+            try {
+                in.close();
+            } catch (IOException e) {
+                // Nothing left to do
+            }
+        }
+        return buf.toString();
+    }
+
+    /**
+     * Converts the path to forward slashes and removes "." and ".." segments,
+     * so every file has one key in the set of included files.
+     */
+    private static String normalize(String path) {
+        String[] segments = path.replace(File.separatorChar, '/').split("/");
+        List<String> result = new ArrayList<String>();
+        for (String segment : segments) {
+            if (segment.isEmpty() || segment.equals(".")) {
+                continue;
+            } else if (segment.equals("..") && !result.isEmpty() && !result.get(result.size() - 1).equals("..")) {
+                result.remove(result.size() - 1);
+            } else {
+                result.add(segment);
+            }
+        }
+
+        StringBuilder buf = new StringBuilder(path.startsWith("/") ? "/" : "");
+        for (int i = 0; i < result.size(); i++) {
+            if (i > 0) {
+                buf.append('/');
+            }
+            buf.append(result.get(i));
+        }
+        return buf.toString();
+    }
+
+    private static String parent(String path) {
+        int slash = path.lastIndexOf('/');
+        return slash < 0 ? "" : path.substring(0, slash);
+    }
+
+    private static String hash(String name, String text) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            digest.update(name.getBytes("UTF-8"));
+            digest.update((byte) 0);
+            digest.update(text.getBytes("UTF-8"));
+
+            StringBuilder result = new StringBuilder();
+            for (byte b : digest.digest()) {
+                result.append(String.format("%02x", b));
+            }
+            return result.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-1 is not available", e);
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException("UTF-8 is not available", e);
+        }
+    }
+
+    /**
+     * Empties the cache.
+     */
+    public synchronized void clear() {
+        cache.clear();
+    }
+
+    /**
+     * Getter for the number of cached sources.
+     * 
+     * @return the number of cached sources.
+     */
+    public synchronized int size() {
+        return cache.size();
+    }
+
+    /**
+     * Getter for the number of preprocessed sources that were found in the
+     * cache.
+     * 
+     * @return the number of hits.
+     */
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    /**
+     * Getter for the number of preprocessed sources that had to be parsed.
+     * 
+     * @return the number of misses.
+     */
+    public synchronized long getMisses() {
+        return misses;
+    }
+}
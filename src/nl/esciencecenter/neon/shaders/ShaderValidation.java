@@ -0,0 +1,47 @@
+package nl.esciencecenter.neon.shaders;
+
+/* Copyright 2013 Netherlands eScience Center
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * Policy for the diagnostics of a {@link ShaderProgram}: checking the link
+ * status of the program with OpenGL, and checking that all uniforms were set.
+ * The link status check is a synchronous round trip to the driver, so it
+ * should not be done on every draw in production.
+ * 
+ * The policy is set for all programs with
+ * {@link ShaderProgram#setDefaultValidation(ShaderValidation)}, or the system
+ * property neon.shader.validation, and can be overridden per program with
+ * {@link ShaderProgram#setValidation(ShaderValidation)}.
+ * 
+ * @author Maarten van Meersbergen <m.van.meersbergen@esciencecenter.nl>
+ * 
+ */
+public enum ShaderValidation {
+    /** Check on every use, for debugging. */
+    EVERY_USE,
+    /**
+     * Check when the program is linked and on its first use, after that no
+     * validation work is done. The default.
+     */
+    LINK,
+    /**
+     * Check when the program is linked and on its first use, and after that
+     * once every {@link ShaderProgram#getValidationSampleInterval()} uses.
+     */
+    SAMPLED,
+    /** Never check. */
+    OFF
+}
@@ -0,0 +1,323 @@
+package nl.esciencecenter.neon.shaders;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/* Copyright 2013 Netherlands eScience Center
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * Watches shader source files on disk and preprocesses them again, on a
+ * background thread, whenever a file changes in the directory of one of them
+ * or of one of their includes. The directories of the includes are watched as
+ * soon as the includes are known, so also includes in other directories and
+ * includes that were added later are picked up. Bursts of changes, like an
+ * editor writing a file in several steps, are debounced into a single reload.
+ * 
+ * The GL thread only picks up the results with {@link #pollChanges()}, which
+ * never blocks on file I/O, and does the compiling and linking itself, for
+ * instance with the {@link ShaderProgramLoader} createProgram method that
+ * takes {@link ShaderSource}s. If that fails, the previous program can simply
+ * be kept in use. The raw contents of the files are read along with them, see
+ * {@link #getText(File)}, for showing them in an editor. A file that can not be read or preprocessed is logged and
+ * its previous source is kept.
+ * 
+ * Call {@link #close()} to stop watching.
+ * 
+ * @author Maarten van Meersbergen <m.van.meersbergen@esciencecenter.nl>
+ * 
+ */
+public class ShaderWatcher {
+    private final static Logger logger = LoggerFactory.getLogger(ShaderWatcher.class);
+
+    /** The default time a directory has to be quiet before reloading. */
+    public static final long DEFAULT_DEBOUNCE_MILLIS = 200;
+
+    private final ShaderSourceManager sources;
+    private final long debounceMillis;
+    private final WatchService service;
+    private final Thread thread;
+
+    private final Map<File, Entry> entries = new HashMap<File, Entry>();
+    private final Set<Path> directories = new HashSet<Path>();
+    private boolean reloadNeeded;
+
+    private static class Entry {
+        private final Map<String, String> defines;
+        private ShaderSource source;
+        /** The raw contents of the file, before preprocessing. */
+        private String text;
+        private boolean changed;
+
+        Entry(Map<String, String> defines, ShaderSource source) {
+            this.defines = defines;
+            this.source = source;
+        }
+    }
+
+    /**
+     * Constructor, starts the background thread.
+     * 
+     * @param sources
+     *            The manager used to read and preprocess the files.
+     * @param debounceMillis
+     *            The time, in milliseconds, no further changes may occur
+     *            before the changed files are reloaded.
+     * @throws IOException
+     *             If the file system can not be watched.
+     */
+    public ShaderWatcher(ShaderSourceManager sources, long debounceMillis) throws IOException {
+        if (debounceMillis < 1) {
+            throw new IllegalArgumentException("debounceMillis must be at least 1");
+        }
+        this.sources = sources;
+        this.debounceMillis = debounceMillis;
+        this.service = FileSystems.getDefault().newWatchService();
+
+        thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                watchLoop();
+            }
+        }, "ShaderWatcher");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Starts watching the given file. It is read and preprocessed on the
+     * background thread, and reported by {@link #pollChanges()} when done.
+     * 
+     * @param file
+     *            The shader source file.
+     * @throws IOException
+     *             If the directory of the file can not be watched.
+     */
+    public void watch(File file) throws IOException {
+        watch(file, null, null);
+    }
+
+    /**
+     * Starts watching the given file.
+     * 
+     * @param file
+     *            The shader source file.
+     * @param defines
+     *            The defines to inject when preprocessing, may be null.
+     * @param current
+     *            The source currently in use, or null to have the file read
+     *            and reported by {@link #pollChanges()} right away. When given,
+     *            the file is only reported once its contents differ from it.
+     * @throws IOException
+     *             If the directory of the file, or of one of the includes of
+     *             the current source, can not be watched.
+     */
+    public void watch(File file, Map<String, String> defines, ShaderSource current) throws IOException {
+        File key = file.getAbsoluteFile();
+
+        synchronized (this) {
+            register(key);
+            if (current != null) {
+                registerIncludes(current);
+            }
+            entries.put(key, new Entry(defines, current));
+            if (current == null) {
+                reloadNeeded = true;
+            }
+        }
+    }
+
+    /**
+     * Watches the directory of the given file, if it is not watched yet.
+     */
+    private synchronized void register(File file) throws IOException {
+        Path directory = file.getParentFile().toPath();
+        if (directories.add(directory)) {
+            try {
+                directory.register(service, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+            } catch (IOException e) {
+                directories.remove(directory);
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Watches the directories of the includes of the given source that are on
+     * the file system. Includes found on the classpath are not watched.
+     */
+    private synchronized void registerIncludes(ShaderSource source) throws IOException {
+        for (String path : source.getIncludedFiles()) {
+            File include = new File(path).getAbsoluteFile();
+            if (include.isFile()) {
+                register(include);
+            }
+        }
+    }
+
+    /**
+     * Stops watching the given file. Its directory, and those of its includes,
+     * stay registered.
+     * 
+     * @param file
+     *            The shader source file.
+     */
+    public synchronized void unwatch(File file) {
+        entries.remove(file.getAbsoluteFile());
+    }
+
+    /**
+     * Returns the files that were preprocessed to a different source since
+     * the previous call, without blocking. Intended to be called on the GL
+     * thread, once per frame.
+     * 
+     * @return The new sources by (absolute) file, empty if nothing changed.
+     */
+    public synchronized Map<File, ShaderSource> pollChanges() {
+        Map<File, ShaderSource> result = new HashMap<File, ShaderSource>();
+        for (Map.Entry<File, Entry> entry : entries.entrySet()) {
+            if (entry.getValue().changed) {
+                entry.getValue().changed = false;
+                result.put(entry.getKey(), entry.getValue().source);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the latest source of the given file.
+     * 
+     * @param file
+     *            The shader source file.
+     * @return The latest preprocessed source, or null if the file is not
+     *         watched or has not been read yet.
+     */
+    public synchronized ShaderSource getSource(File file) {
+        Entry entry = entries.get(file.getAbsoluteFile());
+        return entry == null ? null : entry.source;
+    }
+
+    /**
+     * Returns the raw contents of the given file, as read on the background
+     * thread together with its latest source. Does not block on file I/O.
+     * 
+     * @param file
+     *            The shader source file.
+     * @return The contents of the file before preprocessing, or null if the
+     *         file is not watched or has not been read yet.
+     */
+    public synchronized String getText(File file) {
+        Entry entry = entries.get(file.getAbsoluteFile());
+        return entry == null ? null : entry.text;
+    }
+
+    /**
+     * Stops watching all files and ends the background thread.
+     */
+    public void close() {
+        try {
+            service.close();
+        } catch (IOException e) {
+            logger.warn("Could not close the shader watch service: " + e.getMessage());
+        }
+    }
+
+    private void watchLoop() {
+        try {
+            boolean changesPending = false;
+            while (true) {
+                WatchKey key = service.poll(debounceMillis, TimeUnit.MILLISECONDS);
+                if (key != null) {
+                    // Any change in a watched directory may concern an
+                    // include, so the events themselves are not inspected.
+                    key.pollEvents();
+                    key.reset();
+                    changesPending = true;
+                    continue;
+                }
+
+                synchronized (this) {
+                    changesPending |= reloadNeeded;
+                    reloadNeeded = false;
+                }
+                if (changesPending) {
+                    reload();
+                    changesPending = false;
+                }
+            }
+        } catch (ClosedWatchServiceException e) {
+            // Closed, stop watching
+        } catch (InterruptedException e) {
+            logger.warn("Shader watcher interrupted, stopped watching");
+        }
+    }
+
+    /**
+     * Reads and preprocesses every watched file and marks those whose source
+     * changed.
+     */
+    private void reload() {
+        Map<File, Entry> snapshot;
+        synchronized (this) {
+            snapshot = new HashMap<File, Entry>(entries);
+        }
+
+        for (Map.Entry<File, Entry> entry : snapshot.entrySet()) {
+            File file = entry.getKey();
+            Entry state = entry.getValue();
+            String text;
+            ShaderSource source;
+            try {
+                text = ShaderSourceManager.read(file.getPath());
+                source = sources.load(file, state.defines);
+            } catch (FileNotFoundException e) {
+                logger.warn("Could not reload shader source, keeping the previous one: " + e.getMessage());
+                continue;
+            } catch (IllegalArgumentException e) {
+                logger.warn("Could not preprocess " + file + ", keeping the previous source: " + e.getMessage());
+                continue;
+            }
+
+            synchronized (this) {
+                try {
+                    registerIncludes(source);
+                } catch (IOException e) {
+                    logger.warn("Could not watch the includes of " + file + ": " + e.getMessage());
+                }
+                if (entries.get(file) == state
+                        && (state.source == null || !state.source.getHash().equals(source.getHash()))) {
+                    state.source = source;
+                    state.text = text;
+                    state.changed = true;
+                }
+            }
+        }
+    }
+}
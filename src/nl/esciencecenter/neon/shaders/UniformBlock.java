@@ -0,0 +1,522 @@
+package nl.esciencecenter.neon.shaders;
+
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.media.opengl.GL3;
+
+import nl.esciencecenter.neon.exceptions.UninitializedException;
+import nl.esciencecenter.neon.math.FloatMatrix;
+import nl.esciencecenter.neon.math.FloatVector;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.jogamp.common.nio.Buffers;
+
+/* Copyright 2013 Netherlands eScience Center
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * A uniform buffer object holding the data of one GLSL uniform block, laid
+ * out by the std140 rules, for uniforms shared by many programs such as the
+ * per-frame camera and lighting data. Instead of setting the same matrices on
+ * every {@link ShaderProgram}, they are set here once per frame and uploaded
+ * with a single {@link #upload(GL3)}, and every program reads them from the
+ * buffer.
+ * 
+ * The block is declared in GLSL as, for instance:
+ * 
+ * <pre>
+ * layout(std140) uniform FrameBlock {
+ *     mat4 PMatrix;
+ *     vec4 lightPos;
+ *     float time;
+ * };
+ * </pre>
+ * 
+ * and created from the members parsed by the {@link Shader}:
+ * 
+ * <pre>
+ * new UniformBlock(&quot;FrameBlock&quot;, 0, shader.getUniformBlocks().get(&quot;FrameBlock&quot;));
+ * </pre>
+ * 
+ * Initializing it binds the buffer to its fixed binding point, and registers
+ * that binding point for the block name; every {@link ShaderProgram} that
+ * declares a block of that name binds it to the same point when it is linked.
+ * 
+ * Matrices are given in the row-major order of {@link FloatMatrix} and stored
+ * column-major, the std140 default. Scalars, vectors, square matrices and
+ * arrays of those are supported.
+ * 
+ * @author Maarten van Meersbergen <m.van.meersbergen@esciencecenter.nl>
+ * 
+ */
+public class UniformBlock {
+    private final static Logger logger = LoggerFactory.getLogger(UniformBlock.class);
+
+    private static final int VEC4_BYTES = 16;
+
+    /** Binding points of the initialized blocks, by block name. */
+    private static final Map<String, Integer> bindingPoints = new HashMap<String, Integer>();
+    /** Incremented on every change to the binding points. */
+    private static volatile int registrations = 0;
+
+    private final String name;
+    private final int bindingPoint;
+    private final Map<String, Member> members;
+    private final int size;
+    private final ByteBuffer data;
+    private final IntBuffer bufferPointer = Buffers.newDirectIntBuffer(1);
+    private final FloatBuffer vectorScratch = FloatBuffer.allocate(4);
+
+    private boolean initialized = false;
+    private int dirtyStart;
+    private int dirtyEnd;
+
+    /** The std140 placement of one member. */
+    private static final class Member {
+        private final boolean integer;
+        /** Components per column (vectors and scalars have one column). */
+        private final int rows;
+        private final int columns;
+        private final int count;
+        private final int offset;
+        /** Bytes between columns, and between array elements. */
+        private final int columnStride;
+        private final int elementStride;
+
+        private Member(boolean integer, int rows, int columns, int count, int offset, int columnStride,
+                int elementStride) {
+            this.integer = integer;
+            this.rows = rows;
+            this.columns = columns;
+            this.count = count;
+            this.offset = offset;
+            this.columnStride = columnStride;
+            this.elementStride = elementStride;
+        }
+    }
+
+    /**
+     * Constructor, computes the std140 layout of the members.
+     * 
+     * @param name
+     *            The name of the block in the GLSL code.
+     * @param bindingPoint
+     *            The uniform buffer binding point to use for this block.
+     * @param members
+     *            The member names and their GLSL types, in declaration order,
+     *            as from {@link Shader#getUniformBlocks()}.
+     * @throws IllegalArgumentException
+     *             if a member has a type that is not supported.
+     */
+    public UniformBlock(String name, int bindingPoint, Map<String, String> members) {
+        if (bindingPoint < 0) {
+            throw new IllegalArgumentException("bindingPoint cannot be negative");
+        }
+        this.name = name;
+        this.bindingPoint = bindingPoint;
+        this.members = new LinkedHashMap<String, Member>();
+
+        int offset = 0;
+        for (Map.Entry<String, String> member : members.entrySet()) {
+            Member placed = place(member.getKey(), member.getValue(), offset);
+            this.members.put(member.getKey(), placed);
+            offset = placed.offset + placed.count * placed.elementStride;
+        }
+        size = roundUp(offset, VEC4_BYTES);
+
+        data = Buffers.newDirectByteBuffer(Math.max(size, VEC4_BYTES));
+        clean();
+    }
+
+    /**
+     * Places a member by the std140 rules: scalars and two-component vectors
+     * are aligned to their size, everything else to a vec4. Matrix columns
+     * and array elements take (at least) a vec4 each.
+     */
+    private static Member place(String member, String type, int offset) {
+        String base = type;
+        int count = 1;
+        boolean array = false;
+        int bracket = type.indexOf('[');
+        if (bracket >= 0) {
+            base = type.substring(0, bracket);
+            try {
+                count = Integer.parseInt(type.substring(bracket + 1, type.indexOf(']')).trim());
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Unsupported array size for uniform block member " + member
+                        + " : " + type);
+            }
+            array = true;
+        }
+
+        boolean integer = false;
+        int rows;
+        int columns = 1;
+        if (base.equals("float")) {
+            rows = 1;
+        } else if (base.equals("int") || base.equals("uint") || base.equals("bool")) {
+            integer = true;
+            rows = 1;
+        } else if (base.matches("vec[234]")) {
+            rows = base.charAt(3) - '0';
+        } else if (base.matches("[iub]vec[234]")) {
+            integer = true;
+            rows = base.charAt(4) - '0';
+        } else if (base.matches("mat[234]")) {
+            rows = base.charAt(3) - '0';
+            columns = rows;
+        } else {
+            throw new IllegalArgumentException("Unsupported type for uniform block member " + member + " : "
+                    + type);
+        }
+
+        int columnBytes = (rows == 3 ? 4 : rows) * 4;
+        int align;
+        int columnStride;
+        int elementStride;
+        if (columns > 1 || array) {
+            align = VEC4_BYTES;
+            columnStride = roundUp(columnBytes, VEC4_BYTES);
+            elementStride = columns * columnStride;
+        } else {
+            align = columnBytes;
+            columnStride = columnBytes;
+            elementStride = rows * 4;
+        }
+
+        return new Member(integer, rows, columns, count, roundUp(offset, align), columnStride, elementStride);
+    }
+
+    private static int roundUp(int value, int multiple) {
+        return (value + multiple - 1) / multiple * multiple;
+    }
+
+    /**
+     * OpenGL initialization method. Creates the buffer with the current
+     * contents, binds it to the binding point and registers the binding point
+     * for the block name.
+     * 
+     * @param gl
+     *            The opengl instance.
+     */
+    public void init(GL3 gl) {
+        if (!initialized) {
+            gl.glGenBuffers(1, bufferPointer);
+            gl.glBindBuffer(GL3.GL_UNIFORM_BUFFER, bufferPointer.get(0));
+            data.clear();
+            gl.glBufferData(GL3.GL_UNIFORM_BUFFER, data.capacity(), data, GL3.GL_DYNAMIC_DRAW);
+            gl.glBindBuffer(GL3.GL_UNIFORM_BUFFER, 0);
+            clean();
+
+            initialized = true;
+            bind(gl);
+            register(name, bindingPoint);
+        }
+    }
+
+    /**
+     * Binds the buffer to its binding point again, in case something else was
+     * bound there.
+     * 
+     * @param gl
+     *            The opengl instance.
+     * @throws IllegalStateException
+     *             if this block was not initialized.
+     */
+    public void bind(GL3 gl) {
+        if (!initialized) {
+            throw new IllegalStateException("Uniform block " + name + " was not initialized");
+        }
+        gl.glBindBufferBase(GL3.GL_UNIFORM_BUFFER, bindingPoint, bufferPointer.get(0));
+    }
+
+    /**
+     * Uploads the bytes changed by the setters since the previous upload, in a
+     * single call. Does nothing if nothing changed. Call once per frame, after
+     * setting the values and before drawing.
+     * 
+     * @param gl
+     *            The opengl instance.
+     * @throws UninitializedException
+     *             if this block was not initialized.
+     */
+    public void upload(GL3 gl) throws UninitializedException {
+        if (!initialized) {
+            throw new UninitializedException();
+        }
+        if (dirtyEnd > dirtyStart) {
+            data.limit(dirtyEnd);
+            data.position(dirtyStart);
+            gl.glBindBuffer(GL3.GL_UNIFORM_BUFFER, bufferPointer.get(0));
+            gl.glBufferSubData(GL3.GL_UNIFORM_BUFFER, dirtyStart, dirtyEnd - dirtyStart, data);
+            gl.glBindBuffer(GL3.GL_UNIFORM_BUFFER, 0);
+            data.clear();
+            clean();
+        }
+    }
+
+    /**
+     * Deletes the buffer and unregisters the binding point.
+     * 
+     * @param gl
+     *            The opengl instance.
+     */
+    public void delete(GL3 gl) {
+        if (initialized) {
+            unregister(name, bindingPoint);
+            gl.glDeleteBuffers(1, bufferPointer);
+            initialized = false;
+        }
+    }
+
+    /**
+     * Staging method for a float member.
+     * 
+     * @param member
+     *            The name of the member.
+     * @param var
+     *            The value.
+     */
+    public void setUniform(String member, float var) {
+        setUniform(member, 0, var);
+    }
+
+    /**
+     * Staging method for an element of a float array member.
+     * 
+     * @param member
+     *            The name of the member.
+     * @param index
+     *            The index in the array.
+     * @param var
+     *            The value.
+     */
+    public void setUniform(String member, int index, float var) {
+        int offset = offset(member, index, false, 1, 1);
+        data.putFloat(offset, var);
+        touch(offset, 4);
+    }
+
+    /**
+     * Staging method for an int, uint or bool member.
+     * 
+     * @param member
+     *            The name of the member.
+     * @param var
+     *            The value.
+     */
+    public void setUniform(String member, int var) {
+        int offset = offset(member, 0, true, 1, 1);
+        data.putInt(offset, var);
+        touch(offset, 4);
+    }
+
+    /**
+     * Staging method for a vector member.
+     * 
+     * @param member
+     *            The name of the member.
+     * @param var
+     *            The vector.
+     */
+    public void setUniformVector(String member, FloatVector var) {
+        setUniformVector(member, 0, var);
+    }
+
+    /**
+     * Staging method for an element of a vector array member.
+     * 
+     * @param member
+     *            The name of the member.
+     * @param index
+     *            The index in the array.
+     * @param var
+     *            The vector.
+     */
+    public void setUniformVector(String member, int index, FloatVector var) {
+        int components = var.getSize();
+        int offset = offset(member, index, false, components, 1);
+        vectorScratch.clear();
+        var.writeTo(vectorScratch);
+        for (int i = 0; i < components; i++) {
+            data.putFloat(offset + i * 4, vectorScratch.get(i));
+        }
+        touch(offset, components * 4);
+    }
+
+    /**
+     * Staging method for a matrix member.
+     * 
+     * @param member
+     *            The name of the member.
+     * @param var
+     *            The matrix, in row-major order.
+     */
+    public void setUniformMatrix(String member, FloatMatrix var) {
+        setUniformMatrix(member, 0, var);
+    }
+
+    /**
+     * Staging method for an element of a matrix array member.
+     * 
+     * @param member
+     *            The name of the member.
+     * @param index
+     *            The index in the array.
+     * @param var
+     *            The matrix, in row-major order.
+     */
+    public void setUniformMatrix(String member, int index, FloatMatrix var) {
+        float[] m = var.asArray();
+        int n = (int) Math.sqrt(m.length);
+        int offset = offset(member, index, false, n, n);
+        int columnStride = members.get(member).columnStride;
+        for (int column = 0; column < n; column++) {
+            for (int row = 0; row < n; row++) {
+                data.putFloat(offset + column * columnStride + row * 4, m[row * n + column]);
+            }
+        }
+        touch(offset, (n - 1) * columnStride + n * 4);
+    }
+
+    /**
+     * @return the byte offset of the element of the member, after checking
+     *         that it has the given shape.
+     */
+    private int offset(String member, int index, boolean integer, int rows, int columns) {
+        Member placed = members.get(member);
+        if (placed == null) {
+            throw new IllegalArgumentException("Uniform block " + name + " has no member " + member);
+        }
+        if (placed.integer != integer || placed.rows != rows || placed.columns != columns) {
+            throw new IllegalArgumentException("Uniform block " + name + " member " + member
+                    + " has a different type");
+        }
+        if (index < 0 || index >= placed.count) {
+            throw new IllegalArgumentException("Index " + index + " out of range for uniform block " + name
+                    + " member " + member);
+        }
+        return placed.offset + index * placed.elementStride;
+    }
+
+    private void touch(int offset, int bytes) {
+        dirtyStart = Math.min(dirtyStart, offset);
+        dirtyEnd = Math.max(dirtyEnd, offset + bytes);
+    }
+
+    private void clean() {
+        dirtyStart = Integer.MAX_VALUE;
+        dirtyEnd = 0;
+    }
+
+    private static synchronized void register(String name, int bindingPoint) {
+        Integer previous = bindingPoints.put(name, bindingPoint);
+        if (previous != null && previous != bindingPoint) {
+            logger.warn("Uniform block " + name + " moved from binding point " + previous + " to " + bindingPoint);
+        }
+        registrations++;
+    }
+
+    private static synchronized void unregister(String name, int bindingPoint) {
+        Integer current = bindingPoints.get(name);
+        if (current != null && current == bindingPoint) {
+            bindingPoints.remove(name);
+            registrations++;
+        }
+    }
+
+    /**
+     * Getter for the binding point of the initialized block with the given
+     * name.
+     * 
+     * @param name
+     *            The name of the block in the GLSL code.
+     * @return the binding point, or -1 if no such block is initialized.
+     */
+    public static synchronized int getBindingPoint(String name) {
+        Integer bindingPoint = bindingPoints.get(name);
+        return bindingPoint == null ? -1 : bindingPoint;
+    }
+
+    /**
+     * @return a number that changes whenever a binding point is registered or
+     *         unregistered, so programs can tell cheaply whether to look them
+     *         up again.
+     */
+    static int getRegistrations() {
+        return registrations;
+    }
+
+    /**
+     * Getter for the name of the block.
+     * 
+     * @return the name in the GLSL code.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Getter for the binding point of this block.
+     * 
+     * @return the binding point.
+     */
+    public int getBindingPoint() {
+        return bindingPoint;
+    }
+
+    /**
+     * Getter for the size of the block data.
+     * 
+     * @return the size in bytes, a multiple of 16.
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * Getter for the std140 offset of a member.
+     * 
+     * @param member
+     *            The name of the member.
+     * @return the offset in bytes from the start of the block, or -1 if there
+     *         is no such member.
+     */
+    public int getOffset(String member) {
+        Member placed = members.get(member);
+        return placed == null ? -1 : placed.offset;
+    }
+
+    /**
+     * Getter for the OpenGL name of the buffer.
+     * 
+     * @return the buffer name.
+     * @throws UninitializedException
+     *             if this block was not initialized.
+     */
+    public int getPointer() throws UninitializedException {
+        if (!initialized) {
+            throw new UninitializedException();
+        }
+        return bufferPointer.get(0);
+    }
+}
@@ -57,6 +57,18 @@ public class VertexShader extends Shader {
         super(shaderName, shaderCode);
     }
 
+    /**
+     * Constructor for Vertex shader, from preprocessed source code.
+     * 
+     * @param shaderName
+     *            The library-internal name of this shader.
+     * @param source
+     *            The preprocessed source code for this shader.
+     */
+    public VertexShader(String shaderName, ShaderSource source) {
+        super(shaderName, source);
+    }
+
     @Override
     public void init(GL3 gl) throws CompilationFailedException {
         setShaderPointer(gl.glCreateShader(GL3.GL_VERTEX_SHADER));
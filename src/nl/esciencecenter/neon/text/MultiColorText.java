@@ -19,6 +19,7 @@ import nl.esciencecenter.neon.math.FloatMatrixMath;
 import nl.esciencecenter.neon.math.Float3Vector;
 import nl.esciencecenter.neon.math.Float4Vector;
 import nl.esciencecenter.neon.math.FloatVectorMath;
+import nl.esciencecenter.neon.metrics.FrameMetrics;
 import nl.esciencecenter.neon.models.BoundingBox;
 import nl.esciencecenter.neon.models.Model;
 import nl.esciencecenter.neon.shaders.ShaderProgram;
@@ -358,9 +359,10 @@ public class MultiColorText extends Model {
 
             getVbo().bind(gl);
 
-            program.linkAttribs(gl, getVbo().getAttribs());
+            program.linkAttribs(gl, getVbo());
 
             gl.glDrawArrays(GL3.GL_TRIANGLES, 0, getNumVertices());
+            FrameMetrics.getInstance().countDraw(getNumVertices());
         } else {
             throw new UninitializedException();
         }
@@ -381,7 +383,7 @@ public class MultiColorText extends Model {
         if (initialized) {
             getVbo().bind(gl);
 
-            program.linkAttribs(gl, getVbo().getAttribs());
+            program.linkAttribs(gl, getVbo());
 
             try {
                 program.use(gl);
@@ -390,6 +392,7 @@ public class MultiColorText extends Model {
             }
 
             gl.glDrawArrays(GL3.GL_TRIANGLES, 0, getNumVertices());
+            FrameMetrics.getInstance().countDraw(getNumVertices());
         } else {
             throw new UninitializedException();
         }
@@ -9,6 +9,8 @@ import java.nio.ByteBuffer;
 
 import javax.imageio.ImageIO;
 
+import nl.esciencecenter.neon.datastructures.DirectBufferPool;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -76,8 +78,8 @@ public class ImageTexture extends Texture2D {
                 return;
             }
 
-            // Allocate ByteBuffer and fill it with pixel data.
-            ByteBuffer tempBuffer = ByteBuffer.allocate(width * height * 4);
+            // Borrow a direct ByteBuffer and fill it with pixel data.
+            ByteBuffer tempBuffer = DirectBufferPool.getInstance().acquire(width * height * 4);
 
             for (int row = (height + hOffSet) - 1; row >= hOffSet; row--) {
                 int i = row;
@@ -100,7 +102,8 @@ public class ImageTexture extends Texture2D {
 
             tempBuffer.rewind();
 
-            pixelBuffer = tempBuffer;
+            setPixelBuffer(tempBuffer);
+            pixelBufferPooled = true;
         }
     }
 }
\ No newline at end of file
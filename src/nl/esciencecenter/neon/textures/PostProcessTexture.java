@@ -1,6 +1,8 @@
 package nl.esciencecenter.neon.textures;
 
-import java.nio.ByteBuffer;
+import javax.media.opengl.GL3;
+
+import nl.esciencecenter.neon.datastructures.DirectBufferPool;
 
 /* Copyright 2013 Netherlands eScience Center
  * 
@@ -42,7 +44,22 @@ public class PostProcessTexture extends Texture2D {
         super(glMultitexUnit);
         this.height = height;
         this.width = width;
+    }
 
-        pixelBuffer = ByteBuffer.allocate(width * height * 4);
+    /**
+     * Allocates the texture on the device, cleared to zero. The zeroed pixels
+     * are only needed for this upload, so they are borrowed from the
+     * {@link DirectBufferPool} and given back right after.
+     * 
+     * @param gl
+     *            The current OpenGL instance.
+     */
+    @Override
+    public void init(GL3 gl) {
+        if (!initialized) {
+            setPixelBuffer(DirectBufferPool.getInstance().acquireZeroed(width * height * 4));
+            pixelBufferPooled = true;
+        }
+        super.init(gl);
     }
 }
@@ -6,6 +6,7 @@ import java.nio.IntBuffer;
 import javax.media.opengl.GL;
 import javax.media.opengl.GL3;
 
+import nl.esciencecenter.neon.datastructures.DirectBufferPool;
 import nl.esciencecenter.neon.exceptions.UninitializedException;
 
 /* Copyright 2013 Netherlands eScience Center
@@ -36,6 +37,12 @@ public abstract class Texture {
 
     protected IntBuffer pointer;
     protected ByteBuffer pixelBuffer;
+    /**
+     * Set if pixelBuffer was borrowed from the {@link DirectBufferPool}, so
+     * that it is given back once it has been uploaded, or when it is replaced
+     * or the texture is deleted before that.
+     */
+    protected boolean pixelBufferPooled = false;
     protected int width, height, depth;
     protected boolean initialized = false;
 
@@ -115,9 +122,22 @@ public abstract class Texture {
      *            the pixelBuffer to set
      */
     public void setPixelBuffer(ByteBuffer pixelBuffer) {
+        releasePixelBuffer();
         this.pixelBuffer = pixelBuffer;
     }
 
+    /**
+     * Gives the pixelBuffer back to the {@link DirectBufferPool} if it was
+     * borrowed from it, and forgets it.
+     */
+    protected void releasePixelBuffer() {
+        if (pixelBufferPooled) {
+            DirectBufferPool.getInstance().release(pixelBuffer);
+            pixelBuffer = null;
+            pixelBufferPooled = false;
+        }
+    }
+
     /**
      * @return the width
      */
@@ -178,6 +198,17 @@ public abstract class Texture {
         this.initialized = initialized;
     }
 
+    /**
+     * Binds this texture to its multitexture unit, initializing it first if
+     * needed.
+     * 
+     * @param gl
+     *            The current OpenGL instance.
+     * @throws UninitializedException
+     *             if the texture could not be initialized.
+     */
+    public abstract void use(GL3 gl) throws UninitializedException;
+
     /**
      * Deletes this Texture from memory.
      * 
@@ -186,6 +217,7 @@ public abstract class Texture {
      */
     public void delete(GL3 gl) {
         gl.glDeleteTextures(1, pointer);
+        releasePixelBuffer();
     }
 
     /**
@@ -7,6 +7,7 @@ import javax.media.opengl.GL3;
 import javax.media.opengl.GLException;
 
 import nl.esciencecenter.neon.exceptions.UninitializedException;
+import nl.esciencecenter.neon.metrics.FrameMetrics;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -79,8 +80,12 @@ public abstract class Texture2D extends Texture {
             gl.glTexStorage2D(GL3.GL_TEXTURE_2D, num_mipmaps, GL3.GL_RGBA32F, width, height);
             gl.glTexSubImage2D(GL3.GL_TEXTURE_2D, 0, 0, 0, width, height, GL3.GL_RGBA, GL3.GL_UNSIGNED_BYTE,
                     pixelBuffer);
+            FrameMetrics.getInstance().count(FrameMetrics.Counter.TEXTURE_UPLOADS, 1);
             gl.glGenerateMipmap(GL3.GL_TEXTURE_2D);
 
+            // The data is on the GPU now, a borrowed buffer can go back.
+            releasePixelBuffer();
+
             // Wrap.
             gl.glTexParameteri(GL3.GL_TEXTURE_2D, GL3.GL_TEXTURE_WRAP_S, GL3.GL_REPEAT);
             gl.glTexParameteri(GL3.GL_TEXTURE_2D, GL3.GL_TEXTURE_WRAP_T, GL3.GL_REPEAT);
@@ -3,6 +3,7 @@ package nl.esciencecenter.neon.textures;
 import javax.media.opengl.GL3;
 
 import nl.esciencecenter.neon.exceptions.UninitializedException;
+import nl.esciencecenter.neon.metrics.FrameMetrics;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -85,6 +86,10 @@ public abstract class Texture3D extends Texture {
                     GL3.GL_RGBA, // External format from image,
                     GL3.GL_BYTE, pixelBuffer // Imagedata as ByteBuffer
             );
+            FrameMetrics.getInstance().count(FrameMetrics.Counter.TEXTURE_UPLOADS, 1);
+
+            // The data is on the GPU now, a borrowed buffer can go back.
+            releasePixelBuffer();
 
             initialized = true;
         }
@@ -0,0 +1,173 @@
+package nl.esciencecenter.neon.util;
+
+import nl.esciencecenter.neon.math.Float4Matrix;
+import nl.esciencecenter.neon.math.FloatMatrixMath;
+
+/* Copyright 2013 Netherlands eScience Center
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * Push/pop stack of Modelview matrices, like glPushMatrix and glPopMatrix in
+ * OpenGL 2.0. Every level holds the cumulative product of all transformations
+ * applied so far, so the current Modelview matrix is available with
+ * {@link #getTop()} without any multiplications, at any depth. The levels are
+ * preallocated and reused, so once the stack has reached its maximum depth,
+ * pushing, popping and multiplying no longer create garbage.
+ * 
+ * A typical hierarchical draw looks like:
+ * 
+ * <pre>
+ * stack.push();
+ * stack.mulTop(childTransform);
+ * program.setUniformMatrix(&quot;MVMatrix&quot;, stack.getTop());
+ * child.draw(gl, program);
+ * stack.pop();
+ * </pre>
+ * 
+ * A stack is not thread safe, use one per rendering thread.
+ * 
+ * @author Maarten van Meersbergen <m.van.meersbergen@esciencecenter.nl>
+ * 
+ */
+public class MatrixStack {
+    /** The default number of preallocated levels. */
+    public static final int DEFAULT_CAPACITY = 16;
+
+    private Float4Matrix[] levels;
+    private int depth;
+
+    /**
+     * Basic constructor for MatrixStack. The stack starts with a single
+     * identity matrix.
+     */
+    public MatrixStack() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Constructor for MatrixStack with a custom number of preallocated levels.
+     * The stack grows beyond this if needed. The stack starts with a single
+     * identity matrix.
+     * 
+     * @param capacity
+     *            The number of levels to preallocate.
+     */
+    public MatrixStack(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be greater than 0");
+        }
+        levels = new Float4Matrix[capacity];
+        for (int i = 0; i < capacity; i++) {
+            levels[i] = new Float4Matrix();
+        }
+    }
+
+    /**
+     * Duplicate the current top of the stack, so that it can be changed and
+     * later restored with {@link #pop()}.
+     */
+    public void push() {
+        if (depth + 1 == levels.length) {
+            grow();
+        }
+        System.arraycopy(levels[depth].asArray(), 0, levels[depth + 1].asArray(), 0, 16);
+        depth++;
+    }
+
+    /**
+     * Discard the current top of the stack, restoring the matrix as it was at
+     * the matching {@link #push()}.
+     * 
+     * @throws IllegalStateException
+     *             if there is no matching push.
+     */
+    public void pop() {
+        if (depth == 0) {
+            throw new IllegalStateException("MatrixStack underflow: pop without matching push");
+        }
+        depth--;
+    }
+
+    /**
+     * Multiply the top of the stack with the given matrix (top = top * m), so
+     * that m is applied before all transformations already on the stack.
+     * 
+     * @param m
+     *            The matrix to multiply with.
+     */
+    public void mulTop(Float4Matrix m) {
+        FloatMatrixMath.mul(levels[depth], m, levels[depth]);
+    }
+
+    /**
+     * Replace the top of the stack with a copy of the given matrix. This is
+     * usually done once per frame with the camera (lookAt) matrix.
+     * 
+     * @param m
+     *            The matrix to copy.
+     */
+    public void loadTop(Float4Matrix m) {
+        System.arraycopy(m.asArray(), 0, levels[depth].asArray(), 0, 16);
+    }
+
+    /**
+     * Replace the top of the stack with the identity matrix.
+     */
+    public void loadIdentity() {
+        float[] top = levels[depth].asArray();
+        for (int i = 0; i < 16; i++) {
+            top[i] = (i % 5 == 0) ? 1f : 0f;
+        }
+    }
+
+    /**
+     * Getter for the current Modelview matrix, the product of all
+     * transformations on the stack. The returned matrix is owned by the stack
+     * and changes with the next push, mulTop or load, so it should not be
+     * modified or kept. Copy it if it needs to be kept.
+     * 
+     * @return the top of the stack.
+     */
+    public Float4Matrix getTop() {
+        return levels[depth];
+    }
+
+    /**
+     * Getter for the current depth, the number of pushes without a matching
+     * pop.
+     * 
+     * @return the depth, 0 for a stack without pushes.
+     */
+    public int getDepth() {
+        return depth;
+    }
+
+    /**
+     * Pop all levels and reset the remaining one to the identity matrix.
+     */
+    public void clear() {
+        depth = 0;
+        loadIdentity();
+    }
+
+    private void grow() {
+        Float4Matrix[] grown = new Float4Matrix[levels.length * 2];
+        System.arraycopy(levels, 0, grown, 0, levels.length);
+        for (int i = levels.length; i < grown.length; i++) {
+            grown[i] = new Float4Matrix();
+        }
+        levels = grown;
+    }
+}
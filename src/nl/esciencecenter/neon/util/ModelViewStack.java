@@ -24,9 +24,15 @@ import nl.esciencecenter.neon.math.Float4Matrix;
  * Convenience class to implement a stack of Modelview matrices, like the one
  * originally used in OpenGL 2.0
  * 
+ * @deprecated {@link #calc(Float4Matrix)} multiplies the entire stack, and
+ *             allocates a matrix per element, on every call. Use
+ *             {@link MatrixStack} instead, which keeps the cumulative product
+ *             up to date as matrices are pushed.
+ * 
  * @author Maarten van Meersbergen <m.van.meersbergen@esciencecenter.nl>
  * 
  */
+@Deprecated
 public class ModelViewStack {
     private final List<Float4Matrix> stack;
 
@@ -0,0 +1,181 @@
+package nl.esciencecenter.neon.math;
+
+import static org.junit.Assert.assertArrayEquals;
+import nl.esciencecenter.neon.exceptions.InverseNotAvailableException;
+
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/* Copyright 2013 Netherlands eScience Center
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * Micro benchmarks comparing the cofactor based matrix inverses in
+ * {@link FloatMatrixMath} with their closed-form, allocation free,
+ * counterparts. The timings are logged; the benchmarks only check that both
+ * implementations agree, so they never fail on a slow machine. They are not
+ * part of the unit tests, run them with the benchmark target of the test build
+ * file. Increase the number of iterations with the system property
+ * neon.benchmark.iterations for more reliable numbers.
+ *
+ * @author Maarten van Meersbergen <m.van.meersbergen@esciencecenter.nl>
+ *
+ */
+public class MatrixInverseBenchmark {
+    private final static Logger logger = LoggerFactory.getLogger(MatrixInverseBenchmark.class);
+
+    private static final int ITERATIONS = Integer.getInteger("neon.benchmark.iterations", 100000);
+    private static final int MATRICES = 64;
+
+    private static Float4Matrix[] makeInputs() {
+        Float4Matrix[] result = new Float4Matrix[MATRICES];
+        for (int i = 0; i < MATRICES; i++) {
+            result[i] = FloatMatrixMath.translate(i, -i, 2f * i).mul(FloatMatrixMath.rotate(i * 7f, 1f, 2f, 3f))
+                    .mul(FloatMatrixMath.scale(1f + i / (float) MATRICES));
+        }
+        return result;
+    }
+
+    private static void report(String name, long oldNanos, long newNanos) {
+        logger.info(String.format("%-28s cofactors: %7.1f ns/op, closed form: %7.1f ns/op (%.1fx)", name,
+                oldNanos / (double) ITERATIONS, newNanos / (double) ITERATIONS, oldNanos / (double) newNanos));
+    }
+
+    /**
+     * Benchmark for
+     * {@link FloatMatrixMath#inverse(Float4Matrix, Float4Matrix)}.
+     *
+     * @throws InverseNotAvailableException
+     *             never.
+     */
+    @Test
+    public final void benchmarkInverseFloat4Matrix() throws InverseNotAvailableException {
+        Float4Matrix[] inputs = makeInputs();
+        Float4Matrix dest = new Float4Matrix();
+        float sink = 0f;
+
+        // Warm up both paths before timing them.
+        for (int i = 0; i < ITERATIONS; i++) {
+            sink += FloatMatrixMath.inverse(inputs[i % MATRICES]).get(3);
+            sink += FloatMatrixMath.inverse(inputs[i % MATRICES], dest).get(3);
+        }
+
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            sink += FloatMatrixMath.inverse(inputs[i % MATRICES]).get(3);
+        }
+        long oldNanos = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            sink += FloatMatrixMath.inverse(inputs[i % MATRICES], dest).get(3);
+        }
+        long newNanos = System.nanoTime() - start;
+
+        report("inverse(Float4Matrix)", oldNanos, newNanos + (sink == 0f ? 1 : 0));
+
+        for (Float4Matrix input : inputs) {
+            assertArrayEquals(FloatMatrixMath.inverse(input).asArray(), FloatMatrixMath.inverse(input, dest)
+                    .asArray(), 1E-4f);
+        }
+    }
+
+    /**
+     * Benchmark for {@link FloatMatrixMath#inverseRigid(Float4Matrix, Float4Matrix)}.
+     *
+     * @throws InverseNotAvailableException
+     *             never.
+     */
+    @Test
+    public final void benchmarkInverseRigid() throws InverseNotAvailableException {
+        Float4Matrix[] inputs = new Float4Matrix[MATRICES];
+        for (int i = 0; i < MATRICES; i++) {
+            inputs[i] = FloatMatrixMath.translate(i, -i, 2f * i).mul(FloatMatrixMath.rotate(i * 7f, 1f, 2f, 3f));
+        }
+        Float4Matrix dest = new Float4Matrix();
+        float sink = 0f;
+
+        for (int i = 0; i < ITERATIONS; i++) {
+            sink += FloatMatrixMath.inverse(inputs[i % MATRICES]).get(3);
+            sink += FloatMatrixMath.inverseRigid(inputs[i % MATRICES], dest).get(3);
+        }
+
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            sink += FloatMatrixMath.inverse(inputs[i % MATRICES]).get(3);
+        }
+        long oldNanos = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            sink += FloatMatrixMath.inverseRigid(inputs[i % MATRICES], dest).get(3);
+        }
+        long newNanos = System.nanoTime() - start;
+
+        report("inverseRigid(Float4Matrix)", oldNanos, newNanos + (sink == 0f ? 1 : 0));
+
+        for (Float4Matrix input : inputs) {
+            assertArrayEquals(FloatMatrixMath.inverse(input).asArray(), FloatMatrixMath.inverseRigid(input, dest)
+                    .asArray(), 1E-4f);
+        }
+    }
+
+    /**
+     * Benchmark for {@link FloatMatrixMath#getNormalMatrix(Float4Matrix, Float3Matrix)}.
+     *
+     * @throws InverseNotAvailableException
+     *             never.
+     */
+    @Test
+    public final void benchmarkGetNormalMatrix() throws InverseNotAvailableException {
+        Float4Matrix[] inputs = makeInputs();
+        Float3Matrix dest = new Float3Matrix();
+        float sink = 0f;
+
+        for (int i = 0; i < ITERATIONS; i++) {
+            sink += oldNormalMatrix(inputs[i % MATRICES]).get(1);
+            sink += FloatMatrixMath.getNormalMatrix(inputs[i % MATRICES], dest).get(1);
+        }
+
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            sink += oldNormalMatrix(inputs[i % MATRICES]).get(1);
+        }
+        long oldNanos = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            sink += FloatMatrixMath.getNormalMatrix(inputs[i % MATRICES], dest).get(1);
+        }
+        long newNanos = System.nanoTime() - start;
+
+        report("getNormalMatrix(Float4Matrix)", oldNanos, newNanos + (sink == 0f ? 1 : 0));
+
+        for (Float4Matrix input : inputs) {
+            assertArrayEquals(oldNormalMatrix(input).asArray(), FloatMatrixMath.getNormalMatrix(input, dest)
+                    .asArray(), 1E-4f);
+        }
+    }
+
+    /**
+     * The normal matrix as it was calculated before the closed-form inverse.
+     */
+    private static Float3Matrix oldNormalMatrix(Float4Matrix mv) throws InverseNotAvailableException {
+        Float3Matrix upper3x3 = new Float3Matrix(mv.get(0), mv.get(1), mv.get(2), mv.get(4), mv.get(5), mv.get(6),
+                mv.get(8), mv.get(9), mv.get(10));
+        return FloatMatrixMath.transpose(FloatMatrixMath.inverse(upper3x3));
+    }
+}
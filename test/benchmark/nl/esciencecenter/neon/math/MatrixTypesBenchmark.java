@@ -0,0 +1,161 @@
+package nl.esciencecenter.neon.math;
+
+import static org.junit.Assert.assertArrayEquals;
+
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/* Copyright 2013 Netherlands eScience Center
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * Micro benchmarks comparing the array based {@link Float4Matrix} and
+ * {@link FloatMatrixMath} with the field based {@link Mat4f}, for the typical
+ * per-frame work of building a camera and chaining transformations. The
+ * timings are logged; the benchmarks only check that both implementations
+ * agree, so they never fail on a slow machine. They are not part of the unit
+ * tests, run them with the benchmark target of the test build file. Increase
+ * the number of iterations with the system property neon.benchmark.iterations
+ * for more reliable numbers.
+ * 
+ * @author Maarten van Meersbergen <m.van.meersbergen@esciencecenter.nl>
+ * 
+ */
+public class MatrixTypesBenchmark {
+    private final static Logger logger = LoggerFactory.getLogger(MatrixTypesBenchmark.class);
+
+    private static final int ITERATIONS = Integer.getInteger("neon.benchmark.iterations", 100000);
+
+    private static void report(String name, long oldNanos, long newNanos) {
+        logger.info(String.format("%-28s Float4Matrix: %7.1f ns/op, Mat4f: %7.1f ns/op (%.1fx)", name,
+                oldNanos / (double) ITERATIONS, newNanos / (double) ITERATIONS, oldNanos / (double) newNanos));
+    }
+
+    private static Float4Matrix oldLookAt(int i) {
+        return FloatMatrixMath.lookAt(new Float4Vector(i % 7, 1f, -5f, 1f), new Float4Vector(0f, 0f, 0f, 1f),
+                new Float4Vector(0f, 1f, 0f, 0f));
+    }
+
+    private static Mat4f newLookAt(int i) {
+        return Mat4f.lookAt(i % 7, 1f, -5f, 0f, 0f, 0f, 0f, 1f, 0f);
+    }
+
+    private static Float4Matrix oldChain(int i) {
+        return FloatMatrixMath.perspective(45f + i % 7, 1.5f, .1f, 100f).mul(oldLookAt(i))
+                .mul(FloatMatrixMath.translate(i % 5, 0f, 1f)).mul(FloatMatrixMath.rotationY(i % 360))
+                .mul(FloatMatrixMath.scale(.5f, .5f, .5f));
+    }
+
+    private static Mat4f newChain(int i) {
+        return Mat4f.perspective(45f + i % 7, 1.5f, .1f, 100f).mul(newLookAt(i)).mul(Mat4f.translate(i % 5, 0f, 1f))
+                .mul(Mat4f.rotationY(i % 360)).mul(Mat4f.scale(.5f, .5f, .5f));
+    }
+
+    /**
+     * Benchmark for {@link Mat4f#lookAt(float, float, float, float, float,
+     * float, float, float, float)}.
+     */
+    @Test
+    public final void benchmarkLookAt() {
+        float sink = 0f;
+
+        // Warm up both paths before timing them.
+        for (int i = 0; i < ITERATIONS; i++) {
+            sink += oldLookAt(i).get(3);
+            sink += newLookAt(i).m03;
+        }
+
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            sink += oldLookAt(i).get(3);
+        }
+        long oldNanos = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            sink += newLookAt(i).m03;
+        }
+        long newNanos = System.nanoTime() - start;
+
+        report("lookAt", oldNanos, newNanos + (sink == 0f ? 1 : 0));
+
+        for (int i = 0; i < 7; i++) {
+            assertArrayEquals(oldLookAt(i).asArray(), newLookAt(i).toFloat4Matrix().asArray(), 1E-5f);
+        }
+    }
+
+    /**
+     * Benchmark for {@link Mat4f#perspective(float, float, float, float)}.
+     */
+    @Test
+    public final void benchmarkPerspective() {
+        float sink = 0f;
+
+        for (int i = 0; i < ITERATIONS; i++) {
+            sink += FloatMatrixMath.perspective(45f + i % 7, 1.5f, .1f, 100f).get(0);
+            sink += Mat4f.perspective(45f + i % 7, 1.5f, .1f, 100f).m00;
+        }
+
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            sink += FloatMatrixMath.perspective(45f + i % 7, 1.5f, .1f, 100f).get(0);
+        }
+        long oldNanos = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            sink += Mat4f.perspective(45f + i % 7, 1.5f, .1f, 100f).m00;
+        }
+        long newNanos = System.nanoTime() - start;
+
+        report("perspective", oldNanos, newNanos + (sink == 0f ? 1 : 0));
+
+        assertArrayEquals(FloatMatrixMath.perspective(45f, 1.5f, .1f, 100f).asArray(),
+                Mat4f.perspective(45f, 1.5f, .1f, 100f).toFloat4Matrix().asArray(), 1E-5f);
+    }
+
+    /**
+     * Benchmark for a chain of {@link Mat4f#mul(Mat4f)}: perspective * lookAt *
+     * translate * rotate * scale.
+     */
+    @Test
+    public final void benchmarkMulChain() {
+        float sink = 0f;
+
+        for (int i = 0; i < ITERATIONS; i++) {
+            sink += oldChain(i).get(3);
+            sink += newChain(i).m03;
+        }
+
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            sink += oldChain(i).get(3);
+        }
+        long oldNanos = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            sink += newChain(i).m03;
+        }
+        long newNanos = System.nanoTime() - start;
+
+        report("mul chain (5 matrices)", oldNanos, newNanos + (sink == 0f ? 1 : 0));
+
+        for (int i = 0; i < 35; i++) {
+            assertArrayEquals(oldChain(i).asArray(), newChain(i).toFloat4Matrix().asArray(), 1E-4f);
+        }
+    }
+}
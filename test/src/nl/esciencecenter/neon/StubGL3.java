@@ -0,0 +1,116 @@
+package nl.esciencecenter.neon;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.IntBuffer;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.media.opengl.GL3;
+
+/* Copyright 2013 Netherlands eScience Center
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * A stand-in {@link GL3} for tests that need no GL context. It does nothing,
+ * returns defaults, hands out unique names for programs, shaders, buffers,
+ * vertex arrays, textures and queries, reports successful compilation and
+ * linking, and returns the attribute locations set with
+ * {@link #setAttribLocation(String, int)}.
+ * 
+ * Tests that need more override {@link #invoke(Object, Method, Object[])} and
+ * fall back to this implementation for the calls they do not handle
+ * themselves.
+ * 
+ * @author Maarten van Meersbergen <m.van.meersbergen@esciencecenter.nl>
+ * 
+ */
+public class StubGL3 implements InvocationHandler {
+    private final Map<String, Integer> attribLocations = new HashMap<String, Integer>();
+    private int names = 1;
+
+    /**
+     * Getter for a GL3 that forwards every call to this stub.
+     * 
+     * @return a new GL3 proxy.
+     */
+    public GL3 getGL() {
+        return (GL3) Proxy.newProxyInstance(GL3.class.getClassLoader(), new Class<?>[] { GL3.class }, this);
+    }
+
+    /**
+     * Sets the location glGetAttribLocation returns for an attribute. Other
+     * attributes are reported as not found.
+     * 
+     * @param attribute
+     *            The name of the attribute.
+     * @param location
+     *            The location of the attribute.
+     * @return this stub.
+     */
+    public StubGL3 setAttribLocation(String attribute, int location) {
+        attribLocations.put(attribute, location);
+        return this;
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) {
+        String name = method.getName();
+        if (name.equals("glGetShaderiv") || name.equals("glGetProgramiv")) {
+            ((IntBuffer) args[2]).put(0, GL3.GL_TRUE);
+        } else if (name.equals("glCreateProgram") || name.equals("glCreateShader")) {
+            return names++;
+        } else if (name.startsWith("glGen") && args.length == 2 && args[1] instanceof IntBuffer) {
+            IntBuffer buffer = (IntBuffer) args[1];
+            for (int i = 0; i < (Integer) args[0]; i++) {
+                buffer.put(buffer.position() + i, names++);
+            }
+        } else if (name.startsWith("glGen") && args.length == 3 && args[1] instanceof int[]) {
+            int[] buffer = (int[]) args[1];
+            for (int i = 0; i < (Integer) args[0]; i++) {
+                buffer[(Integer) args[2] + i] = names++;
+            }
+        } else if (name.equals("glGetAttribLocation")) {
+            Integer location = attribLocations.get(args[1]);
+            return location == null ? -1 : location;
+        }
+
+        return defaultValue(method.getReturnType());
+    }
+
+    /**
+     * Returns the value a call with the given return type gives when it is
+     * not handled: zero, false or null.
+     * 
+     * @param type
+     *            The return type of the call.
+     * @return the default value for that type.
+     */
+    public static Object defaultValue(Class<?> type) {
+        if (type == int.class) {
+            return 0;
+        } else if (type == long.class) {
+            return 0L;
+        } else if (type == boolean.class) {
+            return false;
+        } else if (type == float.class) {
+            return 0f;
+        } else if (type == double.class) {
+            return 0.0;
+        }
+        return null;
+    }
+}
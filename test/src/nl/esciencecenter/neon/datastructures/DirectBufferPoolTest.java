@@ -0,0 +1,155 @@
+package nl.esciencecenter.neon.datastructures;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import org.junit.Test;
+
+/* Copyright 2013 Netherlands eScience Center
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * @author Maarten van Meersbergen <m.van.meersbergen@esciencecenter.nl>
+ * 
+ */
+public class DirectBufferPoolTest {
+
+    /**
+     * Test method for {@link DirectBufferPool#acquire(int)} and
+     * {@link DirectBufferPool#release(ByteBuffer)}.
+     */
+    @Test
+    public final void testAcquireRelease() {
+        DirectBufferPool pool = new DirectBufferPool(1 << 20, 2, 1 << 22);
+
+        ByteBuffer a = pool.acquire(5000);
+        assertTrue(a.isDirect());
+        assertEquals(ByteOrder.nativeOrder(), a.order());
+        assertEquals(0, a.position());
+        assertEquals(5000, a.limit());
+        assertEquals(8192, a.capacity());
+        assertEquals(8192, pool.getLiveBytes());
+
+        // Small requests share the smallest class
+        ByteBuffer b = pool.acquire(10);
+        assertEquals(DirectBufferPool.MIN_CLASS_BYTES, b.capacity());
+
+        a.order(ByteOrder.BIG_ENDIAN == ByteOrder.nativeOrder() ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN);
+        a.position(100);
+        pool.release(a);
+        assertEquals(4096, pool.getLiveBytes());
+        assertEquals(8192, pool.getIdleBytes());
+
+        // Same class: reused, and reset
+        ByteBuffer c = pool.acquire(8000);
+        assertSame(a, c);
+        assertEquals(0, c.position());
+        assertEquals(8000, c.limit());
+        assertEquals(ByteOrder.nativeOrder(), c.order());
+
+        assertEquals(1, pool.getHits());
+        assertEquals(2, pool.getMisses());
+        assertEquals(1f / 3f, pool.getHitRate(), 1E-6f);
+        assertEquals(8192 + 4096, pool.getPeakLiveBytes());
+        assertEquals(8192 + 4096, pool.getAllocatedBytes());
+
+        // Larger than the largest class: exact, never pooled
+        ByteBuffer d = pool.acquire((1 << 20) + 1);
+        assertEquals((1 << 20) + 1, d.capacity());
+        pool.release(d);
+        assertNotSame(d, pool.acquire((1 << 20) + 1));
+    }
+
+    /**
+     * Test that idle buffers are capped per class and in total.
+     */
+    @Test
+    public final void testCaps() {
+        DirectBufferPool pool = new DirectBufferPool(1 << 20, 2, 3 * 65536);
+
+        ByteBuffer[] buffers = new ByteBuffer[4];
+        for (int i = 0; i < buffers.length; i++) {
+            buffers[i] = pool.acquire(65536);
+        }
+        for (ByteBuffer buffer : buffers) {
+            pool.release(buffer);
+        }
+        // Per class cap
+        assertEquals(2 * 65536, pool.getIdleBytes());
+        assertEquals(0, pool.getLiveBytes());
+
+        ByteBuffer large = pool.acquire(131072);
+        pool.release(large);
+        // Total cap: 2 * 64k + 128k does not fit in 192k
+        assertEquals(2 * 65536, pool.getIdleBytes());
+
+        pool.trim();
+        assertEquals(0, pool.getIdleBytes());
+    }
+
+    /**
+     * Test method for {@link DirectBufferPool#acquireZeroed(int)}.
+     */
+    @Test
+    public final void testAcquireZeroed() {
+        DirectBufferPool pool = new DirectBufferPool(1 << 20, 2, 1 << 22);
+
+        ByteBuffer a = pool.acquire(5003);
+        while (a.hasRemaining()) {
+            a.put((byte) 0x7f);
+        }
+        pool.release(a);
+
+        ByteBuffer b = pool.acquireZeroed(5003);
+        assertSame(a, b);
+        assertEquals(0, b.position());
+        assertEquals(5003, b.limit());
+        while (b.hasRemaining()) {
+            assertEquals(0, b.get());
+        }
+    }
+
+    /**
+     * Test method for {@link DirectBufferPool#reportLeaks()} and the double
+     * release check in debug mode.
+     */
+    @Test
+    public final void testDebug() {
+        DirectBufferPool pool = new DirectBufferPool(1 << 20, 2, 1 << 22);
+        assertEquals(-1, pool.reportLeaks());
+
+        pool.setDebug(true);
+        ByteBuffer a = pool.acquire(100);
+        ByteBuffer b = pool.acquire(100);
+        assertEquals(2, pool.reportLeaks());
+
+        pool.release(a);
+        assertEquals(1, pool.reportLeaks());
+
+        // Released twice, and foreign: ignored
+        pool.release(a);
+        pool.release(ByteBuffer.allocateDirect(4096));
+        assertEquals(4096, pool.getLiveBytes());
+        assertEquals(4096, pool.getIdleBytes());
+
+        pool.release(b);
+        assertEquals(0, pool.reportLeaks());
+    }
+}
@@ -0,0 +1,121 @@
+package nl.esciencecenter.neon.datastructures;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.management.ManagementFactory;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+
+import nl.esciencecenter.neon.math.FloatMatrixMath;
+import nl.esciencecenter.neon.math.Float4Matrix;
+import nl.esciencecenter.neon.math.Float4Vector;
+import nl.esciencecenter.neon.shaders.FragmentShader;
+import nl.esciencecenter.neon.shaders.ShaderProgram;
+import nl.esciencecenter.neon.shaders.VertexShader;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+/* Copyright 2013 Netherlands eScience Center
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * @author Maarten van Meersbergen <m.van.meersbergen@esciencecenter.nl>
+ * 
+ */
+public class DirectFloatArenaTest {
+
+    /**
+     * Test method for {@link DirectFloatArena#allocate(int)}.
+     */
+    @Test
+    public final void testAllocate() {
+        DirectFloatArena arena = new DirectFloatArena(32);
+
+        FloatBuffer a = arena.allocate(16);
+        FloatBuffer b = arena.allocate(9);
+        assertEquals(1, arena.getChunks());
+
+        assertTrue(a.isDirect());
+        assertEquals(ByteOrder.nativeOrder(), a.order());
+        assertEquals(16, a.capacity());
+        assertEquals(16, a.limit());
+        assertEquals(0, a.position());
+        assertEquals(9, b.capacity());
+
+        // Slices do not overlap
+        for (int i = 0; i < 16; i++) {
+            a.put(i, 1f);
+        }
+        for (int i = 0; i < 9; i++) {
+            b.put(i, 2f);
+        }
+        for (int i = 0; i < 16; i++) {
+            assertEquals(1f, a.get(i), 0f);
+        }
+
+        // Does not fit in the remaining 7 floats
+        FloatBuffer c = arena.allocate(16);
+        assertEquals(2, arena.getChunks());
+        assertEquals(16, c.capacity());
+
+        // Larger than a chunk
+        FloatBuffer d = arena.allocate(100);
+        assertEquals(3, arena.getChunks());
+        assertEquals(100, d.capacity());
+
+        assertEquals(141, arena.getAllocatedFloats());
+    }
+
+    /**
+     * Test that staging matrices and vectors in a {@link ShaderProgram} does
+     * not allocate once every uniform has been set before.
+     * 
+     * @throws Exception
+     *             if the shaders cannot be created.
+     */
+    @Test
+    public final void testSteadyStateUniformStaging() throws Exception {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+        Assume.assumeTrue(threads.isThreadAllocatedMemorySupported());
+        threads.setThreadAllocatedMemoryEnabled(true);
+
+        ShaderProgram program = new ShaderProgram(new VertexShader("vs",
+                "uniform mat4 MVMatrix;\nuniform vec4 Color;\nvoid main() {}\n"), new FragmentShader("fs",
+                "void main() {}\n"));
+
+        Float4Matrix mv = FloatMatrixMath.rotationX(30f);
+        Float4Vector color = new Float4Vector(1f, .5f, .25f, 1f);
+
+        for (int i = 0; i < 20000; i++) {
+            program.setUniformMatrix("MVMatrix", mv);
+            program.setUniformVector("Color", color);
+        }
+
+        long threadId = Thread.currentThread().getId();
+        long before = threads.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < 20000; i++) {
+            program.setUniformMatrix("MVMatrix", mv);
+            program.setUniformVector("Color", color);
+        }
+        long allocated = threads.getThreadAllocatedBytes(threadId) - before;
+
+        // Allow for a few bytes of measurement noise, not for 40000 buffers.
+        assertTrue("Staging allocated " + allocated + " bytes", allocated < 4096);
+    }
+}
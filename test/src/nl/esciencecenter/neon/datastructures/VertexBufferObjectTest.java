@@ -0,0 +1,123 @@
+package nl.esciencecenter.neon.datastructures;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.FloatBuffer;
+
+import javax.media.opengl.GL3;
+
+import nl.esciencecenter.neon.StubGL3;
+import nl.esciencecenter.neon.metrics.GLCallCounter;
+import nl.esciencecenter.neon.shaders.FragmentShader;
+import nl.esciencecenter.neon.shaders.ShaderProgram;
+import nl.esciencecenter.neon.shaders.VertexShader;
+
+import org.junit.Test;
+
+/* Copyright 2013 Netherlands eScience Center
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * Tests the vertex array object setup against a {@link StubGL3}, counting the
+ * calls with a {@link GLCallCounter}.
+ * 
+ * @author Maarten van Meersbergen <m.van.meersbergen@esciencecenter.nl>
+ * 
+ */
+public class VertexBufferObjectTest {
+    /**
+     * A GL3 that gives the attributes MCvertex and MCnormal locations 0 and 1.
+     */
+    private static GL3 stubGL() {
+        return new StubGL3().setAttribLocation("MCvertex", 0).setAttribLocation("MCnormal", 1).getGL();
+    }
+
+    private static ShaderProgram program(GL3 gl) throws Exception {
+        VertexShader vs = new VertexShader("test.vp", "in vec4 MCvertex;\nin vec3 MCnormal;\n");
+        FragmentShader fs = new FragmentShader("test.fp", "out vec4 fragColor;\n");
+        vs.init(gl);
+        fs.init(gl);
+
+        ShaderProgram program = new ShaderProgram(vs, fs);
+        program.init(gl);
+        return program;
+    }
+
+    /**
+     * Test method for
+     * {@link ShaderProgram#linkAttribs(GL3, VertexBufferObject)}: only the
+     * first draw sets up the attribute pointers.
+     */
+    @Test
+    public final void testLinkOnce() throws Exception {
+        GLCallCounter counter = new GLCallCounter(stubGL());
+        GL3 gl = counter.getGL();
+
+        GLSLAttribute vertices = new GLSLAttribute(FloatBuffer.allocate(12), "MCvertex", GLSLAttribute.SIZE_FLOAT, 4);
+        GLSLAttribute normals = new GLSLAttribute(FloatBuffer.allocate(9), "MCnormal", GLSLAttribute.SIZE_FLOAT, 3);
+        VertexBufferObject vbo = new VertexBufferObject(gl, vertices, normals);
+        ShaderProgram program = program(gl);
+
+        counter.reset();
+        vbo.bind(gl);
+        program.linkAttribs(gl, vbo);
+        assertEquals(2, counter.getCalls("glVertexAttribPointer"));
+        assertEquals(2, counter.getCalls("glEnableVertexAttribArray"));
+        assertEquals(1, counter.getCalls("glLinkProgram"));
+
+        // Steady state: bind only
+        counter.reset();
+        for (int i = 0; i < 10; i++) {
+            vbo.bind(gl);
+            program.linkAttribs(gl, vbo);
+            gl.glDrawArrays(GL3.GL_TRIANGLES, 0, 3);
+        }
+        assertEquals(10, counter.getDrawCalls());
+        assertEquals(0, counter.getCalls("glVertexAttribPointer"));
+        assertEquals(0, counter.getCalls("glGetAttribLocation"));
+        assertEquals(30, counter.getTotalCalls());
+
+        // New data: recorded again
+        vbo.update(gl, vertices, normals);
+        counter.reset();
+        program.linkAttribs(gl, vbo);
+        assertEquals(2, counter.getCalls("glVertexAttribPointer"));
+    }
+
+    /**
+     * Test method for {@link VertexBufferObject#link(GL3, int[])} with
+     * changing locations.
+     */
+    @Test
+    public final void testLinkLocations() {
+        GLCallCounter counter = new GLCallCounter(stubGL());
+        GL3 gl = counter.getGL();
+
+        GLSLAttribute vertices = new GLSLAttribute(FloatBuffer.allocate(12), "MCvertex", GLSLAttribute.SIZE_FLOAT, 4);
+        GLSLAttribute normals = new GLSLAttribute(FloatBuffer.allocate(9), "MCnormal", GLSLAttribute.SIZE_FLOAT, 3);
+        VertexBufferObject vbo = new VertexBufferObject(gl, vertices, normals);
+
+        assertTrue(vbo.link(gl, new int[] { 0, 1 }));
+        assertFalse(vbo.link(gl, new int[] { 0, 1 }));
+
+        // A program without normals, and the vertices at another location
+        counter.reset();
+        assertTrue(vbo.link(gl, new int[] { 2, -1 }));
+        assertEquals(1, counter.getCalls("glVertexAttribPointer"));
+        assertEquals(2, counter.getCalls("glDisableVertexAttribArray"));
+    }
+}
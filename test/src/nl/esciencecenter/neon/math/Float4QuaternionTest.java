@@ -0,0 +1,125 @@
+package nl.esciencecenter.neon.math;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+/* Copyright 2013 Netherlands eScience Center
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * @author Maarten van Meersbergen <m.van.meersbergen@esciencecenter.nl>
+ * 
+ */
+public class Float4QuaternionTest {
+    private static final float EPSILON = 1E-5f;
+
+    private static float[] matrixOf(Float4Quaternion q) {
+        return q.toMatrix(new Float4Matrix()).asArray();
+    }
+
+    /**
+     * Test method for
+     * {@link nl.esciencecenter.neon.math.Float4Quaternion#toMatrix(Float4Matrix)}
+     * .
+     */
+    @Test
+    public final void testToMatrix() {
+        assertArrayEquals(new Float4Matrix().asArray(), matrixOf(new Float4Quaternion()), 0f);
+
+        assertArrayEquals(FloatMatrixMath.rotationX(30f).asArray(),
+                matrixOf(new Float4Quaternion().setFromAxisAngle(30f, 1f, 0f, 0f)), EPSILON);
+        assertArrayEquals(FloatMatrixMath.rotationY(-75f).asArray(),
+                matrixOf(new Float4Quaternion().setFromAxisAngle(-75f, 0f, 1f, 0f)), EPSILON);
+        assertArrayEquals(FloatMatrixMath.rotationZ(120f).asArray(),
+                matrixOf(new Float4Quaternion().setFromAxisAngle(120f, 0f, 0f, 1f)), EPSILON);
+
+        // Arbitrary, unnormalized, axis
+        assertArrayEquals(FloatMatrixMath.rotate(33f, 1f, 2f, 3f).asArray(),
+                matrixOf(new Float4Quaternion().setFromAxisAngle(33f, 1f, 2f, 3f)), EPSILON);
+    }
+
+    /**
+     * Test method for
+     * {@link nl.esciencecenter.neon.math.Float4Quaternion#mul(Float4Quaternion)}
+     * and
+     * {@link nl.esciencecenter.neon.math.Float4Quaternion#preMul(Float4Quaternion)}
+     * .
+     */
+    @Test
+    public final void testMul() {
+        Float4Quaternion a = new Float4Quaternion().setFromAxisAngle(40f, 1f, 0f, 0f);
+        Float4Quaternion b = new Float4Quaternion().setFromAxisAngle(25f, 0f, 1f, 1f);
+
+        Float4Matrix expected = FloatMatrixMath.rotationX(40f).mul(FloatMatrixMath.rotate(25f, 0f, 1f, 1f));
+        assertArrayEquals(expected.asArray(), matrixOf(new Float4Quaternion(a).mul(b)), EPSILON);
+        assertArrayEquals(expected.asArray(), matrixOf(new Float4Quaternion(b).preMul(a)), EPSILON);
+
+        // Aliased operands
+        Float4Quaternion square = Float4Quaternion.mul(a, a, a);
+        assertArrayEquals(FloatMatrixMath.rotationX(80f).asArray(), matrixOf(square), EPSILON);
+
+        // A rotation times its conjugate is no rotation
+        assertArrayEquals(new Float4Matrix().asArray(), matrixOf(new Float4Quaternion(b).mul(
+                new Float4Quaternion(b).conjugate())), EPSILON);
+    }
+
+    /**
+     * Test method for
+     * {@link nl.esciencecenter.neon.math.Float4Quaternion#normalize()}.
+     */
+    @Test
+    public final void testNormalize() {
+        Float4Quaternion q = new Float4Quaternion(1f, 2f, 2f, 4f).normalize();
+        assertEquals(1f, q.length(), EPSILON);
+        assertEquals(.2f, q.getX(), EPSILON);
+        assertEquals(.4f, q.getY(), EPSILON);
+        assertEquals(.4f, q.getZ(), EPSILON);
+        assertEquals(.8f, q.getW(), EPSILON);
+
+        assertEquals(new Float4Quaternion(), new Float4Quaternion(0f, 0f, 0f, 0f).normalize());
+    }
+
+    /**
+     * Test method for
+     * {@link nl.esciencecenter.neon.math.Float4Quaternion#slerp(Float4Quaternion, Float4Quaternion, float, Float4Quaternion)}
+     * .
+     */
+    @Test
+    public final void testSlerp() {
+        Float4Quaternion a = new Float4Quaternion().setFromAxisAngle(10f, 0f, 1f, 0f);
+        Float4Quaternion b = new Float4Quaternion().setFromAxisAngle(90f, 0f, 1f, 0f);
+        Float4Quaternion result = new Float4Quaternion();
+
+        assertArrayEquals(matrixOf(a), matrixOf(Float4Quaternion.slerp(a, b, 0f, result)), EPSILON);
+        assertArrayEquals(matrixOf(b), matrixOf(Float4Quaternion.slerp(a, b, 1f, result)), EPSILON);
+
+        // Constant angular speed
+        assertArrayEquals(FloatMatrixMath.rotationY(30f).asArray(),
+                matrixOf(Float4Quaternion.slerp(a, b, .25f, result)), EPSILON);
+
+        // Shortest path: -b is the same rotation as b
+        Float4Quaternion minusB = new Float4Quaternion(-b.getX(), -b.getY(), -b.getZ(), -b.getW());
+        assertArrayEquals(FloatMatrixMath.rotationY(50f).asArray(),
+                matrixOf(Float4Quaternion.slerp(a, minusB, .5f, result)), EPSILON);
+
+        // Nearly parallel rotations, in place
+        Float4Quaternion c = new Float4Quaternion().setFromAxisAngle(10.5f, 0f, 1f, 0f);
+        Float4Quaternion.slerp(a, c, .5f, a);
+        assertArrayEquals(FloatMatrixMath.rotationY(10.25f).asArray(), matrixOf(a), EPSILON);
+        assertEquals(1f, a.length(), EPSILON);
+    }
+}
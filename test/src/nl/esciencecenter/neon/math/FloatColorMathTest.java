@@ -0,0 +1,203 @@
+package nl.esciencecenter.neon.math;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.util.Random;
+
+import org.junit.Test;
+
+/* Copyright 2013 Netherlands eScience Center
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * @author Maarten van Meersbergen <m.van.meersbergen@esciencecenter.nl>
+ * 
+ */
+public class FloatColorMathTest {
+    /**
+     * Random RGBA colors, starting with black, white, a grey and the primaries
+     * to cover the special cases of the conversions.
+     */
+    private static float[] randomColors(int count, long seed) {
+        float[] special = { 0f, 0f, 0f, 1f, 1f, 1f, 1f, 1f, .5f, .5f, .5f, 1f, 1f, 0f, 0f, 1f, 0f, 1f, 0f, 1f, 0f,
+                0f, 1f, 1f };
+        Random random = new Random(seed);
+        float[] result = new float[count * 4];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = i < special.length ? special[i] : random.nextFloat();
+        }
+        return result;
+    }
+
+    /**
+     * Test method for {@link FloatColorMath#rgbToHsv(float[], int, float[], int, int, int)}
+     * and {@link FloatColorMath#hsvToRgb(float[], int, float[], int, int, int)}
+     * , which should match the scalar versions exactly.
+     */
+    @Test
+    public final void testRgbToHsvToRgb() {
+        float[] rgba = randomColors(1000, 1);
+
+        float[] hsva = new float[rgba.length];
+        FloatColorMath.rgbToHsv(rgba, 0, hsva, 0, 4, 1000);
+
+        float[] back = new float[rgba.length];
+        FloatColorMath.hsvToRgb(hsva, 0, back, 0, 4, 1000);
+
+        for (int i = 0; i < rgba.length; i += 4) {
+            Float3Vector hsv = FloatVectorMath.RGBtoHSV(new Float3Vector(rgba[i], rgba[i + 1], rgba[i + 2]));
+            assertEquals(hsv, new Float3Vector(hsva[i], hsva[i + 1], hsva[i + 2]));
+            assertEquals(rgba[i + 3], hsva[i + 3], 0f);
+
+            Float3Vector rgb = FloatVectorMath.HSVtoRGB(hsv);
+            assertEquals(rgb, new Float3Vector(back[i], back[i + 1], back[i + 2]));
+            assertEquals(rgba[i + 3], back[i + 3], 0f);
+        }
+    }
+
+    /**
+     * Test method for {@link FloatColorMath#rgbToHsv(float[], int, float[], int, int, int)}
+     * with RGB colors, converted in place.
+     */
+    @Test
+    public final void testRgbToHsvInPlace() {
+        float[] rgb = { .1f, .2f, .3f, .9f, .5f, .1f };
+        FloatColorMath.rgbToHsv(rgb, 0, rgb, 0, 3, 2);
+
+        assertEquals(FloatVectorMath.RGBtoHSV(new Float3Vector(.1f, .2f, .3f)), new Float3Vector(rgb[0], rgb[1],
+                rgb[2]));
+        assertEquals(FloatVectorMath.RGBtoHSV(new Float3Vector(.9f, .5f, .1f)), new Float3Vector(rgb[3], rgb[4],
+                rgb[5]));
+    }
+
+    /**
+     * Test method for
+     * {@link FloatColorMath#adjustHsv(float[], int, int, int, float, float, float)}
+     * and its buffer versions, against {@link FloatVectorMath#increaseHue(Float3Vector, float)}
+     * and its siblings.
+     */
+    @Test
+    public final void testAdjustHsv() {
+        float[] rgba = randomColors(500, 2);
+
+        float[] hue = rgba.clone();
+        FloatColorMath.adjustHsv(hue, 0, 4, 500, 1.2f, 1f, 1f);
+
+        FloatBuffer saturation = FloatBuffer.wrap(rgba.clone());
+        FloatColorMath.adjustHsv(saturation, 0, 4, 500, 1f, .5f, 1f);
+        assertEquals(0, saturation.position());
+
+        float[] value = rgba.clone();
+        FloatColorMath.adjustHsvParallel(value, 0, 4, 500, 1f, 1f, .75f);
+
+        for (int i = 0; i < rgba.length; i += 4) {
+            Float3Vector rgb = new Float3Vector(rgba[i], rgba[i + 1], rgba[i + 2]);
+
+            assertEquals(FloatVectorMath.increaseHue(rgb, 1.2f), new Float3Vector(hue[i], hue[i + 1], hue[i + 2]));
+            assertEquals(FloatVectorMath.increaseSaturation(rgb, .5f), new Float3Vector(saturation.get(i),
+                    saturation.get(i + 1), saturation.get(i + 2)));
+            assertEquals(FloatVectorMath.increaseValue(rgb, .75f), new Float3Vector(value[i], value[i + 1],
+                    value[i + 2]));
+
+            assertEquals(rgba[i + 3], hue[i + 3], 0f);
+            assertEquals(rgba[i + 3], saturation.get(i + 3), 0f);
+            assertEquals(rgba[i + 3], value[i + 3], 0f);
+        }
+    }
+
+    /**
+     * Test method for
+     * {@link FloatColorMath#adjustHsvParallel(float[], int, int, int, float, float, float)}
+     * with enough colors to be split over threads.
+     */
+    @Test
+    public final void testAdjustHsvParallel() {
+        int count = FloatTransformMath.PARALLEL_THRESHOLD * 2 + 7;
+        float[] rgb = new float[count * 3];
+        Random random = new Random(3);
+        for (int i = 0; i < rgb.length; i++) {
+            rgb[i] = random.nextFloat();
+        }
+
+        float[] expected = rgb.clone();
+        FloatColorMath.adjustHsv(expected, 0, 3, count, 1.1f, .9f, 1.05f);
+        FloatColorMath.adjustHsvParallel(rgb, 0, 3, count, 1.1f, .9f, 1.05f);
+
+        assertArrayEquals(expected, rgb, 0f);
+    }
+
+    /**
+     * Test method for
+     * {@link FloatColorMath#adjustHsv(ByteBuffer, int, int, int, float, float, float)}
+     * .
+     */
+    @Test
+    public final void testAdjustHsvBytes() {
+        ByteBuffer pixels = ByteBuffer.allocate(3 * 4);
+        pixels.put(new byte[] { (byte) 255, 0, 0, (byte) 128, 10, 20, (byte) 200, (byte) 255, 0, 0, 0, 0 });
+        pixels.position(4);
+
+        // Skip the first pixel
+        FloatColorMath.adjustHsv(pixels, 4, 4, 2, 1f, 1f, .5f);
+        assertEquals(4, pixels.position());
+
+        assertEquals((byte) 255, pixels.get(0));
+        assertEquals((byte) 128, pixels.get(3));
+
+        Float3Vector expected = FloatVectorMath.increaseValue(new Float3Vector(10 / 255f, 20 / 255f, 200 / 255f),
+                .5f);
+        assertEquals(Math.round(expected.getX() * 255f), pixels.get(4) & 0xFF);
+        assertEquals(Math.round(expected.getY() * 255f), pixels.get(5) & 0xFF);
+        assertEquals(Math.round(expected.getZ() * 255f), pixels.get(6) & 0xFF);
+        assertEquals((byte) 255, pixels.get(7));
+
+        // Black stays black
+        assertEquals(0, pixels.get(8));
+        assertEquals(0, pixels.get(9));
+        assertEquals(0, pixels.get(10));
+    }
+
+    /**
+     * Test method for
+     * {@link FloatColorMath#interpolateColors(int, Color4, Color4, float[], int)}
+     * .
+     */
+    @Test
+    public final void testInterpolateColors() {
+        Color4 startColor = new Color4(.2f, 0f, 1f, 1f);
+        Color4 endColor = new Color4(1f, .7f, 0f, .5f);
+
+        Color4[] expected = FloatVectorMath.interpolateColors(16, startColor, endColor);
+
+        float[] result = new float[1 + 16 * 4];
+        assertEquals(result.length, FloatColorMath.interpolateColors(16, startColor, endColor, result, 1));
+
+        for (int i = 0; i < 16; i++) {
+            assertEquals(expected[i], new Color4(result[1 + i * 4], result[2 + i * 4], result[3 + i * 4],
+                    result[4 + i * 4]));
+        }
+    }
+
+    /**
+     * Test that a stride other than 3 or 4 is rejected.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public final void testInvalidStride() {
+        FloatColorMath.adjustHsv(new float[8], 0, 2, 4, 1f, 1f, 1f);
+    }
+}
@@ -0,0 +1,244 @@
+package nl.esciencecenter.neon.math;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.nio.FloatBuffer;
+import java.util.Random;
+
+import org.junit.Test;
+
+/* Copyright 2013 Netherlands eScience Center
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * @author Maarten van Meersbergen <m.van.meersbergen@esciencecenter.nl>
+ * 
+ */
+public class FloatTransformMathTest {
+    private static final float EPSILON = 1E-4f;
+
+    private static final Float4Matrix MATRIX = FloatMatrixMath.translate(1f, -2f, 3f)
+            .mul(FloatMatrixMath.rotate(33f, 1f, 2f, 3f)).mul(FloatMatrixMath.scale(2f, .5f, 1.5f));
+
+    private static float[] randomArray(int length, long seed) {
+        Random random = new Random(seed);
+        float[] result = new float[length];
+        for (int i = 0; i < length; i++) {
+            result[i] = random.nextFloat() * 20f - 10f;
+        }
+        return result;
+    }
+
+    /**
+     * Transforms AoS positions one by one, with {@link Float4Matrix#mul(Float4Vector)}.
+     */
+    private static float[] expectedPositions(Float4Matrix m, float[] src) {
+        float[] result = new float[src.length];
+        for (int i = 0; i < src.length; i += 4) {
+            Float4Vector v = m.mul(new Float4Vector(src[i], src[i + 1], src[i + 2], src[i + 3]));
+            result[i] = v.getX();
+            result[i + 1] = v.getY();
+            result[i + 2] = v.getZ();
+            result[i + 3] = v.getW();
+        }
+        return result;
+    }
+
+    /**
+     * Transforms AoS normals one by one, with {@link Float3Matrix#mul(Float3Vector)}.
+     */
+    private static float[] expectedNormals(Float3Matrix n, float[] src) {
+        float[] result = new float[src.length];
+        for (int i = 0; i < src.length; i += 3) {
+            Float3Vector v = n.mul(new Float3Vector(src[i], src[i + 1], src[i + 2]));
+            result[i] = v.getX();
+            result[i + 1] = v.getY();
+            result[i + 2] = v.getZ();
+        }
+        return result;
+    }
+
+    /**
+     * Test method for
+     * {@link nl.esciencecenter.neon.math.FloatTransformMath#transformPositions(Float4Matrix, float[], int, float[], int, int)}
+     * .
+     */
+    @Test
+    public final void testTransformPositionsAoS() {
+        float[] src = randomArray(4 * 100, 1);
+        float[] expected = expectedPositions(MATRIX, src);
+
+        float[] dst = new float[src.length];
+        FloatTransformMath.transformPositions(MATRIX, src, 0, dst, 0, 100);
+        assertArrayEquals(expected, dst, EPSILON);
+
+        // With offsets, only the given range is written
+        dst = new float[src.length + 8];
+        FloatTransformMath.transformPositions(MATRIX, src, 4, dst, 8, 99);
+        assertEquals(0f, dst[7], 0f);
+        for (int i = 4; i < src.length; i++) {
+            assertEquals(expected[i], dst[i + 4], EPSILON);
+        }
+
+        // In place, with a projection
+        Float4Matrix projection = FloatMatrixMath.perspective(55f, 1f, .1f, 100f);
+        expected = expectedPositions(projection, src);
+        FloatTransformMath.transformPositions(projection, src, 0, src, 0, 100);
+        assertArrayEquals(expected, src, EPSILON);
+    }
+
+    /**
+     * Test method for
+     * {@link nl.esciencecenter.neon.math.FloatTransformMath#transformPositions(Float4Matrix, float[], float[], float[], float[], float[], float[], int, int)}
+     * .
+     */
+    @Test
+    public final void testTransformPositionsSoA() {
+        int count = 100;
+        float[] x = randomArray(count, 1);
+        float[] y = randomArray(count, 2);
+        float[] z = randomArray(count, 3);
+
+        float[] aos = new float[count * 4];
+        for (int i = 0; i < count; i++) {
+            aos[i * 4] = x[i];
+            aos[i * 4 + 1] = y[i];
+            aos[i * 4 + 2] = z[i];
+            aos[i * 4 + 3] = 1f;
+        }
+        float[] expected = expectedPositions(MATRIX, aos);
+
+        // In place
+        FloatTransformMath.transformPositions(MATRIX, x, y, z, x, y, z, 0, count);
+        for (int i = 0; i < count; i++) {
+            assertEquals(expected[i * 4], x[i], EPSILON);
+            assertEquals(expected[i * 4 + 1], y[i], EPSILON);
+            assertEquals(expected[i * 4 + 2], z[i], EPSILON);
+        }
+    }
+
+    /**
+     * Test method for
+     * {@link nl.esciencecenter.neon.math.FloatTransformMath#transformPositions(Float4Matrix, FloatBuffer, FloatBuffer, int)}
+     * .
+     */
+    @Test
+    public final void testTransformPositionsBuffer() {
+        float[] src = randomArray(4 * 100, 1);
+        float[] expected = expectedPositions(MATRIX, src);
+
+        FloatBuffer buffer = FloatVectorMath.toBuffer(src);
+        buffer.position(4);
+        FloatTransformMath.transformPositions(MATRIX, buffer, buffer, 99);
+        assertEquals(4, buffer.position());
+
+        float[] result = new float[src.length];
+        buffer.rewind();
+        buffer.get(result);
+        for (int i = 0; i < 4; i++) {
+            assertEquals(src[i], result[i], 0f);
+        }
+        for (int i = 4; i < src.length; i++) {
+            assertEquals(expected[i], result[i], EPSILON);
+        }
+    }
+
+    /**
+     * Test method for
+     * {@link nl.esciencecenter.neon.math.FloatTransformMath#transformNormals(Float3Matrix, float[], int, float[], int, int)}
+     * and its SoA and buffer variants.
+     */
+    @Test
+    public final void testTransformNormals() {
+        Float3Matrix n = FloatMatrixMath.getNormalMatrix(MATRIX);
+        int count = 100;
+        float[] src = randomArray(3 * count, 1);
+        float[] expected = expectedNormals(n, src);
+
+        float[] dst = new float[src.length];
+        FloatTransformMath.transformNormals(n, src, 0, dst, 0, count);
+        assertArrayEquals(expected, dst, EPSILON);
+
+        FloatBuffer buffer = FloatVectorMath.toBuffer(src);
+        FloatTransformMath.transformNormals(n, buffer, buffer, count);
+        buffer.get(dst);
+        assertArrayEquals(expected, dst, EPSILON);
+
+        float[] x = new float[count], y = new float[count], z = new float[count];
+        for (int i = 0; i < count; i++) {
+            x[i] = src[i * 3];
+            y[i] = src[i * 3 + 1];
+            z[i] = src[i * 3 + 2];
+        }
+        FloatTransformMath.transformNormals(n, x, y, z, x, y, z, 0, count);
+        for (int i = 0; i < count; i++) {
+            assertEquals(expected[i * 3], x[i], EPSILON);
+            assertEquals(expected[i * 3 + 1], y[i], EPSILON);
+            assertEquals(expected[i * 3 + 2], z[i], EPSILON);
+        }
+    }
+
+    /**
+     * Test method for the parallel variants, with more points than
+     * {@link FloatTransformMath#PARALLEL_THRESHOLD}.
+     */
+    @Test
+    public final void testTransformParallel() {
+        int count = FloatTransformMath.PARALLEL_THRESHOLD * 3 + 17;
+
+        float[] src = randomArray(4 * count, 1);
+        float[] expected = new float[src.length];
+        FloatTransformMath.transformPositions(MATRIX, src, 0, expected, 0, count);
+        FloatTransformMath.transformPositionsParallel(MATRIX, src, 0, src, 0, count);
+        assertArrayEquals(expected, src, 0f);
+
+        float[] x = randomArray(count, 1), y = randomArray(count, 2), z = randomArray(count, 3);
+        float[] ex = new float[count], ey = new float[count], ez = new float[count];
+        FloatTransformMath.transformPositions(MATRIX, x, y, z, ex, ey, ez, 0, count);
+        FloatTransformMath.transformPositionsParallel(MATRIX, x, y, z, x, y, z, 0, count);
+        assertArrayEquals(ex, x, 0f);
+        assertArrayEquals(ey, y, 0f);
+        assertArrayEquals(ez, z, 0f);
+
+        Float3Matrix n = FloatMatrixMath.getNormalMatrix(MATRIX);
+        src = randomArray(3 * count, 1);
+        expected = new float[src.length];
+        FloatTransformMath.transformNormals(n, src, 0, expected, 0, count);
+        FloatTransformMath.transformNormalsParallel(n, src, 0, src, 0, count);
+        assertArrayEquals(expected, src, 0f);
+    }
+
+    /**
+     * Test method for
+     * {@link nl.esciencecenter.neon.math.FloatTransformMath#bounds(float[], int, int, int, float[])}
+     * .
+     */
+    @Test
+    public final void testBounds() {
+        float[] positions = new float[] { 1f, 2f, 3f, 1f, -1f, 5f, 0f, 1f, 4f, -2f, 7f, 1f };
+        float[] result = new float[6];
+
+        FloatTransformMath.bounds(positions, 0, 4, 3, result);
+        assertArrayEquals(new float[] { -1f, -2f, 0f, 4f, 5f, 7f }, result, 0f);
+
+        FloatTransformMath.bounds(positions, 4, 4, 2, result);
+        assertArrayEquals(new float[] { -1f, -2f, 0f, 4f, 5f, 7f }, result, 0f);
+
+        // xyz stride
+        FloatTransformMath.bounds(new float[] { 1f, 2f, 3f, -1f, 5f, 0f }, 0, 3, 2, result);
+        assertArrayEquals(new float[] { -1f, 2f, 0f, 1f, 5f, 3f }, result, 0f);
+    }
+}
@@ -0,0 +1,69 @@
+package nl.esciencecenter.neon.math;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+/* Copyright 2013 Netherlands eScience Center
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * @author Maarten van Meersbergen <m.van.meersbergen@esciencecenter.nl>
+ * 
+ */
+public class Mat3fTest {
+    private static final float EPSILON = 1E-5f;
+
+    private static final Float3Matrix A = new Float3Matrix(1f, 2f, 3f, 0f, -1f, 4f, 5f, 6f, 0f);
+    private static final Float3Matrix B = new Float3Matrix(.5f, 0f, -2f, 1f, 3f, 1f, -1f, 2f, 7f);
+
+    /**
+     * Test method for {@link Mat3f#Mat3f(Float3Matrix)},
+     * {@link Mat3f#toFloat3Matrix()} and {@link Mat3f#get(int, int)}.
+     */
+    @Test
+    public final void testConversion() {
+        Mat3f f = new Mat3f(A);
+        assertArrayEquals(A.asArray(), f.toFloat3Matrix().asArray(), 0f);
+        for (int row = 0; row < 3; row++) {
+            for (int column = 0; column < 3; column++) {
+                assertEquals(A.get(row, column), f.get(row, column), 0f);
+            }
+        }
+
+        Mat4f m = new Mat4f(1f, 2f, 3f, 4f, 5f, 6f, 7f, 8f, 9f, 10f, 11f, 12f, 13f, 14f, 15f, 16f);
+        assertEquals(new Mat3f(1f, 2f, 3f, 5f, 6f, 7f, 9f, 10f, 11f), m.upperLeft());
+    }
+
+    /**
+     * Test method for {@link Mat3f#mul(Mat3f)},
+     * {@link Mat3f#mul(Float3Vector)}, {@link Mat3f#transpose()} and
+     * {@link Mat3f#determinant()}.
+     */
+    @Test
+    public final void testArithmetic() {
+        Mat3f a = new Mat3f(A);
+        Mat3f b = new Mat3f(B);
+
+        assertArrayEquals(A.mul(B).asArray(), a.mul(b).toFloat3Matrix().asArray(), EPSILON);
+
+        Float3Vector v = new Float3Vector(1f, -2f, 3f);
+        assertArrayEquals(A.mul(v).asArray(), a.mul(v).asArray(), EPSILON);
+
+        assertArrayEquals(FloatMatrixMath.transpose(A).asArray(), a.transpose().toFloat3Matrix().asArray(), 0f);
+        assertEquals(FloatMatrixMath.determinant(A), a.determinant(), EPSILON);
+    }
+}
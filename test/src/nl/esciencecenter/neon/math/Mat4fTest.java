@@ -0,0 +1,116 @@
+package nl.esciencecenter.neon.math;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.nio.FloatBuffer;
+
+import org.junit.Test;
+
+/* Copyright 2013 Netherlands eScience Center
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * @author Maarten van Meersbergen <m.van.meersbergen@esciencecenter.nl>
+ * 
+ */
+public class Mat4fTest {
+    private static final float EPSILON = 1E-5f;
+
+    private static void assertSameMatrix(Float4Matrix expected, Mat4f actual, float epsilon) {
+        assertArrayEquals(expected.asArray(), actual.toFloat4Matrix().asArray(), epsilon);
+    }
+
+    /**
+     * Test method for {@link Mat4f#Mat4f(Float4Matrix)},
+     * {@link Mat4f#toFloat4Matrix()} and {@link Mat4f#get(int, int)}.
+     */
+    @Test
+    public final void testConversion() {
+        Float4Matrix m = new Float4Matrix(1f, 2f, 3f, 4f, 5f, 6f, 7f, 8f, 9f, 10f, 11f, 12f, 13f, 14f, 15f, 16f);
+        Mat4f f = new Mat4f(m);
+
+        assertSameMatrix(m, f, 0f);
+        for (int row = 0; row < 4; row++) {
+            for (int column = 0; column < 4; column++) {
+                assertEquals(m.get(row, column), f.get(row, column), 0f);
+            }
+        }
+        assertEquals(8f, f.m13, 0f);
+        assertEquals(f, new Mat4f(f.toFloat4Matrix()));
+        assertSameMatrix(new Float4Matrix(), Mat4f.IDENTITY, 0f);
+
+        FloatBuffer buffer = FloatBuffer.allocate(16);
+        f.writeTo(buffer);
+        assertEquals(16, buffer.position());
+        assertArrayEquals(m.asArray(), buffer.array(), 0f);
+    }
+
+    /**
+     * Test method for {@link Mat4f#get(int, int)} out of range.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public final void testGetOutOfRange() {
+        Mat4f.IDENTITY.get(1, 4);
+    }
+
+    /**
+     * Test method for {@link Mat4f#mul(Mat4f)} and
+     * {@link Mat4f#mul(Float4Vector)}.
+     */
+    @Test
+    public final void testMul() {
+        Float4Matrix a = FloatMatrixMath.translate(1f, 2f, 3f).mul(FloatMatrixMath.rotate(33f, 1f, 2f, 3f));
+        Float4Matrix b = FloatMatrixMath.perspective(45f, 1.5f, .1f, 100f).mul(FloatMatrixMath.scale(2f, 3f, 4f));
+
+        assertSameMatrix(a.mul(b), new Mat4f(a).mul(new Mat4f(b)), EPSILON);
+        assertSameMatrix(b.mul(a), new Mat4f(b).mul(new Mat4f(a)), EPSILON);
+
+        Float4Vector v = new Float4Vector(1f, -2f, 3f, 1f);
+        assertArrayEquals(a.mul(v).asArray(), new Mat4f(a).mul(v).asArray(), EPSILON);
+
+        assertSameMatrix(FloatMatrixMath.transpose(a), new Mat4f(a).transpose(), 0f);
+    }
+
+    /**
+     * Test method for the factory methods, against their counterparts in
+     * {@link FloatMatrixMath}.
+     */
+    @Test
+    public final void testFactories() {
+        assertSameMatrix(FloatMatrixMath.translate(1f, -2f, 3f), Mat4f.translate(1f, -2f, 3f), 0f);
+        assertSameMatrix(FloatMatrixMath.scale(1f, -2f, 3f), Mat4f.scale(1f, -2f, 3f), 0f);
+        assertSameMatrix(FloatMatrixMath.rotationX(33f), Mat4f.rotationX(33f), 0f);
+        assertSameMatrix(FloatMatrixMath.rotationY(-33f), Mat4f.rotationY(-33f), 0f);
+        assertSameMatrix(FloatMatrixMath.rotationZ(133f), Mat4f.rotationZ(133f), 0f);
+        assertSameMatrix(FloatMatrixMath.perspective(55f, 1.25f, .1f, 1000f), Mat4f.perspective(55f, 1.25f, .1f,
+                1000f), EPSILON);
+
+        Float4Vector eye = new Float4Vector(1f, 2f, -5f, 1f);
+        Float4Vector at = new Float4Vector(.5f, 0f, 1f, 1f);
+        Float4Vector up = new Float4Vector(0f, 2f, .5f, 0f);
+        assertSameMatrix(FloatMatrixMath.lookAt(eye, at, up), Mat4f.lookAt(eye, at, up), EPSILON);
+    }
+
+    /**
+     * Test method for
+     * {@link Mat4f#perspective(float, float, float, float)} with an invalid
+     * aspect ratio.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public final void testPerspectiveInvalid() {
+        Mat4f.perspective(45f, 0f, .1f, 100f);
+    }
+}
@@ -5,7 +5,11 @@ package nl.esciencecenter.neon.math;
 
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.fail;
+
+import java.util.Random;
+
 import nl.esciencecenter.neon.exceptions.InverseNotAvailableException;
 import nl.esciencecenter.neon.math.Float2Matrix;
 import nl.esciencecenter.neon.math.Float3Matrix;
@@ -899,4 +903,209 @@ public class MatrixFMathTest {
         }
     }
 
+    /**
+     * Builds a well conditioned affine (rotation, non-uniform scale and
+     * translation) matrix out of random numbers.
+     */
+    private static Float4Matrix randomAffine(Random random) {
+        Float4Matrix rotation = FloatMatrixMath.rotate(random.nextFloat() * 360f, random.nextFloat() - .5f,
+                random.nextFloat() - .5f, random.nextFloat() + .1f);
+        Float4Matrix scale = FloatMatrixMath.scale(.5f + random.nextFloat() * 1.5f, .5f + random.nextFloat() * 1.5f,
+                .5f + random.nextFloat() * 1.5f);
+        Float4Matrix translation = FloatMatrixMath.translate(random.nextFloat() * 20f - 10f,
+                random.nextFloat() * 20f - 10f, random.nextFloat() * 20f - 10f);
+        return translation.mul(rotation).mul(scale);
+    }
+
+    /**
+     * Test method for
+     * {@link nl.esciencecenter.neon.math.FloatMatrixMath#inverse(nl.esciencecenter.neon.math.Float3Matrix, nl.esciencecenter.neon.math.Float3Matrix)}
+     * .
+     */
+    @Test
+    public final void testInverseFloat3MatrixFloat3Matrix() {
+        Float3Matrix input = new Float3Matrix(0.5f, 0f, 0.5f, 0.5f, 0.5f, 0f, 0f, 0.5f, 0.5f);
+        Float3Matrix expected = new Float3Matrix(1f, 1f, -1f, -1f, 1f, 1f, 1f, -1f, 1f);
+        Float3Matrix dest = new Float3Matrix();
+        try {
+            assertSame(dest, FloatMatrixMath.inverse(input, dest));
+            assertArrayEquals(expected.asArray(), dest.asArray(), FloatMatrixMath.getEpsilon());
+
+            // In place
+            FloatMatrixMath.inverse(input, input);
+            assertArrayEquals(expected.asArray(), input.asArray(), FloatMatrixMath.getEpsilon());
+        } catch (InverseNotAvailableException e) {
+            fail("determinant should not be 0 here, but it is.");
+        }
+
+        input = new Float3Matrix(0f, 0f, 0f, 0f, 0f, 0f, 0f, 0f, 0f);
+        try {
+            FloatMatrixMath.inverse(input, dest);
+            fail("determinant should be 0 here, but it is not.");
+        } catch (InverseNotAvailableException e) {
+            assertArrayEquals(expected.asArray(), dest.asArray(), FloatMatrixMath.getEpsilon());
+        }
+
+        // Precision against the cofactor implementation
+        Random random = new Random(42);
+        for (int i = 0; i < 1000; i++) {
+            Float4Matrix affine = randomAffine(random);
+            input = new Float3Matrix(affine.get(0), affine.get(1), affine.get(2), affine.get(4), affine.get(5),
+                    affine.get(6), affine.get(8), affine.get(9), affine.get(10));
+            try {
+                assertArrayEquals(FloatMatrixMath.inverse(input).asArray(), FloatMatrixMath.inverse(input, dest)
+                        .asArray(), 1E-5f);
+            } catch (InverseNotAvailableException e) {
+                fail("determinant should not be 0 here, but it is.");
+            }
+        }
+    }
+
+    /**
+     * Test method for
+     * {@link nl.esciencecenter.neon.math.FloatMatrixMath#inverse(nl.esciencecenter.neon.math.Float4Matrix, nl.esciencecenter.neon.math.Float4Matrix)}
+     * .
+     */
+    @Test
+    public final void testInverseFloat4MatrixFloat4Matrix() {
+        Float4Matrix input = new Float4Matrix(0.330f, 0.000f, 0.330f, 0.330f, 0.330f, 0.330f, 0.330f, 0.000f, 0.330f,
+                0.330f, 0.000f, 0.330f, 0.000f, 0.330f, 0.330f, 0.330f);
+        Float4Matrix expected = new Float4Matrix(1.010101f, 1.010101f, 1.010101f, -2.020202f, -2.020202f, 1.010101f,
+                1.010101f, 1.010101f, 1.010101f, 1.010101f, -2.020202f, 1.010101f, 1.010101f, -2.020202f, 1.010101f,
+                1.010101f);
+        Float4Matrix dest = new Float4Matrix();
+        try {
+            assertSame(dest, FloatMatrixMath.inverse(input, dest));
+            assertArrayEquals(expected.asArray(), dest.asArray(), 1E-6f);
+
+            // In place
+            FloatMatrixMath.inverse(input, input);
+            assertArrayEquals(expected.asArray(), input.asArray(), 1E-6f);
+        } catch (InverseNotAvailableException e) {
+            fail("determinant should not be 0 here, but it is.");
+        }
+
+        input = new Float4Matrix(0f, 0f, 0f, 0f, 0f, 0f, 0f, 0f, 0f, 0f, 0f, 0f, 0f, 0f, 0f, 0f);
+        try {
+            FloatMatrixMath.inverse(input, dest);
+            fail("determinant should be 0 here, but it is not.");
+        } catch (InverseNotAvailableException e) {
+            assertArrayEquals(expected.asArray(), dest.asArray(), 1E-6f);
+        }
+
+        // Precision against the cofactor implementation
+        Random random = new Random(42);
+        for (int i = 0; i < 1000; i++) {
+            input = randomAffine(random);
+            try {
+                assertArrayEquals(FloatMatrixMath.inverse(input).asArray(), FloatMatrixMath.inverse(input, dest)
+                        .asArray(), 1E-5f);
+            } catch (InverseNotAvailableException e) {
+                fail("determinant should not be 0 here, but it is.");
+            }
+        }
+
+        // Projective matrices: M * M^-1 should be the identity
+        Float4Matrix identity = new Float4Matrix();
+        input = FloatMatrixMath.perspective(55f, 1.5f, 0.1f, 3000f).mul(randomAffine(random));
+        try {
+            assertArrayEquals(identity.asArray(), input.mul(FloatMatrixMath.inverse(input, dest)).asArray(), 1E-4f);
+        } catch (InverseNotAvailableException e) {
+            fail("determinant should not be 0 here, but it is.");
+        }
+    }
+
+    /**
+     * Test method for
+     * {@link nl.esciencecenter.neon.math.FloatMatrixMath#inverseRigid(nl.esciencecenter.neon.math.Float4Matrix, nl.esciencecenter.neon.math.Float4Matrix)}
+     * .
+     */
+    @Test
+    public final void testInverseRigid() {
+        Float4Matrix dest = new Float4Matrix();
+
+        Float4Matrix input = FloatMatrixMath.translate(1f, 2f, 3f);
+        Float4Matrix expected = FloatMatrixMath.translate(-1f, -2f, -3f);
+        assertSame(dest, FloatMatrixMath.inverseRigid(input, dest));
+        assertArrayEquals(expected.asArray(), dest.asArray(), FloatMatrixMath.getEpsilon());
+
+        input = FloatMatrixMath.lookAt(new Float4Vector(0f, 1f, -5f, 1f), new Float4Vector(1f, 0f, 0f, 1f),
+                new Float4Vector(0f, 1f, 0f, 0f));
+        Float4Matrix identity = new Float4Matrix();
+        assertArrayEquals(identity.asArray(), input.mul(FloatMatrixMath.inverseRigid(input, dest)).asArray(), 1E-5f);
+
+        // In place, and against the general inverse
+        Random random = new Random(42);
+        for (int i = 0; i < 1000; i++) {
+            input = FloatMatrixMath.translate(random.nextFloat() * 20f - 10f, random.nextFloat() * 20f - 10f,
+                    random.nextFloat() * 20f - 10f).mul(
+                    FloatMatrixMath.rotate(random.nextFloat() * 360f, random.nextFloat() - .5f,
+                            random.nextFloat() - .5f, random.nextFloat() + .1f));
+            try {
+                expected = FloatMatrixMath.inverse(input, new Float4Matrix());
+                FloatMatrixMath.inverseRigid(input, input);
+                assertArrayEquals(expected.asArray(), input.asArray(), 1E-5f);
+            } catch (InverseNotAvailableException e) {
+                fail("determinant should not be 0 here, but it is.");
+            }
+        }
+    }
+
+    /**
+     * Test method for
+     * {@link nl.esciencecenter.neon.math.FloatMatrixMath#getNormalMatrix(nl.esciencecenter.neon.math.Float4Matrix, nl.esciencecenter.neon.math.Float3Matrix)}
+     * .
+     */
+    @Test
+    public final void testGetNormalMatrixFloat4MatrixFloat3Matrix() {
+        Float3Matrix dest = new Float3Matrix(2f);
+
+        Random random = new Random(42);
+        for (int i = 0; i < 1000; i++) {
+            Float4Matrix mv = randomAffine(random);
+            Float3Matrix upper3x3 = new Float3Matrix(mv.get(0), mv.get(1), mv.get(2), mv.get(4), mv.get(5), mv.get(6),
+                    mv.get(8), mv.get(9), mv.get(10));
+            try {
+                Float3Matrix expected = FloatMatrixMath.transpose(FloatMatrixMath.inverse(upper3x3));
+                assertSame(dest, FloatMatrixMath.getNormalMatrix(mv, dest));
+                assertArrayEquals(expected.asArray(), dest.asArray(), 1E-5f);
+            } catch (InverseNotAvailableException e) {
+                fail("determinant should not be 0 here, but it is.");
+            }
+        }
+
+        // Not invertible: identity
+        FloatMatrixMath.getNormalMatrix(new Float4Matrix(1f), dest);
+        assertArrayEquals(new Float3Matrix().asArray(), dest.asArray(), FloatMatrixMath.getEpsilon());
+    }
+
+    /**
+     * Test method for
+     * {@link nl.esciencecenter.neon.math.FloatMatrixMath#mul(nl.esciencecenter.neon.math.Float4Matrix, nl.esciencecenter.neon.math.Float4Matrix, nl.esciencecenter.neon.math.Float4Matrix)}
+     * .
+     */
+    @Test
+    public final void testMulFloat4MatrixFloat4MatrixFloat4Matrix() {
+        Float4Matrix dest = new Float4Matrix();
+
+        Random random = new Random(42);
+        for (int i = 0; i < 100; i++) {
+            Float4Matrix a = randomAffine(random);
+            Float4Matrix b = FloatMatrixMath.perspective(30f + i, 1.5f, .1f, 100f).mul(randomAffine(random));
+            Float4Matrix expected = a.mul(b);
+
+            assertSame(dest, FloatMatrixMath.mul(a, b, dest));
+            assertArrayEquals(expected.asArray(), dest.asArray(), 1E-4f);
+
+            // Aliased destinations
+            Float4Matrix left = new Float4Matrix(a);
+            FloatMatrixMath.mul(left, b, left);
+            assertArrayEquals(expected.asArray(), left.asArray(), 1E-4f);
+
+            Float4Matrix right = new Float4Matrix(b);
+            FloatMatrixMath.mul(a, right, right);
+            assertArrayEquals(expected.asArray(), right.asArray(), 1E-4f);
+        }
+    }
+
 }
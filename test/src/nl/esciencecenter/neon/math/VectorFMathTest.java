@@ -524,6 +524,58 @@ public class VectorFMathTest {
 
     }
 
+    /**
+     * Test method for
+     * {@link FloatVectorMath#bezierCurve(int, float[], int, Float3Vector, Float3Vector, float[], int)}
+     * , which should match the vector based version exactly.
+     */
+    @Test
+    public final void testBezierCurvePrimitive() {
+        Float4Vector startPoint = new Float4Vector(0f, 0f, 0f, 0f);
+        Float3Vector startControl = new Float3Vector(1f, 0f, 0f);
+        Float3Vector endControl = new Float3Vector(0f, 0f, 1f);
+        Float4Vector endPoint = new Float4Vector(10f, 10f, 10f, 0f);
+
+        Float4Vector[] expected = FloatVectorMath.bezierCurve(10, startPoint, startControl, endControl, endPoint);
+
+        float[] points = { 0f, 0f, 0f, 0f, 10f, 10f, 10f, 0f };
+        float[] result = new float[2 + 10 * 4];
+        assertEquals(2 + 10 * 4, FloatVectorMath.bezierCurve(10, points, 0, startControl, endControl, result, 2));
+
+        for (int i = 0; i < 10; i++) {
+            assertEquals(expected[i], new Float4Vector(result[2 + i * 4], result[3 + i * 4], result[4 + i * 4],
+                    result[5 + i * 4]));
+        }
+    }
+
+    /**
+     * Test method for
+     * {@link FloatVectorMath#bezierCurves(int, float[], int, int, Float3Vector, Float3Vector, float[], int)}
+     * .
+     */
+    @Test
+    public final void testBezierCurves() {
+        Float3Vector startControl = new Float3Vector(.5f, 0f, 0f);
+        Float3Vector endControl = new Float3Vector(.5f, 0f, 0f);
+        float[] points = { 0f, 0f, 0f, 1f, 1f, .5f, 0f, 1f, 2f, .25f, 0f, 1f, 3f, 1f, 0f, 1f };
+
+        float[] result = new float[3 * 8 * 4];
+        assertEquals(result.length, FloatVectorMath.bezierCurves(8, points, 0, 4, startControl, endControl, result, 0));
+
+        for (int segment = 0; segment < 3; segment++) {
+            Float4Vector start = new Float4Vector(points[segment * 4], points[segment * 4 + 1], 0f, 1f);
+            Float4Vector end = new Float4Vector(points[segment * 4 + 4], points[segment * 4 + 5], 0f, 1f);
+            Float4Vector[] expected = FloatVectorMath.bezierCurve(8, start, startControl, endControl, end);
+
+            for (int i = 0; i < 8; i++) {
+                int index = (segment * 8 + i) * 4;
+                // The vector based version leaves w at 0
+                assertEquals(expected[i], new Float4Vector(result[index], result[index + 1], result[index + 2], 0f));
+                assertEquals(1f, result[index + 3], 0f);
+            }
+        }
+    }
+
     @Test
     public final void testDegreesBezierCurve() {
         Float3Vector startPoint = new Float3Vector(0f, 0f, 0f);
@@ -0,0 +1,130 @@
+package nl.esciencecenter.neon.metrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import nl.esciencecenter.neon.metrics.FrameMetrics.Counter;
+import nl.esciencecenter.neon.metrics.FrameMetrics.Phase;
+
+import org.junit.Test;
+
+/* Copyright 2013 Netherlands eScience Center
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * @author Maarten van Meersbergen <m.van.meersbergen@esciencecenter.nl>
+ * 
+ */
+public class FrameMetricsTest {
+    /**
+     * Test that nothing is recorded while disabled.
+     */
+    @Test
+    public final void testDisabled() {
+        FrameMetrics metrics = new FrameMetrics();
+        metrics.setEnabled(false);
+
+        assertEquals(0L, metrics.begin());
+        metrics.end(Phase.DRAW, System.nanoTime());
+        metrics.record(Phase.DRAW, 1000L);
+        metrics.countDraw(300);
+        metrics.frameStarted();
+        metrics.frameRendered();
+        metrics.frameStarted();
+
+        FrameMetricsSnapshot snapshot = metrics.snapshot();
+        assertEquals(0, snapshot.getFrames());
+        assertEquals(0, snapshot.getSamples(Phase.DRAW));
+        assertEquals(0, snapshot.getCount(Counter.DRAW_CALLS));
+    }
+
+    /**
+     * Test method for {@link FrameMetrics#frameStarted()},
+     * {@link FrameMetrics#frameRendered()} and the counters, through a
+     * snapshot.
+     */
+    @Test
+    public final void testFramesAndCounters() throws InterruptedException {
+        FrameMetrics metrics = new FrameMetrics();
+        metrics.setEnabled(true);
+
+        for (int frame = 0; frame < 3; frame++) {
+            metrics.frameStarted();
+            long start = metrics.begin();
+            Thread.sleep(2);
+            metrics.end(Phase.DRAW, start);
+            metrics.countDraw(100);
+            metrics.countDraw(50);
+            metrics.count(Counter.TEXTURE_UPLOADS, 1);
+            metrics.frameRendered();
+        }
+        metrics.frameStarted();
+
+        FrameMetricsSnapshot snapshot = metrics.snapshotAndReset();
+        assertEquals(3, snapshot.getFrames());
+        assertEquals(3, snapshot.getSamples(Phase.SWAP));
+        assertEquals(3, snapshot.getSamples(Phase.DRAW));
+        assertTrue(snapshot.getMedianMillis(Phase.DRAW) >= 2.0);
+        assertTrue(snapshot.getMeanMillis(Phase.FRAME) >= snapshot.getMeanMillis(Phase.DRAW));
+        assertTrue(snapshot.getMaxMillis(Phase.DRAW) >= snapshot.getPercentile95Millis(Phase.DRAW));
+        assertTrue(snapshot.getFramesPerSecond() > 0.0);
+
+        assertEquals(6, snapshot.getCount(Counter.DRAW_CALLS));
+        assertEquals(450, snapshot.getCount(Counter.VERTICES));
+        assertEquals(2.0, snapshot.getCountPerFrame(Counter.DRAW_CALLS), 0.0);
+        assertEquals(3, snapshot.getCount(Counter.TEXTURE_UPLOADS));
+        assertNotNull(snapshot.toString());
+
+        // Reset
+        assertEquals(0, metrics.getCount(Counter.DRAW_CALLS));
+        assertEquals(0, metrics.getHistogram(Phase.DRAW).getCount());
+    }
+
+    /**
+     * Test that reporters receive a snapshot once the report interval has
+     * passed, after which the metrics are reset.
+     */
+    @Test
+    public final void testReporter() throws InterruptedException {
+        FrameMetrics metrics = new FrameMetrics();
+        metrics.setEnabled(true);
+        metrics.setReportInterval(20);
+
+        final List<FrameMetricsSnapshot> reports = new ArrayList<FrameMetricsSnapshot>();
+        metrics.addReporter(new FrameMetricsReporter() {
+            @Override
+            public void report(FrameMetricsSnapshot snapshot) {
+                reports.add(snapshot);
+            }
+        });
+
+        metrics.frameStarted();
+        metrics.countDraw(10);
+        metrics.frameStarted();
+        assertEquals(0, reports.size());
+
+        Thread.sleep(25);
+        metrics.frameStarted();
+        assertEquals(1, reports.size());
+        assertEquals(2, reports.get(0).getFrames());
+        assertEquals(1, reports.get(0).getCount(Counter.DRAW_CALLS));
+        assertTrue(reports.get(0).getIntervalNanos() >= 20000000L);
+        assertEquals(0, metrics.getCount(Counter.DRAW_CALLS));
+    }
+}
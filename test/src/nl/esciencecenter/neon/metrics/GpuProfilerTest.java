@@ -0,0 +1,217 @@
+package nl.esciencecenter.neon.metrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.media.opengl.GL3;
+
+import org.junit.Test;
+
+/* Copyright 2013 Netherlands eScience Center
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * Tests {@link GpuProfiler} against a stand-in {@link GL3} that implements
+ * timestamp queries with a fake GPU clock.
+ * 
+ * @author Maarten van Meersbergen <m.van.meersbergen@esciencecenter.nl>
+ * 
+ */
+public class GpuProfilerTest {
+    /** Nanoseconds the fake GPU clock advances per query. */
+    private static final long TICK = 1000L;
+
+    /**
+     * Fake GPU: every timestamp query reads a clock that advances by
+     * {@link #TICK}, and results are only available when {@link #available}
+     * is set and the GPU clock has reached {@link #completed}. Reading a result
+     * that is not available would stall, and is counted in {@link #stalls}.
+     */
+    private static final class FakeGPU implements InvocationHandler {
+        private final Map<Integer, Long> timestamps = new HashMap<Integer, Long>();
+        private int names = 1;
+        private long clock = 0L;
+        private boolean available = true;
+        private long completed = Long.MAX_VALUE;
+        private int reads = 0;
+        private int stalls = 0;
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) {
+            String name = method.getName();
+            if (name.equals("glGenQueries")) {
+                int[] queries = (int[]) args[1];
+                for (int i = 0; i < (Integer) args[0]; i++) {
+                    queries[(Integer) args[2] + i] = names++;
+                }
+            } else if (name.equals("glQueryCounter")) {
+                clock += TICK;
+                timestamps.put((Integer) args[0], clock);
+            } else if (name.equals("glGetQueryObjectiv")) {
+                ((int[]) args[2])[(Integer) args[3]] = isAvailable((Integer) args[0]) ? GL3.GL_TRUE : GL3.GL_FALSE;
+            } else if (name.equals("glGetQueryObjecti64v")) {
+                reads++;
+                if (!isAvailable((Integer) args[0])) {
+                    stalls++;
+                }
+                ((long[]) args[2])[(Integer) args[3]] = timestamps.get(args[0]);
+            }
+            return null;
+        }
+
+        private boolean isAvailable(int query) {
+            return available && timestamps.get(query) <= completed;
+        }
+
+        private GL3 getGL() {
+            return (GL3) Proxy.newProxyInstance(GL3.class.getClassLoader(), new Class<?>[] { GL3.class }, this);
+        }
+    }
+
+    private static void frame(GL3 gl, GpuProfiler profiler) {
+        profiler.frameStarted(gl);
+        profiler.begin(gl, "scene");
+        profiler.begin(gl, "earth");
+        profiler.end(gl);
+        profiler.end(gl);
+        profiler.begin(gl, "post");
+        profiler.end(gl);
+        profiler.frameEnded();
+    }
+
+    /**
+     * Test that results are read back only when their slot in the ring comes
+     * around, and recorded per scope.
+     */
+    @Test
+    public final void testRing() {
+        FrameMetrics metrics = new FrameMetrics();
+        metrics.setEnabled(true);
+        FakeGPU gpu = new FakeGPU();
+        GL3 gl = gpu.getGL();
+        GpuProfiler profiler = new GpuProfiler(metrics, 3);
+
+        for (int i = 0; i < 3; i++) {
+            frame(gl, profiler);
+        }
+        assertEquals(0, gpu.reads);
+        assertTrue(metrics.snapshot().getGpuScopes().isEmpty());
+
+        // The fourth frame reuses, and so reads back, the first slot
+        frame(gl, profiler);
+        assertEquals(6, gpu.reads);
+
+        FrameMetricsSnapshot snapshot = metrics.snapshot();
+        assertEquals(3, snapshot.getGpuScopes().size());
+        assertEquals(1, snapshot.getGpuSamples("scene"));
+        assertEquals(3 * TICK / 1E6, snapshot.getGpuMaxMillis("scene"), 1E-6);
+        assertEquals(TICK / 1E6, snapshot.getGpuMaxMillis("earth"), 1E-6);
+        assertEquals(TICK / 1E6, snapshot.getGpuMaxMillis("post"), 1E-6);
+        assertEquals(0, snapshot.getGpuSamples("unknown"));
+        assertTrue(snapshot.toString().contains("gpu earth"));
+
+        frame(gl, profiler);
+        assertEquals(2, metrics.getGpuHistogram("earth").getCount());
+        assertEquals(0, profiler.getDroppedFrames());
+    }
+
+    /**
+     * Test that frames whose results are late are dropped instead of waited
+     * for, and that nothing is queried while the metrics are disabled.
+     */
+    @Test
+    public final void testDropAndDisabled() {
+        FrameMetrics metrics = new FrameMetrics();
+        metrics.setEnabled(true);
+        FakeGPU gpu = new FakeGPU();
+        GL3 gl = gpu.getGL();
+        GpuProfiler profiler = new GpuProfiler(metrics, 2);
+
+        gpu.available = false;
+        for (int i = 0; i < 4; i++) {
+            frame(gl, profiler);
+        }
+        assertEquals(2, profiler.getDroppedFrames());
+        assertEquals(0, gpu.reads);
+
+        metrics.setEnabled(false);
+        int queries = gpu.timestamps.size();
+        long clock = gpu.clock;
+        frame(gl, profiler);
+        assertEquals(clock, gpu.clock);
+        assertEquals(queries, gpu.timestamps.size());
+    }
+
+    /**
+     * Test that a frame ending in nested scopes is only read back once the
+     * end of the outermost scope, issued last, is available.
+     */
+    @Test
+    public final void testNested() {
+        FrameMetrics metrics = new FrameMetrics();
+        metrics.setEnabled(true);
+        FakeGPU gpu = new FakeGPU();
+        GL3 gl = gpu.getGL();
+        GpuProfiler profiler = new GpuProfiler(metrics, 2);
+
+        for (int i = 0; i < 2; i++) {
+            profiler.frameStarted(gl);
+            profiler.begin(gl, "scene");
+            profiler.begin(gl, "earth");
+            profiler.end(gl);
+            profiler.end(gl);
+            profiler.frameEnded();
+        }
+
+        // The GPU has finished the inner scope of the first frame, but not the
+        // enclosing one.
+        gpu.completed = 3 * TICK;
+        profiler.frameStarted(gl);
+        profiler.frameEnded();
+        assertEquals(1, profiler.getDroppedFrames());
+        assertEquals(0, gpu.reads);
+        assertEquals(0, gpu.stalls);
+
+        gpu.completed = Long.MAX_VALUE;
+        profiler.frameStarted(gl);
+        profiler.frameEnded();
+        assertEquals(0, gpu.stalls);
+        assertEquals(4, gpu.reads);
+
+        FrameMetricsSnapshot snapshot = metrics.snapshot();
+        assertEquals(3 * TICK / 1E6, snapshot.getGpuMaxMillis("scene"), 1E-6);
+        assertEquals(TICK / 1E6, snapshot.getGpuMaxMillis("earth"), 1E-6);
+    }
+
+    /**
+     * Test method for {@link GpuProfiler#end(GL3)} without a matching begin.
+     */
+    @Test(expected = IllegalStateException.class)
+    public final void testUnbalancedEnd() {
+        FrameMetrics metrics = new FrameMetrics();
+        metrics.setEnabled(true);
+        GL3 gl = new FakeGPU().getGL();
+        GpuProfiler profiler = new GpuProfiler(metrics);
+
+        profiler.frameStarted(gl);
+        profiler.end(gl);
+    }
+}
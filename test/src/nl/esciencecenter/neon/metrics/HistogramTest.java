@@ -0,0 +1,104 @@
+package nl.esciencecenter.neon.metrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+/* Copyright 2013 Netherlands eScience Center
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * @author Maarten van Meersbergen <m.van.meersbergen@esciencecenter.nl>
+ * 
+ */
+public class HistogramTest {
+    /**
+     * Test that every value falls in a bucket whose upper bound is at least
+     * the value and at most 12.5% more.
+     */
+    @Test
+    public final void testBuckets() {
+        Random random = new Random(1);
+        for (int i = 0; i < 100000; i++) {
+            long value = random.nextLong() >>> (1 + random.nextInt(63));
+            long upper = Histogram.upperBound(Histogram.index(value));
+            assertTrue(upper >= value);
+            assertTrue(upper - value <= value / Histogram.SUB_BUCKETS);
+            assertEquals(Histogram.index(value), Histogram.index(upper));
+        }
+        assertEquals(Long.MAX_VALUE, Histogram.upperBound(Histogram.index(Long.MAX_VALUE)));
+    }
+
+    /**
+     * Test method for {@link Histogram#record(long)} and the statistics.
+     */
+    @Test
+    public final void testStatistics() {
+        Histogram histogram = new Histogram();
+        assertEquals(0L, histogram.getPercentile(50.0));
+        assertEquals(0.0, histogram.getMean(), 0.0);
+
+        for (int i = 1; i <= 1000; i++) {
+            histogram.record(i * 1000L);
+        }
+        histogram.record(-5L);
+
+        assertEquals(1001, histogram.getCount());
+        assertEquals(500500000L, histogram.getSum());
+        assertEquals(1000000L, histogram.getMax());
+        assertEquals(500500000.0 / 1001, histogram.getMean(), 1E-6);
+
+        long median = histogram.getPercentile(50.0);
+        assertTrue(median >= 500000L && median <= 500000L * 9 / 8);
+        long p99 = histogram.getPercentile(99.0);
+        assertTrue(p99 >= 990000L && p99 <= 1000000L);
+        assertEquals(0L, histogram.getPercentile(0.0));
+        assertEquals(1000000L, histogram.getPercentile(100.0));
+
+        histogram.reset();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0L, histogram.getMax());
+    }
+
+    /**
+     * Test that concurrent recording loses no values.
+     */
+    @Test
+    public final void testConcurrentRecord() throws InterruptedException {
+        final Histogram histogram = new Histogram();
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            final int offset = t;
+            threads[t] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < 10000; i++) {
+                        histogram.record(i + offset);
+                    }
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(40000, histogram.getCount());
+        assertEquals(10002L, histogram.getMax());
+    }
+}
@@ -0,0 +1,189 @@
+package nl.esciencecenter.neon.models;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import nl.esciencecenter.neon.math.Float4Matrix;
+import nl.esciencecenter.neon.math.FloatMatrixMath;
+
+import org.junit.Test;
+
+/* Copyright 2013 Netherlands eScience Center
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * Tests the tessellation chosen by {@link LodGeoSphere}. Selection happens in
+ * setView, before anything is uploaded, so no GL context is needed. The
+ * projection has a vertical field of view of 90 degrees and the viewport is
+ * 1000 pixels high, so one unit at unit distance covers 500 pixels.
+ * 
+ * @author Maarten van Meersbergen <m.van.meersbergen@esciencecenter.nl>
+ * 
+ */
+public class LodGeoSphereTest {
+    private static final int VIEWPORT_HEIGHT = 1000;
+    private static final float PIXELS_PER_UNIT = VIEWPORT_HEIGHT * .5f;
+    /** The vertices of a single patch of 8 by 8 quads. */
+    private static final int PATCH_VERTICES = 8 * 8 * 6;
+
+    private final Float4Matrix p = FloatMatrixMath.perspective(90f, 1f, .001f, 10000f);
+
+    /**
+     * Returns the smallest distance to the surface at which a level with the
+     * given number of longitude ribs stays within the tolerance.
+     */
+    private static float threshold(int lonRibs, float radius, float tolerance) {
+        double sagitta = radius * (1.0 - Math.cos(Math.PI / lonRibs));
+        return (float) (sagitta * PIXELS_PER_UNIT / tolerance);
+    }
+
+    /**
+     * Test method for
+     * {@link LodGeoSphere#setView(float, Float4Matrix, int)} in
+     * {@link LodGeoSphere.Mode#LEVELS} mode.
+     */
+    @Test
+    public final void testLevelAtDistance() {
+        LodGeoSphere sphere = new LodGeoSphere(1f, false, LodGeoSphere.Mode.LEVELS);
+        int[] ribs = LodGeoSphere.DEFAULT_LEVELS;
+
+        for (int i = 0; i < ribs.length; i++) {
+            float threshold = threshold(ribs[i], 1f, 1f);
+
+            // Just far enough away for this level, and just too close for it.
+            sphere.setView(1f + threshold * 1.1f, p, VIEWPORT_HEIGHT);
+            assertEquals(i, sphere.getCurrentLevel());
+            sphere.setView(1f + threshold * .9f, p, VIEWPORT_HEIGHT);
+            assertEquals(Math.min(i + 1, ribs.length - 1), sphere.getCurrentLevel());
+        }
+
+        // Far away the coarsest level is used; on the surface, the finest.
+        sphere.setView(1000f, p, VIEWPORT_HEIGHT);
+        assertEquals(0, sphere.getCurrentLevel());
+        sphere.setView(1f, p, VIEWPORT_HEIGHT);
+        assertEquals(ribs.length - 1, sphere.getCurrentLevel());
+
+        // The view distance is signed.
+        sphere.setView(-1f - threshold(ribs[2], 1f, 1f) * 1.1f, p, VIEWPORT_HEIGHT);
+        assertEquals(2, sphere.getCurrentLevel());
+    }
+
+    /**
+     * Test method for
+     * {@link LodGeoSphere#setView(Float4Matrix, Float4Matrix, int)} in
+     * {@link LodGeoSphere.Mode#LEVELS} mode, with the camera off the z axis
+     * and a scaled sphere.
+     */
+    @Test
+    public final void testLevelFromModelview() {
+        LodGeoSphere sphere = new LodGeoSphere(1f, false, LodGeoSphere.Mode.LEVELS);
+        float distance = 1f + threshold(LodGeoSphere.DEFAULT_LEVELS[3], 1f, 1f) * 1.1f;
+
+        // Rotating the sphere moves the camera onto the x axis in model
+        // coordinates, at the same distance.
+        Float4Matrix mv = FloatMatrixMath.translate(0f, 0f, -distance).mul(FloatMatrixMath.rotationY(-90f));
+        sphere.setView(mv, p, VIEWPORT_HEIGHT);
+        assertEquals(3, sphere.getCurrentLevel());
+
+        // Scaling the model up by two scales the camera distance in model
+        // coordinates down by two.
+        Float4Matrix scaled = FloatMatrixMath.translate(0f, 0f, -distance).mul(FloatMatrixMath.scale(2f));
+        sphere.setView(scaled, p, VIEWPORT_HEIGHT);
+        assertTrue(sphere.getCurrentLevel() > 3);
+    }
+
+    /**
+     * Test method for {@link LodGeoSphere#setTolerance(float)} and
+     * {@link LodGeoSphere#getNumVertices()} in
+     * {@link LodGeoSphere.Mode#LEVELS} mode.
+     */
+    @Test
+    public final void testLevelTolerance() {
+        int[] ribs = new int[] { 4, 12, 40 };
+        LodGeoSphere sphere = new LodGeoSphere(2f, false, LodGeoSphere.Mode.LEVELS, ribs);
+        float distance = threshold(ribs[1], 2f, 1f) * 1.1f;
+
+        sphere.setView(2f + distance, p, VIEWPORT_HEIGHT);
+        assertEquals(1, sphere.getCurrentLevel());
+        assertEquals(new GeoSphere(6, 12, 2f, false).getNumVertices(), sphere.getNumVertices());
+
+        // A stricter tolerance needs more ribs, a looser one fewer.
+        sphere.setTolerance(.5f);
+        sphere.setView(2f + distance, p, VIEWPORT_HEIGHT);
+        assertEquals(2, sphere.getCurrentLevel());
+        assertEquals(new GeoSphere(20, 40, 2f, false).getNumVertices(), sphere.getNumVertices());
+
+        sphere.setTolerance(1000f);
+        sphere.setView(2f + distance, p, VIEWPORT_HEIGHT);
+        assertEquals(0, sphere.getCurrentLevel());
+        assertEquals(new GeoSphere(2, 4, 2f, false).getNumVertices(), sphere.getNumVertices());
+    }
+
+    /**
+     * Test method for {@link LodGeoSphere#getNumSelectedPatches()} in
+     * {@link LodGeoSphere.Mode#PATCHES} mode, without subdivision.
+     */
+    @Test
+    public final void testPatchesHorizon() {
+        LodGeoSphere sphere = new LodGeoSphere(1f, false, LodGeoSphere.Mode.PATCHES);
+        sphere.setTolerance(1000f);
+
+        // From far away, all 8 root patches reach over the horizon.
+        sphere.setView(1000f, p, VIEWPORT_HEIGHT);
+        assertEquals(8, sphere.getNumSelectedPatches());
+        assertEquals(8 * PATCH_VERTICES, sphere.getNumVertices());
+
+        // Close to the surface, the 4 patches on the far side are culled.
+        sphere.setView(1.001f, p, VIEWPORT_HEIGHT);
+        assertEquals(4, sphere.getNumSelectedPatches());
+        assertEquals(4 * PATCH_VERTICES, sphere.getNumVertices());
+    }
+
+    /**
+     * Test method for {@link LodGeoSphere#getNumSelectedPatches()} in
+     * {@link LodGeoSphere.Mode#PATCHES} mode, with subdivision.
+     */
+    @Test
+    public final void testPatchesSubdivision() {
+        LodGeoSphere sphere = new LodGeoSphere(1f, false, LodGeoSphere.Mode.PATCHES);
+
+        // The camera sits far above the north pole, so every patch is about
+        // 1000 units away. The edges of the root patches span 90 / 8 degrees,
+        // which gives an error of about 0.0024 pixels; those of their
+        // children about 0.0006 pixels.
+        Float4Matrix mv = FloatMatrixMath.translate(0f, 0f, -1000f).mul(FloatMatrixMath.rotationX(90f));
+
+        sphere.setTolerance(.003f);
+        sphere.setView(mv, p, VIEWPORT_HEIGHT);
+        assertEquals(8, sphere.getNumSelectedPatches());
+
+        // Every root is split once. Of the 32 children, the 8 around the
+        // south pole are below the horizon.
+        sphere.setTolerance(.001f);
+        sphere.setView(mv, p, VIEWPORT_HEIGHT);
+        assertEquals(24, sphere.getNumSelectedPatches());
+        assertEquals(24 * PATCH_VERTICES, sphere.getNumVertices());
+
+        // A stricter tolerance splits the children as well.
+        sphere.setTolerance(.0003f);
+        sphere.setView(mv, p, VIEWPORT_HEIGHT);
+        int patches = sphere.getNumSelectedPatches();
+        assertTrue(patches > 24);
+        assertEquals(patches * PATCH_VERTICES, sphere.getNumVertices());
+
+        // Selecting again from the same view gives the same patches.
+        sphere.setView(mv, p, VIEWPORT_HEIGHT);
+        assertEquals(patches, sphere.getNumSelectedPatches());
+    }
+}
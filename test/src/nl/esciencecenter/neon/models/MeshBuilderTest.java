@@ -0,0 +1,216 @@
+package nl.esciencecenter.neon.models;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.FloatBuffer;
+
+import nl.esciencecenter.neon.math.Float3Vector;
+
+import org.junit.Test;
+
+/* Copyright 2013 Netherlands eScience Center
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * Tests {@link MeshBuilder}, and the vertex attributes of the models built
+ * with it. The models are not indexed: every triangle (or line) has its own
+ * vertices, so the vertex counts double as index counts.
+ * 
+ * @author Maarten van Meersbergen <m.van.meersbergen@esciencecenter.nl>
+ * 
+ */
+public class MeshBuilderTest {
+    private static final float EPSILON = 1E-5f;
+
+    /**
+     * Checks the attribute buffer sizes of a model, and returns its vertex
+     * count.
+     */
+    private static int checkSizes(Model model, int verticesPerPrimitive) {
+        int numVertices = model.getNumVertices();
+        assertEquals(0, numVertices % verticesPerPrimitive);
+        assertEquals(numVertices * 4, model.getVertices().capacity());
+        assertEquals(numVertices * 3, model.getNormals().capacity());
+        assertEquals(numVertices * 3, model.getTexCoords().capacity());
+        return numVertices;
+    }
+
+    private static void assertNormal(Model model, int vertex, float x, float y, float z) {
+        FloatBuffer normals = model.getNormals();
+        assertEquals(x, normals.get(vertex * 3), EPSILON);
+        assertEquals(y, normals.get(vertex * 3 + 1), EPSILON);
+        assertEquals(z, normals.get(vertex * 3 + 2), EPSILON);
+    }
+
+    /**
+     * Checks that every normal has unit length and points along the position,
+     * scaled by the given factor.
+     */
+    private static void assertRadialNormals(Model model, float radius) {
+        FloatBuffer vertices = model.getVertices();
+        for (int i = 0; i < model.getNumVertices(); i++) {
+            assertNormal(model, i, vertices.get(i * 4) / radius, vertices.get(i * 4 + 1) / radius,
+                    vertices.get(i * 4 + 2) / radius);
+            assertEquals(1f, vertices.get(i * 4 + 3), 0f);
+        }
+    }
+
+    /**
+     * Test method for the appending and finalizing methods of
+     * {@link MeshBuilder}.
+     */
+    @Test
+    public final void testBuilder() {
+        MeshBuilder builder = new MeshBuilder(1);
+        builder.position(1f, 2f, 3f).normalized(0f, 3f, 4f).texCoord(.5f, .25f, 0f);
+        builder.position(4f, 5f, 6f, 0f).normalized(0f, 0f, 0f).texCoord(1f, 1f, 1f);
+        builder.color(1f, 0f, 0f, 1f);
+        assertEquals(2, builder.getNumVertices());
+        assertEquals(1, builder.getNumColors());
+
+        FloatBuffer positions = builder.positionsToBuffer();
+        assertTrue(positions.isDirect());
+        assertEquals(8, positions.capacity());
+        assertEquals(1f, positions.get(3), 0f);
+        assertEquals(0f, positions.get(7), 0f);
+
+        FloatBuffer normals = builder.normalsToBuffer();
+        assertEquals(6, normals.capacity());
+        assertEquals(.6f, normals.get(1), EPSILON);
+        assertEquals(.8f, normals.get(2), EPSILON);
+        assertEquals(0f, normals.get(5), 0f);
+
+        assertEquals(6, builder.texCoordsToBuffer().capacity());
+        assertEquals(4, builder.colorsToBuffer().capacity());
+
+        builder.reset();
+        assertEquals(0, builder.getNumVertices());
+        assertEquals(0, builder.positionsToBuffer().capacity());
+
+        float[] corners = { 0f, 0f, 0f, 0f, 1f, 0f, 1f, 1f, 0f, 1f, 0f, 0f };
+        builder.quad(corners, 0, 1, 2, 3, 0f, 0f, 1f);
+        assertEquals(6, builder.getNumVertices());
+        FloatBuffer texCoords = builder.texCoordsToBuffer();
+        assertEquals(1f, texCoords.get(2 * 3), 0f);
+        assertEquals(1f, texCoords.get(2 * 3 + 1), 0f);
+    }
+
+    /**
+     * Test method for {@link MeshBuilder#applyTo(Model)} with missing
+     * attributes.
+     */
+    @Test(expected = IllegalStateException.class)
+    public final void testApplyToIncomplete() {
+        MeshBuilder builder = new MeshBuilder();
+        builder.position(0f, 0f, 0f).normal(0f, 0f, 1f);
+        builder.applyTo(new Quad(1f, 1f, new Float3Vector()));
+    }
+
+    /**
+     * Test the quads.
+     */
+    @Test
+    public final void testQuads() {
+        Model[] quads = { new Quad(2f, 3f, new Float3Vector(1f, 1f, 0f)),
+                new LeftBottomQuad(2f, 3f, new Float3Vector(1f, 1f, 0f)) };
+        for (Model quad : quads) {
+            assertEquals(6, checkSizes(quad, 3));
+            for (int i = 0; i < 6; i++) {
+                assertNormal(quad, i, 0f, 0f, -1f);
+            }
+        }
+    }
+
+    /**
+     * Test the box, with and without bottom: one flat face of 2 triangles per
+     * side, with the normal of that side.
+     */
+    @Test
+    public final void testBox() {
+        assertEquals(5 * 6, checkSizes(new Box(1f, 2f, 3f, false), 3));
+
+        Box box = new Box(1f, 2f, 3f, true);
+        assertEquals(6 * 6, checkSizes(box, 3));
+
+        // front, right, bottom, top, back, left
+        float[][] sides = { { 0, 0, -1 }, { 1, 0, 0 }, { 0, -1, 0 }, { 0, 1, 0 }, { 0, 0, 1 }, { -1, 0, 0 } };
+        FloatBuffer vertices = box.getVertices();
+        for (int side = 0; side < sides.length; side++) {
+            float[] n = sides[side];
+            float plane = Float.NaN;
+            for (int i = side * 6; i < side * 6 + 6; i++) {
+                assertNormal(box, i, n[0], n[1], n[2]);
+
+                // All corners of a side lie in a plane perpendicular to it
+                float distance = vertices.get(i * 4) * n[0] + vertices.get(i * 4 + 1) * n[1] + vertices.get(i * 4 + 2)
+                        * n[2];
+                if (Float.isNaN(plane)) {
+                    plane = distance;
+                    assertTrue(Math.abs(plane) > .4f);
+                }
+                assertEquals(plane, distance, EPSILON);
+            }
+        }
+    }
+
+    /**
+     * Test the icosahedron based sphere: 20 triangles, each divided in 4 per
+     * division, with normals equal to the (unit) positions.
+     */
+    @Test
+    public final void testSphere() {
+        assertEquals(20 * 3, checkSizes(new Sphere(0, false), 3));
+
+        Sphere sphere = new Sphere(2, true);
+        assertEquals(20 * 3 * 4 * 4, checkSizes(sphere, 3));
+        assertRadialNormals(sphere, 1f);
+    }
+
+    /**
+     * Test the latitude/longitude spheres: 2 triangles per rib crossing, with
+     * normals equal to the positions divided by the radius.
+     */
+    @Test
+    public final void testGeoSpheres() {
+        GeoSphere geoSphere = new GeoSphere(8, 12, 2f, false);
+        assertEquals(8 * 12 * 6, checkSizes(geoSphere, 3));
+        assertRadialNormals(geoSphere, 2f);
+
+        InvertedGeoSphere inverted = new InvertedGeoSphere(8, 12, 2f, true);
+        assertEquals(8 * 12 * 6, checkSizes(inverted, 3));
+        assertRadialNormals(inverted, 2f);
+    }
+
+    /**
+     * Test the axis: a line from start to end, and a tick (a line of two
+     * vertices) on both sides for every major and minor interval.
+     */
+    @Test
+    public final void testAxis() {
+        Axis axis = new Axis(new Float3Vector(-1f, 0f, 0f), new Float3Vector(1f, 0f, 0f), .5f, .25f);
+
+        // Major: 2 / .5 = 4 intervals, ticks at +-0.5. Minor: 8 intervals,
+        // ticks at +-0.25, +-0.5 and +-0.75.
+        assertEquals(2 + 2 * 2 + 6 * 2, checkSizes(axis, 2));
+        assertNormal(axis, 0, 1f, 0f, 0f);
+        assertNormal(axis, 1, -1f, 0f, 0f);
+
+        // Ticks are perpendicular to the axis
+        for (int i = 2; i < axis.getNumVertices(); i++) {
+            assertEquals(0f, axis.getNormals().get(i * 3), EPSILON);
+        }
+    }
+}
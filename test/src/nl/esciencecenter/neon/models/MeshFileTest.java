@@ -0,0 +1,151 @@
+package nl.esciencecenter.neon.models;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+
+import nl.esciencecenter.neon.datastructures.GLSLAttribute;
+import nl.esciencecenter.neon.math.Float3Vector;
+import nl.esciencecenter.neon.models.Model.VertexFormat;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/* Copyright 2013 Netherlands eScience Center
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * @author Maarten van Meersbergen <m.van.meersbergen@esciencecenter.nl>
+ * 
+ */
+public class MeshFileTest {
+    private File file;
+
+    @Before
+    public void setUp() throws IOException {
+        file = File.createTempFile("neon", ".mesh");
+    }
+
+    @After
+    public void tearDown() {
+        file.delete();
+    }
+
+    private static int[] bits(FloatBuffer buffer) {
+        int[] result = new int[buffer.capacity()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = Float.floatToRawIntBits(buffer.get(i));
+        }
+        return result;
+    }
+
+    /**
+     * Test method for
+     * {@link nl.esciencecenter.neon.models.MeshFile#write(java.io.File, nl.esciencecenter.neon.models.Model)}
+     * and {@link nl.esciencecenter.neon.models.MeshFile#read(java.io.File)}.
+     */
+    @Test
+    public final void testModelRoundTrip() throws IOException {
+        Model[] models = new Model[] { new GeoSphere(10, 12, 2f, false), new Sphere(2, true), new Box(1f, 2f, 3f, true),
+                new Axis(new Float3Vector(-1, 0, 0), new Float3Vector(1, 0, 0), .1f, .05f) };
+
+        for (Model expected : models) {
+            MeshFile.write(file, expected);
+            MappedModel actual = MeshFile.read(file);
+
+            assertEquals(expected.getFormat(), actual.getFormat());
+            assertEquals(expected.getNumVertices(), actual.getNumVertices());
+            assertArrayEquals(bits(expected.getVertices()), bits(actual.getVertices()));
+            assertArrayEquals(bits(expected.getNormals()), bits(actual.getNormals()));
+            assertArrayEquals(bits(expected.getTexCoords()), bits(actual.getTexCoords()));
+            assertNull(actual.getIndices());
+        }
+    }
+
+    /**
+     * Test method for
+     * {@link nl.esciencecenter.neon.models.MeshFile#write(java.io.File, nl.esciencecenter.neon.models.Model.VertexFormat, int, nl.esciencecenter.neon.datastructures.GLSLAttribute[], java.nio.IntBuffer)}
+     * with custom attributes and indices.
+     */
+    @Test
+    public final void testIndexedRoundTrip() throws IOException {
+        FloatBuffer positions = FloatBuffer.wrap(new float[] { 0f, 0f, 0f, 1f, 0f, 0f, 1f, 1f, 0f, 0f, 1f, 0f });
+        FloatBuffer colors = FloatBuffer.wrap(new float[] { 1f, 0f, 0f, 1f, 0f, 1f, 0f, 1f, 0f, 0f, 1f, 1f, 1f, 1f,
+                1f, 1f });
+        IntBuffer indices = IntBuffer.wrap(new int[] { 0, 1, 2, 0, 2, 3 });
+
+        GLSLAttribute[] attribs = new GLSLAttribute[] {
+                new GLSLAttribute(positions, "MCvertex3", GLSLAttribute.SIZE_FLOAT, 3),
+                new GLSLAttribute(colors, "vertex_color", GLSLAttribute.SIZE_FLOAT, 4) };
+
+        MeshFile.write(file, VertexFormat.TRIANGLES, 4, attribs, indices);
+        MappedModel actual = MeshFile.read(file);
+
+        GLSLAttribute[] actualAttribs = actual.getAttribs();
+        assertEquals(2, actualAttribs.length);
+        assertEquals("MCvertex3", actualAttribs[0].getName());
+        assertEquals(3, actualAttribs[0].getNumVectors());
+        assertEquals("vertex_color", actualAttribs[1].getName());
+        assertEquals(4, actualAttribs[1].getNumVectors());
+
+        assertArrayEquals(bits(positions), bits((FloatBuffer) actualAttribs[0].getBuffer()));
+        assertArrayEquals(bits(colors), bits((FloatBuffer) actualAttribs[1].getBuffer()));
+
+        IntBuffer actualIndices = actual.getIndices();
+        assertEquals(indices.capacity(), actualIndices.capacity());
+        for (int i = 0; i < indices.capacity(); i++) {
+            assertEquals(indices.get(i), actualIndices.get(i));
+        }
+    }
+
+    /**
+     * Test method for {@link nl.esciencecenter.neon.models.MeshFile#read(java.io.File)}
+     * with invalid input.
+     */
+    @Test
+    public final void testReadInvalid() throws IOException {
+        FileOutputStream out = new FileOutputStream(file);
+        out.write(new byte[] { 1, 2, 3, 4, 5, 6, 7, 8 });
+        out.close();
+
+        try {
+            MeshFile.read(file);
+            fail("Expected an IOException");
+        } catch (IOException e) {
+            // expected
+        }
+
+        MeshFile.write(file, new Quad(1f, 1f, new Float3Vector()));
+        // Truncate the vertex block
+        java.io.RandomAccessFile raf = new java.io.RandomAccessFile(file, "rw");
+        raf.setLength(raf.length() - 8);
+        raf.close();
+
+        try {
+            MeshFile.read(file);
+            fail("Expected an IOException");
+        } catch (IOException e) {
+            // expected
+        }
+    }
+}
@@ -0,0 +1,259 @@
+package nl.esciencecenter.neon.models.graphs;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import nl.esciencecenter.neon.math.Float4Matrix;
+import nl.esciencecenter.neon.math.FloatMatrixMath;
+import nl.esciencecenter.neon.models.graphs.PointCloudOctree.Node;
+
+import org.junit.Test;
+
+/* Copyright 2013 Netherlands eScience Center
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * Tests the CPU side of the point cloud level of detail: building the octree,
+ * and selecting nodes within a point budget with frustum culling.
+ * 
+ * @author Maarten van Meersbergen <m.van.meersbergen@esciencecenter.nl>
+ * 
+ */
+public class PointCloudOctreeTest {
+    private static final int STRIDE = 4;
+
+    /**
+     * Makes a cube shaped cluster of random points around the given center.
+     */
+    private static void cluster(FloatBuffer result, Random random, int points, float x, float y, float z, float size) {
+        for (int i = 0; i < points; i++) {
+            result.put(x + (random.nextFloat() - .5f) * size);
+            result.put(y + (random.nextFloat() - .5f) * size);
+            result.put(z + (random.nextFloat() - .5f) * size);
+            result.put(1f);
+        }
+    }
+
+    private static FloatBuffer cube(int points) {
+        FloatBuffer result = FloatBuffer.allocate(points * STRIDE);
+        cluster(result, new Random(1L), points, 0f, 0f, 0f, 2f);
+        result.rewind();
+        return result;
+    }
+
+    /**
+     * Collects every node by its first index, with its parent.
+     */
+    private static void index(Node node, Node parent, Map<Integer, Node> nodes, Map<Node, Node> parents) {
+        nodes.put(node.getFirst(), node);
+        parents.put(node, parent);
+        for (int o = 0; o < 8; o++) {
+            Node child = node.getChild(o);
+            if (child != null) {
+                index(child, node, nodes, parents);
+            }
+        }
+    }
+
+    /**
+     * Checks that the selection fits the budget and contains the ancestors of
+     * every selected node, and returns the selected nodes.
+     */
+    private static Map<Node, Boolean> checkSelection(PointCloudOctree octree, int budget) {
+        Map<Integer, Node> nodes = new HashMap<Integer, Node>();
+        Map<Node, Node> parents = new HashMap<Node, Node>();
+        index(octree.getRoot(), null, nodes, parents);
+
+        IntBuffer firsts = octree.getSelectedFirsts();
+        IntBuffer counts = octree.getSelectedCounts();
+        assertEquals(octree.getSelectedNodes(), firsts.remaining());
+        assertEquals(octree.getSelectedNodes(), counts.remaining());
+
+        Map<Node, Boolean> selected = new HashMap<Node, Boolean>();
+        int points = 0;
+        for (int i = 0; i < firsts.remaining(); i++) {
+            Node node = nodes.get(firsts.get(i));
+            assertNotNull(node);
+            assertEquals(node.getCount(), counts.get(i));
+            selected.put(node, true);
+            points += node.getCount();
+        }
+        assertEquals(octree.getSelectedPoints(), points);
+        assertTrue(points <= budget);
+
+        for (Node node : selected.keySet()) {
+            Node parent = parents.get(node);
+            assertTrue(parent == null || selected.containsKey(parent));
+        }
+        return selected;
+    }
+
+    /**
+     * Test method for {@link PointCloudOctree#build(FloatBuffer, int)}.
+     */
+    @Test
+    public final void testBuild() {
+        FloatBuffer vertices = cube(10000);
+        PointCloudOctree octree = new PointCloudOctree(500);
+        int[] order = octree.build(vertices, STRIDE);
+
+        // A permutation
+        boolean[] seen = new boolean[order.length];
+        for (int index : order) {
+            assertFalse(seen[index]);
+            seen[index] = true;
+        }
+
+        // Nodes cover all points in disjoint contiguous ranges
+        Map<Integer, Node> nodes = new HashMap<Integer, Node>();
+        index(octree.getRoot(), null, nodes, new HashMap<Node, Node>());
+        assertEquals(octree.getNumNodes(), nodes.size());
+        int covered = 0;
+        for (Node node : nodes.values()) {
+            assertTrue(node.getCount() <= 500);
+            covered += node.getCount();
+        }
+        assertEquals(10000, covered);
+        assertEquals(0, octree.getRoot().getFirst());
+        assertEquals(500, octree.getRoot().getCount());
+        assertEquals(0, octree.getRoot().getDepth());
+
+        // The children of the root hold the points of their octant of the
+        // bounding box
+        float[] center = new float[3];
+        for (int axis = 0; axis < 3; axis++) {
+            float min = Float.MAX_VALUE, max = -Float.MAX_VALUE;
+            for (int i = 0; i < 10000; i++) {
+                min = Math.min(min, vertices.get(i * STRIDE + axis));
+                max = Math.max(max, vertices.get(i * STRIDE + axis));
+            }
+            center[axis] = (min + max) * .5f;
+        }
+        for (int o = 0; o < 8; o++) {
+            Node child = octree.getRoot().getChild(o);
+            assertEquals(1, child.getDepth());
+            for (int i = child.getFirst(); i < child.getFirst() + child.getCount(); i++) {
+                int point = order[i];
+                assertEquals((o & 1) != 0, vertices.get(point * STRIDE) >= center[0]);
+                assertEquals((o & 2) != 0, vertices.get(point * STRIDE + 1) >= center[1]);
+                assertEquals((o & 4) != 0, vertices.get(point * STRIDE + 2) >= center[2]);
+            }
+        }
+
+        octree.build(FloatBuffer.allocate(0), STRIDE);
+        assertNull(octree.getRoot());
+        assertEquals(0, octree.select(null, 1000f, 100));
+    }
+
+    /**
+     * Test that {@link PointCloudOctree#select(Float4Matrix, float, int)} fills
+     * the budget coarse to fine, and drops nodes that do not fit together with
+     * their subtrees.
+     */
+    @Test
+    public final void testBudget() {
+        PointCloudOctree octree = new PointCloudOctree(500);
+        octree.build(cube(10000), STRIDE);
+
+        assertEquals(octree.getNumNodes(), octree.select(null, 1000f, 10000));
+        assertEquals(10000, octree.getSelectedPoints());
+        checkSelection(octree, 10000);
+
+        // Only the root fits
+        assertEquals(1, octree.select(null, 1000f, 999));
+        assertEquals(0, octree.getSelectedFirsts().get(0));
+        checkSelection(octree, 999);
+
+        // The root and its 8 children fill the budget exactly
+        assertEquals(9, octree.select(null, 1000f, 9 * 500));
+        for (Node node : checkSelection(octree, 9 * 500).keySet()) {
+            assertTrue(node.getDepth() <= 1);
+        }
+
+        // The depth 2 nodes are much smaller, so some of them still fit
+        assertTrue(octree.select(null, 1000f, 9 * 500 + 499) > 9);
+        checkSelection(octree, 9 * 500 + 499);
+
+        assertEquals(0, octree.select(null, 1000f, 499));
+        assertEquals(0, octree.getSelectedPoints());
+    }
+
+    /**
+     * Test that nodes behind the camera are culled, and that nearby nodes are
+     * preferred over distant ones.
+     */
+    @Test
+    public final void testCullingAndPriority() {
+        Random random = new Random(2L);
+        FloatBuffer vertices = FloatBuffer.allocate(8000 * STRIDE);
+        cluster(vertices, random, 4000, 0f, 0f, -5f, 1f);
+        cluster(vertices, random, 4000, 0f, 0f, 5f, 1f);
+        vertices.rewind();
+
+        PointCloudOctree octree = new PointCloudOctree(200);
+        int[] order = octree.build(vertices, STRIDE);
+
+        // Everything behind the camera
+        assertEquals(0, octree.select(FloatMatrixMath.translate(0f, 0f, 20f), 1000f, 8000));
+
+        // Everything in front
+        octree.select(FloatMatrixMath.translate(0f, 0f, -20f), 1000f, 8000);
+        assertEquals(8000, octree.getSelectedPoints());
+
+        // Camera in between, looking at the cluster at z = -5. Nodes that
+        // only hold points of the other cluster are culled once they are
+        // small enough to lie entirely behind the camera.
+        octree.select(null, 1000f, 8000);
+        int all = octree.getSelectedNodes();
+        octree.select(FloatMatrixMath.translate(0f, 0f, 0f), 1000f, 8000);
+        assertTrue(octree.getSelectedNodes() < all);
+        int coarse = 0;
+        for (Node node : checkSelection(octree, 8000).keySet()) {
+            if (node.getDepth() >= 2) {
+                for (int i = node.getFirst(); i < node.getFirst() + node.getCount(); i++) {
+                    assertTrue(vertices.get(order[i] * STRIDE + 2) < 0f);
+                }
+            } else {
+                coarse++;
+            }
+        }
+        assertTrue(coarse > 1);
+
+        // Camera in front of both clusters, near the one at z = 5: with a
+        // small budget, the detail goes to the near cluster.
+        octree.select(FloatMatrixMath.translate(0f, 0f, -7f), 1000f, 2000);
+        int near = 0, far = 0;
+        for (Node node : checkSelection(octree, 2000).keySet()) {
+            if (node.getDepth() >= 2) {
+                if (vertices.get(order[node.getFirst()] * STRIDE + 2) > 0f) {
+                    near += node.getCount();
+                } else {
+                    far += node.getCount();
+                }
+            }
+        }
+        assertTrue(near > 0);
+        assertEquals(0, far);
+    }
+}
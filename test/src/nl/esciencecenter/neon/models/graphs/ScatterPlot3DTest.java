@@ -0,0 +1,113 @@
+package nl.esciencecenter.neon.models.graphs;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.FloatBuffer;
+import java.util.Random;
+
+import javax.media.opengl.GL3;
+
+import nl.esciencecenter.neon.StubGL3;
+import nl.esciencecenter.neon.math.FloatMatrixMath;
+import nl.esciencecenter.neon.metrics.FrameMetrics;
+import nl.esciencecenter.neon.metrics.FrameMetrics.Counter;
+import nl.esciencecenter.neon.metrics.GLCallCounter;
+
+import org.junit.After;
+import org.junit.Test;
+
+/* Copyright 2013 Netherlands eScience Center
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * Tests how {@link ScatterPlot3D} draws with and without a point budget,
+ * against a {@link StubGL3}.
+ * 
+ * @author Maarten van Meersbergen <m.van.meersbergen@esciencecenter.nl>
+ * 
+ */
+public class ScatterPlot3DTest {
+    private static final int POINTS = 20000;
+    private static final int BUDGET = 5000;
+
+    private static ScatterPlot3D plot() {
+        Random random = new Random(1L);
+        FloatBuffer points = FloatBuffer.allocate(POINTS * 4);
+        FloatBuffer colors = FloatBuffer.allocate(POINTS * 4);
+        for (int i = 0; i < POINTS; i++) {
+            points.put(random.nextFloat() * 2f - 1f).put(random.nextFloat() * 2f - 1f)
+                    .put(random.nextFloat() * 2f - 1f).put(1f);
+            colors.put(1f).put(1f).put(1f).put(1f);
+        }
+        points.rewind();
+        colors.rewind();
+
+        ScatterPlot3D plot = new ScatterPlot3D();
+        plot.addAll(points, colors);
+        plot.setView(FloatMatrixMath.translate(0f, 0f, -5f), FloatMatrixMath.perspective(60f, 1f, .1f, 100f), 1000);
+        return plot;
+    }
+
+    /**
+     * Restores the metrics changed by the tests.
+     */
+    @After
+    public final void tearDown() {
+        FrameMetrics.getInstance().setEnabled(Boolean.getBoolean("neon.metrics"));
+        FrameMetrics.getInstance().reset();
+    }
+
+    /**
+     * Test method for {@link ScatterPlot3D#setPointBudget(int)}: with a budget
+     * a subset of the points is drawn with one multi-draw call, and setting
+     * the budget back to 0 draws all points again without rebuilding.
+     */
+    @Test
+    public final void testPointBudget() {
+        GLCallCounter counter = new GLCallCounter(new StubGL3().getGL());
+        GL3 gl = counter.getGL();
+        FrameMetrics metrics = FrameMetrics.getInstance();
+        metrics.setEnabled(true);
+
+        ScatterPlot3D plot = plot();
+        plot.setPointsPerNode(1000);
+        plot.setPointBudget(BUDGET);
+        plot.init(gl);
+
+        counter.reset();
+        metrics.reset();
+        plot.drawVertices(gl);
+        int drawn = plot.getNumDrawnPoints();
+        assertTrue(drawn > 0 && drawn <= BUDGET);
+        assertEquals(1, counter.getCalls("glMultiDrawArrays"));
+        assertEquals(0, counter.getDrawCalls());
+        assertEquals(1, metrics.getCount(Counter.DRAW_CALLS));
+        assertEquals(drawn, metrics.getCount(Counter.VERTICES));
+
+        plot.setPointBudget(0);
+        plot.init(gl);
+
+        counter.reset();
+        metrics.reset();
+        plot.drawVertices(gl);
+        assertEquals(POINTS, plot.getNumDrawnPoints());
+        assertEquals(0, counter.getCalls("glMultiDrawArrays"));
+        assertEquals(1, counter.getCalls("glDrawArrays"));
+        assertEquals(0, counter.getCalls("glBufferData"));
+        assertEquals(1, metrics.getCount(Counter.DRAW_CALLS));
+        assertEquals(POINTS, metrics.getCount(Counter.VERTICES));
+    }
+}
@@ -0,0 +1,190 @@
+package nl.esciencecenter.neon.noise;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/* Copyright 2013 Netherlands eScience Center
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * @author Maarten van Meersbergen <m.van.meersbergen@esciencecenter.nl>
+ * 
+ */
+public class NoiseCacheTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private NoiseCache cache;
+    private NoiseGenerator generator;
+
+    /**
+     * Generator that counts its invocations, and fails on request.
+     */
+    private static class CountingGenerator extends NoiseGenerator {
+        private int generated = 0;
+        private boolean failing = false;
+
+        public CountingGenerator(long seed) {
+            super(2, .5f, .2f, seed);
+            setThreads(1);
+        }
+
+        @Override
+        public ByteBuffer generate3D(int width, int height, int depth) {
+            generated++;
+            if (failing) {
+                throw new IllegalStateException("Noise generation failed");
+            }
+            return super.generate3D(width, height, depth);
+        }
+    }
+
+    @Before
+    public void setUp() throws IOException {
+        cache = new NoiseCache(new File(folder.getRoot(), "noisecache"));
+        generator = new NoiseGenerator(2, .5f, .2f, 7L);
+        generator.setThreads(1);
+    }
+
+    private File[] entries() {
+        File[] files = cache.getDirectory().listFiles();
+        return files == null ? new File[0] : files;
+    }
+
+    /**
+     * Test method for {@link NoiseCache#get3D(NoiseGenerator, int, int, int)}
+     * on an empty cache.
+     */
+    @Test
+    public final void testMiss() {
+        CountingGenerator counting = new CountingGenerator(7L);
+        ByteBuffer result = cache.get3D(counting, 8, 4, 2);
+
+        assertEquals(1, counting.generated);
+        assertEquals(generator.generate3D(8, 4, 2), result);
+        assertEquals(1, entries().length);
+        assertEquals(20 + 8 * 4 * 2 * 4, entries()[0].length());
+    }
+
+    /**
+     * Test method for {@link NoiseCache#get3D(NoiseGenerator, int, int, int)}
+     * on a populated cache.
+     */
+    @Test
+    public final void testHit() {
+        ByteBuffer first = cache.get3D(generator, 8, 4, 2);
+
+        CountingGenerator counting = new CountingGenerator(7L);
+        ByteBuffer second = cache.get3D(counting, 8, 4, 2);
+
+        assertEquals(0, counting.generated);
+        assertEquals(first, second);
+        assertEquals(1, entries().length);
+    }
+
+    /**
+     * Test that changing any parameter or dimension gives a separate entry.
+     */
+    @Test
+    public final void testKeyChange() {
+        cache.get3D(generator, 8, 4, 2);
+
+        CountingGenerator otherSeed = new CountingGenerator(8L);
+        ByteBuffer result = cache.get3D(otherSeed, 8, 4, 2);
+        assertEquals(1, otherSeed.generated);
+        assertFalse(result.equals(generator.generate3D(8, 4, 2)));
+        assertEquals(2, entries().length);
+
+        cache.get2D(generator, 8, 4);
+        assertEquals(3, entries().length);
+
+        NoiseGenerator otherOctaves = new NoiseGenerator(3, .5f, .2f, 7L);
+        cache.get3D(otherOctaves, 8, 4, 2);
+        assertEquals(4, entries().length);
+    }
+
+    /**
+     * Test that a truncated entry is regenerated and rewritten.
+     */
+    @Test
+    public final void testTruncatedEntry() throws IOException {
+        ByteBuffer expected = cache.get3D(generator, 8, 4, 2);
+        File entry = entries()[0];
+        long size = entry.length();
+
+        RandomAccessFile raf = new RandomAccessFile(entry, "rw");
+        raf.setLength(size / 2);
+        raf.close();
+
+        CountingGenerator counting = new CountingGenerator(7L);
+        ByteBuffer result = cache.get3D(counting, 8, 4, 2);
+        assertEquals(1, counting.generated);
+        assertEquals(expected, result);
+        assertEquals(size, entry.length());
+
+        assertEquals(expected, cache.get3D(counting, 8, 4, 2));
+        assertEquals(1, counting.generated);
+    }
+
+    /**
+     * Test that an entry with a corrupt header is regenerated.
+     */
+    @Test
+    public final void testCorruptEntry() throws IOException {
+        ByteBuffer expected = cache.get3D(generator, 8, 4, 2);
+        File entry = entries()[0];
+
+        RandomAccessFile raf = new RandomAccessFile(entry, "rw");
+        raf.writeInt(0xdeadbeef);
+        raf.close();
+
+        CountingGenerator counting = new CountingGenerator(7L);
+        assertEquals(expected, cache.get3D(counting, 8, 4, 2));
+        assertEquals(1, counting.generated);
+        assertEquals(expected, cache.get3D(counting, 8, 4, 2));
+        assertEquals(1, counting.generated);
+    }
+
+    /**
+     * Test that nothing is stored when generation fails.
+     */
+    @Test
+    public final void testFailedGeneration() {
+        CountingGenerator counting = new CountingGenerator(7L);
+        counting.failing = true;
+        try {
+            cache.get3D(counting, 8, 4, 2);
+            fail("Expected an IllegalStateException");
+        } catch (IllegalStateException e) {
+            assertEquals(0, entries().length);
+        }
+
+        counting.failing = false;
+        cache.get3D(counting, 8, 4, 2);
+        assertEquals(2, counting.generated);
+        assertEquals(1, entries().length);
+    }
+}
@@ -0,0 +1,69 @@
+package nl.esciencecenter.neon.noise;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.nio.ByteBuffer;
+
+import org.junit.Test;
+
+/* Copyright 2013 Netherlands eScience Center
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * @author Maarten van Meersbergen <m.van.meersbergen@esciencecenter.nl>
+ * 
+ */
+public class NoiseGeneratorTest {
+    /**
+     * Test that {@link NoiseGenerator#generate3D(int, int, int)} gives the
+     * same volume on the shared pool as on the calling thread.
+     */
+    @Test
+    public final void testParallelEqualsSerial() {
+        NoiseGenerator serial = new NoiseGenerator(3, .5f, .1f, 42L);
+        serial.setThreads(1);
+        NoiseGenerator parallel = new NoiseGenerator(3, .5f, .1f, 42L);
+        parallel.setThreads(4);
+
+        ByteBuffer expected = serial.generate3D(16, 8, 4);
+        ByteBuffer actual = parallel.generate3D(16, 8, 4);
+        assertEquals(16 * 8 * 4 * 4, actual.capacity());
+        assertEquals(expected, actual);
+
+        // Again, on the same pool
+        assertEquals(expected, parallel.generate3D(16, 8, 4));
+    }
+
+    /**
+     * Test that an interrupted generation throws instead of returning a
+     * partially filled buffer, and keeps the interrupt flag set.
+     */
+    @Test
+    public final void testInterrupted() {
+        NoiseGenerator generator = new NoiseGenerator();
+        generator.setThreads(4);
+
+        Thread.currentThread().interrupt();
+        try {
+            generator.generate3D(64, 64, 16);
+            fail("Expected an IllegalStateException");
+        } catch (IllegalStateException e) {
+            assertTrue(e.getCause() instanceof InterruptedException);
+            assertTrue(Thread.interrupted());
+        }
+    }
+}
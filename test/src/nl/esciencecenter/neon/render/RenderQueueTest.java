@@ -0,0 +1,194 @@
+package nl.esciencecenter.neon.render;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+
+import javax.media.opengl.GL3;
+
+import nl.esciencecenter.neon.StubGL3;
+import nl.esciencecenter.neon.math.Color4;
+import nl.esciencecenter.neon.math.Float3Vector;
+import nl.esciencecenter.neon.metrics.GLCallCounter;
+import nl.esciencecenter.neon.models.Model;
+import nl.esciencecenter.neon.models.Quad;
+import nl.esciencecenter.neon.models.graphs.BezierLine;
+import nl.esciencecenter.neon.models.graphs.SegmentedLine;
+import nl.esciencecenter.neon.shaders.FragmentShader;
+import nl.esciencecenter.neon.shaders.ShaderProgram;
+import nl.esciencecenter.neon.shaders.VertexShader;
+import nl.esciencecenter.neon.textures.ByteBufferTexture;
+import nl.esciencecenter.neon.textures.Texture;
+
+import org.junit.Test;
+
+/* Copyright 2013 Netherlands eScience Center
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * Tests the sorting and bind elision of {@link RenderQueue} against a
+ * {@link StubGL3}, counting the calls with a {@link GLCallCounter}.
+ * 
+ * @author Maarten van Meersbergen <m.van.meersbergen@esciencecenter.nl>
+ * 
+ */
+public class RenderQueueTest {
+    private static ShaderProgram program(GL3 gl) throws Exception {
+        VertexShader vs = new VertexShader("test.vp", "in vec4 MCvertex;\n");
+        FragmentShader fs = new FragmentShader("test.fp", "out vec4 fragColor;\n");
+        vs.init(gl);
+        fs.init(gl);
+
+        ShaderProgram program = new ShaderProgram(vs, fs);
+        program.init(gl);
+        return program;
+    }
+
+    private static Model model(GL3 gl) {
+        Model model = new Quad(1f, 1f, new Float3Vector());
+        model.init(gl);
+        return model;
+    }
+
+    private static Texture texture(GL3 gl) throws Exception {
+        Texture texture = new ByteBufferTexture(GL3.GL_TEXTURE0, ByteBuffer.allocate(16), 2, 2);
+        texture.use(gl);
+        return texture;
+    }
+
+    /**
+     * Test method for {@link RenderQueue#flush(GL3)}: interleaved submissions
+     * are drawn with one bind per program and texture change.
+     */
+    @Test
+    public final void testSortAndElide() throws Exception {
+        GLCallCounter counter = new GLCallCounter(new StubGL3().getGL());
+        GL3 gl = counter.getGL();
+
+        ShaderProgram[] programs = { program(gl), program(gl) };
+        Texture[][] textures = { { texture(gl) }, { texture(gl) } };
+        Model[] models = { model(gl), model(gl), model(gl) };
+
+        RenderQueue queue = new RenderQueue();
+        for (int frame = 0; frame < 2; frame++) {
+            // Worst case code order: every draw changes program and texture
+            for (Model model : models) {
+                for (Texture[] texture : textures) {
+                    for (ShaderProgram program : programs) {
+                        queue.submit(model, program, texture, null, 0);
+                    }
+                }
+            }
+            assertEquals(12, queue.size());
+
+            counter.reset();
+            queue.flush(gl);
+            assertEquals(0, queue.size());
+
+            assertEquals(12, queue.getDraws());
+            assertEquals(12, counter.getDrawCalls());
+            assertEquals(2, counter.getCalls("glUseProgram"));
+            assertEquals(4, counter.getCalls("glBindTexture"));
+            assertEquals(12, counter.getCalls("glBindVertexArray"));
+
+            RenderState state = queue.getState();
+            assertEquals(2, state.getProgramChanges());
+            assertEquals(4, state.getTextureChanges());
+            assertEquals(12, state.getVertexArrayChanges());
+            assertEquals(18, state.getStateChanges());
+            assertEquals(10 + 8, state.getElidedBinds());
+        }
+    }
+
+    /**
+     * Test method for {@link RenderQueue#flush(GL3)}: the same model drawn
+     * repeatedly binds its vertex array once, and the sort key takes
+     * precedence over the program.
+     */
+    @Test
+    public final void testSortKey() throws Exception {
+        GLCallCounter counter = new GLCallCounter(new StubGL3().getGL());
+        GL3 gl = counter.getGL();
+
+        ShaderProgram a = program(gl);
+        ShaderProgram b = program(gl);
+        Model model = model(gl);
+        final int[] uniformCalls = new int[1];
+        UniformSetter uniforms = new UniformSetter() {
+            @Override
+            public void setUniforms(ShaderProgram program) {
+                uniformCalls[0]++;
+            }
+        };
+
+        RenderQueue queue = new RenderQueue();
+        queue.submit(model, a, null, uniforms, 1);
+        queue.submit(model, b, null, uniforms, 0);
+        queue.submit(model, a, null, uniforms, 0);
+        queue.submit(model, b, null, uniforms, 1);
+
+        counter.reset();
+        queue.flush(gl);
+        assertEquals(4, uniformCalls[0]);
+        assertEquals(1, counter.getCalls("glBindVertexArray"));
+        // a b | a b
+        assertEquals(4, counter.getCalls("glUseProgram"));
+
+        for (int i = 0; i < 4; i++) {
+            queue.submit(model, i % 2 == 0 ? a : b, null, uniforms, 0);
+        }
+        counter.reset();
+        queue.flush(gl);
+        assertEquals(2, counter.getCalls("glUseProgram"));
+        assertEquals(4, counter.getDrawCalls());
+    }
+
+    /**
+     * Test that the graph lines, which build their own vertex buffer objects,
+     * draw the same way on their own and from the queue.
+     */
+    @Test
+    public final void testLines() throws Exception {
+        GLCallCounter counter = new GLCallCounter(new StubGL3().getGL());
+        GL3 gl = counter.getGL();
+
+        ShaderProgram program = program(gl);
+        Model[] lines = { new SegmentedLine(4, .1f, Color4.RED), new BezierLine(4, .1f, Color4.GREEN) };
+        for (Model line : lines) {
+            line.init(gl);
+            assertTrue(line.isDrawableInParts());
+        }
+
+        counter.reset();
+        for (Model line : lines) {
+            line.draw(gl, program);
+        }
+        assertEquals(2, counter.getDrawCalls());
+        assertEquals(2, counter.getCalls("glUseProgram"));
+
+        RenderQueue queue = new RenderQueue();
+        for (int i = 0; i < 2; i++) {
+            for (Model line : lines) {
+                queue.submit(line, program);
+            }
+        }
+        counter.reset();
+        queue.flush(gl);
+        assertEquals(4, queue.getDraws());
+        assertEquals(4, counter.getDrawCalls());
+        assertEquals(1, counter.getCalls("glUseProgram"));
+    }
+}
@@ -0,0 +1,192 @@
+package nl.esciencecenter.neon.shaders;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.util.Arrays;
+
+import javax.media.opengl.GL3;
+
+import nl.esciencecenter.neon.StubGL3;
+import nl.esciencecenter.neon.metrics.GLCallCounter;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/* Copyright 2013 Netherlands eScience Center
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * Tests {@link ProgramBinaryCache} and
+ * {@link ShaderProgram#init(GL3, ProgramBinaryCache)} against a stand-in
+ * {@link GL3} whose program binaries are a few fixed bytes.
+ * 
+ * @author Maarten van Meersbergen <m.van.meersbergen@esciencecenter.nl>
+ * 
+ */
+public class ProgramBinaryCacheTest {
+    private static final int FORMAT = 42;
+    private static final byte[] BINARY = { 1, 2, 3, 4, 5, 6, 7, 8 };
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Fake driver: a {@link StubGL3} that hands out program binaries of
+     * {@link ProgramBinaryCacheTest#BINARY}, and accepts them back unless
+     * {@link #rejectBinaries} is set.
+     */
+    private static final class FakeDriver extends StubGL3 {
+        private String renderer = "Fake renderer";
+        private boolean rejectBinaries = false;
+        private boolean linked = false;
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) {
+            String name = method.getName();
+            if (name.equals("glGetString")) {
+                return (Integer) args[0] == GL3.GL_RENDERER ? renderer : "Fake";
+            } else if (name.equals("glGetIntegerv")) {
+                ((IntBuffer) args[1]).put(0, 1);
+            } else if (name.equals("glLinkProgram")) {
+                linked = true;
+            } else if (name.equals("glProgramBinary")) {
+                ByteBuffer binary = (ByteBuffer) args[2];
+                byte[] bytes = new byte[(Integer) args[3]];
+                binary.get(bytes);
+                linked = !rejectBinaries && (Integer) args[1] == FORMAT && Arrays.equals(bytes, BINARY);
+            } else if (name.equals("glGetProgramiv")) {
+                int pname = (Integer) args[1];
+                int value = pname == GL3.GL_LINK_STATUS ? (linked ? GL3.GL_TRUE : GL3.GL_FALSE)
+                        : pname == GL3.GL_PROGRAM_BINARY_LENGTH ? BINARY.length : 0;
+                ((IntBuffer) args[2]).put(0, value);
+            } else if (name.equals("glGetProgramBinary")) {
+                ((IntBuffer) args[2]).put(0, BINARY.length);
+                ((IntBuffer) args[3]).put(0, FORMAT);
+                ((ByteBuffer) args[4]).put(BINARY).flip();
+            } else {
+                return super.invoke(proxy, method, args);
+            }
+            return null;
+        }
+    }
+
+    private static ShaderProgram program(GL3 gl, ProgramBinaryCache cache, String color) throws Exception {
+        VertexShader vs = new VertexShader("test.vp", "in vec4 MCvertex;\nout vec4 color;\n");
+        FragmentShader fs = new FragmentShader("test.fp", "in vec4 color;\nout vec4 fragColor; // " + color
+                + "\n");
+        ShaderProgram program = new ShaderProgram(vs, fs);
+        program.init(gl, cache);
+        return program;
+    }
+
+    /**
+     * Test that the second program with the same sources is loaded from the
+     * cache without compiling, and that other sources or another renderer
+     * miss.
+     */
+    @Test
+    public final void testHitAndMiss() throws Exception {
+        FakeDriver driver = new FakeDriver();
+        GLCallCounter counter = new GLCallCounter(driver.getGL());
+        GL3 gl = counter.getGL();
+        ProgramBinaryCache cache = new ProgramBinaryCache(folder.getRoot());
+
+        program(gl, cache, "red");
+        assertEquals(2, counter.getCalls("glCompileShader"));
+        assertEquals(1, counter.getCalls("glGetProgramBinary"));
+        assertEquals(1, folder.getRoot().listFiles().length);
+
+        counter.reset();
+        program(gl, cache, "red");
+        assertEquals(0, counter.getCalls("glCompileShader"));
+        assertEquals(0, counter.getCalls("glLinkProgram"));
+        assertEquals(1, counter.getCalls("glProgramBinary"));
+        assertEquals(1, cache.getHits());
+
+        counter.reset();
+        program(gl, cache, "blue");
+        assertEquals(2, counter.getCalls("glCompileShader"));
+
+        driver.renderer = "Other renderer";
+        counter.reset();
+        program(gl, cache, "red");
+        assertEquals(2, counter.getCalls("glCompileShader"));
+        assertEquals(1, cache.getHits());
+        assertEquals(3, cache.getMisses());
+        assertEquals(3, folder.getRoot().listFiles().length);
+    }
+
+    /**
+     * Test that a binary rejected by the driver is deleted and the program is
+     * compiled from source instead.
+     */
+    @Test
+    public final void testRejected() throws Exception {
+        FakeDriver driver = new FakeDriver();
+        GLCallCounter counter = new GLCallCounter(driver.getGL());
+        GL3 gl = counter.getGL();
+        ProgramBinaryCache cache = new ProgramBinaryCache(folder.getRoot());
+
+        program(gl, cache, "red");
+        File[] entries = folder.getRoot().listFiles();
+        assertEquals(1, entries.length);
+
+        driver.rejectBinaries = true;
+        counter.reset();
+        program(gl, cache, "red");
+        assertEquals(1, counter.getCalls("glProgramBinary"));
+        assertEquals(2, counter.getCalls("glCompileShader"));
+        assertEquals(1, counter.getCalls("glLinkProgram"));
+        assertEquals(0, cache.getHits());
+
+        // Stored again from the fresh link
+        assertTrue(entries[0].isFile());
+    }
+
+    /**
+     * Test method for {@link ProgramBinaryCache#evict()}.
+     */
+    @Test
+    public final void testEvict() throws IOException {
+        File root = folder.getRoot();
+        long now = System.currentTimeMillis();
+        File stale = new File(root, "stale.bin");
+        assertTrue(stale.createNewFile());
+        assertTrue(stale.setLastModified(now - 100000L));
+        for (int i = 0; i < 3; i++) {
+            File entry = new File(root, "entry" + i + ".bin");
+            assertTrue(entry.createNewFile());
+            assertTrue(entry.setLastModified(now - 1000L * (3 - i)));
+        }
+        File other = new File(root, "other.txt");
+        assertTrue(other.createNewFile());
+
+        ProgramBinaryCache cache = new ProgramBinaryCache(root, 2, 50000L);
+        assertFalse(stale.exists());
+        assertFalse(new File(root, "entry0.bin").exists());
+        assertTrue(new File(root, "entry1.bin").exists());
+        assertTrue(new File(root, "entry2.bin").exists());
+        assertTrue(other.exists());
+        assertEquals(0, cache.evict());
+    }
+}
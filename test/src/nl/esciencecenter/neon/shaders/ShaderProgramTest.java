@@ -0,0 +1,125 @@
+package nl.esciencecenter.neon.shaders;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import javax.media.opengl.GL3;
+
+import nl.esciencecenter.neon.StubGL3;
+import nl.esciencecenter.neon.metrics.GLCallCounter;
+
+import org.junit.After;
+import org.junit.Test;
+
+/* Copyright 2013 Netherlands eScience Center
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * Tests the {@link ShaderValidation} policies of {@link ShaderProgram}
+ * against a {@link StubGL3}, counting the link status queries with a
+ * {@link GLCallCounter}.
+ * 
+ * @author Maarten van Meersbergen <m.van.meersbergen@esciencecenter.nl>
+ * 
+ */
+public class ShaderProgramTest {
+    private static final int USES = 10;
+
+    private static ShaderProgram program(GL3 gl) throws Exception {
+        VertexShader vs = new VertexShader("test.vp", "in vec4 MCvertex;\n");
+        FragmentShader fs = new FragmentShader("test.fp", "out vec4 fragColor;\n");
+        vs.init(gl);
+        fs.init(gl);
+
+        ShaderProgram program = new ShaderProgram(vs, fs);
+        program.init(gl);
+        return program;
+    }
+
+    private static long statusQueries(ShaderValidation validation) throws Exception {
+        GLCallCounter counter = new GLCallCounter(new StubGL3().getGL());
+        GL3 gl = counter.getGL();
+        ShaderProgram program = program(gl);
+        program.setValidation(validation);
+
+        counter.reset();
+        for (int i = 0; i < USES; i++) {
+            program.use(gl);
+        }
+        assertEquals(USES, counter.getCalls("glUseProgram"));
+        return counter.getCalls("glGetProgramiv");
+    }
+
+    /**
+     * Restores the defaults changed by the tests.
+     */
+    @After
+    public final void tearDown() {
+        ShaderProgram.setDefaultValidation(ShaderValidation.LINK);
+        ShaderProgram.setValidationSampleInterval(ShaderProgram.DEFAULT_VALIDATION_SAMPLE_INTERVAL);
+    }
+
+    /**
+     * Test method for {@link ShaderProgram#use(GL3)} with each
+     * {@link ShaderValidation} policy.
+     */
+    @Test
+    public final void testValidationPolicies() throws Exception {
+        assertEquals(USES, statusQueries(ShaderValidation.EVERY_USE));
+        assertEquals(1, statusQueries(ShaderValidation.LINK));
+        assertEquals(0, statusQueries(ShaderValidation.OFF));
+
+        ShaderProgram.setValidationSampleInterval(4);
+        // The first use, then uses 5 and 9
+        assertEquals(3, statusQueries(ShaderValidation.SAMPLED));
+    }
+
+    /**
+     * Test method for
+     * {@link ShaderProgram#setDefaultValidation(ShaderValidation)}: programs
+     * without a policy of their own follow the default.
+     */
+    @Test
+    public final void testDefaultValidation() throws Exception {
+        GLCallCounter counter = new GLCallCounter(new StubGL3().getGL());
+        GL3 gl = counter.getGL();
+        ShaderProgram program = program(gl);
+        assertNull(program.getValidation());
+
+        ShaderProgram.setDefaultValidation(ShaderValidation.OFF);
+        assertSame(ShaderValidation.OFF, ShaderProgram.getDefaultValidation());
+        counter.reset();
+        for (int i = 0; i < USES; i++) {
+            program.use(gl);
+        }
+        assertEquals(0, counter.getCalls("glGetProgramiv"));
+
+        program.setValidation(ShaderValidation.EVERY_USE);
+        counter.reset();
+        program.use(gl);
+        assertEquals(1, counter.getCalls("glGetProgramiv"));
+    }
+
+    /**
+     * Test method for
+     * {@link ShaderProgram#setValidationSampleInterval(int)} with an invalid
+     * interval.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public final void testInvalidSampleInterval() {
+        ShaderProgram.setValidationSampleInterval(0);
+    }
+}
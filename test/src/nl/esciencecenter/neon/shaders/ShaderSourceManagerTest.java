@@ -0,0 +1,153 @@
+package nl.esciencecenter.neon.shaders;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.FloatBuffer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/* Copyright 2013 Netherlands eScience Center
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * @author Maarten van Meersbergen <m.van.meersbergen@esciencecenter.nl>
+ * 
+ */
+public class ShaderSourceManagerTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File write(String path, String content) throws IOException {
+        File file = new File(folder.getRoot(), path);
+        file.getParentFile().mkdirs();
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write(content.getBytes("UTF-8"));
+        } finally {
+            out.close();
+        }
+        return file;
+    }
+
+    /**
+     * Test method for {@link ShaderSourceManager#load(File, Map)} with nested
+     * and repeated includes.
+     */
+    @Test
+    public final void testInclude() throws IOException {
+        write("include/matrices.glsl", "uniform mat4 MVMatrix;\nuniform mat4 PMatrix;\n");
+        write("include/vertex.glsl", "#include \"matrices.glsl\"\nin vec4 MCvertex;\n");
+        File main = write("vs_test.vp", "#version 140\n#include \"include/vertex.glsl\"\n"
+                + "#include <include/matrices.glsl>\nout vec4 color;\nvoid main() {}\n");
+
+        ShaderSource source = new ShaderSourceManager(4).load(main, null);
+        assertEquals("#version 140\nuniform mat4 MVMatrix;\nuniform mat4 PMatrix;\nin vec4 MCvertex;\n"
+                + "out vec4 color;\nvoid main() {}\n", source.getText());
+        assertEquals("vs_test.vp", source.getName());
+        assertEquals(FloatBuffer.class, source.getIns().get("MCvertex"));
+        assertEquals(FloatBuffer.class, source.getOuts().get("color"));
+        assertEquals(2, source.getUniforms().size());
+        assertTrue(source.getUniforms().containsKey("PMatrix"));
+
+        String directory = main.getParent().replace(File.separatorChar, '/');
+        assertEquals(Arrays.asList(directory + "/include/vertex.glsl", directory + "/include/matrices.glsl"),
+                source.getIncludedFiles());
+    }
+
+    /**
+     * Test that defines are injected after the version line.
+     */
+    @Test
+    public final void testDefines() throws IOException {
+        ShaderSourceManager manager = new ShaderSourceManager(4);
+        Map<String, String> defines = new HashMap<String, String>();
+        defines.put("USE_SPECULAR", "");
+        defines.put("LIGHTS", "4");
+
+        ShaderSource source = manager.process("fs", "\n#version 140\nout vec4 fragColor;\n", null, defines);
+        assertEquals("\n#version 140\n#define LIGHTS 4\n#define USE_SPECULAR\nout vec4 fragColor;\n",
+                source.getText());
+
+        source = manager.process("fs", "out vec4 fragColor;\n", null, defines);
+        assertEquals("#define LIGHTS 4\n#define USE_SPECULAR\nout vec4 fragColor;\n", source.getText());
+    }
+
+    /**
+     * Test that equal sources share one parsed {@link ShaderSource}, and that
+     * an edited include is parsed again.
+     */
+    @Test
+    public final void testCache() throws IOException {
+        write("common.glsl", "uniform float time;\n");
+        File main = write("fs_test.fp", "#version 140\n#include \"common.glsl\"\n");
+        ShaderSourceManager manager = new ShaderSourceManager(4);
+
+        ShaderSource first = manager.load(main, null);
+        ShaderSource second = manager.load(main, null);
+        assertSame(first, second);
+        assertEquals(1, manager.getHits());
+        assertEquals(1, manager.getMisses());
+
+        Map<String, String> defines = new HashMap<String, String>();
+        defines.put("VARIANT", "1");
+        ShaderSource variant = manager.load(main, defines);
+        assertTrue(variant != first);
+
+        write("common.glsl", "uniform int time;\n");
+        ShaderSource edited = manager.load(main, null);
+        assertEquals(Integer.class, edited.getUniforms().get("time"));
+        assertEquals(1, manager.getHits());
+        assertEquals(3, manager.getMisses());
+        assertEquals(3, manager.size());
+
+        manager.load(new File(folder.getRoot(), "common.glsl"), null);
+        assertEquals(4, manager.size());
+        manager.load(write("other.glsl", "in vec2 x;\n"), null);
+        assertEquals(4, manager.size());
+    }
+
+    /**
+     * Test that the {@link Shader} constructors share parsed sources.
+     */
+    @Test
+    public final void testShader() throws IOException {
+        File file = write("vs_shared.vp", "#version 140\nin vec4 MCvertex;\n");
+        VertexShader a = new VertexShader("a", file);
+        VertexShader b = new VertexShader("b", file);
+        assertSame(a.getIns(), b.getIns());
+        assertEquals(a.getSource(), b.getSource());
+    }
+
+    /**
+     * Test method for {@link ShaderSourceManager#load(File, Map)} with a
+     * missing include.
+     */
+    @Test(expected = FileNotFoundException.class)
+    public final void testMissingInclude() throws IOException {
+        File main = write("vs_missing.vp", "#version 140\n#include \"missing.glsl\"\n");
+        new ShaderSourceManager(4).load(main, null);
+    }
+}
@@ -0,0 +1,151 @@
+package nl.esciencecenter.neon.shaders;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/* Copyright 2013 Netherlands eScience Center
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * @author Maarten van Meersbergen <m.van.meersbergen@esciencecenter.nl>
+ * 
+ */
+public class ShaderWatcherTest {
+    private static final long TIMEOUT_MILLIS = 10000;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private ShaderWatcher watcher;
+
+    @Before
+    public void setUp() throws IOException {
+        watcher = new ShaderWatcher(new ShaderSourceManager(16), 50);
+    }
+
+    @After
+    public void tearDown() {
+        watcher.close();
+    }
+
+    private File write(String path, String content) throws IOException {
+        File file = new File(folder.getRoot(), path);
+        file.getParentFile().mkdirs();
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write(content.getBytes("UTF-8"));
+        } finally {
+            out.close();
+        }
+        return file;
+    }
+
+    private Map<File, ShaderSource> awaitChanges() throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        Map<File, ShaderSource> changes = watcher.pollChanges();
+        while (changes.isEmpty() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+            changes = watcher.pollChanges();
+        }
+        return changes;
+    }
+
+    /**
+     * Test that a watched file, and its raw text, are read in the background,
+     * and reported again after it or one of its includes changed.
+     */
+    @Test
+    public final void testReload() throws Exception {
+        write("common.glsl", "uniform float time;\n");
+        File file = write("fs_live.fp", "#version 140\n#include \"common.glsl\"\n");
+
+        watcher.watch(file);
+        Map<File, ShaderSource> changes = awaitChanges();
+        assertEquals(1, changes.size());
+        ShaderSource first = changes.get(file.getAbsoluteFile());
+        assertSame(first, watcher.getSource(file));
+        assertEquals("#version 140\n#include \"common.glsl\"\n", watcher.getText(file));
+        assertEquals(Float.class, first.getUniforms().get("time"));
+        assertTrue(watcher.pollChanges().isEmpty());
+
+        write("common.glsl", "uniform int time;\n");
+        changes = awaitChanges();
+        assertEquals(Integer.class, changes.get(file.getAbsoluteFile()).getUniforms().get("time"));
+
+        write("fs_live.fp", "#version 140\nuniform vec4 color;\n");
+        changes = awaitChanges();
+        assertTrue(changes.get(file.getAbsoluteFile()).getUniforms().containsKey("color"));
+        assertEquals("#version 140\nuniform vec4 color;\n", watcher.getText(file));
+
+        watcher.unwatch(file);
+        assertNull(watcher.getSource(file));
+        assertNull(watcher.getText(file));
+    }
+
+    /**
+     * Test that a change to an include in another directory, which is not
+     * watched for the file itself, is picked up too.
+     */
+    @Test
+    public final void testIncludeInSubdirectory() throws Exception {
+        write("include/matrices.glsl", "uniform mat4 MVMatrix;\n");
+        File file = write("vs_live.vp", "#version 140\n#include \"include/matrices.glsl\"\n");
+
+        watcher.watch(file);
+        Map<File, ShaderSource> changes = awaitChanges();
+        assertEquals(1, changes.get(file.getAbsoluteFile()).getIncludedFiles().size());
+
+        write("include/matrices.glsl", "uniform mat4 MVMatrix;\nuniform mat4 PMatrix;\n");
+        changes = awaitChanges();
+        assertTrue(changes.get(file.getAbsoluteFile()).getUniforms().containsKey("PMatrix"));
+    }
+
+    /**
+     * Test that a file watched with its current source is only reported once
+     * it changes, and that a file that fails to preprocess keeps its previous
+     * source.
+     */
+    @Test
+    public final void testCurrentAndFailure() throws Exception {
+        File file = write("vs_live.vp", "#version 140\nin vec4 MCvertex;\n");
+        ShaderSource current = new ShaderSourceManager(1).load(file, null);
+
+        watcher.watch(file, null, current);
+        Thread.sleep(300);
+        assertTrue(watcher.pollChanges().isEmpty());
+
+        write("vs_live.vp", "#version 140\n#include \"missing.glsl\"\n");
+        Thread.sleep(500);
+        assertTrue(watcher.pollChanges().isEmpty());
+        assertSame(current, watcher.getSource(file));
+
+        write("vs_live.vp", "#version 140\nin vec3 MCnormal;\n");
+        Map<File, ShaderSource> changes = awaitChanges();
+        assertTrue(changes.get(file.getAbsoluteFile()).getIns().containsKey("MCnormal"));
+    }
+}
@@ -0,0 +1,204 @@
+package nl.esciencecenter.neon.shaders;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.media.opengl.GL3;
+
+import nl.esciencecenter.neon.StubGL3;
+import nl.esciencecenter.neon.datastructures.GLSLAttribute;
+import nl.esciencecenter.neon.math.Float4Matrix;
+import nl.esciencecenter.neon.math.Float4Vector;
+import nl.esciencecenter.neon.math.FloatMatrixMath;
+import nl.esciencecenter.neon.metrics.GLCallCounter;
+
+import org.junit.Test;
+
+/* Copyright 2013 Netherlands eScience Center
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * @author Maarten van Meersbergen <m.van.meersbergen@esciencecenter.nl>
+ * 
+ */
+public class UniformBlockTest {
+    private static final String FRAME_BLOCK = "#version 140\n" + "layout(std140) uniform FrameBlock\n" + "{\n"
+            + "    mat4 PMatrix; // projection\n" + "    highp vec4 lightPos[2];\n" + "    float time, fade;\n"
+            + "} frame;\n" + "uniform mat4 MVMatrix;\n" + "in vec4 MCvertex;\n";
+
+    /**
+     * A {@link StubGL3} that records the ranges written with glBufferSubData.
+     */
+    private static final class RecordingGL extends StubGL3 {
+        private final List<int[]> uploads = new ArrayList<int[]>();
+        private ByteBuffer lastUpload;
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) {
+            if (method.getName().equals("glBufferSubData")) {
+                ByteBuffer data = ((ByteBuffer) args[3]).slice().order(ByteOrder.nativeOrder());
+                uploads.add(new int[] { (int) (long) (Long) args[1], (int) (long) (Long) args[2] });
+                lastUpload = data;
+            }
+            return super.invoke(proxy, method, args);
+        }
+    }
+
+    /**
+     * Test method for {@link ShaderSource#getUniformBlocks()}.
+     */
+    @Test
+    public final void testParse() throws Exception {
+        VertexShader vs = new VertexShader("test.vp", FRAME_BLOCK);
+
+        Map<String, String> members = vs.getUniformBlocks().get("FrameBlock");
+        assertEquals(Arrays.asList("PMatrix", "lightPos", "time", "fade"), new ArrayList<String>(members.keySet()));
+        assertEquals("mat4", members.get("PMatrix"));
+        assertEquals("vec4[2]", members.get("lightPos"));
+        assertEquals("float", members.get("fade"));
+
+        assertEquals(1, vs.getUniforms().size());
+        assertEquals(FloatBuffer.class, vs.getUniforms().get("MVMatrix"));
+        assertEquals(1, vs.getIns().size());
+    }
+
+    /**
+     * Test the std140 offsets computed by
+     * {@link UniformBlock#UniformBlock(String, int, Map)}.
+     */
+    @Test
+    public final void testLayout() {
+        Map<String, String> members = new LinkedHashMap<String, String>();
+        members.put("a", "float");
+        members.put("b", "vec3");
+        members.put("c", "float");
+        members.put("d", "mat3");
+        members.put("e", "vec4[2]");
+        members.put("f", "int");
+        members.put("g", "vec2");
+        members.put("h", "float[3]");
+
+        UniformBlock block = new UniformBlock("Layout", 3, members);
+        assertEquals(0, block.getOffset("a"));
+        assertEquals(16, block.getOffset("b"));
+        assertEquals(28, block.getOffset("c"));
+        assertEquals(32, block.getOffset("d"));
+        assertEquals(80, block.getOffset("e"));
+        assertEquals(112, block.getOffset("f"));
+        assertEquals(120, block.getOffset("g"));
+        assertEquals(128, block.getOffset("h"));
+        assertEquals(176, block.getSize());
+        assertEquals(-1, block.getOffset("missing"));
+    }
+
+    /**
+     * Test that {@link UniformBlock#upload(GL3)} writes only the changed
+     * range, with matrices in column-major order.
+     */
+    @Test
+    public final void testUpload() throws Exception {
+        RecordingGL recorder = new RecordingGL();
+        GLCallCounter counter = new GLCallCounter(recorder.getGL());
+        GL3 gl = counter.getGL();
+
+        UniformBlock block = new UniformBlock("FrameBlock", 2, new VertexShader("test.vp", FRAME_BLOCK)
+                .getUniformBlocks().get("FrameBlock"));
+        block.init(gl);
+        assertEquals(1, counter.getCalls("glBindBufferBase"));
+
+        block.upload(gl);
+        assertEquals(0, counter.getCalls("glBufferSubData"));
+
+        block.setUniform("fade", .5f);
+        block.upload(gl);
+        assertArrayEquals(new int[] { 100, 4 }, recorder.uploads.get(0));
+        assertEquals(.5f, recorder.lastUpload.getFloat(0), 0f);
+
+        Float4Matrix p = FloatMatrixMath.translate(1f, 2f, 3f);
+        block.setUniformMatrix("PMatrix", p);
+        block.setUniformVector("lightPos", 1, new Float4Vector(5f, 6f, 7f, 1f));
+        block.upload(gl);
+        assertArrayEquals(new int[] { 0, 96 }, recorder.uploads.get(1));
+        // The translation is in the last column
+        assertEquals(1f, recorder.lastUpload.getFloat(48), 0f);
+        assertEquals(2f, recorder.lastUpload.getFloat(52), 0f);
+        assertEquals(0f, recorder.lastUpload.getFloat(12), 0f);
+        assertEquals(7f, recorder.lastUpload.getFloat(88), 0f);
+
+        block.upload(gl);
+        assertEquals(2, recorder.uploads.size());
+        block.delete(gl);
+    }
+
+    /**
+     * Test method for {@link UniformBlock#setUniform(String, int)} on a member
+     * of another type.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public final void testWrongType() {
+        Map<String, String> members = new LinkedHashMap<String, String>();
+        members.put("time", "float");
+        new UniformBlock("Wrong", 0, members).setUniform("time", 1);
+    }
+
+    /**
+     * Test that a {@link ShaderProgram} binds its blocks to the registered
+     * binding points after linking, and once more after a block is
+     * initialized later.
+     */
+    @Test
+    public final void testProgramBinding() throws Exception {
+        GLCallCounter counter = new GLCallCounter(new RecordingGL().getGL());
+        GL3 gl = counter.getGL();
+
+        VertexShader vs = new VertexShader("test.vp", FRAME_BLOCK);
+        FragmentShader fs = new FragmentShader("test.fp", "layout(std140) uniform LightBlock {\n vec4 color;\n};\n");
+        vs.init(gl);
+        fs.init(gl);
+        ShaderProgram program = new ShaderProgram(vs, fs);
+        program.init(gl);
+
+        UniformBlock frame = new UniformBlock("FrameBlock", 1, vs.getUniformBlocks().get("FrameBlock"));
+        frame.init(gl);
+        assertEquals(1, UniformBlock.getBindingPoint("FrameBlock"));
+
+        program.use(gl);
+        program.linkAttribs(gl, new GLSLAttribute(FloatBuffer.allocate(4), "MCvertex", 4, 1));
+        assertEquals(1, counter.getCalls("glUniformBlockBinding"));
+
+        UniformBlock light = new UniformBlock("LightBlock", 2, fs.getUniformBlocks().get("LightBlock"));
+        light.init(gl);
+        counter.reset();
+        program.use(gl);
+        program.use(gl);
+        assertEquals(2, counter.getCalls("glUniformBlockBinding"));
+
+        frame.delete(gl);
+        light.delete(gl);
+        assertEquals(-1, UniformBlock.getBindingPoint("FrameBlock"));
+        assertFalse(UniformBlock.getBindingPoint("LightBlock") >= 0);
+    }
+}
@@ -0,0 +1,106 @@
+package nl.esciencecenter.neon.textures;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+
+import javax.media.opengl.GL3;
+
+import nl.esciencecenter.neon.StubGL3;
+import nl.esciencecenter.neon.datastructures.DirectBufferPool;
+
+import org.junit.Test;
+
+/* Copyright 2013 Netherlands eScience Center
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * @author Maarten van Meersbergen <m.van.meersbergen@esciencecenter.nl>
+ * 
+ */
+public class TextureTest {
+    /**
+     * A {@link StubGL3} that checks that every uploaded pixel is zero.
+     */
+    private static GL3 zeroCheckingGL(final int[] uploads) {
+        return new StubGL3() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                if (method.getName().equals("glTexSubImage2D")) {
+                    ByteBuffer pixels = ((ByteBuffer) args[8]).duplicate();
+                    assertEquals(4 * 16 * 8, pixels.remaining());
+                    while (pixels.hasRemaining()) {
+                        assertEquals(0, pixels.get());
+                    }
+                    uploads[0]++;
+                }
+                return super.invoke(proxy, method, args);
+            }
+        }.getGL();
+    }
+
+    /**
+     * Test that a {@link PostProcessTexture} uploads zeroed pixels, borrowed
+     * from the {@link DirectBufferPool} only for the duration of
+     * {@link Texture2D#init(GL3)}.
+     */
+    @Test
+    public final void testPostProcessTextureInit() {
+        DirectBufferPool pool = DirectBufferPool.getInstance();
+
+        // Leave garbage in the idle buffer the texture will get.
+        ByteBuffer dirty = pool.acquire(4 * 16 * 8);
+        while (dirty.hasRemaining()) {
+            dirty.put((byte) 0x55);
+        }
+        pool.release(dirty);
+        long liveBytes = pool.getLiveBytes();
+
+        int[] uploads = new int[1];
+        PostProcessTexture texture = new PostProcessTexture(16, 8, GL3.GL_TEXTURE0);
+        assertNull(texture.getPixelBuffer());
+        assertEquals(liveBytes, pool.getLiveBytes());
+
+        texture.init(zeroCheckingGL(uploads));
+        assertEquals(1, uploads[0]);
+        assertTrue(texture.isInitialized());
+        assertNull(texture.getPixelBuffer());
+        assertEquals(liveBytes, pool.getLiveBytes());
+
+        // Not uploaded again
+        texture.init(zeroCheckingGL(uploads));
+        assertEquals(1, uploads[0]);
+        assertEquals(liveBytes, pool.getLiveBytes());
+    }
+
+    /**
+     * Test that buffers that were not borrowed from the pool are kept after
+     * the upload.
+     */
+    @Test
+    public final void testOwnBufferKept() {
+        ByteBuffer pixels = ByteBuffer.allocateDirect(4 * 16 * 8);
+        ByteBufferTexture texture = new ByteBufferTexture(GL3.GL_TEXTURE0, pixels, 16, 8);
+
+        int[] uploads = new int[1];
+        texture.init(zeroCheckingGL(uploads));
+        assertEquals(1, uploads[0]);
+        assertNotNull(texture.getPixelBuffer());
+    }
+}
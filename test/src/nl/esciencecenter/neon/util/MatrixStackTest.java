@@ -0,0 +1,106 @@
+package nl.esciencecenter.neon.util;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import nl.esciencecenter.neon.math.Float4Matrix;
+import nl.esciencecenter.neon.math.Float4Vector;
+import nl.esciencecenter.neon.math.FloatMatrixMath;
+
+import org.junit.Test;
+
+/* Copyright 2013 Netherlands eScience Center
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * @author Maarten van Meersbergen <m.van.meersbergen@esciencecenter.nl>
+ * 
+ */
+public class MatrixStackTest {
+    private static final float EPSILON = 1E-5f;
+
+    /**
+     * Test method for {@link MatrixStack#push()}, {@link MatrixStack#pop()}
+     * and {@link MatrixStack#mulTop(Float4Matrix)}.
+     */
+    @Test
+    public final void testPushPopMulTop() {
+        Float4Matrix mv = FloatMatrixMath.lookAt(new Float4Vector(0f, 1f, -5f, 1f), new Float4Vector(0f, 0f, 0f, 1f),
+                new Float4Vector(0f, 1f, 0f, 0f));
+        Float4Matrix a = FloatMatrixMath.translate(1f, 2f, 3f);
+        Float4Matrix b = FloatMatrixMath.rotate(33f, 1f, 2f, 3f);
+        Float4Matrix c = FloatMatrixMath.scale(.5f);
+
+        MatrixStack stack = new MatrixStack();
+        assertArrayEquals(new Float4Matrix().asArray(), stack.getTop().asArray(), 0f);
+
+        stack.loadTop(mv);
+        stack.push();
+        stack.mulTop(a);
+        stack.push();
+        stack.mulTop(b);
+        stack.mulTop(c);
+        assertEquals(2, stack.getDepth());
+        assertArrayEquals(mv.mul(a).mul(b).mul(c).asArray(), stack.getTop().asArray(), EPSILON);
+
+        stack.pop();
+        assertArrayEquals(mv.mul(a).asArray(), stack.getTop().asArray(), EPSILON);
+
+        stack.push();
+        stack.mulTop(c);
+        assertArrayEquals(mv.mul(a).mul(c).asArray(), stack.getTop().asArray(), EPSILON);
+
+        stack.pop();
+        stack.pop();
+        assertEquals(0, stack.getDepth());
+        assertArrayEquals(mv.asArray(), stack.getTop().asArray(), 0f);
+
+        stack.clear();
+        assertArrayEquals(new Float4Matrix().asArray(), stack.getTop().asArray(), 0f);
+    }
+
+    /**
+     * Test that {@link MatrixStack#push()} grows beyond the preallocated
+     * capacity, and reuses levels afterwards.
+     */
+    @Test
+    public final void testGrow() {
+        Float4Matrix t = FloatMatrixMath.translate(1f, 0f, 0f);
+        MatrixStack stack = new MatrixStack(2);
+
+        for (int i = 0; i < 10; i++) {
+            stack.push();
+            stack.mulTop(t);
+        }
+        assertEquals(10, stack.getDepth());
+        assertEquals(10f, stack.getTop().get(3), EPSILON);
+
+        Float4Matrix top = stack.getTop();
+        stack.pop();
+        assertEquals(9f, stack.getTop().get(3), EPSILON);
+        stack.push();
+        assertSame(top, stack.getTop());
+        assertEquals(9f, stack.getTop().get(3), EPSILON);
+    }
+
+    /**
+     * Test method for {@link MatrixStack#pop()} without a matching push.
+     */
+    @Test(expected = IllegalStateException.class)
+    public final void testPopUnderflow() {
+        new MatrixStack().pop();
+    }
+}